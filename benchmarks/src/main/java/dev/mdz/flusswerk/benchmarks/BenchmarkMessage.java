@@ -0,0 +1,40 @@
+package dev.mdz.flusswerk.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import dev.mdz.flusswerk.model.Message;
+import java.util.Collections;
+import java.util.List;
+
+/** A typical Flusswerk message: an id and some payload. */
+public class BenchmarkMessage extends Message {
+
+  private final String id;
+  private final List<String> values;
+
+  @JsonCreator
+  public BenchmarkMessage(
+      @JsonProperty("id") String id, @JsonProperty("values") List<String> values) {
+    this.id = id;
+    this.values = values;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public List<String> getValues() {
+    return values;
+  }
+
+  /**
+   * @param id the message id
+   * @param payloadSize the approximate size of the payload in bytes
+   * @return a message with a payload of roughly the given size
+   */
+  static BenchmarkMessage withPayload(String id, int payloadSize) {
+    int count = Math.max(1, payloadSize / 32);
+    String value = "x".repeat(Math.min(payloadSize, 32));
+    return new BenchmarkMessage(id, Collections.nCopies(count, value));
+  }
+}
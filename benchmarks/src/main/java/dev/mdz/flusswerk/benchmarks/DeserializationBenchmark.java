@@ -0,0 +1,54 @@
+package dev.mdz.flusswerk.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import dev.mdz.flusswerk.jackson.FlusswerkObjectMapper;
+import dev.mdz.flusswerk.model.Message;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Deserialization of incoming messages, directly from the received bytes compared to the former
+ * detour via a {@link String}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeserializationBenchmark {
+
+  @Param({"256", "16384", "262144"})
+  int payloadSize;
+
+  private FlusswerkObjectMapper mapper;
+  private byte[] body;
+
+  @Setup
+  public void setUp() throws JsonProcessingException {
+    mapper = FlusswerkObjectMapper.forIncoming(BenchmarkMessage.class);
+    body = mapper.serialize(BenchmarkMessage.withPayload("id-1", payloadSize));
+  }
+
+  @Benchmark
+  public Message fromBytes() throws JsonProcessingException {
+    return mapper.deserialize(body);
+  }
+
+  @Benchmark
+  public Message fromString() throws JsonProcessingException {
+    return mapper.deserialize(new String(body, UTF_8));
+  }
+}
@@ -0,0 +1,142 @@
+package dev.mdz.flusswerk.benchmarks;
+
+import com.rabbitmq.client.Channel;
+import dev.mdz.flusswerk.config.properties.ProcessingProperties;
+import dev.mdz.flusswerk.config.properties.RabbitMQProperties;
+import dev.mdz.flusswerk.config.properties.RoutingProperties;
+import dev.mdz.flusswerk.engine.Engine;
+import dev.mdz.flusswerk.engine.FlusswerkConsumer;
+import dev.mdz.flusswerk.engine.PriorityTaskQueue;
+import dev.mdz.flusswerk.engine.Worker;
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.flow.builder.FlowBuilder;
+import dev.mdz.flusswerk.jackson.FlusswerkObjectMapper;
+import dev.mdz.flusswerk.monitoring.FlusswerkMetrics;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import dev.mdz.flusswerk.rabbitmq.RabbitClient;
+import dev.mdz.flusswerk.rabbitmq.inmemory.InMemoryBroker;
+import dev.mdz.flusswerk.reporting.DefaultProcessReport;
+import dev.mdz.flusswerk.reporting.Tracing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of a complete {@link Engine} with consumers, workers, publisher confirms and acks on
+ * the {@link InMemoryBroker}. Every invocation publishes a batch of messages and waits until all of
+ * them have been processed and sent to the output queue.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EngineBenchmark {
+
+  private static final int BATCH = 1000;
+
+  @Param({"4"})
+  int threads;
+
+  @Param({"1", "4"})
+  int channels;
+
+  @Param({"1", "20"})
+  int ackBatching;
+
+  private InMemoryBroker broker;
+  private Engine engine;
+  private Channel producer;
+  private List<byte[]> messages;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    broker = new InMemoryBroker();
+    var rabbitMQ =
+        new RabbitMQProperties(
+            null,
+            null,
+            null,
+            null,
+            channels,
+            false,
+            new RabbitMQProperties.AckBatching(ackBatching, null));
+    var mapper = FlusswerkObjectMapper.forIncoming(BenchmarkMessage.class);
+    var rabbitClient = new RabbitClient(mapper, broker.connect(rabbitMQ));
+    var routing = RoutingProperties.minimal(List.of("input"), Map.of("default", List.of("output")));
+    var messageBroker = new MessageBroker(routing, rabbitClient);
+    var tracing = new Tracing();
+    var metrics =
+        new FlusswerkMetrics(new ProcessingProperties(threads), new SimpleMeterRegistry());
+    var flow =
+        new Flow(
+            FlowBuilder.messageProcessor(BenchmarkMessage.class)
+                .process(message -> message)
+                .build());
+    flow.registerFlowMetrics(Set.of(metrics));
+
+    var taskQueue = new PriorityTaskQueue();
+    var availableWorkers = new Semaphore(threads * 2);
+    var consumers = new ArrayList<FlusswerkConsumer>();
+    var workers = new ArrayList<Worker>();
+    for (int i = 0; i < threads; i++) {
+      consumers.add(
+          new FlusswerkConsumer(
+              availableWorkers, rabbitClient, mapper, "input", 0, taskQueue, i % channels, 50));
+      workers.add(
+          new Worker(
+              flow,
+              metrics,
+              messageBroker,
+              new DefaultProcessReport("benchmark", tracing),
+              taskQueue,
+              tracing));
+    }
+    engine = new Engine(rabbitClient, consumers, workers, taskQueue);
+    engine.start();
+
+    producer = broker.connect(RabbitMQProperties.defaults()).getChannel();
+    messages = new ArrayList<>();
+    for (int i = 0; i < BATCH; i++) {
+      messages.add(mapper.serialize(BenchmarkMessage.withPayload("id-" + i, 256)));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    engine.stop();
+    broker.shutdown();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void processBatch() throws IOException, InterruptedException {
+    for (byte[] message : messages) {
+      producer.basicPublish(RoutingProperties.DEFAULT_EXCHANGE, "input", null, message);
+    }
+    while (broker.messageCount("output") < BATCH) {
+      TimeUnit.MICROSECONDS.sleep(100);
+    }
+    producer.queuePurge("output");
+  }
+}
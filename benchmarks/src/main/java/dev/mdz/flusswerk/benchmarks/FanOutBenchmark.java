@@ -0,0 +1,77 @@
+package dev.mdz.flusswerk.benchmarks;
+
+import dev.mdz.flusswerk.config.properties.RoutingProperties;
+import dev.mdz.flusswerk.jackson.FlusswerkObjectMapper;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import dev.mdz.flusswerk.rabbitmq.RabbitClient;
+import dev.mdz.flusswerk.rabbitmq.RabbitMQ;
+import dev.mdz.flusswerk.rabbitmq.Route;
+import dev.mdz.flusswerk.rabbitmq.Topic;
+import dev.mdz.flusswerk.reporting.Tracing;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sending one message to several topics: a route serializes the message once for all of its topics,
+ * sending to every topic separately serializes it for each topic.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FanOutBenchmark {
+
+  @Param({"1", "3", "5"})
+  int topics;
+
+  @Param({"256", "16384"})
+  int payloadSize;
+
+  private Route route;
+  private List<Topic> topicList;
+  private BenchmarkMessage message;
+
+  @Setup
+  public void setUp() {
+    List<String> topicNames = IntStream.range(0, topics).mapToObj(i -> "topic-" + i).toList();
+    RoutingProperties routing =
+        RoutingProperties.minimal(List.of("input"), Map.of("default", topicNames));
+    RabbitClient rabbitClient =
+        new RabbitClient(
+            FlusswerkObjectMapper.forIncoming(BenchmarkMessage.class),
+            StubConnection.withChannels(1));
+    MessageBroker messageBroker = new MessageBroker(routing, rabbitClient);
+    RabbitMQ rabbitMQ = new RabbitMQ(routing, rabbitClient, messageBroker, new Tracing());
+    route = rabbitMQ.route("default");
+    topicList = topicNames.stream().map(rabbitMQ::topic).toList();
+    message = BenchmarkMessage.withPayload("id-1", payloadSize);
+    message.setTracing(List.of("tracing-id"));
+  }
+
+  @Benchmark
+  public void route() {
+    route.send(message);
+  }
+
+  @Benchmark
+  public void topicByTopic() {
+    for (Topic topic : topicList) {
+      topic.send(message);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package dev.mdz.flusswerk.benchmarks;
+
+import dev.mdz.flusswerk.config.properties.ProcessingProperties;
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.flow.builder.FlowBuilder;
+import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.monitoring.FlusswerkMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The overhead of {@link Flow#process(Message)} around the actual processing: logging data in the
+ * MDC (including the reflective lookup of the message id), timing and metrics.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FlowBenchmark {
+
+  private Flow flow;
+  private Flow flowWithMetrics;
+  private BenchmarkMessage message;
+
+  @Setup
+  public void setUp() {
+    flow = newFlow();
+    flowWithMetrics = newFlow();
+    flowWithMetrics.registerFlowMetrics(
+        Set.of(new FlusswerkMetrics(ProcessingProperties.defaults(), new SimpleMeterRegistry())));
+    message = BenchmarkMessage.withPayload("id-1", 256);
+  }
+
+  private static Flow newFlow() {
+    return new Flow(
+        FlowBuilder.messageProcessor(BenchmarkMessage.class).process(message -> message).build());
+  }
+
+  /** Baseline: only the reader, transformer and writer functions. */
+  @Benchmark
+  public Collection<Message> innerProcess() {
+    return flow.innerProcess(message);
+  }
+
+  @Benchmark
+  public Collection<Message> process() {
+    return flow.process(message);
+  }
+
+  @Benchmark
+  public Collection<Message> processWithMetrics() {
+    return flowWithMetrics.process(message);
+  }
+}
@@ -0,0 +1,102 @@
+package dev.mdz.flusswerk.benchmarks;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Envelope;
+import dev.mdz.flusswerk.config.properties.ProcessingProperties;
+import dev.mdz.flusswerk.config.properties.RoutingProperties;
+import dev.mdz.flusswerk.engine.FlusswerkConsumer;
+import dev.mdz.flusswerk.engine.PriorityTaskQueue;
+import dev.mdz.flusswerk.engine.Task;
+import dev.mdz.flusswerk.engine.TaskQueue;
+import dev.mdz.flusswerk.engine.Worker;
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.flow.builder.FlowBuilder;
+import dev.mdz.flusswerk.jackson.FlusswerkObjectMapper;
+import dev.mdz.flusswerk.monitoring.FlusswerkMetrics;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import dev.mdz.flusswerk.rabbitmq.RabbitClient;
+import dev.mdz.flusswerk.reporting.DefaultProcessReport;
+import dev.mdz.flusswerk.reporting.Tracing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The complete path of a message through Flusswerk without the network: delivery to the consumer,
+ * deserialization, hand-off to a worker, processing, sending the result and the acknowledgement on
+ * an in-memory {@link StubChannel}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+  @Param({"256", "16384"})
+  int payloadSize;
+
+  private FlusswerkConsumer consumer;
+  private TaskQueue taskQueue;
+  private Worker worker;
+  private AMQP.BasicProperties properties;
+  private byte[] body;
+  private long deliveryTag;
+
+  @Setup
+  public void setUp() throws IOException {
+    RoutingProperties routing =
+        RoutingProperties.minimal(List.of("input"), Map.of("default", List.of("output")));
+    FlusswerkObjectMapper mapper = FlusswerkObjectMapper.forIncoming(BenchmarkMessage.class);
+    RabbitClient rabbitClient = new RabbitClient(mapper, StubConnection.withChannels(1));
+    MessageBroker messageBroker = new MessageBroker(routing, rabbitClient);
+    Tracing tracing = new Tracing();
+    FlusswerkMetrics metrics =
+        new FlusswerkMetrics(ProcessingProperties.defaults(), new SimpleMeterRegistry());
+    Flow flow =
+        new Flow(
+            FlowBuilder.messageProcessor(BenchmarkMessage.class)
+                .process(message -> message)
+                .build());
+    flow.registerFlowMetrics(Set.of(metrics));
+
+    taskQueue = new PriorityTaskQueue();
+    consumer = new FlusswerkConsumer(new Semaphore(1), rabbitClient, mapper, "input", 0, taskQueue);
+    worker =
+        new Worker(
+            flow,
+            metrics,
+            messageBroker,
+            new DefaultProcessReport("benchmark", tracing),
+            taskQueue,
+            tracing);
+    properties = new AMQP.BasicProperties.Builder().contentType("application/json").build();
+    body = mapper.serialize(BenchmarkMessage.withPayload("id-1", payloadSize));
+  }
+
+  @Benchmark
+  public void deliverAndProcess() throws IOException {
+    deliveryTag++;
+    consumer.handleDelivery(
+        "consumer", new Envelope(deliveryTag, false, "", "input"), properties, body);
+    Task task = taskQueue.poll();
+    worker.process(task.getMessage());
+    task.done();
+  }
+}
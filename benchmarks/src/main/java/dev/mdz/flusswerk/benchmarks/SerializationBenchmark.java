@@ -0,0 +1,51 @@
+package dev.mdz.flusswerk.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import dev.mdz.flusswerk.jackson.FlusswerkObjectMapper;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization of outgoing messages with the cached writers and buffers of {@link
+ * FlusswerkObjectMapper} compared to plain Jackson.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+  @Param({"256", "16384", "262144"})
+  int payloadSize;
+
+  private FlusswerkObjectMapper mapper;
+  private BenchmarkMessage message;
+
+  @Setup
+  public void setUp() {
+    mapper = FlusswerkObjectMapper.forIncoming(BenchmarkMessage.class);
+    message = BenchmarkMessage.withPayload("id-1", payloadSize);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws JsonProcessingException {
+    return mapper.serialize(message);
+  }
+
+  @Benchmark
+  public byte[] writeValueAsBytes() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(message);
+  }
+}
@@ -0,0 +1,101 @@
+package dev.mdz.flusswerk.benchmarks;
+
+import com.rabbitmq.client.RecoverableChannel;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory {@link com.rabbitmq.client.Channel} that accepts every call and drops published
+ * messages, so benchmarks measure Flusswerk instead of the network. The channel is a dynamic proxy,
+ * which adds a small, constant overhead to every channel operation.
+ */
+class StubChannel implements InvocationHandler {
+
+  private final AtomicLong publishSeqNo = new AtomicLong(1);
+  private final LongAdder published = new LongAdder();
+  private final LongAdder acked = new LongAdder();
+
+  private StubChannel() {}
+
+  /**
+   * @return a new channel that drops every published message.
+   */
+  static RecoverableChannel create() {
+    return (RecoverableChannel)
+        Proxy.newProxyInstance(
+            StubChannel.class.getClassLoader(),
+            new Class<?>[] {RecoverableChannel.class},
+            new StubChannel());
+  }
+
+  /**
+   * @param channel a channel created by {@link #create()}
+   * @return the number of messages published on this channel
+   */
+  static long published(RecoverableChannel channel) {
+    return ((StubChannel) Proxy.getInvocationHandler(channel)).published.sum();
+  }
+
+  /**
+   * @param channel a channel created by {@link #create()}
+   * @return the number of acknowledgements sent on this channel
+   */
+  static long acked(RecoverableChannel channel) {
+    return ((StubChannel) Proxy.getInvocationHandler(channel)).acked.sum();
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) {
+    switch (method.getName()) {
+      case "basicPublish":
+        published.increment();
+        return null;
+      case "basicAck":
+        acked.increment();
+        return null;
+      case "getNextPublishSeqNo":
+        return publishSeqNo.getAndIncrement();
+      case "isOpen":
+        return true;
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "equals":
+        return proxy == args[0];
+      case "toString":
+        return "StubChannel@" + Integer.toHexString(System.identityHashCode(proxy));
+      default:
+        return defaultValue(method.getReturnType());
+    }
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    if (!type.isPrimitive() || type == void.class) {
+      return null;
+    }
+    if (type == boolean.class) {
+      return false;
+    }
+    if (type == long.class) {
+      return 0L;
+    }
+    if (type == double.class) {
+      return 0.0d;
+    }
+    if (type == float.class) {
+      return 0.0f;
+    }
+    if (type == char.class) {
+      return '\0';
+    }
+    if (type == byte.class) {
+      return (byte) 0;
+    }
+    if (type == short.class) {
+      return (short) 0;
+    }
+    return 0;
+  }
+}
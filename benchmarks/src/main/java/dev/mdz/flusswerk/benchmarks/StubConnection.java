@@ -0,0 +1,19 @@
+package dev.mdz.flusswerk.benchmarks;
+
+import com.rabbitmq.client.RecoverableChannel;
+import dev.mdz.flusswerk.config.properties.RabbitMQProperties;
+import dev.mdz.flusswerk.rabbitmq.RabbitConnection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/** A {@link RabbitConnection} that only hands out {@link StubChannel stub channels}. */
+class StubConnection extends RabbitConnection {
+
+  StubConnection(List<RecoverableChannel> channels) {
+    super(RabbitMQProperties.defaults(), channels);
+  }
+
+  static StubConnection withChannels(int count) {
+    return new StubConnection(Stream.generate(StubChannel::create).limit(count).toList());
+  }
+}
@@ -0,0 +1,117 @@
+package dev.mdz.flusswerk.benchmarks;
+
+import dev.mdz.flusswerk.engine.LockFreeTaskQueue;
+import dev.mdz.flusswerk.engine.PriorityTaskQueue;
+import dev.mdz.flusswerk.engine.Task;
+import dev.mdz.flusswerk.engine.TaskQueue;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The hand-off of tasks from the consumers to the workers. Like in the engine, consumers need a
+ * permit for every task and the worker releases it when the task is done. Consumers do not block
+ * when no permit is available so the benchmark can always end. The {@code tasks} counter of the
+ * workers shows the actual hand-off rate.
+ *
+ * <p>The latency group measures the round trip of one task to a worker that waits for it, like an
+ * idle worker does in the engine.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class TaskQueueBenchmark {
+
+  private static final int PERMITS = 10;
+
+  @Param({"priority", "lockFree"})
+  public String implementation;
+
+  private TaskQueue queue;
+  private Semaphore permits;
+  private BenchmarkMessage message;
+
+  @Setup
+  public void setUp() {
+    queue =
+        switch (implementation) {
+          case "priority" -> new PriorityTaskQueue();
+          case "lockFree" -> new LockFreeTaskQueue();
+          default -> throw new IllegalArgumentException("Unknown task queue: " + implementation);
+        };
+    permits = new Semaphore(PERMITS);
+    message = new BenchmarkMessage("id-1", Collections.emptyList());
+  }
+
+  @Benchmark
+  @Group("handOff")
+  @GroupThreads(2)
+  public boolean consumer() {
+    if (!permits.tryAcquire()) {
+      return false;
+    }
+    queue.put(new Task(message, 0, permits::release));
+    return true;
+  }
+
+  @Benchmark
+  @Group("handOff")
+  @GroupThreads(4)
+  public Task worker(HandOffs handOffs) {
+    Task task = queue.poll();
+    if (task != null) {
+      task.done();
+      handOffs.tasks++;
+    }
+    return task;
+  }
+
+  @Benchmark
+  @Group("latency")
+  @GroupThreads(1)
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public boolean roundTrip() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(1);
+    queue.put(new Task(message, 0, done::countDown));
+    // The waiting worker might already have stopped at the end of the iteration
+    return done.await(100, TimeUnit.MILLISECONDS);
+  }
+
+  @Benchmark
+  @Group("latency")
+  @GroupThreads(1)
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Task waitingWorker() throws InterruptedException {
+    Task task = queue.poll(100, TimeUnit.MILLISECONDS);
+    if (task != null) {
+      task.done();
+    }
+    return task;
+  }
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class HandOffs {
+    public long tasks;
+  }
+}
@@ -0,0 +1,55 @@
+package dev.mdz.flusswerk.benchmarks;
+
+import dev.mdz.flusswerk.reporting.Tracing;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-message bookkeeping of {@link Tracing}, which every worker does for every message. Runs
+ * with several threads since all workers share the same tracing map.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class TracingBenchmark {
+
+  private Tracing tracing;
+  private List<String> incomingPath;
+
+  @Setup
+  public void setUp() {
+    tracing = new Tracing();
+    incomingPath = List.of("01HQ8Z3K5M7N9P1R3T5V7X9Z1B", "01HQ8Z3K5M7N9P1R3T5V7X9Z1C");
+  }
+
+  @Benchmark
+  public void registerAndDeregister() {
+    tracing.register(incomingPath);
+    tracing.deregister();
+  }
+
+  @Benchmark
+  public List<String> ensureFor() {
+    tracing.register(incomingPath);
+    BenchmarkMessage message = new BenchmarkMessage("id-1", Collections.emptyList());
+    tracing.ensureFor(message);
+    tracing.deregister();
+    return message.getTracing();
+  }
+}
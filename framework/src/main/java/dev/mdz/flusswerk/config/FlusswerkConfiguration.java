@@ -1,37 +1,69 @@
 package dev.mdz.flusswerk.config;
 
+import static java.util.Objects.requireNonNullElse;
+
 import dev.mdz.flusswerk.config.properties.AppProperties;
 import dev.mdz.flusswerk.config.properties.MonitoringProperties;
 import dev.mdz.flusswerk.config.properties.ProcessingProperties;
+import dev.mdz.flusswerk.config.properties.ProcessingProperties.Compaction;
+import dev.mdz.flusswerk.config.properties.ProcessingProperties.Idempotency;
+import dev.mdz.flusswerk.config.properties.ProcessingProperties.LocalRetry;
+import dev.mdz.flusswerk.config.properties.ProcessingProperties.Stages;
 import dev.mdz.flusswerk.config.properties.RabbitMQProperties;
 import dev.mdz.flusswerk.config.properties.RoutingProperties;
+import dev.mdz.flusswerk.config.properties.RoutingProperties.BulkheadProperties;
+import dev.mdz.flusswerk.engine.AdaptiveConcurrencyLimit;
+import dev.mdz.flusswerk.engine.AsyncWorker;
+import dev.mdz.flusswerk.engine.Backpressure;
+import dev.mdz.flusswerk.engine.Backpressure.Watermarks;
+import dev.mdz.flusswerk.engine.Bulkhead;
+import dev.mdz.flusswerk.engine.CompactingTaskQueue;
+import dev.mdz.flusswerk.engine.ConcurrencyLimit;
 import dev.mdz.flusswerk.engine.Engine;
+import dev.mdz.flusswerk.engine.FairTaskQueue;
 import dev.mdz.flusswerk.engine.FlusswerkConsumer;
-import dev.mdz.flusswerk.engine.Task;
+import dev.mdz.flusswerk.engine.LocalRetries;
+import dev.mdz.flusswerk.engine.LockFreeTaskQueue;
+import dev.mdz.flusswerk.engine.PriorityTaskQueue;
+import dev.mdz.flusswerk.engine.ReservingTaskQueue;
+import dev.mdz.flusswerk.engine.Stage;
+import dev.mdz.flusswerk.engine.StagedExecution;
+import dev.mdz.flusswerk.engine.TaskQueue;
+import dev.mdz.flusswerk.engine.VirtualThreadWorker;
+import dev.mdz.flusswerk.engine.Watchdog;
 import dev.mdz.flusswerk.engine.Worker;
+import dev.mdz.flusswerk.flow.BatchSpec;
 import dev.mdz.flusswerk.flow.Flow;
 import dev.mdz.flusswerk.flow.FlowSpec;
+import dev.mdz.flusswerk.flow.IdempotencyCache;
 import dev.mdz.flusswerk.jackson.FlusswerkObjectMapper;
 import dev.mdz.flusswerk.model.IncomingMessageType;
+import dev.mdz.flusswerk.model.Message;
 import dev.mdz.flusswerk.monitoring.FlowMetrics;
 import dev.mdz.flusswerk.monitoring.FlusswerkMetrics;
 import dev.mdz.flusswerk.monitoring.MeterFactory;
 import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import dev.mdz.flusswerk.rabbitmq.QueueDepths;
 import dev.mdz.flusswerk.rabbitmq.RabbitClient;
 import dev.mdz.flusswerk.rabbitmq.RabbitConnection;
 import dev.mdz.flusswerk.rabbitmq.RabbitMQ;
+import dev.mdz.flusswerk.rabbitmq.RateLimiter;
+import dev.mdz.flusswerk.rabbitmq.inmemory.InMemoryBroker;
 import dev.mdz.flusswerk.reporting.DefaultProcessReport;
 import dev.mdz.flusswerk.reporting.ProcessReport;
 import dev.mdz.flusswerk.reporting.Tracing;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.springframework.beans.factory.ObjectProvider;
@@ -50,10 +82,66 @@ public class FlusswerkConfiguration {
   }
 
   @Bean
-  public Flow flow(Optional<FlowSpec> flowSpec) {
+  public Flow flow(
+      Optional<FlowSpec> flowSpec,
+      Optional<StagedExecution> stagedExecution,
+      Optional<IdempotencyCache> idempotencyCache) {
     // No FlowSpec → no Flow. We will have to handle this case when creating the
     // Engine bean as the sole consumer of the Flow bean.
-    return flowSpec.map(Flow::new).orElse(null);
+    return flowSpec
+        .map(spec -> stagedExecution.map(stages -> stages.apply(spec)).orElse(spec))
+        .map(spec -> new Flow(spec, idempotencyCache.orElse(null)))
+        .orElse(null);
+  }
+
+  @Bean
+  public IdempotencyCache idempotencyCache(
+      Optional<FlowSpec> flowSpec,
+      ProcessingProperties processingProperties,
+      MeterRegistry meterRegistry) {
+    Function<Message, Object> key = flowSpec.map(FlowSpec::idempotencyKey).orElse(null);
+    Idempotency idempotency = processingProperties.idempotency();
+    if (flowSpec.isEmpty() || (key == null && !idempotency.isEnabled())) {
+      return null; // every message is processed
+    }
+    IdempotencyCache idempotencyCache =
+        new IdempotencyCache(
+            requireNonNullElse(key, Flow::idOf),
+            idempotency.size(),
+            idempotency.ttl(),
+            idempotency.getStore().orElse(null));
+    idempotencyCache.bindTo(meterRegistry);
+    return idempotencyCache;
+  }
+
+  @Bean
+  public StagedExecution stagedExecution(
+      ProcessingProperties processingProperties, Tracing tracing, MeterRegistry meterRegistry) {
+    Stages stages = processingProperties.stages();
+    if (!stages.isEnabled()) {
+      return null; // reader, transformer and writer run on the workers
+    }
+    StagedExecution stagedExecution =
+        new StagedExecution(
+            stage("reader", stages.reader()),
+            stage("transformer", stages.transformer()),
+            stage("writer", stages.writer()),
+            tracing);
+    stagedExecution.bindTo(meterRegistry);
+    return stagedExecution;
+  }
+
+  private static Stage stage(String name, ProcessingProperties.Stage spec) {
+    return new Stage(name, spec.threads(), spec.queue());
+  }
+
+  @Bean
+  public Watchdog watchdog(Optional<Flow> flow, RoutingProperties routingProperties) {
+    Duration timeout = flow.flatMap(Flow::getTimeout).orElse(null);
+    if (timeout == null && routingProperties.getTimeouts().isEmpty()) {
+      return null; // no time budgets to enforce
+    }
+    return new Watchdog(timeout, routingProperties.getTimeouts());
   }
 
   @Bean
@@ -62,7 +150,10 @@ public class FlusswerkConfiguration {
       List<FlusswerkConsumer> flusswerkConsumers,
       RabbitClient rabbitClient,
       Set<FlowMetrics> flowMetrics,
-      List<Worker> workers) {
+      List<Worker> workers,
+      TaskQueue taskQueue,
+      Optional<Backpressure> backpressure,
+      Optional<LocalRetries> localRetries) {
 
     if (flow.isEmpty()) {
       return null; // No Flow, nothing to do
@@ -70,7 +161,63 @@ public class FlusswerkConfiguration {
 
     flow.get().registerFlowMetrics(flowMetrics);
 
-    return new Engine(rabbitClient, flusswerkConsumers, workers);
+    return new Engine(
+        rabbitClient,
+        flusswerkConsumers,
+        workers,
+        taskQueue,
+        Executors.newFixedThreadPool(workers.size()),
+        backpressure.orElse(null),
+        localRetries.orElse(null));
+  }
+
+  @Bean
+  public LocalRetries localRetries(
+      Optional<Flow> flow,
+      ProcessingProperties processingProperties,
+      RoutingProperties routingProperties,
+      TaskQueue taskQueue,
+      MessageBroker messageBroker,
+      MeterRegistry meterRegistry) {
+    LocalRetry localRetry = processingProperties.localRetry();
+    if (flow.isEmpty() || !localRetry.isEnabled()) {
+      return null; // always retry by RabbitMQ
+    }
+    var localRetries =
+        new LocalRetries(routingProperties, localRetry.threshold(), taskQueue, messageBroker);
+    localRetries.bindTo(meterRegistry);
+    return localRetries;
+  }
+
+  @Bean
+  public Backpressure backpressure(
+      Optional<Flow> flow,
+      RoutingProperties routingProperties,
+      QueueDepths queueDepths,
+      MeterRegistry meterRegistry) {
+    if (flow.isEmpty() || routingProperties.getWatermarks().isEmpty()) {
+      return null; // always consume
+    }
+    Map<String, Watermarks> watermarks = new HashMap<>();
+    routingProperties
+        .getWatermarks()
+        .forEach((queue, w) -> watermarks.put(queue, new Watermarks(w.high(), w.low())));
+    var backpressure =
+        new Backpressure(watermarks, queue -> queueDepths.sampledDepth(queue).orElseThrow());
+    backpressure.getQueues().forEach(queueDepths::watch);
+    queueDepths.addListener(backpressure::check);
+    backpressure.bindTo(meterRegistry);
+    return backpressure;
+  }
+
+  @Bean
+  public QueueDepths queueDepths(
+      RabbitClient rabbitClient,
+      MonitoringProperties monitoringProperties,
+      MeterRegistry meterRegistry) {
+    var queueDepths = new QueueDepths(rabbitClient, monitoringProperties.queueDepthInterval());
+    queueDepths.bindTo(meterRegistry);
+    return queueDepths; // started by the MessageBroker once all queues have been declared
   }
 
   @Bean
@@ -87,14 +234,23 @@ public class FlusswerkConfiguration {
 
   @Bean
   public RabbitConnection rabbitConnection(
-      AppProperties appProperties, RabbitMQProperties rabbitMQProperties) throws IOException {
+      AppProperties appProperties,
+      RabbitMQProperties rabbitMQProperties,
+      ObjectProvider<InMemoryBroker> inMemoryBroker)
+      throws IOException {
+    InMemoryBroker broker = inMemoryBroker.getIfAvailable();
+    if (broker != null) {
+      return broker.connect(rabbitMQProperties); // no RabbitMQ, e.g. for load tests
+    }
     return new RabbitConnection(rabbitMQProperties, appProperties.name());
   }
 
   @Bean
   public RabbitClient rabbitClient(
-      FlusswerkObjectMapper flusswerkObjectMapper, RabbitConnection rabbitConnection) {
-    return new RabbitClient(flusswerkObjectMapper, rabbitConnection);
+      FlusswerkObjectMapper flusswerkObjectMapper,
+      RabbitConnection rabbitConnection,
+      MeterRegistry meterRegistry) {
+    return new RabbitClient(flusswerkObjectMapper, rabbitConnection, meterRegistry);
   }
 
   @Bean
@@ -102,19 +258,105 @@ public class FlusswerkConfiguration {
       RoutingProperties routingProperties,
       RabbitClient rabbitClient,
       MessageBroker messageBroker,
-      Tracing tracing) {
-    return new RabbitMQ(routingProperties, rabbitClient, messageBroker, tracing);
+      Tracing tracing,
+      QueueDepths queueDepths) {
+    return new RabbitMQ(routingProperties, rabbitClient, messageBroker, tracing, queueDepths);
   }
 
   @Bean
   public MessageBroker messageBroker(
-      RoutingProperties routingProperties, RabbitClient rabbitClient) {
-    return new MessageBroker(routingProperties, rabbitClient);
+      RoutingProperties routingProperties,
+      RabbitClient rabbitClient,
+      Optional<FlowSpec> flowSpec,
+      QueueDepths queueDepths,
+      MeterRegistry meterRegistry) {
+    RateLimiter flowLimit =
+        flowSpec
+            .map(FlowSpec::rateLimit)
+            .map(limit -> new RateLimiter("flow", limit.rate(), limit.burst()))
+            .orElse(null);
+    var messageBroker = new MessageBroker(routingProperties, rabbitClient, flowLimit, queueDepths);
+    messageBroker.getRateLimiters().forEach(rateLimiter -> rateLimiter.bindTo(meterRegistry));
+    return messageBroker;
   }
 
   @Bean
-  public PriorityBlockingQueue<Task> taskQueue() {
-    return new PriorityBlockingQueue<>();
+  public TaskQueue taskQueue(
+      RoutingProperties routingProperties,
+      ProcessingProperties processingProperties,
+      Optional<FlowSpec> flowSpec,
+      MessageBroker messageBroker,
+      MeterRegistry meterRegistry) {
+    TaskQueue taskQueue =
+        reserving(
+            scheduling(routingProperties, processingProperties),
+            routingProperties,
+            processingProperties,
+            flowSpec);
+    Function<Message, Object> key = flowSpec.map(FlowSpec::compactionKey).orElse(null);
+    Compaction compaction = processingProperties.compaction();
+    if (flowSpec.isEmpty() || (key == null && !compaction.isEnabled())) {
+      return taskQueue; // every received message is processed
+    }
+    CompactingTaskQueue compacting =
+        new CompactingTaskQueue(
+            taskQueue, requireNonNullElse(key, Flow::idOf), compaction.window(), messageBroker);
+    compacting.bindTo(meterRegistry);
+    return compacting;
+  }
+
+  /**
+   * @return the task queue deciding which received message is processed next.
+   */
+  static TaskQueue scheduling(
+      RoutingProperties routingProperties, ProcessingProperties processingProperties) {
+    if (!routingProperties.isWeighted() && routingProperties.getAging().isEmpty()) {
+      return processingProperties.lockFree() ? new LockFreeTaskQueue() : new PriorityTaskQueue();
+    }
+    Map<Integer, Integer> weights = new HashMap<>();
+    List<String> incoming = routingProperties.getIncoming();
+    for (int i = 0; i < incoming.size(); i++) {
+      int priority = priority(routingProperties, i);
+      routingProperties.getWeight(incoming.get(i)).ifPresent(w -> weights.put(priority, w));
+      if (routingProperties.isWeighted()) {
+        weights.putIfAbsent(priority, 1); // every queue gets its turn
+      }
+    }
+    return new FairTaskQueue(weights, routingProperties.getAging().orElse(null));
+  }
+
+  /**
+   * @return the task queue reserving workers for the queues with bulkheads, if there are any.
+   */
+  static TaskQueue reserving(
+      TaskQueue taskQueue,
+      RoutingProperties routingProperties,
+      ProcessingProperties processingProperties,
+      Optional<FlowSpec> flowSpec) {
+    Map<String, Integer> reserved = new HashMap<>();
+    for (String queue : routingProperties.getIncoming()) {
+      routingProperties
+          .getBulkhead(queue)
+          .filter(bulkhead -> bulkhead.reserved() > 0)
+          .ifPresent(bulkhead -> reserved.put(queue, bulkhead.reserved()));
+    }
+    if (reserved.isEmpty()) {
+      return taskQueue;
+    }
+    // Batch and asynchronous workers take several tasks at once, so slots are counted in tasks
+    int workers = processingProperties.workers();
+    int tasksPerWorker = 1;
+    if (flowSpec.map(spec -> spec.async() != null).orElse(false)) {
+      workers = Math.min(processingProperties.threads(), processingProperties.inFlight());
+      tasksPerWorker = (processingProperties.inFlight() + workers - 1) / workers;
+    } else if (flowSpec.map(spec -> spec.batch() != null).orElse(false)) {
+      tasksPerWorker = flowSpec.get().batch().size();
+    }
+    int reservedWorkers = reserved.values().stream().mapToInt(Integer::intValue).sum();
+    int shared = (workers - reservedWorkers) * tasksPerWorker;
+    int factor = tasksPerWorker;
+    reserved.replaceAll((queue, count) -> count * factor);
+    return new ReservingTaskQueue(taskQueue, reserved, shared);
   }
 
   @Bean
@@ -124,25 +366,114 @@ public class FlusswerkConfiguration {
       MessageBroker messageBroker,
       ProcessingProperties processingProperties,
       Optional<ProcessReport> processReport,
-      PriorityBlockingQueue<Task> taskQueue,
+      TaskQueue taskQueue,
       Tracing tracing,
-      FlusswerkMetrics metrics) {
-    return flow.map(
-            theFlow ->
-                IntStream.range(0, processingProperties.threads())
-                    .mapToObj(
-                        n ->
-                            new Worker(
-                                theFlow,
-                                metrics,
-                                messageBroker,
-                                processReport.orElseGet(
-                                    () -> new DefaultProcessReport(appProperties.name(), tracing)),
-                                taskQueue,
-                                tracing))
-                    .collect(
-                        Collectors.toList())) // Return workers for each thread to process the Flow
-        .orElse(Collections.emptyList()); // No Flow, nothing to do
+      FlusswerkMetrics metrics,
+      Optional<Watchdog> watchdog,
+      Optional<LocalRetries> localRetries) {
+    if (flow.isEmpty()) {
+      return Collections.emptyList(); // No Flow, nothing to do
+    }
+    ProcessReport report =
+        processReport.orElseGet(() -> new DefaultProcessReport(appProperties.name(), tracing));
+    if (flow.get().isAsync()) {
+      // A few workers only start processing, the in-flight limit is shared among them
+      int inFlight = processingProperties.inFlight();
+      int threads = Math.min(processingProperties.threads(), inFlight);
+      return IntStream.range(0, threads)
+          .mapToObj(
+              n ->
+                  (Worker)
+                      new AsyncWorker(
+                          flow.get(),
+                          metrics,
+                          messageBroker,
+                          report,
+                          taskQueue,
+                          tracing,
+                          inFlight / threads + (n < inFlight % threads ? 1 : 0),
+                          watchdog.orElse(null),
+                          localRetries.orElse(null)))
+          .toList();
+    }
+    if (processingProperties.virtualThreads()) {
+      // One worker starts a virtual thread per message, limited to the configured permits
+      return List.of(
+          new VirtualThreadWorker(
+              flow.get(),
+              metrics,
+              messageBroker,
+              report,
+              taskQueue,
+              tracing,
+              processingProperties.virtualThreadPermits(),
+              watchdog.orElse(null),
+              localRetries.orElse(null)));
+    }
+    return IntStream.range(0, processingProperties.threads())
+        .mapToObj(
+            n ->
+                new Worker(
+                    flow.get(),
+                    metrics,
+                    messageBroker,
+                    report,
+                    taskQueue,
+                    tracing,
+                    watchdog.orElse(null),
+                    localRetries.orElse(null)))
+        .collect(Collectors.toList()); // Return workers for each thread to process the Flow
+  }
+
+  @Bean
+  public ConcurrencyLimit concurrencyLimit(
+      ProcessingProperties processingProperties,
+      RoutingProperties routingProperties,
+      Optional<Flow> flow,
+      MeterRegistry meterRegistry) {
+    // Workers take messages from the local buffer without waiting for the network. Workers and
+    // buffers reserved by bulkheads are not available to other queues.
+    List<BulkheadProperties> bulkheads =
+        routingProperties.getIncoming().stream()
+            .flatMap(queue -> routingProperties.getBulkhead(queue).stream())
+            .toList();
+    int reservedWorkers = bulkheads.stream().mapToInt(BulkheadProperties::reserved).sum();
+    if (reservedWorkers >= processingProperties.workers()) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Bulkheads reserve %d workers, but there are only %d workers and at least one"
+                  + " worker must be left for all queues",
+              reservedWorkers, processingProperties.workers()));
+    }
+    int reserved =
+        bulkheads.stream().mapToInt(bulkhead -> bulkhead.reserved() + bulkhead.buffer()).sum();
+    // Every worker must be able to fill a whole batch, asynchronous flows need all their messages
+    int concurrency =
+        Math.max(
+            processingProperties.concurrency(), processingProperties.workers() * batchSize(flow));
+    if (flow.map(Flow::isAsync).orElse(false)) {
+      concurrency = Math.max(concurrency, processingProperties.inFlight() + reserved);
+    }
+    if (reserved >= concurrency) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Bulkheads reserve %d received messages with their workers and buffers, but only %d"
+                  + " messages may be in progress or wait for a worker and at least one must be"
+                  + " left for all queues",
+              reserved, concurrency));
+    }
+    ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit(concurrency - reserved);
+    concurrencyLimit.bindTo(meterRegistry);
+    return concurrencyLimit;
+  }
+
+  @Bean
+  public AdaptiveConcurrencyLimit adaptiveConcurrencyLimit(
+      ProcessingProperties processingProperties, ConcurrencyLimit concurrencyLimit) {
+    if (!processingProperties.adaptiveLimit().isEnabled()) {
+      return null; // fixed limit, nothing to adapt
+    }
+    return new AdaptiveConcurrencyLimit(concurrencyLimit, processingProperties.adaptiveLimit());
   }
 
   @Bean
@@ -155,30 +486,79 @@ public class FlusswerkConfiguration {
   public List<FlusswerkConsumer> flusswerkConsumers(
       FlusswerkObjectMapper flusswerkObjectMapper,
       ProcessingProperties processingProperties,
+      RabbitMQProperties rabbitMQProperties,
       RabbitClient rabbitClient,
       RoutingProperties routingProperties,
-      PriorityBlockingQueue<Task> taskQueue) {
-    int maxPriority = routingProperties.getIncoming().size();
+      TaskQueue taskQueue,
+      ConcurrencyLimit concurrencyLimit,
+      MeterRegistry meterRegistry,
+      Optional<Flow> flow) {
     List<FlusswerkConsumer> flusswerkConsumers = new ArrayList<>();
 
-    Semaphore availableWorkers = new Semaphore(processingProperties.threads());
+    int channel = 0; // distribute consumers evenly across the channel pool
     for (int i = 0; i < routingProperties.getIncoming().size(); i++) {
       String queueName = routingProperties.getIncoming().get(i);
-      int priority = maxPriority - i;
-      for (int k = 0; k < processingProperties.threads(); k++) {
+      int priority = priority(routingProperties, i);
+      Bulkhead bulkhead =
+          routingProperties
+              .getBulkhead(queueName)
+              .map(spec -> bulkhead(queueName, spec, concurrencyLimit, meterRegistry))
+              .orElseGet(() -> Bulkhead.sharedOnly(queueName, concurrencyLimit));
+      int consumers =
+          routingProperties.getConsumers(queueName).orElse(processingProperties.threads());
+      for (int k = 0; k < consumers; k++) {
         flusswerkConsumers.add(
             new FlusswerkConsumer(
-                availableWorkers,
+                bulkhead,
                 rabbitClient,
                 flusswerkObjectMapper,
                 queueName,
                 priority,
-                taskQueue));
+                taskQueue,
+                channel,
+                prefetch(routingProperties, queueName, consumers, processingProperties, flow)));
+        channel = (channel + 1) % rabbitMQProperties.channels();
       }
     }
     return Collections.unmodifiableList(flusswerkConsumers);
   }
 
+  /** Batches and asynchronous flows need more messages than one per worker. */
+  private static int prefetch(
+      RoutingProperties routingProperties,
+      String queue,
+      int consumers,
+      ProcessingProperties processingProperties,
+      Optional<Flow> flow) {
+    int prefetch = Math.max(routingProperties.getPrefetch(queue), batchSize(flow));
+    if (flow.map(Flow::isAsync).orElse(false)) {
+      int inFlight = processingProperties.inFlight();
+      prefetch = Math.max(prefetch, (inFlight + consumers - 1) / consumers);
+    }
+    return prefetch;
+  }
+
+  private static int batchSize(Optional<Flow> flow) {
+    return flow.flatMap(Flow::getBatch).map(BatchSpec::size).orElse(1);
+  }
+
+  /** Buffers of a bulkhead are reserved for its queue, the task queue reserves its workers. */
+  private static Bulkhead bulkhead(
+      String queue,
+      BulkheadProperties spec,
+      ConcurrencyLimit concurrencyLimit,
+      MeterRegistry meterRegistry) {
+    int max = spec.getMax().map(m -> m + spec.buffer()).orElse(Integer.MAX_VALUE);
+    Bulkhead bulkhead = new Bulkhead(queue, spec.reserved() + spec.buffer(), max, concurrencyLimit);
+    bulkhead.bindTo(meterRegistry);
+    return bulkhead;
+  }
+
+  /** The first incoming queue has the highest priority. */
+  private static int priority(RoutingProperties routingProperties, int index) {
+    return routingProperties.getIncoming().size() - index;
+  }
+
   public static boolean isSet(Object value) {
     if (value == null) {
       return false;
@@ -2,13 +2,33 @@ package dev.mdz.flusswerk.config.properties;
 
 import static java.util.Objects.requireNonNullElse;
 
+import java.time.Duration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
 
-/** Settings for monitoring endpoints. */
+/**
+ * Settings for monitoring endpoints.
+ *
+ * @param prefix The prefix of all metrics (default: flusswerk).
+ * @param queueDepthInterval How often the number of messages in all known queues is sampled in the
+ *     background (default: 5s).
+ */
 @ConfigurationProperties(prefix = "flusswerk.monitoring")
-public record MonitoringProperties(String prefix) {
+public record MonitoringProperties(String prefix, Duration queueDepthInterval) {
+
+  @ConstructorBinding
   public MonitoringProperties {
     prefix = requireNonNullElse(prefix, "flusswerk");
+    queueDepthInterval = requireNonNullElse(queueDepthInterval, Duration.ofSeconds(5));
+    if (queueDepthInterval.isNegative() || queueDepthInterval.isZero()) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Queue depth interval must be a positive duration, but is %s", queueDepthInterval));
+    }
+  }
+
+  public MonitoringProperties(String prefix) {
+    this(prefix, null);
   }
 
   public static MonitoringProperties defaults() {
@@ -1,19 +1,306 @@
 package dev.mdz.flusswerk.config.properties;
 
 import static java.util.Objects.requireNonNullElse;
+import static java.util.Objects.requireNonNullElseGet;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
 
-/** Configuration related to the processing. */
+/**
+ * Configuration related to the processing.
+ *
+ * @param threads The number of threads processing messages (default: 5).
+ * @param buffer The number of received messages that may wait for a free thread in addition to the
+ *     messages being processed (default: 0).
+ * @param virtualThreads Whether every message is processed on its own virtual thread instead of a
+ *     fixed pool of platform threads. Needs Java 21 or later (default: false).
+ * @param adaptiveLimit How the number of received messages in progress adapts to the processing
+ *     latency and errors (default: not at all).
+ * @param inFlight The number of messages an asynchronous flow keeps in progress at the same time,
+ *     shared by all threads (default: 100).
+ * @param stages Whether reader, transformer and writer run on stages with their own threads
+ *     (default: no).
+ * @param idempotency Whether messages that have already been processed are skipped (default: no).
+ * @param compaction Whether waiting messages are replaced by newer messages with the same key
+ *     (default: no).
+ * @param localRetry Whether messages with short backoffs are retried in memory (default: no).
+ * @param virtualThreadPermits The number of messages processed at the same time on virtual threads
+ *     (default: threads).
+ * @param lockFree Whether strict priorities use a lock-free task queue, where a new message wakes
+ *     up exactly one waiting thread instead of all threads contending for one lock (default:
+ *     false).
+ */
 @ConfigurationProperties(prefix = "flusswerk.processing")
-public record ProcessingProperties(@Min(1) Integer threads) {
+public record ProcessingProperties(
+    @Min(1) Integer threads,
+    @Min(0) Integer buffer,
+    Boolean virtualThreads,
+    @Valid AdaptiveLimit adaptiveLimit,
+    @Min(1) Integer inFlight,
+    @Valid Stages stages,
+    @Valid Idempotency idempotency,
+    @Valid Compaction compaction,
+    @Valid LocalRetry localRetry,
+    @Min(1) Integer virtualThreadPermits,
+    Boolean lockFree) {
 
+  @ConstructorBinding
   public ProcessingProperties {
     threads = requireNonNullElse(threads, 5);
+    buffer = requireNonNullElse(buffer, 0);
+    virtualThreads = requireNonNullElse(virtualThreads, false);
+    virtualThreadPermits = requireNonNullElse(virtualThreadPermits, threads);
+    adaptiveLimit = requireNonNullElseGet(adaptiveLimit, AdaptiveLimit::defaults);
+    inFlight = requireNonNullElse(inFlight, 100);
+    stages = requireNonNullElseGet(stages, Stages::defaults).withThreads(threads);
+    idempotency = requireNonNullElseGet(idempotency, Idempotency::defaults);
+    compaction = requireNonNullElseGet(compaction, Compaction::defaults);
+    localRetry = requireNonNullElseGet(localRetry, LocalRetry::defaults);
+    lockFree = requireNonNullElse(lockFree, false);
+  }
+
+  public ProcessingProperties(Integer threads) {
+    this(threads, null, null, null, null, null, null, null, null, null, null);
+  }
+
+  /**
+   * @return The number of messages processed at the same time: the threads or, with virtual
+   *     threads, the virtual thread permits.
+   */
+  public int workers() {
+    return virtualThreads ? virtualThreadPermits : threads;
+  }
+
+  /**
+   * @return The number of received messages in progress or waiting in the buffer.
+   */
+  public int concurrency() {
+    return workers() + buffer;
   }
 
   public static ProcessingProperties defaults() {
-    return new ProcessingProperties(null); // use null so constructor sets default values
+    // use null so constructor sets defaults
+    return new ProcessingProperties(
+        null, null, null, null, null, null, null, null, null, null, null);
+  }
+
+  /**
+   * The number of received messages in progress can adapt to the downstream services: it decreases
+   * multiplicatively when processing slows down or fails and increases by one while processing is
+   * fast (AIMD).
+   *
+   * @param enabled Whether the limit adapts at all (default: false).
+   * @param min The lowest limit (default: 1).
+   * @param max The highest limit (default: the limit without adapting, which covers threads,
+   *     buffer, batches and messages in flight).
+   * @param tolerance How many times slower than usual processing may get before the limit is
+   *     decreased (default: 2.0).
+   * @param errorRate The share of messages to retry that decreases the limit (default: 0.1).
+   */
+  public record AdaptiveLimit(
+      Boolean enabled,
+      @Min(1) Integer min,
+      @Min(1) Integer max,
+      Double tolerance,
+      Double errorRate) {
+
+    public AdaptiveLimit {
+      enabled = requireNonNullElse(enabled, false);
+      min = requireNonNullElse(min, 1);
+      tolerance = requireNonNullElse(tolerance, 2.0);
+      errorRate = requireNonNullElse(errorRate, 0.1);
+      if (max != null && max < min) {
+        throw new IllegalArgumentException(
+            String.format("Adaptive limit max (%d) must not be less than min (%d)", max, min));
+      }
+      if (tolerance < 1.0) {
+        throw new IllegalArgumentException(
+            String.format("Adaptive limit tolerance must be at least 1.0, but is %s", tolerance));
+      }
+    }
+
+    /**
+     * @return whether the limit adapts at all.
+     */
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public static AdaptiveLimit defaults() {
+      return new AdaptiveLimit(null, null, null, null, null);
+    }
+  }
+
+  /**
+   * Reader, transformer and writer can run on stages with their own threads and bounded queues
+   * between them (SEDA), so the stages of different messages overlap. The messages in progress are
+   * limited by <code>inFlight</code>.
+   *
+   * @param enabled Whether the stages are used at all (default: false).
+   * @param reader The stage for the reader.
+   * @param transformer The stage for the transformer.
+   * @param writer The stage for the writer.
+   */
+  public record Stages(
+      Boolean enabled, @Valid Stage reader, @Valid Stage transformer, @Valid Stage writer) {
+
+    public Stages {
+      enabled = requireNonNullElse(enabled, false);
+      reader = requireNonNullElseGet(reader, Stage::defaults);
+      transformer = requireNonNullElseGet(transformer, Stage::defaults);
+      writer = requireNonNullElseGet(writer, Stage::defaults);
+    }
+
+    /**
+     * @return whether the stages are used at all.
+     */
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    Stages withThreads(int defaultThreads) {
+      return new Stages(
+          enabled,
+          reader.withThreads(defaultThreads),
+          transformer.withThreads(defaultThreads),
+          writer.withThreads(defaultThreads));
+    }
+
+    public static Stages defaults() {
+      return new Stages(null, null, null, null);
+    }
+  }
+
+  /**
+   * @param threads The number of threads of the stage (default: threads).
+   * @param queue The number of messages that may wait for a thread of the stage (default: 10).
+   */
+  public record Stage(@Min(1) Integer threads, @Min(1) Integer queue) {
+
+    public Stage {
+      queue = requireNonNullElse(queue, 10);
+    }
+
+    Stage withThreads(int defaultThreads) {
+      if (threads != null) {
+        return this;
+      }
+      return new Stage(defaultThreads, queue);
+    }
+
+    public static Stage defaults() {
+      return new Stage(null, null);
+    }
+  }
+
+  /**
+   * Messages that have already been processed successfully are recognized by a key and skipped,
+   * e.g. when RabbitMQ redelivers them. The key is the id of the message unless the flow defines
+   * its own.
+   *
+   * @param enabled Whether duplicates are skipped (default: false, or true if the flow defines an
+   *     idempotency key).
+   * @param size The number of keys to remember (default: 10000).
+   * @param ttl How long to remember a key (default: 1 hour).
+   * @param store The file to keep the keys across restarts (default: keep in memory only).
+   */
+  public record Idempotency(Boolean enabled, @Min(1) Integer size, Duration ttl, Path store) {
+
+    public Idempotency {
+      enabled = requireNonNullElse(enabled, false);
+      size = requireNonNullElse(size, 10_000);
+      ttl = requireNonNullElse(ttl, Duration.ofHours(1));
+      if (ttl.isNegative() || ttl.isZero()) {
+        throw new IllegalArgumentException(
+            String.format("Idempotency ttl must be a positive duration, but is %s", ttl));
+      }
+    }
+
+    /**
+     * @return whether duplicates are skipped.
+     */
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    /**
+     * @return The file to keep the keys across restarts, if any.
+     */
+    public Optional<Path> getStore() {
+      return Optional.ofNullable(store);
+    }
+
+    public static Idempotency defaults() {
+      return new Idempotency(null, null, null, null);
+    }
+  }
+
+  /**
+   * Received messages waiting for a worker can be replaced by newer messages with the same key
+   * (latest wins), e.g. several updates of the same object. The key is the id of the message unless
+   * the flow defines its own.
+   *
+   * @param enabled Whether messages are compacted (default: false, or true if the flow defines a
+   *     compaction key).
+   * @param window How long new messages wait for newer ones before they are processed (default: 0,
+   *     only compact messages waiting for a worker anyway).
+   */
+  public record Compaction(Boolean enabled, Duration window) {
+
+    public Compaction {
+      enabled = requireNonNullElse(enabled, false);
+      window = requireNonNullElse(window, Duration.ZERO);
+      if (window.isNegative()) {
+        throw new IllegalArgumentException(
+            String.format("Compaction window must not be negative, but is %s", window));
+      }
+    }
+
+    /**
+     * @return whether messages are compacted.
+     */
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public static Compaction defaults() {
+      return new Compaction(null, null);
+    }
+  }
+
+  /**
+   * Messages with a short backoff can wait for their retry in memory instead of a retry queue,
+   * which saves sending them to RabbitMQ and receiving them again. Longer backoffs still use the
+   * retry queues.
+   *
+   * @param enabled Whether messages are retried in memory (default: false).
+   * @param threshold The longest backoff to wait for in memory (default: 1 second).
+   */
+  public record LocalRetry(Boolean enabled, Duration threshold) {
+
+    public LocalRetry {
+      enabled = requireNonNullElse(enabled, false);
+      threshold = requireNonNullElse(threshold, Duration.ofSeconds(1));
+      if (threshold.isNegative()) {
+        throw new IllegalArgumentException(
+            String.format("Local retry threshold must not be negative, but is %s", threshold));
+      }
+    }
+
+    /**
+     * @return whether messages are retried in memory.
+     */
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public static LocalRetry defaults() {
+      return new LocalRetry(null, null);
+    }
   }
 }
@@ -1,15 +1,26 @@
 package dev.mdz.flusswerk.config.properties;
 
 import static java.util.Objects.requireNonNullElse;
+import static java.util.Objects.requireNonNullElseGet;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
 
 /** Connection information for RabbitMQ. */
 @ConfigurationProperties(prefix = "flusswerk.rabbitmq")
 public record RabbitMQProperties(
-    List<String> hosts, String virtualHost, String username, String password) {
+    List<String> hosts,
+    String virtualHost,
+    String username,
+    String password,
+    @Min(1) Integer channels,
+    Boolean publisherConfirms,
+    @Valid AckBatching ackBatching) {
 
   /**
    * @param hosts The RabbitMQ host names. May include a specific port separated by ":" (default:
@@ -17,11 +28,32 @@ public record RabbitMQProperties(
    * @param virtualHost The RabbitMQ/AMQP virtual host. <em>Can be null.</em>
    * @param username The username for RabbitMQ login
    * @param password The password for RabbitMQ login
+   * @param channels The number of channels to open for consuming, publishing and acknowledging
+   *     messages (default: 1).
+   * @param publisherConfirms Whether messages received by the Flow should only be acknowledged
+   *     after RabbitMQ confirmed all messages sent while processing them (default: false).
+   * @param ackBatching How acknowledgements are batched (default: not at all).
    */
+  @ConstructorBinding
   public RabbitMQProperties {
     hosts = requireNotEmpty(hosts, List.of("localhost"));
     username = requireNonNullElse(username, "guest");
     password = requireNonNullElse(password, "guest");
+    channels = requireNonNullElse(channels, 1);
+    publisherConfirms = requireNonNullElse(publisherConfirms, false);
+    ackBatching = requireNonNullElseGet(ackBatching, AckBatching::defaults);
+  }
+
+  /**
+   * @param hosts The RabbitMQ host names. May include a specific port separated by ":" (default:
+   *     5672).
+   * @param virtualHost The RabbitMQ/AMQP virtual host. <em>Can be null.</em>
+   * @param username The username for RabbitMQ login
+   * @param password The password for RabbitMQ login
+   */
+  public RabbitMQProperties(
+      List<String> hosts, String virtualHost, String username, String password) {
+    this(hosts, virtualHost, username, password, null, null, null);
   }
 
   /**
@@ -34,12 +66,44 @@ public record RabbitMQProperties(
   @Override
   public String toString() {
     return String.format(
-        "RabbitMQProperties{hosts=%s, username=%s, pasword=*****}", hosts, username);
+        "RabbitMQProperties{hosts=%s, username=%s, pasword=*****, channels=%d, publisherConfirms=%s}",
+        hosts, username, channels, publisherConfirms);
   }
 
   public static RabbitMQProperties defaults() {
     // use null values so constructor sets defaults
-    return new RabbitMQProperties(null, null, null, null);
+    return new RabbitMQProperties(null, null, null, null, null, null, null);
+  }
+
+  /**
+   * Acknowledgements of successfully processed messages can be sent in batches, so RabbitMQ
+   * receives one frame for many messages.
+   *
+   * @param size The number of pending acknowledgements per channel that are sent at once (default:
+   *     1, no batching).
+   * @param interval The maximum time an acknowledgement is pending (default: 100ms).
+   */
+  public record AckBatching(@Min(1) Integer size, Duration interval) {
+
+    public AckBatching {
+      size = requireNonNullElse(size, 1);
+      interval = requireNonNullElse(interval, Duration.ofMillis(100));
+      if (interval.toMillis() < 1) {
+        throw new IllegalArgumentException(
+            String.format("Ack batching interval must be at least 1ms, but is %s", interval));
+      }
+    }
+
+    /**
+     * @return whether acknowledgements are batched at all.
+     */
+    public boolean isEnabled() {
+      return size > 1;
+    }
+
+    public static AckBatching defaults() {
+      return new AckBatching(null, null);
+    }
   }
 
   private static <T> List<T> requireNotEmpty(List<T> list, List<T> defaultValues) {
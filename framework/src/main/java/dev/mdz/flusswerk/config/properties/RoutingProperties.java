@@ -5,17 +5,22 @@ import static java.util.Objects.requireNonNullElse;
 import static java.util.Objects.requireNonNullElseGet;
 
 import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.rabbitmq.Backoff;
 import dev.mdz.flusswerk.rabbitmq.FailurePolicy;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
 
 /** AMQP/RabbitMQ routing information. */
 @ConfigurationProperties(prefix = "flusswerk.routing")
@@ -30,6 +35,14 @@ public class RoutingProperties {
   private final Map<String, String> deadLetterExchanges;
   private final Map<String, List<String>> outgoing;
   private final Map<String, FailurePolicy> failurePolicies;
+  private final Map<String, Integer> prefetch;
+  private final Map<String, Integer> consumers;
+  private final Map<String, Integer> weights;
+  private final Duration aging;
+  private final Map<String, BulkheadProperties> bulkheads;
+  private final Map<String, Duration> timeouts;
+  private final Map<String, RateLimitProperties> rateLimits;
+  private final Map<String, WatermarkProperties> watermarks;
 
   /**
    * @param exchange The exchange name to use (required).
@@ -43,6 +56,211 @@ public class RoutingProperties {
       Map<String, String> exchanges,
       Map<String, String> deadLetterExchanges,
       Map<String, FailurePolicyProperties> failurePolicies) {
+    this(exchange, incoming, outgoing, exchanges, deadLetterExchanges, failurePolicies, null, null);
+  }
+
+  /**
+   * @param exchange The exchange name to use (required).
+   * @param incoming The queue to read from (optional).
+   * @param outgoing The topic to send to per default (optional).
+   * @param prefetch The number of unacknowledged messages per consumer and incoming queue
+   *     (optional, default: 1).
+   * @param consumers The number of consumers per incoming queue (optional, default: number of
+   *     threads).
+   */
+  public RoutingProperties(
+      @NotBlank String exchange,
+      List<String> incoming,
+      Map<String, List<String>> outgoing,
+      Map<String, String> exchanges,
+      Map<String, String> deadLetterExchanges,
+      Map<String, FailurePolicyProperties> failurePolicies,
+      Map<String, Integer> prefetch,
+      Map<String, Integer> consumers) {
+    this(
+        exchange,
+        incoming,
+        outgoing,
+        exchanges,
+        deadLetterExchanges,
+        failurePolicies,
+        prefetch,
+        consumers,
+        null,
+        null,
+        null);
+  }
+
+  /**
+   * @param exchange The exchange name to use (required).
+   * @param incoming The queue to read from (optional).
+   * @param outgoing The topic to send to per default (optional).
+   * @param prefetch The number of unacknowledged messages per consumer and incoming queue
+   *     (optional, default: 1).
+   * @param consumers The number of consumers per incoming queue (optional, default: number of
+   *     threads).
+   * @param weights The share of the workers per incoming queue for weighted round robin between the
+   *     incoming queues (optional, default: strict priorities in the order of incoming queues).
+   * @param aging The time after which a waiting message is processed next, regardless of priorities
+   *     or weights (optional, default: no aging).
+   */
+  public RoutingProperties(
+      @NotBlank String exchange,
+      List<String> incoming,
+      Map<String, List<String>> outgoing,
+      Map<String, String> exchanges,
+      Map<String, String> deadLetterExchanges,
+      Map<String, FailurePolicyProperties> failurePolicies,
+      Map<String, Integer> prefetch,
+      Map<String, Integer> consumers,
+      Map<String, Integer> weights,
+      Duration aging,
+      Map<String, BulkheadProperties> bulkheads) {
+    this(
+        exchange,
+        incoming,
+        outgoing,
+        exchanges,
+        deadLetterExchanges,
+        failurePolicies,
+        prefetch,
+        consumers,
+        weights,
+        aging,
+        bulkheads,
+        null);
+  }
+
+  /**
+   * @param exchange The exchange name to use (required).
+   * @param incoming The queue to read from (optional).
+   * @param outgoing The topic to send to per default (optional).
+   * @param prefetch The number of unacknowledged messages per consumer and incoming queue
+   *     (optional, default: 1).
+   * @param consumers The number of consumers per incoming queue (optional, default: number of
+   *     threads).
+   * @param weights The share of the workers per incoming queue for weighted round robin between the
+   *     incoming queues (optional, default: strict priorities in the order of incoming queues).
+   * @param aging The time after which a waiting message is processed next, regardless of priorities
+   *     or weights (optional, default: no aging).
+   * @param bulkheads The capacity per incoming queue (optional, default: shared by all queues).
+   * @param timeouts The time budget for processing a message per incoming queue, taking precedence
+   *     over the timeout of the flow (optional, default: timeout of the flow).
+   */
+  public RoutingProperties(
+      @NotBlank String exchange,
+      List<String> incoming,
+      Map<String, List<String>> outgoing,
+      Map<String, String> exchanges,
+      Map<String, String> deadLetterExchanges,
+      Map<String, FailurePolicyProperties> failurePolicies,
+      Map<String, Integer> prefetch,
+      Map<String, Integer> consumers,
+      Map<String, Integer> weights,
+      Duration aging,
+      Map<String, BulkheadProperties> bulkheads,
+      Map<String, Duration> timeouts) {
+    this(
+        exchange,
+        incoming,
+        outgoing,
+        exchanges,
+        deadLetterExchanges,
+        failurePolicies,
+        prefetch,
+        consumers,
+        weights,
+        aging,
+        bulkheads,
+        timeouts,
+        null);
+  }
+
+  /**
+   * @param exchange The exchange name to use (required).
+   * @param incoming The queue to read from (optional).
+   * @param outgoing The topic to send to per default (optional).
+   * @param prefetch The number of unacknowledged messages per consumer and incoming queue
+   *     (optional, default: 1).
+   * @param consumers The number of consumers per incoming queue (optional, default: number of
+   *     threads).
+   * @param weights The share of the workers per incoming queue for weighted round robin between the
+   *     incoming queues (optional, default: strict priorities in the order of incoming queues).
+   * @param aging The time after which a waiting message is processed next, regardless of priorities
+   *     or weights (optional, default: no aging).
+   * @param bulkheads The capacity per incoming queue (optional, default: shared by all queues).
+   * @param timeouts The time budget for processing a message per incoming queue, taking precedence
+   *     over the timeout of the flow (optional, default: timeout of the flow).
+   * @param rateLimits The maximum rate of sent messages per outgoing topic (optional, default: no
+   *     limit).
+   */
+  public RoutingProperties(
+      @NotBlank String exchange,
+      List<String> incoming,
+      Map<String, List<String>> outgoing,
+      Map<String, String> exchanges,
+      Map<String, String> deadLetterExchanges,
+      Map<String, FailurePolicyProperties> failurePolicies,
+      Map<String, Integer> prefetch,
+      Map<String, Integer> consumers,
+      Map<String, Integer> weights,
+      Duration aging,
+      Map<String, BulkheadProperties> bulkheads,
+      Map<String, Duration> timeouts,
+      Map<String, RateLimitProperties> rateLimits) {
+    this(
+        exchange,
+        incoming,
+        outgoing,
+        exchanges,
+        deadLetterExchanges,
+        failurePolicies,
+        prefetch,
+        consumers,
+        weights,
+        aging,
+        bulkheads,
+        timeouts,
+        rateLimits,
+        null);
+  }
+
+  /**
+   * @param exchange The exchange name to use (required).
+   * @param incoming The queue to read from (optional).
+   * @param outgoing The topic to send to per default (optional).
+   * @param prefetch The number of unacknowledged messages per consumer and incoming queue
+   *     (optional, default: 1).
+   * @param consumers The number of consumers per incoming queue (optional, default: number of
+   *     threads).
+   * @param weights The share of the workers per incoming queue for weighted round robin between the
+   *     incoming queues (optional, default: strict priorities in the order of incoming queues).
+   * @param aging The time after which a waiting message is processed next, regardless of priorities
+   *     or weights (optional, default: no aging).
+   * @param bulkheads The capacity per incoming queue (optional, default: shared by all queues).
+   * @param timeouts The time budget for processing a message per incoming queue, taking precedence
+   *     over the timeout of the flow (optional, default: timeout of the flow).
+   * @param rateLimits The maximum rate of sent messages per outgoing topic (optional, default: no
+   *     limit).
+   * @param watermarks The depths per outgoing queue at which consumption is paused and resumed
+   *     (optional, default: always consume).
+   */
+  @ConstructorBinding
+  public RoutingProperties(
+      @NotBlank String exchange,
+      List<String> incoming,
+      Map<String, List<String>> outgoing,
+      Map<String, String> exchanges,
+      Map<String, String> deadLetterExchanges,
+      Map<String, FailurePolicyProperties> failurePolicies,
+      Map<String, Integer> prefetch,
+      Map<String, Integer> consumers,
+      Map<String, Integer> weights,
+      Duration aging,
+      Map<String, BulkheadProperties> bulkheads,
+      Map<String, Duration> timeouts,
+      Map<String, RateLimitProperties> rateLimits,
+      Map<String, WatermarkProperties> watermarks) {
     this.defaultExchange = requireNonNullElse(exchange, "flusswerk_default");
     this.deadLetterExchange = defaultDeadLetterExchange(this.defaultExchange);
     this.incoming = requireNonNullElseGet(incoming, Collections::emptyList);
@@ -67,6 +285,54 @@ public class RoutingProperties {
     this.failurePolicies =
         createFailurePolicies(
             this.incoming, requireNonNullElseGet(failurePolicies, Collections::emptyMap));
+
+    this.prefetch = requireIncoming("Prefetch", requirePositive("Prefetch", prefetch));
+    this.consumers =
+        requireIncoming("Consumer count", requirePositive("Consumer count", consumers));
+    this.weights = requireIncoming("Weight", requirePositive("Weight", weights));
+    if (aging != null && (aging.isNegative() || aging.isZero())) {
+      throw new IllegalArgumentException(
+          String.format("Aging must be a positive duration, but is %s", aging));
+    }
+    this.aging = aging;
+    this.bulkheads =
+        requireIncoming("Bulkhead", requireNonNullElseGet(bulkheads, Collections::emptyMap));
+    this.timeouts =
+        requireIncoming("Timeout", requireNonNullElseGet(timeouts, Collections::emptyMap));
+    for (var entry : this.timeouts.entrySet()) {
+      if (entry.getValue() == null || entry.getValue().isNegative() || entry.getValue().isZero()) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Timeout for queue '%s' must be a positive duration, but is %s",
+                entry.getKey(), entry.getValue()));
+      }
+    }
+    this.rateLimits = requireNonNullElseGet(rateLimits, Collections::emptyMap);
+    this.watermarks = requireNonNullElseGet(watermarks, Collections::emptyMap);
+  }
+
+  private <T> Map<String, T> requireIncoming(String setting, Map<String, T> perQueue) {
+    for (String queue : perQueue.keySet()) {
+      if (!this.incoming.contains(queue)) {
+        throw new IllegalArgumentException(
+            String.format("%s for queue '%s' does not match any incoming queue", setting, queue));
+      }
+    }
+    return perQueue;
+  }
+
+  private static Map<String, Integer> requirePositive(
+      String setting, Map<String, Integer> perQueue) {
+    perQueue = requireNonNullElseGet(perQueue, Collections::emptyMap);
+    for (var entry : perQueue.entrySet()) {
+      if (entry.getValue() == null || entry.getValue() < 1) {
+        throw new IllegalArgumentException(
+            String.format(
+                "%s for queue '%s' must be at least 1, but is %s",
+                setting, entry.getKey(), entry.getValue()));
+      }
+    }
+    return perQueue;
   }
 
   /**
@@ -107,8 +373,8 @@ public class RoutingProperties {
               input,
               spec.getRetryRoutingKey(),
               spec.getFailedRoutingKey(),
-              spec.getRetries(),
-              spec.getBackoff());
+              spec.getConfiguredRetries(),
+              spec.getBackoffs());
       result.put(input, failurePolicy);
     }
     for (String input : readFrom) {
@@ -160,6 +426,74 @@ public class RoutingProperties {
     return failurePolicies.get(queue);
   }
 
+  /**
+   * @param queue The incoming queue.
+   * @return The number of unacknowledged messages RabbitMQ delivers to each consumer of the queue.
+   */
+  public int getPrefetch(String queue) {
+    return prefetch.getOrDefault(queue, 1);
+  }
+
+  /**
+   * @param queue The incoming queue.
+   * @return The number of consumers for the queue, if configured.
+   */
+  public Optional<Integer> getConsumers(String queue) {
+    return Optional.ofNullable(consumers.get(queue));
+  }
+
+  /**
+   * @param queue The incoming queue.
+   * @return The weight of the queue for weighted round robin, if configured.
+   */
+  public Optional<Integer> getWeight(String queue) {
+    return Optional.ofNullable(weights.get(queue));
+  }
+
+  /**
+   * @return Whether the incoming queues are scheduled by weighted round robin instead of strict
+   *     priorities.
+   */
+  public boolean isWeighted() {
+    return !weights.isEmpty();
+  }
+
+  /**
+   * @return The time after which a waiting message is processed next, if configured.
+   */
+  public Optional<Duration> getAging() {
+    return Optional.ofNullable(aging);
+  }
+
+  /**
+   * @param queue The incoming queue.
+   * @return The bulkhead of the queue, if configured.
+   */
+  public Optional<BulkheadProperties> getBulkhead(String queue) {
+    return Optional.ofNullable(bulkheads.get(queue));
+  }
+
+  /**
+   * @return The time budgets for processing a message per incoming queue.
+   */
+  public Map<String, Duration> getTimeouts() {
+    return timeouts;
+  }
+
+  /**
+   * @return The maximum rate of sent messages per outgoing topic.
+   */
+  public Map<String, RateLimitProperties> getRateLimits() {
+    return rateLimits;
+  }
+
+  /**
+   * @return The depths per outgoing queue at which consumption is paused and resumed.
+   */
+  public Map<String, WatermarkProperties> getWatermarks() {
+    return watermarks;
+  }
+
   @Deprecated
   public String getDeadLetterExchange() {
     return deadLetterExchange;
@@ -191,16 +525,58 @@ public class RoutingProperties {
     private final String retryRoutingKey;
     private final String failedRoutingKey;
     private final Duration backoff;
+    private final List<Duration> backoffs;
+    private final Double multiplier;
+    private final Duration maxBackoff;
+    private final Double jitter;
 
     public FailurePolicyProperties(
         Integer retries, String retryRoutingKey, String failedRoutingKey, Duration backoff) {
+      this(retries, retryRoutingKey, failedRoutingKey, backoff, null, null, null, null);
+    }
+
+    /**
+     * @param retries How many times to retry a message (default: 5).
+     * @param retryRoutingKey The retry queue of the first tier (default: {@code <queue>.retry}).
+     * @param failedRoutingKey Where to send messages that failed (default: {@code <queue>.failed}).
+     * @param backoff How long to wait before the first retry (default: 30s).
+     * @param backoffs Custom delays for the first, second, ... retry, overrides backoff.
+     * @param multiplier The factor between the delays of consecutive retries for an exponential
+     *     backoff starting at backoff.
+     * @param maxBackoff The longest delay of an exponential backoff (default: no limit).
+     * @param jitter The share of a delay a message may wait less (default: 0).
+     */
+    @ConstructorBinding
+    public FailurePolicyProperties(
+        Integer retries,
+        String retryRoutingKey,
+        String failedRoutingKey,
+        Duration backoff,
+        List<Duration> backoffs,
+        Double multiplier,
+        Duration maxBackoff,
+        Double jitter) {
       this.retries = retries;
       this.retryRoutingKey = retryRoutingKey;
       this.failedRoutingKey = failedRoutingKey;
       this.backoff = backoff;
+      this.backoffs = requireNonNullElse(backoffs, List.of());
+      this.multiplier = multiplier;
+      this.maxBackoff = maxBackoff;
+      this.jitter = jitter;
     }
 
+    /**
+     * @return How many times to retry a message, 5 if not set.
+     */
     public int getRetries() {
+      return requireNonNullElse(retries, 5);
+    }
+
+    /**
+     * @return How many times to retry a message, null if not set.
+     */
+    public Integer getConfiguredRetries() {
       return retries;
     }
 
@@ -215,6 +591,112 @@ public class RoutingProperties {
     public Duration getBackoff() {
       return backoff;
     }
+
+    /**
+     * @return The delays per retry, null for the default backoff.
+     */
+    public Backoff getBackoffs() {
+      Backoff result;
+      if (!backoffs.isEmpty()) {
+        result = new Backoff(backoffs, 0);
+      } else if (multiplier != null) {
+        result =
+            Backoff.exponential(
+                requireNonNullElse(backoff, Duration.ofSeconds(30)),
+                multiplier,
+                maxBackoff,
+                getRetries());
+      } else if (backoff != null) {
+        result = Backoff.fixed(backoff);
+      } else {
+        result = null;
+      }
+      if (jitter == null) {
+        return result;
+      }
+      return requireNonNullElse(result, Backoff.fixed(Duration.ofSeconds(30))).withJitter(jitter);
+    }
+  }
+
+  /**
+   * Capacity of one incoming queue, counted in received messages that are in progress or wait for a
+   * worker.
+   *
+   * @param reserved The number of workers only this queue can use (default: 0).
+   * @param max The maximum number of workers this queue can use (default: no limit).
+   * @param buffer The number of received messages of this queue that may wait for a worker, taken
+   *     from the total buffer (default: 0).
+   */
+  public record BulkheadProperties(
+      @Min(0) Integer reserved, @Min(1) Integer max, @Min(0) Integer buffer) {
+
+    public BulkheadProperties {
+      reserved = requireNonNullElse(reserved, 0);
+      buffer = requireNonNullElse(buffer, 0);
+      if (reserved < 0 || buffer < 0) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Bulkhead reserved and buffer must not be negative, but are %d and %d",
+                reserved, buffer));
+      }
+      if (max != null && max < Math.max(reserved, 1)) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Bulkhead max must be at least 1 and reserved (%d), but is %d", reserved, max));
+      }
+    }
+
+    /**
+     * @return The maximum number of workers this queue can use, if limited.
+     */
+    public Optional<Integer> getMax() {
+      return Optional.ofNullable(max);
+    }
+  }
+
+  /**
+   * Maximum rate of messages sent to one outgoing topic. Sending blocks until the message may be
+   * sent, so messages are never dropped.
+   *
+   * @param rate The number of messages per second.
+   * @param burst The number of messages that can be sent at once (default: 1).
+   */
+  public record RateLimitProperties(@Positive Double rate, @Min(1) Integer burst) {
+
+    public RateLimitProperties {
+      burst = requireNonNullElse(burst, 1);
+      if (rate == null || !(rate > 0)) {
+        throw new IllegalArgumentException(
+            String.format("Rate limit must be positive, but is %s", rate));
+      }
+      if (burst < 1) {
+        throw new IllegalArgumentException(
+            String.format("Rate limit burst must be at least 1, but is %d", burst));
+      }
+    }
+  }
+
+  /**
+   * Depths of one outgoing queue at which consumption is paused and resumed.
+   *
+   * @param high The number of messages in the queue that pauses consumption.
+   * @param low The number of messages in the queue that resumes consumption (default: half of
+   *     high).
+   */
+  public record WatermarkProperties(@Min(1) Long high, @Min(0) Long low) {
+
+    public WatermarkProperties {
+      if (high == null || high < 1) {
+        throw new IllegalArgumentException(
+            String.format("High watermark must be at least 1, but is %s", high));
+      }
+      low = requireNonNullElse(low, high / 2);
+      if (low < 0 || low >= high) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Low watermark must be at least 0 and less than high (%d), but is %d", high, low));
+      }
+    }
   }
 
   public static String defaultDeadLetterExchange(String exchange) {
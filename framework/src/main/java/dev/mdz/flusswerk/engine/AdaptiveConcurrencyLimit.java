@@ -0,0 +1,110 @@
+package dev.mdz.flusswerk.engine;
+
+import static java.util.Objects.requireNonNullElse;
+
+import dev.mdz.flusswerk.config.properties.ProcessingProperties.AdaptiveLimit;
+import dev.mdz.flusswerk.flow.FlowInfo;
+import dev.mdz.flusswerk.monitoring.FlowMetrics;
+import dev.mdz.flusswerk.monitoring.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adapts a {@link ConcurrencyLimit} to the observed processing (additive increase, multiplicative
+ * decrease).
+ *
+ * <p>Every processed message is a sample of latency and errors. The latency of the recent messages
+ * is compared with the long-term latency: if processing gets slower than the tolerance allows or
+ * too many messages have to be retried, the limit is decreased by 10%, at most once per recent
+ * latency so that messages started before the decrease do not decrease it again. Otherwise, the
+ * limit increases by one as long as at least half of it is in use.
+ */
+public class AdaptiveConcurrencyLimit implements FlowMetrics {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConcurrencyLimit.class);
+
+  static final double BACKOFF_RATIO = 0.9;
+  private static final double SHORT_SMOOTHING = 0.1; // about the last 10 messages
+  private static final double LONG_SMOOTHING = 0.01; // about the last 100 messages
+  private static final double ERROR_SMOOTHING = 0.05; // about the last 20 messages
+
+  private final ConcurrencyLimit limit;
+  private final int min;
+  private final int max;
+  private final double tolerance;
+  private final double maxErrorRate;
+
+  private double shortLatency = -1;
+  private double longLatency = -1;
+  private double errorRate = 0;
+  private long lastDecrease = 0;
+  private boolean decreased = false;
+
+  /**
+   * The limit starts at its current value and is not changed before the first message has been
+   * processed.
+   *
+   * @param limit the limit to adapt
+   * @param properties the bounds and thresholds, without a max the current limit is the highest
+   */
+  public AdaptiveConcurrencyLimit(ConcurrencyLimit limit, AdaptiveLimit properties) {
+    this.limit = limit;
+    this.min = properties.min();
+    this.max = requireNonNullElse(properties.max(), limit.getLimit());
+    this.tolerance = properties.tolerance();
+    this.maxErrorRate = properties.errorRate();
+  }
+
+  @Override
+  public void accept(FlowInfo flowInfo) {
+    Status status = flowInfo.getStatus();
+    sample(flowInfo.duration().toNanos(), status == Status.ERROR_RETRY || status == Status.TIMEOUT);
+  }
+
+  /**
+   * Adapts the limit to one processed message.
+   *
+   * @param latency the processing time in nanoseconds
+   * @param error whether processing failed and the message is going to be retried
+   */
+  synchronized void sample(long latency, boolean error) {
+    if (shortLatency < 0) {
+      shortLatency = latency;
+      longLatency = latency;
+    } else {
+      shortLatency += SHORT_SMOOTHING * (latency - shortLatency);
+      longLatency += LONG_SMOOTHING * (latency - longLatency);
+    }
+    errorRate += ERROR_SMOOTHING * ((error ? 1 : 0) - errorRate);
+
+    int current = limit.getLimit();
+    boolean overloaded = errorRate > maxErrorRate || shortLatency > tolerance * longLatency;
+    if (overloaded) {
+      long now = System.nanoTime();
+      if (decreased && now - lastDecrease < shortLatency) {
+        return; // still seeing messages started before the last decrease
+      }
+      int decreasedLimit = Math.max(min, (int) (current * BACKOFF_RATIO));
+      if (decreasedLimit < current) {
+        LOGGER.debug(
+            "Decrease concurrency limit to {} (latency {}ms, long-term {}ms, error rate {})",
+            decreasedLimit,
+            shortLatency / 1e6,
+            longLatency / 1e6,
+            errorRate);
+        limit.setLimit(decreasedLimit);
+      }
+      decreased = true;
+      lastDecrease = now;
+    } else if (current < max && limit.inUse() * 2 >= current) {
+      limit.setLimit(current + 1);
+    }
+  }
+
+  /**
+   * @return the current limit.
+   */
+  public int getLimit() {
+    return limit.getLimit();
+  }
+}
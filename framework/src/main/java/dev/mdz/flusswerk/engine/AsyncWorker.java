@@ -0,0 +1,195 @@
+package dev.mdz.flusswerk.engine;
+
+import dev.mdz.flusswerk.engine.Watchdog.Watch;
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.monitoring.FlusswerkMetrics;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import dev.mdz.flusswerk.reporting.ProcessReport;
+import dev.mdz.flusswerk.reporting.Tracing;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * A worker for asynchronous flows. It only starts processing a task and takes the next one right
+ * away, so a few workers keep many messages in progress at the same time. Sending, acknowledging,
+ * retrying and reporting a message happen on the thread that completes its processing, with the
+ * tracing path and MDC the message has been started with. Stages started by the flow itself run
+ * with them as well, but code the flow hands over to threads of its own does not: sending messages
+ * from such threads starts a new tracing path.
+ *
+ * <p>The number of messages in progress is bounded by permits. A permit is acquired before the next
+ * task is taken from the queue, so the task priorities still decide which message is processed
+ * next. When the worker is stopped, it waits for all messages in progress before {@link #run()}
+ * returns.
+ */
+public class AsyncWorker extends Worker {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncWorker.class);
+
+  private final Flow flow;
+  private final FlusswerkMetrics metrics;
+  private final Tracing tracing;
+  private final int maxInFlight;
+  private final Semaphore permits;
+
+  /**
+   * @param flow the asynchronous flow to process the messages with
+   * @param metrics the metrics to record active workers
+   * @param messageBroker the broker to send and acknowledge messages
+   * @param processReport the report for processing results
+   * @param queue the tasks to process
+   * @param tracing the tracing information of the current thread
+   * @param maxInFlight the maximum number of messages in progress at the same time
+   */
+  public AsyncWorker(
+      Flow flow,
+      FlusswerkMetrics metrics,
+      MessageBroker messageBroker,
+      ProcessReport processReport,
+      TaskQueue queue,
+      Tracing tracing,
+      int maxInFlight) {
+    this(flow, metrics, messageBroker, processReport, queue, tracing, maxInFlight, null, null);
+  }
+
+  /**
+   * @param flow the asynchronous flow to process the messages with
+   * @param metrics the metrics to record active workers
+   * @param messageBroker the broker to send and acknowledge messages
+   * @param processReport the report for processing results
+   * @param queue the tasks to process
+   * @param tracing the tracing information of the current thread
+   * @param maxInFlight the maximum number of messages in progress at the same time
+   * @param watchdog the watchdog enforcing time budgets, null for no time budgets
+   * @param localRetries retries messages with short backoffs in memory, null to always retry by
+   *     RabbitMQ
+   */
+  public AsyncWorker(
+      Flow flow,
+      FlusswerkMetrics metrics,
+      MessageBroker messageBroker,
+      ProcessReport processReport,
+      TaskQueue queue,
+      Tracing tracing,
+      int maxInFlight,
+      Watchdog watchdog,
+      LocalRetries localRetries) {
+    super(flow, metrics, messageBroker, processReport, queue, tracing, watchdog, localRetries);
+    if (!flow.isAsync()) {
+      throw new IllegalArgumentException("AsyncWorker needs an asynchronous flow");
+    }
+    this.flow = flow;
+    this.metrics = metrics;
+    this.tracing = tracing;
+    this.maxInFlight = maxInFlight;
+    this.permits = new Semaphore(maxInFlight);
+  }
+
+  @Override
+  public void run() {
+    super.run();
+    // Messages in progress must be finished before the engine acknowledges the last messages
+    try {
+      if (!permits.tryAcquire(
+          maxInFlight, Threads.SHUTDOWN_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+        LOGGER.error(
+            "Not all messages did finish during shutdown window of {}", Threads.SHUTDOWN_TIMEOUT);
+        return;
+      }
+      permits.release(maxInFlight);
+    } catch (InterruptedException e) {
+      LOGGER.error("Interrupted while waiting for messages to finish", e);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits for a permit and a task and starts processing the task. Waits in intervals of 1 second so
+   * stopping the worker is possible.
+   */
+  @Override
+  void step() {
+    try {
+      if (!permits.tryAcquire(1, TimeUnit.SECONDS)) {
+        return;
+      }
+      Task task = nextTask();
+      if (task == null) {
+        permits.release();
+        return;
+      }
+      start(task);
+    } catch (InterruptedException e) {
+      LOGGER.debug("Interrupt while waiting for message", e);
+    }
+  }
+
+  private void start(Task task) {
+    Message message = task.getMessage();
+    metrics.incrementActiveWorkers();
+    // Stages that never complete would keep the permit forever, the watchdog releases it instead
+    Watch watch =
+        watch(
+            List.of(task),
+            null, // stages run on threads of their own
+            expired -> {
+              metrics.decrementActiveWorkers();
+              release(task);
+              permits.release();
+              timedOut(List.of(task), expired);
+            });
+    tracing.register(message.getTracing());
+    try {
+      var processing = flow.processAsync(message); // puts the message into the MDC
+      List<String> tracingPath = tracing.tracingPath();
+      Map<String, String> context = MDC.getCopyOfContextMap();
+      processing.whenComplete(
+          (messagesToSend, error) -> {
+            if (!watch.finish()) {
+              return; // the watchdog already retried the message
+            }
+            // Runs on the thread completing the processing, which might belong to anyone
+            List<String> previousPath = tracing.tracingPath();
+            Map<String, String> previousContext = MDC.getCopyOfContextMap();
+            tracing.restore(tracingPath);
+            Stage.setContext(context);
+            try {
+              complete(message, messagesToSend, error == null ? null : Flow.causeOf(error));
+            } finally {
+              tracing.restore(previousPath);
+              Stage.setContext(previousContext);
+              metrics.decrementActiveWorkers();
+              finish(task);
+              release(task);
+              permits.release();
+            }
+          });
+    } catch (RuntimeException e) {
+      // Flow.processAsync reports failures by the stage, so this is a bug in the flow itself
+      LOGGER.error("Could not start processing message", e);
+      if (!watch.finish()) {
+        return;
+      }
+      metrics.decrementActiveWorkers();
+      complete(message, null, e);
+      finish(task);
+      release(task);
+      permits.release();
+    } finally {
+      tracing.deregister();
+    }
+  }
+
+  /**
+   * @return the number of messages that could be started right now.
+   */
+  int availablePermits() {
+    return permits.availablePermits();
+  }
+}
@@ -0,0 +1,140 @@
+package dev.mdz.flusswerk.engine;
+
+import static java.util.Objects.requireNonNull;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pauses consumption while outgoing queues are too deep, e.g. because the next stage of the
+ * pipeline is down. The depths are checked whenever they have been sampled in the background (see
+ * {@link dev.mdz.flusswerk.rabbitmq.QueueDepths}), so sending messages never waits for RabbitMQ.
+ * Once a queue reaches its high watermark, consumption is paused until all queues drained to their
+ * low watermarks.
+ */
+public class Backpressure implements MeterBinder, AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Backpressure.class);
+
+  private final Map<String, Watermarks> watermarks;
+  private final ToLongFunction<String> depthOf;
+  private final Set<String> blocking = new HashSet<>(); // guarded by this
+  private final LongAdder pauses = new LongAdder();
+  private volatile boolean paused = false;
+  private Runnable pause; // guarded by this, null unless started
+  private Runnable resume; // guarded by this, null unless started
+
+  /**
+   * @param watermarks the watermarks per outgoing queue
+   * @param depthOf the last sampled number of messages in a queue
+   */
+  public Backpressure(Map<String, Watermarks> watermarks, ToLongFunction<String> depthOf) {
+    this.watermarks = Map.copyOf(watermarks);
+    this.depthOf = requireNonNull(depthOf);
+  }
+
+  /**
+   * Starts reacting to the depths of the queues.
+   *
+   * @param pause called when consumption should be paused
+   * @param resume called when consumption can be resumed
+   */
+  public synchronized void start(Runnable pause, Runnable resume) {
+    this.pause = requireNonNull(pause);
+    this.resume = requireNonNull(resume);
+  }
+
+  /** Checks the depths of all queues and pauses or resumes consumption if necessary. */
+  public synchronized void check() {
+    if (pause == null) {
+      return; // not started or closed
+    }
+    for (var entry : watermarks.entrySet()) {
+      String queue = entry.getKey();
+      long depth;
+      try {
+        depth = depthOf.applyAsLong(queue);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Could not get depth of queue {}: {}", queue, e.getMessage());
+        continue; // keep the previous state of the queue
+      }
+      Watermarks limits = entry.getValue();
+      if (depth >= limits.high()) {
+        blocking.add(queue);
+      } else if (depth <= limits.low()) {
+        blocking.remove(queue);
+      }
+    }
+    try {
+      if (!paused && !blocking.isEmpty()) {
+        LOGGER.warn("Pause consumption, outgoing queues {} are too deep", blocking);
+        paused = true;
+        pauses.increment();
+        pause.run();
+      } else if (paused && blocking.isEmpty()) {
+        LOGGER.info("Resume consumption, outgoing queues drained");
+        paused = false;
+        resume.run();
+      }
+    } catch (RuntimeException e) {
+      LOGGER.error("Could not pause or resume consumption", e);
+    }
+  }
+
+  /**
+   * @return whether consumption is paused.
+   */
+  public boolean isPaused() {
+    return paused;
+  }
+
+  /**
+   * @return the outgoing queues with watermarks.
+   */
+  public Set<String> getQueues() {
+    return watermarks.keySet();
+  }
+
+  /** Stops reacting to the depths of the queues. */
+  @Override
+  public synchronized void close() {
+    pause = null;
+    resume = null;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("flusswerk.backpressure.paused", this, b -> b.isPaused() ? 1 : 0)
+        .description("Whether consumption is paused because outgoing queues are too deep")
+        .register(registry);
+    FunctionCounter.builder("flusswerk.backpressure.pauses", pauses, LongAdder::sum)
+        .description("Times consumption has been paused because outgoing queues were too deep")
+        .register(registry);
+  }
+
+  /**
+   * Watermarks of one outgoing queue.
+   *
+   * @param high the number of messages that pauses consumption
+   * @param low the number of messages that resumes consumption
+   */
+  public record Watermarks(long high, long low) {
+
+    public Watermarks {
+      if (high < 1 || low < 0 || low >= high) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Watermarks must be 0 <= low < high, but are low=%d and high=%d", low, high));
+      }
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package dev.mdz.flusswerk.engine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the received messages of one incoming queue that are in progress or wait for a worker.
+ *
+ * <p>A bulkhead has reserved permits that only this queue can use and may borrow more permits from
+ * a pool shared with all other queues, up to its maximum. Reserved permits are used first and kept
+ * as long as possible, so borrowed permits go back to the shared pool as soon as possible. A flood
+ * of messages on one queue therefore cannot take the capacity reserved for another queue.
+ */
+public class Bulkhead implements MeterBinder {
+
+  private static final long RECHECK_RESERVED_MILLIS = 100;
+
+  private final String queue;
+  private final int reserved;
+  private final int max;
+  private final Semaphore shared;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition belowMax = lock.newCondition();
+  private int held = 0; // reserved permits in use
+  private int borrowed = 0; // shared permits in use
+  private int pending = 0; // waiting for a shared permit
+
+  /**
+   * @param queue the incoming queue
+   * @param reserved the number of permits only this queue can use
+   * @param max the maximum number of permits for this queue, including the reserved ones
+   * @param shared the pool of permits shared by all queues
+   */
+  public Bulkhead(String queue, int reserved, int max, Semaphore shared) {
+    if (reserved < 0 || max < 1 || reserved > max) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Bulkhead for queue '%s' needs 0 <= reserved <= max and max >= 1, but has reserved=%d"
+                  + " and max=%d",
+              queue, reserved, max));
+    }
+    this.queue = queue;
+    this.reserved = reserved;
+    this.max = max;
+    this.shared = shared;
+  }
+
+  /**
+   * A bulkhead without reserved permits and without maximum, so the queue only uses the shared
+   * pool.
+   *
+   * @param queue the incoming queue
+   * @param shared the pool of permits shared by all queues
+   * @return the new bulkhead
+   */
+  public static Bulkhead sharedOnly(String queue, Semaphore shared) {
+    return new Bulkhead(queue, 0, Integer.MAX_VALUE, shared);
+  }
+
+  /**
+   * Waits for a permit, a reserved one if available or a shared one otherwise.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void acquire() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (held + borrowed + pending >= max) {
+        belowMax.await();
+      }
+      if (held < reserved) {
+        held++;
+        return;
+      }
+      pending++;
+    } finally {
+      lock.unlock();
+    }
+
+    boolean acquired = false;
+    try {
+      if (reserved == 0) {
+        shared.acquire(); // no reserved permit can become free, just wait
+        acquired = borrow();
+      }
+      while (!acquired) {
+        if (shared.tryAcquire(RECHECK_RESERVED_MILLIS, TimeUnit.MILLISECONDS)) {
+          acquired = borrow();
+        } else {
+          acquired = tryReservedWhilePending();
+        }
+      }
+    } finally {
+      lock.lock();
+      try {
+        pending--;
+        if (!acquired) {
+          belowMax.signal();
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private boolean borrow() {
+    lock.lock();
+    try {
+      borrowed++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** A reserved permit might have become free while waiting for a shared one. */
+  private boolean tryReservedWhilePending() {
+    lock.lock();
+    try {
+      if (held < reserved) {
+        held++;
+        return true;
+      }
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns a permit, a borrowed one first. */
+  public void release() {
+    lock.lock();
+    try {
+      if (borrowed > 0) {
+        borrowed--;
+        shared.release();
+      } else if (held > 0) {
+        held--;
+      } else {
+        throw new IllegalStateException("Bulkhead for queue '" + queue + "' has no permit taken");
+      }
+      belowMax.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of permits in use, reserved or borrowed.
+   */
+  public int inUse() {
+    lock.lock();
+    try {
+      return held + borrowed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of permits borrowed from the shared pool.
+   */
+  public int borrowed() {
+    lock.lock();
+    try {
+      return borrowed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public String getQueue() {
+    return queue;
+  }
+
+  public int getReserved() {
+    return reserved;
+  }
+
+  public int getMax() {
+    return max;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("flusswerk.bulkhead.permits", this, b -> b.inUse() - b.borrowed())
+        .description("Permits of an incoming queue in use")
+        .tag("queue", queue)
+        .tag("type", "reserved")
+        .register(registry);
+    Gauge.builder("flusswerk.bulkhead.permits", this, Bulkhead::borrowed)
+        .description("Permits of an incoming queue in use")
+        .tag("queue", queue)
+        .tag("type", "borrowed")
+        .register(registry);
+    if (max < Integer.MAX_VALUE) {
+      Gauge.builder("flusswerk.bulkhead.utilization", this, b -> (double) b.inUse() / b.max)
+          .description("Share of the maximum permits of an incoming queue in use")
+          .tag("queue", queue)
+          .register(registry);
+    }
+  }
+}
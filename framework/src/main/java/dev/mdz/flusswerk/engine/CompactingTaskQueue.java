@@ -0,0 +1,187 @@
+package dev.mdz.flusswerk.engine;
+
+import static java.util.Objects.requireNonNull;
+
+import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compacts received messages by key before they are processed: while a message is still waiting, a
+ * newer message with the same key replaces it (latest wins). The superseded message is acknowledged
+ * right away without processing, and its task is marked as done.
+ *
+ * <p>With a window, new messages wait at least that long before they are handed to the task queue
+ * of the workers, so a burst of updates for the same key ends up as one message. Without a window,
+ * only messages already waiting for a worker are compacted.
+ */
+public class CompactingTaskQueue implements TaskQueue, MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CompactingTaskQueue.class);
+
+  private final TaskQueue delegate;
+  private final Function<Message, ?> key;
+  private final long window;
+  private final MessageBroker messageBroker;
+  private final Map<Object, Task> latest = new ConcurrentHashMap<>();
+  private final Set<Task> pending = ConcurrentHashMap.newKeySet(); // still within the window
+  private final LongAdder superseded = new LongAdder();
+  private final ScheduledThreadPoolExecutor scheduler;
+
+  /**
+   * @param delegate the task queue the workers take the tasks from
+   * @param key the key of a message, messages without key are never compacted
+   * @param window how long new messages wait for newer ones with the same key
+   * @param messageBroker the broker to acknowledge superseded messages
+   */
+  public CompactingTaskQueue(
+      TaskQueue delegate, Function<Message, ?> key, Duration window, MessageBroker messageBroker) {
+    this.delegate = requireNonNull(delegate);
+    this.key = requireNonNull(key);
+    this.window = window.toNanos();
+    this.messageBroker = messageBroker;
+    if (this.window > 0) {
+      this.scheduler = new ScheduledThreadPoolExecutor(1, Threads.daemon("flusswerk-compaction"));
+    } else {
+      this.scheduler = null;
+    }
+  }
+
+  @Override
+  public void put(Task task) {
+    Object k = key.apply(task.getMessage());
+    if (k == null) {
+      delegate.put(task);
+      return;
+    }
+    Task previous = latest.put(k, task);
+    if (previous != null) {
+      // A worker taking the previous task at the same time fails to remove it from latest
+      pending.remove(previous);
+      supersede(previous);
+    }
+    if (scheduler == null) {
+      delegate.put(task);
+      return;
+    }
+    pending.add(task);
+    scheduler.schedule(() -> release(k, task), window, TimeUnit.NANOSECONDS);
+  }
+
+  /** Hands a task over to the workers after its window, unless it has been superseded. */
+  private void release(Object k, Task task) {
+    if (pending.remove(task) && latest.get(k) == task) {
+      delegate.put(task);
+    }
+  }
+
+  private void supersede(Task task) {
+    superseded.increment();
+    try {
+      messageBroker.ack(task.getMessage());
+    } catch (RuntimeException e) {
+      LOGGER.error("Could not acknowledge superseded message", e);
+    } finally {
+      task.done();
+    }
+  }
+
+  /**
+   * @return whether the task is still the latest for its key and may be processed.
+   */
+  private boolean take(Task task) {
+    Object k = key.apply(task.getMessage());
+    return k == null || latest.remove(k, task);
+  }
+
+  @Override
+  public Task poll() {
+    for (Task task = delegate.poll(); task != null; task = delegate.poll()) {
+      if (take(task)) {
+        return task;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Task poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (true) {
+      Task task = delegate.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      if (task == null || take(task)) {
+        return task;
+      }
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super Task> tasks) {
+    List<Task> drained = new ArrayList<>();
+    delegate.drainTo(drained);
+    for (Task task : List.copyOf(pending)) {
+      if (pending.remove(task)) {
+        drained.add(task);
+      }
+    }
+    int count = 0;
+    for (Task task : drained) {
+      if (take(task)) {
+        tasks.add(task);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public int size() {
+    return delegate.size() + pending.size();
+  }
+
+  /**
+   * @return the number of new messages within the window.
+   */
+  public int pending() {
+    return pending.size();
+  }
+
+  @Override
+  public void finished(Task task) {
+    delegate.finished(task);
+  }
+
+  @Override
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow(); // messages still within the window are drained and requeued
+    }
+    delegate.close();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("flusswerk.compaction.superseded", superseded, LongAdder::sum)
+        .description("Received messages replaced by a newer message with the same key")
+        .register(registry);
+    Gauge.builder("flusswerk.compaction.pending", this, CompactingTaskQueue::pending)
+        .description("Received messages waiting for newer messages with the same key")
+        .register(registry);
+  }
+}
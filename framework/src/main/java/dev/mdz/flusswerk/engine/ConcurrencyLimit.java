@@ -0,0 +1,63 @@
+package dev.mdz.flusswerk.engine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The permits for received messages that are in progress or wait for a worker. Unlike a plain
+ * {@link Semaphore}, the number of permits can change at runtime: shrinking takes effect as soon as
+ * enough messages have been finished, without interrupting any of them.
+ */
+public class ConcurrencyLimit extends Semaphore implements MeterBinder {
+
+  private int limit;
+
+  /**
+   * @param limit the initial number of permits
+   */
+  public ConcurrencyLimit(int limit) {
+    super(limit);
+    this.limit = limit;
+  }
+
+  /**
+   * @return the current number of permits.
+   */
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return the number of permits currently taken.
+   */
+  public synchronized int inUse() {
+    return limit - availablePermits();
+  }
+
+  /**
+   * Changes the number of permits.
+   *
+   * @param newLimit the new number of permits, must be at least 1
+   */
+  public synchronized void setLimit(int newLimit) {
+    if (newLimit < 1) {
+      throw new IllegalArgumentException("Limit must be at least 1, but is " + newLimit);
+    }
+    int delta = newLimit - limit;
+    if (delta > 0) {
+      release(delta);
+    } else if (delta < 0) {
+      reducePermits(-delta); // available permits might get negative until messages are finished
+    }
+    limit = newLimit;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("flusswerk.concurrency.limit", this, ConcurrencyLimit::getLimit)
+        .description("Number of received messages that may be in progress or wait for a worker")
+        .register(registry);
+  }
+}
@@ -6,10 +6,11 @@ import dev.mdz.flusswerk.rabbitmq.ChannelListener;
 import dev.mdz.flusswerk.rabbitmq.RabbitClient;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
@@ -28,7 +29,14 @@ public class Engine implements ChannelListener, SmartLifecycle {
   private final List<Worker> workers;
   private final List<FlusswerkConsumer> consumers;
   private final RabbitClient rabbitClient;
+  private final TaskQueue taskQueue;
   private final Semaphore startOnlyOnce;
+  private final Backpressure backpressure;
+  private final LocalRetries localRetries;
+  // The tags RabbitMQ returned when registering the consumers, guarded by this
+  private final Map<FlusswerkConsumer, String> consumerTags = new HashMap<>();
+  private boolean paused = false; // guarded by this
+  private boolean stopping = false; // guarded by this
 
   /**
    * Creates a new Engine bridging RabbitMQ consumers and Flusswerk workers.
@@ -36,22 +44,52 @@ public class Engine implements ChannelListener, SmartLifecycle {
    * @param rabbitClient the RabbitMQ client that registers consumers to a given channel
    * @param flusswerkConsumers the consumers that read those messages from RabbitMQ
    * @param workers the workers that do the processing
+   * @param taskQueue the queue between consumers and workers
    */
   public Engine(
-      RabbitClient rabbitClient, List<FlusswerkConsumer> flusswerkConsumers, List<Worker> workers) {
-    this(rabbitClient, flusswerkConsumers, workers, Executors.newFixedThreadPool(workers.size()));
+      RabbitClient rabbitClient,
+      List<FlusswerkConsumer> flusswerkConsumers,
+      List<Worker> workers,
+      TaskQueue taskQueue) {
+    this(
+        rabbitClient,
+        flusswerkConsumers,
+        workers,
+        taskQueue,
+        Executors.newFixedThreadPool(workers.size()),
+        null,
+        null);
   }
 
+  /**
+   * Creates a new Engine bridging RabbitMQ consumers and Flusswerk workers.
+   *
+   * @param rabbitClient the RabbitMQ client that registers consumers to a given channel
+   * @param flusswerkConsumers the consumers that read those messages from RabbitMQ
+   * @param workers the workers that do the processing
+   * @param taskQueue the queue between consumers and workers
+   * @param executorService the executor to run the workers
+   * @param backpressure pauses the consumers while outgoing queues are too deep, null to always
+   *     consume
+   * @param localRetries the messages waiting for a retry in memory, sent to their retry queues on
+   *     stop; null if messages are always retried by RabbitMQ
+   */
   public Engine(
       RabbitClient rabbitClient,
       List<FlusswerkConsumer> flusswerkConsumers,
       List<Worker> workers,
-      ExecutorService executorService) {
+      TaskQueue taskQueue,
+      ExecutorService executorService,
+      Backpressure backpressure,
+      LocalRetries localRetries) {
     this.rabbitClient = rabbitClient;
     this.executorService = executorService;
     this.workers = workers;
     this.consumers = flusswerkConsumers;
+    this.taskQueue = taskQueue;
     this.startOnlyOnce = new Semaphore(1);
+    this.backpressure = backpressure;
+    this.localRetries = localRetries;
   }
 
   @Override
@@ -89,11 +127,60 @@ public class Engine implements ChannelListener, SmartLifecycle {
 
     LOGGER.debug("Starting consumers");
     for (FlusswerkConsumer consumer : consumers) {
-      rabbitClient.consume(consumer, false);
+      consume(consumer);
     }
 
     // keep track of channel resets
     this.rabbitClient.addChannelListener(this);
+
+    if (backpressure != null) {
+      backpressure.start(this::pause, this::resume);
+    }
+  }
+
+  /** Stops receiving new messages for now, messages already received are still processed. */
+  synchronized void pause() {
+    if (paused) {
+      return;
+    }
+    paused = true;
+    cancelConsumers();
+  }
+
+  /** Receives new messages again after {@link #pause()}. */
+  synchronized void resume() {
+    if (!paused || stopping) {
+      return;
+    }
+    paused = false;
+    for (FlusswerkConsumer consumer : consumers) {
+      consume(consumer);
+    }
+  }
+
+  private synchronized void consume(FlusswerkConsumer consumer) {
+    String consumerTag = rabbitClient.consume(consumer, false);
+    if (consumerTag != null) {
+      consumerTags.put(consumer, consumerTag);
+    }
+  }
+
+  /**
+   * Cancels the consumers by the tags returned when registering them. The tag a consumer knows
+   * itself is only set when RabbitMQ confirmed the registration, so it might still be outdated.
+   */
+  private void cancelConsumers() {
+    consumerTags
+        .values()
+        .forEach(
+            consumerTag -> {
+              try {
+                rabbitClient.cancel(consumerTag);
+              } catch (IOException e) {
+                LOGGER.error("Could not cancel consumer with tag=" + consumerTag, e);
+              }
+            });
+    consumerTags.clear();
   }
 
   /**
@@ -103,18 +190,21 @@ public class Engine implements ChannelListener, SmartLifecycle {
   @Override
   public void stop() {
     LOGGER.info("Stopping RabbitMQ consumers");
+    if (backpressure != null) {
+      backpressure.close();
+    }
     // Stop receiving new messages
-    consumers.forEach(
-        consumer -> {
-          try {
-            rabbitClient.cancel(consumer.getConsumerTag());
-          } catch (IOException e) {
-            LOGGER.error("Could not cancel consumer with tag=" + consumer.getConsumerTag(), e);
-          }
-        });
+    synchronized (this) {
+      stopping = true;
+      pause();
+    }
+
+    // Messages waiting for a retry in memory are retried by RabbitMQ, like all later retries
+    if (localRetries != null) {
+      localRetries.close();
+    }
 
     // Drain internal task queue
-    PriorityBlockingQueue<Task> taskQueue = new PriorityBlockingQueue<>();
     List<Task> remainingTasks = new ArrayList<>();
     taskQueue.drainTo(remainingTasks);
 
@@ -122,30 +212,54 @@ public class Engine implements ChannelListener, SmartLifecycle {
     for (var task : remainingTasks) {
       long deliveryTag = task.getMessage().getEnvelope().getDeliveryTag();
       try {
-        rabbitClient.nack(deliveryTag, false, true);
+        rabbitClient.nack(task.getMessage().getEnvelope().getChannel(), deliveryTag, false, true);
       } catch (IOException e) {
         LOGGER.error("Could not NACK message with delivery tag {}", deliveryTag, e);
       }
+      task.done();
     }
 
     // Wait for workers to stop
     workers.forEach(Worker::stop);
+    taskQueue.close(); // wake up idle workers right away
     executorService.shutdown();
     try {
-      boolean shutdownSuccessful = executorService.awaitTermination(5, TimeUnit.MINUTES);
+      boolean shutdownSuccessful =
+          executorService.awaitTermination(
+              Threads.SHUTDOWN_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS);
       if (!shutdownSuccessful) {
-        LOGGER.error("Not all workers did terminate during shutdown window of 5 minutes");
+        LOGGER.error(
+            "Not all workers did terminate during shutdown window of {}", Threads.SHUTDOWN_TIMEOUT);
       }
     } catch (InterruptedException e) {
-      LOGGER.error("Timeout awaiting worker shutdown after 5 minutes", e);
+      LOGGER.error("Timeout awaiting worker shutdown after {}", Threads.SHUTDOWN_TIMEOUT, e);
     }
+
+    // Acknowledge all processed messages before the connection is closed
+    rabbitClient.close();
   }
 
   @Override
-  public void handleReset() {
+  public synchronized void handleReset() {
+    if (paused) {
+      return; // consumers are registered again on resume
+    }
     LOGGER.debug("Register consumers again after channel reset");
     for (FlusswerkConsumer consumer : consumers) {
-      rabbitClient.consume(consumer, false);
+      consume(consumer);
+    }
+  }
+
+  @Override
+  public synchronized void handleReset(int channel) {
+    if (paused) {
+      return; // consumers are registered again on resume
+    }
+    LOGGER.debug("Register consumers again after reset of channel {}", channel);
+    for (FlusswerkConsumer consumer : consumers) {
+      if (consumer.getChannel() == channel) {
+        consume(consumer);
+      }
     }
   }
 }
@@ -0,0 +1,208 @@
+package dev.mdz.flusswerk.engine;
+
+import static java.util.Objects.requireNonNullElse;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schedules tasks between the incoming queues, so a busy queue does not starve the others. There is
+ * one lane per priority, i.e. per incoming queue, and tasks within a lane are processed first in,
+ * first out.
+ *
+ * <p>With weights, the lanes are served by weighted round robin: in each round a lane may hand out
+ * as many tasks as its weight (default: 1) before the next lane with tasks gets its turn. Without
+ * weights, the lane with the highest priority is always served first.
+ *
+ * <p>With aging, a task that waited longer than the aging threshold is processed next regardless of
+ * weights or priorities, oldest first.
+ */
+public class FairTaskQueue implements TaskQueue {
+
+  private final Map<Integer, Integer> weights;
+  private final boolean weighted;
+  private final long agingNanos;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private boolean closed = false;
+  private final Map<Integer, Lane> lanesByPriority = new HashMap<>();
+  private final List<Lane> lanes = new ArrayList<>(); // highest priority first
+  private int current = 0; // the lane whose turn it is
+  private int size = 0;
+
+  /**
+   * @param weights the weights per priority, strict priorities if empty
+   * @param aging the waiting time after which a task is processed next, no aging if null
+   */
+  public FairTaskQueue(Map<Integer, Integer> weights, Duration aging) {
+    this.weights = Map.copyOf(requireNonNullElse(weights, Map.of()));
+    this.weighted = !this.weights.isEmpty();
+    this.agingNanos = aging == null ? Long.MAX_VALUE : aging.toNanos();
+    this.weights.keySet().forEach(this::lane); // stable order of lanes from the start
+    this.current = 0; // highest priority first
+  }
+
+  @Override
+  public void put(Task task) {
+    lock.lock();
+    try {
+      lane(task.getPriority()).tasks.add(task);
+      size++;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Task poll() {
+    lock.lock();
+    try {
+      return size == 0 ? null : next();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Task poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (size == 0) {
+        if (nanos <= 0 || closed) {
+          return null;
+        }
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      return next();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super Task> tasks) {
+    lock.lock();
+    try {
+      int drained = size;
+      while (size > 0) {
+        tasks.add(next());
+      }
+      return drained;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Removes the next task. Must hold the lock and there must be at least one task. */
+  private Task next() {
+    size--;
+    Lane aged = oldestAged();
+    if (aged != null) {
+      return aged.tasks.poll();
+    }
+    if (!weighted) {
+      for (Lane lane : lanes) {
+        if (!lane.tasks.isEmpty()) {
+          return lane.tasks.poll();
+        }
+      }
+    }
+    while (true) {
+      Lane lane = lanes.get(current);
+      if (lane.tasks.isEmpty()) {
+        lane.credit = 0;
+        current = (current + 1) % lanes.size();
+        continue;
+      }
+      if (lane.credit == 0) {
+        lane.credit = lane.weight; // start of this lane's turn
+      }
+      lane.credit--;
+      Task task = lane.tasks.poll();
+      if (lane.credit == 0 || lane.tasks.isEmpty()) {
+        lane.credit = 0;
+        current = (current + 1) % lanes.size();
+      }
+      return task;
+    }
+  }
+
+  private Lane oldestAged() {
+    if (agingNanos == Long.MAX_VALUE) {
+      return null;
+    }
+    long now = System.nanoTime();
+    Lane oldest = null;
+    long oldestCreatedAt = 0;
+    for (Lane lane : lanes) {
+      Task head = lane.tasks.peek();
+      if (head == null || now - head.getCreatedAt() < agingNanos) {
+        continue;
+      }
+      if (oldest == null || head.getCreatedAt() - oldestCreatedAt < 0) {
+        oldest = lane;
+        oldestCreatedAt = head.getCreatedAt();
+      }
+    }
+    return oldest;
+  }
+
+  private Lane lane(int priority) {
+    Lane lane = lanesByPriority.get(priority);
+    if (lane == null) {
+      Lane turn = lanes.isEmpty() ? null : lanes.get(current);
+      lane = new Lane(priority, weights.getOrDefault(priority, 1));
+      lanesByPriority.put(priority, lane);
+      lanes.add(lane);
+      lanes.sort(Comparator.comparingInt((Lane l) -> l.priority).reversed());
+      current = turn == null ? 0 : lanes.indexOf(turn); // keep the turn
+    }
+    return lane;
+  }
+
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static class Lane {
+
+    private final int priority;
+    private final int weight;
+    private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+    private int credit = 0;
+
+    private Lane(int priority, int weight) {
+      this.priority = priority;
+      this.weight = weight;
+    }
+  }
+}
@@ -8,9 +8,7 @@ import dev.mdz.flusswerk.jackson.FlusswerkObjectMapper;
 import dev.mdz.flusswerk.model.IncomingMessageType;
 import dev.mdz.flusswerk.model.Message;
 import dev.mdz.flusswerk.rabbitmq.RabbitClient;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Semaphore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,12 +24,14 @@ public class FlusswerkConsumer implements Consumer {
   private static final Logger LOGGER = LoggerFactory.getLogger(FlusswerkConsumer.class);
   private volatile String _consumerTag;
 
-  private final Semaphore availableWorkers;
+  private final Bulkhead bulkhead;
   private final RabbitClient rabbitClient;
   private final FlusswerkObjectMapper flusswerkObjectMapper;
-  private final PriorityBlockingQueue<Task> taskQueue;
+  private final TaskQueue taskQueue;
   private final int priority;
   private final String inputQueue;
+  private final int channel;
+  private final int prefetch;
 
   /**
    * Constructs a new instance and records its association to the passed-in channel.
@@ -46,8 +46,72 @@ public class FlusswerkConsumer implements Consumer {
       FlusswerkObjectMapper flusswerkObjectMapper,
       String inputQueue,
       int priority,
-      PriorityBlockingQueue<Task> taskQueue) {
-    this.availableWorkers = availableWorkers;
+      TaskQueue taskQueue) {
+    this(
+        availableWorkers,
+        rabbitClient,
+        flusswerkObjectMapper,
+        inputQueue,
+        priority,
+        taskQueue,
+        0,
+        1);
+  }
+
+  /**
+   * Constructs a new instance that is registered on a specific channel of the channel pool. The
+   * semaphore limits how many messages are waiting in the task queue or are being processed.
+   *
+   * @param rabbitClient the client which handles communication with RabbitMQ
+   * @param flusswerkObjectMapper the object mapper to deserialize messages
+   * @param inputQueue the rabbitMQ queue this consumer is bound to
+   * @param channel the number of the channel in the channel pool this consumer is registered on
+   * @param prefetch the number of unacknowledged messages RabbitMQ delivers to this consumer
+   */
+  public FlusswerkConsumer(
+      Semaphore availableWorkers,
+      RabbitClient rabbitClient,
+      FlusswerkObjectMapper flusswerkObjectMapper,
+      String inputQueue,
+      int priority,
+      TaskQueue taskQueue,
+      int channel,
+      int prefetch) {
+    this(
+        Bulkhead.sharedOnly(inputQueue, availableWorkers),
+        rabbitClient,
+        flusswerkObjectMapper,
+        inputQueue,
+        priority,
+        taskQueue,
+        channel,
+        prefetch);
+  }
+
+  /**
+   * Constructs a new instance that is registered on a specific channel of the channel pool. The
+   * bulkhead of the input queue limits how many messages are waiting in the task queue or are being
+   * processed.
+   *
+   * @param bulkhead the permits of the input queue
+   * @param rabbitClient the client which handles communication with RabbitMQ
+   * @param flusswerkObjectMapper the object mapper to deserialize messages
+   * @param inputQueue the rabbitMQ queue this consumer is bound to
+   * @param channel the number of the channel in the channel pool this consumer is registered on
+   * @param prefetch the number of unacknowledged messages RabbitMQ delivers to this consumer
+   */
+  public FlusswerkConsumer(
+      Bulkhead bulkhead,
+      RabbitClient rabbitClient,
+      FlusswerkObjectMapper flusswerkObjectMapper,
+      String inputQueue,
+      int priority,
+      TaskQueue taskQueue,
+      int channel,
+      int prefetch) {
+    this.channel = channel;
+    this.prefetch = prefetch;
+    this.bulkhead = bulkhead;
     this.rabbitClient = rabbitClient;
     this.flusswerkObjectMapper = flusswerkObjectMapper;
     this.inputQueue = inputQueue;
@@ -89,25 +153,26 @@ public class FlusswerkConsumer implements Consumer {
       String consumerTag, Envelope envelope, BasicProperties properties, byte[] body) {
 
     try {
-      availableWorkers.acquire();
+      bulkhead.acquire();
     } catch (InterruptedException e) {
       // If waiting for the semaphore is interrupted (e.g. because of shutdown), the current message
       // should not be processed at all.
       LOGGER.warn("FlusswerkConsumer interrupted while waiting for free worker", e);
-      rabbitClient.reject(envelope, true);
+      rabbitClient.reject(channel, envelope, true);
       return;
     }
 
-    String json = new String(body, StandardCharsets.UTF_8);
     try {
-      Message message = flusswerkObjectMapper.deserialize(json);
+      Message message = flusswerkObjectMapper.deserialize(body);
+      message.getEnvelope().setRawBody(body);
       message.getEnvelope().setSource(inputQueue);
       message.getEnvelope().setDeliveryTag(envelope.getDeliveryTag());
-      taskQueue.put(new Task(message, priority, availableWorkers::release));
+      message.getEnvelope().setChannel(channel);
+      taskQueue.put(new Task(message, priority, bulkhead::release));
     } catch (Exception e) {
       List<String> tracing = null;
       try {
-        Message fallbackMessage = FALLBACK_MAPPER.deserialize(json);
+        Message fallbackMessage = FALLBACK_MAPPER.deserialize(body);
         tracing = fallbackMessage.getTracing();
       } catch (Exception exception) {
         LOGGER.error("Deserialize message fallback failed, too", exception);
@@ -116,12 +181,26 @@ public class FlusswerkConsumer implements Consumer {
       if (tracing != null) {
         LOGGER.error("Could not deserialize message", kv("tracing", tracing), e);
       }
-      rabbitClient.ack(envelope.getDeliveryTag());
-      availableWorkers.release();
+      rabbitClient.ack(channel, envelope.getDeliveryTag());
+      bulkhead.release();
     }
   }
 
   public String getInputQueue() {
     return inputQueue;
   }
+
+  /**
+   * @return the number of the channel in the channel pool this consumer is registered on.
+   */
+  public int getChannel() {
+    return channel;
+  }
+
+  /**
+   * @return the number of unacknowledged messages RabbitMQ delivers to this consumer.
+   */
+  public int getPrefetch() {
+    return prefetch;
+  }
 }
@@ -0,0 +1,179 @@
+package dev.mdz.flusswerk.engine;
+
+import static java.util.Objects.requireNonNull;
+
+import dev.mdz.flusswerk.config.properties.RoutingProperties;
+import dev.mdz.flusswerk.model.Envelope;
+import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.rabbitmq.Backoff;
+import dev.mdz.flusswerk.rabbitmq.FailurePolicy;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries messages with short backoffs in memory instead of sending them to a retry queue. The
+ * message stays unacknowledged and keeps its place among the received messages in progress. After
+ * the backoff it is put into the task queue again. Messages with a backoff above the threshold are
+ * retried by RabbitMQ as usual, and so are messages still waiting when the engine stops.
+ *
+ * <p>Retrying a message takes two steps: the worker {@link #accept(Message) accepts} the retry when
+ * processing failed and {@link #delay(Task) delays} the task instead of marking it as done once it
+ * is finished with it.
+ *
+ * <p>Waiting messages are not persisted: if the application crashes, RabbitMQ delivers them again
+ * right away with the number of retries they have been received with.
+ */
+public class LocalRetries implements MeterBinder, AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LocalRetries.class);
+
+  private final RoutingProperties routing;
+  private final long threshold;
+  private final TaskQueue taskQueue;
+  private final MessageBroker messageBroker;
+  private final Map<Message, Duration> accepted =
+      Collections.synchronizedMap(new IdentityHashMap<>());
+  private final Set<Task> pending = // guarded by this
+      Collections.newSetFromMap(new IdentityHashMap<>());
+  private final LongAdder retried = new LongAdder();
+  private final ScheduledThreadPoolExecutor scheduler;
+  private boolean closed = false; // guarded by this
+
+  /**
+   * @param routing the routing with the failure policies of the incoming queues
+   * @param threshold the longest backoff to wait for in memory
+   * @param taskQueue the task queue to put the messages into after their backoff
+   * @param messageBroker the broker to retry messages still waiting when the engine stops
+   */
+  public LocalRetries(
+      RoutingProperties routing,
+      Duration threshold,
+      TaskQueue taskQueue,
+      MessageBroker messageBroker) {
+    this.routing = requireNonNull(routing);
+    this.threshold = threshold.toNanos();
+    this.taskQueue = requireNonNull(taskQueue);
+    this.messageBroker = requireNonNull(messageBroker);
+    this.scheduler = new ScheduledThreadPoolExecutor(1, Threads.daemon("flusswerk-local-retries"));
+  }
+
+  /**
+   * Accepts a message to retry in memory if it may be retried at all and its backoff is short
+   * enough. The retries of the message are incremented right away.
+   *
+   * @param message the message that failed
+   * @return true if the message is retried in memory, false if it has to be rejected as usual.
+   */
+  public boolean accept(Message message) {
+    FailurePolicy failurePolicy = routing.getFailurePolicy(message);
+    if (failurePolicy == null) {
+      return false;
+    }
+    Envelope envelope = message.getEnvelope();
+    if (envelope.getRetries() >= failurePolicy.getRetries()) {
+      return false; // failed too often
+    }
+    Backoff backoff = failurePolicy.getBackoffs();
+    Duration delay =
+        backoff.delay(envelope.getRetries() + 1, ThreadLocalRandom.current().nextDouble());
+    if (delay.toNanos() > threshold) {
+      return false;
+    }
+    envelope.setRetries(envelope.getRetries() + 1);
+    accepted.put(message, delay);
+    return true;
+  }
+
+  /**
+   * Puts the task of an accepted message into the task queue again after its backoff. If the engine
+   * is stopping, the message is sent to its retry queue instead.
+   *
+   * @param task the task the worker is finished with
+   * @return true if the task is delayed, false if it has to be marked as done.
+   */
+  public boolean delay(Task task) {
+    Duration delay = accepted.remove(task.getMessage());
+    if (delay == null) {
+      return false; // not retried in memory
+    }
+    synchronized (this) {
+      if (!closed) {
+        pending.add(task);
+        retried.increment();
+        scheduler.schedule(() -> release(task), delay.toNanos(), TimeUnit.NANOSECONDS);
+        return true;
+      }
+    }
+    retryByBroker(task.getMessage());
+    return false;
+  }
+
+  private void release(Task task) {
+    synchronized (this) {
+      if (!pending.remove(task)) {
+        return; // already sent to the retry queue
+      }
+    }
+    taskQueue.put(task.again());
+  }
+
+  private void retryByBroker(Message message) {
+    try {
+      messageBroker.retry(message); // retries have already been incremented
+      messageBroker.ack(message); // after sending, so the ack waits for publisher confirms
+    } catch (RuntimeException e) {
+      LOGGER.error("Could not send message waiting for retry to the retry queue", e);
+    }
+  }
+
+  /**
+   * @return the number of messages waiting for their retry in memory.
+   */
+  public synchronized int pending() {
+    return pending.size();
+  }
+
+  /** Sends all waiting messages to their retry queues, as well as all messages retried later. */
+  @Override
+  public void close() {
+    List<Task> remaining;
+    synchronized (this) {
+      closed = true;
+      remaining = List.copyOf(pending);
+      pending.clear();
+    }
+    scheduler.shutdownNow();
+    for (Task task : remaining) {
+      try {
+        retryByBroker(task.getMessage());
+      } finally {
+        task.done();
+      }
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("flusswerk.retry.local", retried, LongAdder::sum)
+        .description("Messages retried in memory instead of by a retry queue")
+        .register(registry);
+    Gauge.builder("flusswerk.retry.local.pending", this, LocalRetries::pending)
+        .description("Messages waiting in memory for their retry")
+        .register(registry);
+  }
+}
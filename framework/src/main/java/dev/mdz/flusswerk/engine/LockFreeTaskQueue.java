@@ -0,0 +1,134 @@
+package dev.mdz.flusswerk.engine;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strict priorities like {@link PriorityTaskQueue}, but without a global lock: every priority has
+ * its own lock-free queue, so consumers and workers do not contend for a lock at high message
+ * rates. Tasks with the same priority are processed first in, first out.
+ *
+ * <p>Waiting workers are parked and a new task unparks exactly one of them. {@link #close()} wakes
+ * up all waiting workers at once, so stopping does not have to wait for their timeout.
+ */
+public class LockFreeTaskQueue implements TaskQueue {
+
+  private static final Lane[] NO_LANES = new Lane[0];
+
+  private volatile Lane[] lanes = NO_LANES; // highest priority first, copy on write
+  private final AtomicInteger size = new AtomicInteger();
+  private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+  private volatile boolean closed = false;
+
+  private record Lane(int priority, ConcurrentLinkedQueue<Task> tasks) {}
+
+  @Override
+  public void put(Task task) {
+    lane(task.getPriority()).tasks().offer(task);
+    size.incrementAndGet();
+    signal();
+  }
+
+  private Lane lane(int priority) {
+    for (Lane lane : lanes) {
+      if (lane.priority() == priority) {
+        return lane;
+      }
+    }
+    return addLane(priority);
+  }
+
+  /** New priorities are rare, usually only one per incoming queue. */
+  private synchronized Lane addLane(int priority) {
+    for (Lane lane : lanes) {
+      if (lane.priority() == priority) {
+        return lane; // added concurrently
+      }
+    }
+    Lane lane = new Lane(priority, new ConcurrentLinkedQueue<>());
+    Lane[] extended = Arrays.copyOf(lanes, lanes.length + 1);
+    extended[lanes.length] = lane;
+    Arrays.sort(extended, Comparator.comparingInt(Lane::priority).reversed());
+    lanes = extended;
+    return lane;
+  }
+
+  private void signal() {
+    Thread waiter = waiters.poll();
+    if (waiter != null) {
+      LockSupport.unpark(waiter);
+    }
+  }
+
+  @Override
+  public Task poll() {
+    for (Lane lane : lanes) {
+      Task task = lane.tasks().poll();
+      if (task != null) {
+        size.decrementAndGet();
+        return task;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Task poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Thread current = Thread.currentThread();
+    while (true) {
+      Task task = poll();
+      if (task != null || closed) {
+        return task;
+      }
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return null;
+      }
+      waiters.add(current);
+      try {
+        task = poll(); // a task put before registering would not wake this thread
+        if (task != null || closed) {
+          return task;
+        }
+        LockSupport.parkNanos(this, remaining);
+      } finally {
+        if (!waiters.remove(current) && !isEmpty()) {
+          signal(); // this thread has been woken up, but might not take the task
+        }
+      }
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super Task> tasks) {
+    int count = 0;
+    for (Task task = poll(); task != null; task = poll()) {
+      tasks.add(task);
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public int size() {
+    return Math.max(0, size.get()); // a task might be taken before it has been counted
+  }
+
+  /** Wakes up all waiting workers, afterwards polling does not wait anymore. */
+  @Override
+  public void close() {
+    closed = true;
+    for (Thread waiter = waiters.poll(); waiter != null; waiter = waiters.poll()) {
+      LockSupport.unpark(waiter);
+    }
+  }
+}
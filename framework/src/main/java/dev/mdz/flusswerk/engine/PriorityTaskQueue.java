@@ -0,0 +1,39 @@
+package dev.mdz.flusswerk.engine;
+
+import java.util.Collection;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Strict priorities: a task is only processed if there is no task with a higher priority. Tasks
+ * with the same priority are processed first in, first out.
+ */
+public class PriorityTaskQueue implements TaskQueue {
+
+  private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+
+  @Override
+  public void put(Task task) {
+    queue.put(task);
+  }
+
+  @Override
+  public Task poll() {
+    return queue.poll();
+  }
+
+  @Override
+  public Task poll(long timeout, TimeUnit unit) throws InterruptedException {
+    return queue.poll(timeout, unit);
+  }
+
+  @Override
+  public int drainTo(Collection<? super Task> tasks) {
+    return queue.drainTo(tasks);
+  }
+
+  @Override
+  public int size() {
+    return queue.size();
+  }
+}
@@ -0,0 +1,189 @@
+package dev.mdz.flusswerk.engine;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reserves workers for incoming queues, so that the tasks of other queues cannot take all workers.
+ * Without it, a {@link Bulkhead} only reserves room among the received messages: with strict
+ * priorities, a flood of messages from a queue with higher priority would still get every free
+ * worker before a message from a queue with reserved workers.
+ *
+ * <p>Every task taken from this queue occupies a slot until the worker is {@link #finished(Task)
+ * finished} with it. A task uses one of the slots reserved for its incoming queue if there is a
+ * free one, or one of the shared slots otherwise. Tasks that cannot get a slot wait, keeping their
+ * order, while the tasks behind them may be taken if they can get one.
+ */
+public class ReservingTaskQueue implements TaskQueue {
+
+  private final TaskQueue delegate;
+  private final Map<String, Integer> reserved;
+  private final int shared;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  private final List<Task> parked = new ArrayList<>(); // taken from the delegate, but no free slot
+  private final Map<String, Integer> inReserved = new HashMap<>(); // reserved slots in use
+  private final Map<Task, String> started = new IdentityHashMap<>(); // queue or null if shared
+  private int inShared = 0; // shared slots in use
+  private boolean closed = false;
+
+  /**
+   * @param delegate the task queue deciding which task is processed next
+   * @param reserved the number of slots per incoming queue only its tasks can use
+   * @param shared the number of slots tasks of all queues can use, at least 1
+   */
+  public ReservingTaskQueue(TaskQueue delegate, Map<String, Integer> reserved, int shared) {
+    if (shared < 1) {
+      throw new IllegalArgumentException(
+          "At least one slot must be shared by all queues, but there are " + shared);
+    }
+    this.delegate = requireNonNull(delegate);
+    this.reserved = Map.copyOf(reserved);
+    this.shared = shared;
+  }
+
+  @Override
+  public void put(Task task) {
+    delegate.put(task);
+    signal();
+  }
+
+  @Override
+  public Task poll() {
+    lock.lock();
+    try {
+      return take();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Task poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long remaining = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (true) {
+        Task task = take();
+        if (task != null || closed || remaining <= 0) {
+          return task;
+        }
+        remaining = available.awaitNanos(remaining); // new tasks and free slots signal
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Takes the first waiting task that can get a slot. Must hold the lock. */
+  private Task take() {
+    Iterator<Task> iterator = parked.iterator();
+    while (iterator.hasNext()) {
+      Task task = iterator.next();
+      if (start(task)) {
+        iterator.remove();
+        return task;
+      }
+    }
+    Task task;
+    while ((task = delegate.poll()) != null) {
+      if (start(task)) {
+        return task;
+      }
+      parked.add(task);
+    }
+    return null;
+  }
+
+  /** Occupies a slot for the task if there is a free one. Must hold the lock. */
+  private boolean start(Task task) {
+    String queue = task.getQueue();
+    int inUse = inReserved.getOrDefault(queue, 0);
+    if (inUse < reserved.getOrDefault(queue, 0)) {
+      inReserved.put(queue, inUse + 1);
+      started.put(task, queue);
+      return true;
+    }
+    if (inShared < shared) {
+      inShared++;
+      started.put(task, null);
+      return true;
+    }
+    return false;
+  }
+
+  /** Frees the slot of a task that has been taken from this queue. */
+  @Override
+  public void finished(Task task) {
+    lock.lock();
+    try {
+      if (!started.containsKey(task)) {
+        return; // not taken from this queue or already finished
+      }
+      String queue = started.remove(task);
+      if (queue == null) {
+        inShared--;
+      } else {
+        inReserved.merge(queue, -1, Integer::sum);
+      }
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void signal() {
+    lock.lock();
+    try {
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super Task> tasks) {
+    lock.lock();
+    try {
+      int count = parked.size();
+      tasks.addAll(parked); // taken from the delegate first, so they come first
+      parked.clear();
+      return count + delegate.drainTo(tasks);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return parked.size() + delegate.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+    lock.lock();
+    try {
+      closed = true;
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
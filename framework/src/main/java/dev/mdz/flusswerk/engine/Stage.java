@@ -0,0 +1,133 @@
+package dev.mdz.flusswerk.engine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.MDC;
+
+/**
+ * One stage of a staged pipeline (SEDA) with its own threads and a bounded queue of work waiting
+ * for them. If the queue is full, whoever hands over work waits for space, so a slow stage slows
+ * down the stages before it instead of piling up messages.
+ */
+public class Stage implements Executor, MeterBinder {
+
+  private final String name;
+  private final int capacity;
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * @param name the name of the stage, e.g. "reader"
+   * @param threads the number of threads of this stage
+   * @param capacity the number of work items that may wait for a thread
+   */
+  public Stage(String name, int threads, int capacity) {
+    this.name = name;
+    this.capacity = capacity;
+    this.executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(capacity),
+            Threads.numberedDaemons("flusswerk-" + name),
+            Stage::waitForSpace);
+  }
+
+  private static void waitForSpace(Runnable work, ThreadPoolExecutor executor) {
+    if (executor.isShutdown()) {
+      throw new RejectedExecutionException("Stage has been shut down");
+    }
+    try {
+      executor.getQueue().put(work);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted while waiting for space in stage", e);
+    }
+  }
+
+  /**
+   * Hands over work to this stage. The work runs with the MDC of the thread handing it over, so log
+   * messages of every stage carry the id of the message.
+   */
+  @Override
+  public void execute(Runnable work) {
+    Map<String, String> context = MDC.getCopyOfContextMap();
+    executor.execute(
+        () -> {
+          Map<String, String> previous = MDC.getCopyOfContextMap();
+          setContext(context);
+          try {
+            work.run();
+          } finally {
+            setContext(previous); // stage threads are reused for the work of other messages
+          }
+        });
+  }
+
+  /**
+   * Sets the MDC of the current thread.
+   *
+   * @param context the MDC to set, null to clear it
+   */
+  static void setContext(Map<String, String> context) {
+    if (context == null) {
+      MDC.clear();
+    } else {
+      MDC.setContextMap(context);
+    }
+  }
+
+  /**
+   * @return the number of threads of this stage that are busy.
+   */
+  public int active() {
+    return executor.getActiveCount();
+  }
+
+  /**
+   * @return the number of work items waiting for a thread.
+   */
+  public int queued() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * @return the share of the queue in use, 1.0 means the stages before have to wait.
+   */
+  public double saturation() {
+    return (double) queued() / capacity;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** Finishes the work already handed over, but does not accept new work. */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("flusswerk.stage.active", this, Stage::active)
+        .description("Threads of a processing stage that are busy")
+        .tag("stage", name)
+        .register(registry);
+    Gauge.builder("flusswerk.stage.queued", this, Stage::queued)
+        .description("Messages waiting for a thread of a processing stage")
+        .tag("stage", name)
+        .register(registry);
+    Gauge.builder("flusswerk.stage.saturation", this, Stage::saturation)
+        .description("Share of the queue of a processing stage in use")
+        .tag("stage", name)
+        .register(registry);
+  }
+}
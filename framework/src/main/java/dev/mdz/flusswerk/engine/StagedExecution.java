@@ -0,0 +1,108 @@
+package dev.mdz.flusswerk.engine;
+
+import dev.mdz.flusswerk.flow.FlowSpec;
+import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.reporting.Tracing;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Runs reader, transformer and writer of a flow on stages with their own threads, so the stages of
+ * different messages overlap, e.g. an I/O-bound reader and a CPU-bound transformer. The staged flow
+ * is an asynchronous flow: messages are acknowledged as soon as their writer completed, each on its
+ * own, in whatever order they complete.
+ */
+public class StagedExecution implements AutoCloseable {
+
+  private final Stage reader;
+  private final Stage transformer;
+  private final Stage writer;
+  private final Tracing tracing;
+
+  /**
+   * @param reader the stage to run the reader on
+   * @param transformer the stage to run the transformer on
+   * @param writer the stage to run the writer on
+   * @param tracing the tracing to set for every message on every stage
+   */
+  public StagedExecution(Stage reader, Stage transformer, Stage writer, Tracing tracing) {
+    this.reader = reader;
+    this.transformer = transformer;
+    this.writer = writer;
+    this.tracing = tracing;
+  }
+
+  /**
+   * Turns a read/transform/write flow into an asynchronous flow running on the stages.
+   *
+   * @param flowSpec the flow to run on the stages
+   * @return the flow as asynchronous flow
+   */
+  public FlowSpec apply(FlowSpec flowSpec) {
+    if (flowSpec.batch() != null || flowSpec.async() != null) {
+      throw new IllegalArgumentException(
+          "Staged execution only supports read/transform/write flows");
+    }
+    Function<Message, CompletionStage<Collection<Message>>> async =
+        message -> {
+          List<String> path = tracingPath(message);
+          return CompletableFuture.supplyAsync(
+                  () -> traced(path, flowSpec.reader()).apply(message), reader)
+              .thenApplyAsync(traced(path, flowSpec.transformer()), transformer)
+              .thenApplyAsync(traced(path, flowSpec.writer()), writer);
+        };
+    return new FlowSpec(
+        flowSpec.reader(),
+        flowSpec.transformer(),
+        flowSpec.writer(),
+        flowSpec.cleanup(),
+        flowSpec.monitor(),
+        flowSpec.options().withAsync(async));
+  }
+
+  /**
+   * @return the tracing path the worker registered for the message, or a new one if it did not.
+   */
+  private List<String> tracingPath(Message message) {
+    List<String> path = tracing.tracingPath();
+    return path.isEmpty() ? tracing.newPath(message.getTracing()) : path;
+  }
+
+  /**
+   * Stages run on their own threads, which need the tracing of the message they work on. All stages
+   * share the same tracing path, so a message has one trace across all stages.
+   */
+  private <T, R> Function<T, R> traced(List<String> path, Function<T, R> stage) {
+    return value -> {
+      List<String> previous = tracing.tracingPath();
+      tracing.restore(path);
+      try {
+        return stage.apply(value);
+      } finally {
+        tracing.restore(previous);
+      }
+    };
+  }
+
+  /**
+   * Publishes the saturation metrics of every stage.
+   *
+   * @param registry the registry to publish to
+   */
+  public void bindTo(MeterRegistry registry) {
+    getStages().forEach(stage -> stage.bindTo(registry));
+  }
+
+  public List<Stage> getStages() {
+    return List.of(reader, transformer, writer);
+  }
+
+  @Override
+  public void close() {
+    getStages().forEach(Stage::shutdown);
+  }
+}
@@ -4,19 +4,29 @@ import static java.util.Objects.requireNonNull;
 
 import dev.mdz.flusswerk.model.Message;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * A received message waiting for processing. Tasks are ordered by priority first and by the order
+ * of creation second, so tasks with the same priority are processed first in, first out.
+ */
 public class Task implements Comparable<Task> {
 
   private static final Runnable DO_NOTHING = () -> {};
+  private static final AtomicLong SEQUENCE = new AtomicLong();
 
   private final Message message;
   private final int priority;
   private final Runnable callback;
+  private final long sequence;
+  private final long createdAt;
 
   public Task(Message message, int priority, Runnable callback) {
     this.message = requireNonNull(message);
     this.priority = priority;
     this.callback = Objects.requireNonNullElse(callback, DO_NOTHING);
+    this.sequence = SEQUENCE.getAndIncrement();
+    this.createdAt = System.nanoTime();
   }
 
   public Task(Message message, int priority) {
@@ -31,15 +41,41 @@ public class Task implements Comparable<Task> {
     return priority;
   }
 
+  /**
+   * @return the time of creation as in {@link System#nanoTime()}.
+   */
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  /**
+   * @return the name of the queue the message has been received from, if known.
+   */
+  public String getQueue() {
+    return message.getEnvelope().getSource();
+  }
+
   @Override
   public int compareTo(Task other) {
-    return other.priority - this.priority;
+    int byPriority = Integer.compare(other.priority, this.priority);
+    if (byPriority != 0) {
+      return byPriority;
+    }
+    return Long.compare(this.sequence, other.sequence);
   }
 
   public void done() {
     this.callback.run();
   }
 
+  /**
+   * @return a new task for the same message to process it once more, e.g. for a retry. It keeps the
+   *     priority and the callback, but is queued again as if it had just been received.
+   */
+  Task again() {
+    return new Task(message, priority, callback);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
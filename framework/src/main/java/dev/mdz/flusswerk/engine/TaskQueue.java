@@ -0,0 +1,66 @@
+package dev.mdz.flusswerk.engine;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hand-off of received messages from the {@link FlusswerkConsumer}s to the {@link Worker}s.
+ * Implementations decide which task is processed next, e.g. by priority or by fair scheduling
+ * between the incoming queues. All implementations must be thread-safe.
+ */
+public interface TaskQueue {
+
+  /**
+   * Adds a task, never blocks.
+   *
+   * @param task the task to add
+   */
+  void put(Task task);
+
+  /**
+   * @return the next task or null if there is none.
+   */
+  Task poll();
+
+  /**
+   * Waits for the next task.
+   *
+   * @param timeout how long to wait
+   * @param unit the unit of the timeout
+   * @return the next task or null if there was none before the timeout.
+   * @throws InterruptedException if interrupted while waiting
+   */
+  Task poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+  /**
+   * Removes all tasks in the order they would have been processed.
+   *
+   * @param tasks the collection to add the removed tasks to
+   * @return the number of tasks removed.
+   */
+  int drainTo(Collection<? super Task> tasks);
+
+  /**
+   * @return the number of tasks waiting.
+   */
+  int size();
+
+  default boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Signals that a worker is finished with a task it has taken from this queue, whether the message
+   * has been processed, retried or abandoned after a timeout.
+   *
+   * @param task the task taken from this queue
+   */
+  default void finished(Task task) {}
+
+  /**
+   * Signals that the workers stop: wakes up all workers waiting for a task, afterwards polling does
+   * not wait anymore. Implementations that cannot wake up waiting workers let them wait for their
+   * timeout.
+   */
+  default void close() {}
+}
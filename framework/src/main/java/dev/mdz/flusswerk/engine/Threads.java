@@ -0,0 +1,39 @@
+package dev.mdz.flusswerk.engine;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Threads Flusswerk starts in the background and how long to wait for them when stopping. */
+public final class Threads {
+
+  /** How long to wait for messages in progress to finish when the engine stops. */
+  public static final Duration SHUTDOWN_TIMEOUT = Duration.ofMinutes(5);
+
+  private Threads() {}
+
+  /**
+   * @param name the name of all threads
+   * @return a factory for daemon threads, which must not keep the application alive.
+   */
+  public static ThreadFactory daemon(String name) {
+    return runnable -> {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * @param name the name prefix for the threads, followed by a counter starting at 1
+   * @return a factory for daemon threads, which must not keep the application alive.
+   */
+  public static ThreadFactory numberedDaemons(String name) {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
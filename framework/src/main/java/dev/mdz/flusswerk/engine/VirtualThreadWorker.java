@@ -0,0 +1,160 @@
+package dev.mdz.flusswerk.engine;
+
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.monitoring.FlusswerkMetrics;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import dev.mdz.flusswerk.reporting.ProcessReport;
+import dev.mdz.flusswerk.reporting.Tracing;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A worker that processes every task on its own virtual thread. The number of tasks processed at
+ * the same time is bounded by permits instead of the number of workers, so one instance of this
+ * worker replaces the whole pool of platform thread workers.
+ *
+ * <p>A permit is acquired before the next task is taken from the queue, so the task priorities
+ * still decide which message is processed next. When the worker is stopped, it waits for all tasks
+ * in progress before {@link #run()} returns.
+ */
+public class VirtualThreadWorker extends Worker {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadWorker.class);
+
+  private final Semaphore permits;
+  private final ExecutorService executor;
+
+  /**
+   * @param flow the flow to process the messages with
+   * @param metrics the metrics to record active workers
+   * @param messageBroker the broker to send and acknowledge messages
+   * @param processReport the report for processing results
+   * @param queue the tasks to process
+   * @param tracing the tracing information of the current thread
+   * @param permits the maximum number of tasks processed at the same time
+   */
+  public VirtualThreadWorker(
+      Flow flow,
+      FlusswerkMetrics metrics,
+      MessageBroker messageBroker,
+      ProcessReport processReport,
+      TaskQueue queue,
+      Tracing tracing,
+      int permits) {
+    this(flow, metrics, messageBroker, processReport, queue, tracing, permits, null, null);
+  }
+
+  /**
+   * @param flow the flow to process the messages with
+   * @param metrics the metrics to record active workers
+   * @param messageBroker the broker to send and acknowledge messages
+   * @param processReport the report for processing results
+   * @param queue the tasks to process
+   * @param tracing the tracing information of the current thread
+   * @param permits the maximum number of tasks processed at the same time
+   * @param watchdog the watchdog enforcing time budgets, null for no time budgets
+   * @param localRetries retries messages with short backoffs in memory, null to always retry by
+   *     RabbitMQ
+   */
+  public VirtualThreadWorker(
+      Flow flow,
+      FlusswerkMetrics metrics,
+      MessageBroker messageBroker,
+      ProcessReport processReport,
+      TaskQueue queue,
+      Tracing tracing,
+      int permits,
+      Watchdog watchdog,
+      LocalRetries localRetries) {
+    this(
+        flow,
+        metrics,
+        messageBroker,
+        processReport,
+        queue,
+        tracing,
+        permits,
+        VirtualThreads.newVirtualThreadPerTaskExecutor("flusswerk-worker-"),
+        watchdog,
+        localRetries);
+  }
+
+  /** Constructor for testing with any executor. */
+  VirtualThreadWorker(
+      Flow flow,
+      FlusswerkMetrics metrics,
+      MessageBroker messageBroker,
+      ProcessReport processReport,
+      TaskQueue queue,
+      Tracing tracing,
+      int permits,
+      ExecutorService executor,
+      Watchdog watchdog,
+      LocalRetries localRetries) {
+    super(flow, metrics, messageBroker, processReport, queue, tracing, watchdog, localRetries);
+    this.permits = new Semaphore(permits);
+    this.executor = executor;
+  }
+
+  @Override
+  public void run() {
+    super.run();
+    // Messages in progress must be finished before the engine acknowledges the last messages
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(Threads.SHUTDOWN_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+        LOGGER.error(
+            "Not all tasks did finish during shutdown window of {}", Threads.SHUTDOWN_TIMEOUT);
+      }
+    } catch (InterruptedException e) {
+      LOGGER.error("Interrupted while waiting for tasks to finish", e);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits for a permit and a task and starts processing the task (or a batch starting with it) on a
+   * new virtual thread. Waits in intervals of 1 second so stopping the worker is possible.
+   */
+  @Override
+  void step() {
+    try {
+      if (!permits.tryAcquire(1, TimeUnit.SECONDS)) {
+        return;
+      }
+      Task task = nextTask();
+      if (task == null) {
+        permits.release();
+        return;
+      }
+      List<Task> tasks = collect(task);
+      try {
+        executor.execute(
+            () -> {
+              try {
+                execute(tasks);
+              } finally {
+                permits.release();
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        permits.release();
+        throw e;
+      }
+    } catch (InterruptedException e) {
+      LOGGER.debug("Interrupt while waiting for message", e);
+    }
+  }
+
+  /**
+   * @return the number of tasks that could be started right now.
+   */
+  int availablePermits() {
+    return permits.availablePermits();
+  }
+}
@@ -0,0 +1,57 @@
+package dev.mdz.flusswerk.engine;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads while Flusswerk itself still builds for Java 17. The Java 21 API is
+ * looked up reflectively, so using virtual threads on an older runtime fails fast at startup.
+ */
+public final class VirtualThreads {
+
+  private VirtualThreads() {}
+
+  /**
+   * @return whether the running JVM supports virtual threads.
+   */
+  public static boolean isSupported() {
+    try {
+      Thread.class.getMethod("ofVirtual");
+      Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Creates an executor that starts a new virtual thread for every task.
+   *
+   * @param name the name prefix for the threads, followed by a counter
+   * @return an executor that runs every task on its own virtual thread.
+   * @throws IllegalStateException if the JVM does not support virtual threads
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor(String name) {
+    if (!isSupported()) {
+      throw new IllegalStateException(
+          "Virtual threads need Java 21 or later, but this is Java " + Runtime.version().feature());
+    }
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+      builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name, 0L);
+      ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+      Method newExecutor =
+          Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      return (ExecutorService) newExecutor.invoke(null, factory);
+    } catch (ClassNotFoundException
+        | NoSuchMethodException
+        | IllegalAccessException
+        | InvocationTargetException e) {
+      throw new IllegalStateException("Could not create virtual thread executor", e);
+    }
+  }
+}
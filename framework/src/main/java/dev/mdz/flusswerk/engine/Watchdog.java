@@ -0,0 +1,198 @@
+package dev.mdz.flusswerk.engine;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Enforces the time budget for processing messages. Every message is watched while it is processed,
+ * and if processing does not finish in time, the watchdog abandons it: the message is handled as
+ * timed out (usually retried) and its task is marked as done, so neither the message nor its permit
+ * stay stuck with a hanging worker.
+ *
+ * <p>Either the worker finishes a watched message or the watchdog does, never both. The single
+ * thread of the watchdog only detects timeouts and interrupts the processing threads, the timed out
+ * messages are handled on other threads, so sending them does not delay the next timeout.
+ */
+public class Watchdog implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Watchdog.class);
+
+  private final Duration timeout;
+  private final Map<String, Duration> timeouts;
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final ExecutorService handlers;
+
+  /**
+   * @param timeout the time budget for all messages, null for no time budget
+   * @param timeouts the time budgets per incoming queue, taking precedence
+   */
+  public Watchdog(Duration timeout, Map<String, Duration> timeouts) {
+    this.timeout = timeout;
+    this.timeouts = requireNonNull(timeouts);
+    this.scheduler = new ScheduledThreadPoolExecutor(1, Threads.daemon("flusswerk-watchdog"));
+    this.scheduler.setRemoveOnCancelPolicy(true); // most messages finish in time
+    this.handlers = Executors.newCachedThreadPool(Threads.daemon("flusswerk-timeout"));
+  }
+
+  /**
+   * @param queue the incoming queue a message has been received from, if known
+   * @return the time budget for messages from this queue, if any.
+   */
+  public Optional<Duration> timeoutFor(String queue) {
+    if (queue == null) {
+      return Optional.ofNullable(timeout);
+    }
+    return Optional.ofNullable(timeouts.getOrDefault(queue, timeout));
+  }
+
+  /**
+   * Starts watching processing that has to finish within the time budget.
+   *
+   * @param timeout the time budget
+   * @param onTimeout what to do if processing did not finish in time
+   * @return the watch, to be finished when processing is done
+   */
+  public Watch watch(Duration timeout, Consumer<Watch> onTimeout) {
+    return watch(timeout, null, onTimeout);
+  }
+
+  /**
+   * Starts watching processing that has to finish within the time budget. If it does not, the
+   * processing thread is interrupted before the watch is expired for good, see {@link
+   * Watch#awaitInterrupt()}.
+   *
+   * @param timeout the time budget
+   * @param thread the thread to interrupt if processing did not finish in time, null for none
+   * @param onTimeout what to do if processing did not finish in time
+   * @return the watch, to be finished when processing is done
+   */
+  public Watch watch(Duration timeout, Thread thread, Consumer<Watch> onTimeout) {
+    Watch watch = new Watch(timeout);
+    watch.alarm =
+        scheduler.schedule(
+            () -> {
+              if (!watch.expire()) {
+                return; // finished just in time
+              }
+              try {
+                if (thread != null) {
+                  thread.interrupt(); // ends blocking calls that support interrupts
+                }
+              } finally {
+                watch.interrupted();
+              }
+              Runnable handler = () -> handle(watch, onTimeout);
+              try {
+                handlers.execute(handler);
+              } catch (RejectedExecutionException e) {
+                handler.run(); // closed, but the messages must not stay stuck
+              }
+            },
+            timeout.toNanos(),
+            TimeUnit.NANOSECONDS);
+    return watch;
+  }
+
+  private static void handle(Watch watch, Consumer<Watch> onTimeout) {
+    try {
+      onTimeout.accept(watch);
+    } catch (RuntimeException e) {
+      LOGGER.error("Could not handle timeout after {}", watch.getTimeout(), e);
+    }
+  }
+
+  /** Stops watching, timeouts already detected are still handled. */
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    handlers.shutdown();
+  }
+
+  /** Processing watched by the watchdog, finished either by the worker or by the watchdog. */
+  public static class Watch {
+
+    /** For processing without time budget, which can always be finished. */
+    public static final Watch NONE = new Watch(null);
+
+    private static final int RUNNING = 0;
+    private static final int FINISHED = 1;
+    private static final int EXPIRING = 2; // the watchdog took over, but has not interrupted yet
+    private static final int EXPIRED = 3;
+
+    private final Duration timeout;
+    private final long startedAt;
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private volatile ScheduledFuture<?> alarm;
+
+    private Watch(Duration timeout) {
+      this.timeout = timeout;
+      this.startedAt = System.nanoTime();
+    }
+
+    /**
+     * Marks processing as finished in time.
+     *
+     * @return true if processing finished in time, false if the watchdog already took over.
+     */
+    public boolean finish() {
+      if (this == NONE) {
+        return true;
+      }
+      if (!state.compareAndSet(RUNNING, FINISHED)) {
+        return false;
+      }
+      alarm.cancel(false);
+      return true;
+    }
+
+    private boolean expire() {
+      return state.compareAndSet(RUNNING, EXPIRING);
+    }
+
+    private void interrupted() {
+      state.set(EXPIRED);
+    }
+
+    /**
+     * @return true if the watchdog took over because processing did not finish in time.
+     */
+    public boolean isExpired() {
+      return state.get() >= EXPIRING;
+    }
+
+    /**
+     * Waits until the watchdog has interrupted the processing thread of an expired watch.
+     * Afterwards the thread can clear the interrupt for good, so it cannot hit the next message
+     * instead.
+     */
+    public void awaitInterrupt() {
+      while (state.get() == EXPIRING) {
+        Thread.onSpinWait(); // the watchdog interrupts right after taking over
+      }
+    }
+
+    public Duration getTimeout() {
+      return timeout;
+    }
+
+    /**
+     * @return when processing started as in {@link System#nanoTime()}.
+     */
+    public long getStartedAt() {
+      return startedAt;
+    }
+  }
+}
@@ -1,8 +1,12 @@
 package dev.mdz.flusswerk.engine;
 
+import dev.mdz.flusswerk.engine.Watchdog.Watch;
+import dev.mdz.flusswerk.exceptions.ProcessingTimeoutException;
 import dev.mdz.flusswerk.exceptions.RetryProcessingException;
 import dev.mdz.flusswerk.exceptions.SkipProcessingException;
 import dev.mdz.flusswerk.exceptions.StopProcessingException;
+import dev.mdz.flusswerk.flow.BatchResult;
+import dev.mdz.flusswerk.flow.BatchSpec;
 import dev.mdz.flusswerk.flow.Flow;
 import dev.mdz.flusswerk.model.Envelope;
 import dev.mdz.flusswerk.model.Message;
@@ -10,9 +14,13 @@ import dev.mdz.flusswerk.monitoring.FlusswerkMetrics;
 import dev.mdz.flusswerk.rabbitmq.MessageBroker;
 import dev.mdz.flusswerk.reporting.ProcessReport;
 import dev.mdz.flusswerk.reporting.Tracing;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -25,17 +33,43 @@ public class Worker implements Runnable {
   private final FlusswerkMetrics metrics;
   private final MessageBroker messageBroker;
   private final ProcessReport processReport;
-  private final PriorityBlockingQueue<Task> queue;
+  private final TaskQueue queue;
   private boolean running;
   private final Tracing tracing;
+  private final BatchSpec batch;
+  private final Watchdog watchdog;
+  private final LocalRetries localRetries;
 
   public Worker(
       Flow flow,
       FlusswerkMetrics metrics,
       MessageBroker messageBroker,
       ProcessReport processReport,
-      PriorityBlockingQueue<Task> queue,
+      TaskQueue queue,
       Tracing tracing) {
+    this(flow, metrics, messageBroker, processReport, queue, tracing, null, null);
+  }
+
+  /**
+   * @param flow the flow to process the messages with
+   * @param metrics the metrics to record active workers
+   * @param messageBroker the broker to send and acknowledge messages
+   * @param processReport the report for processing results
+   * @param queue the tasks to process
+   * @param tracing the tracing information of the current thread
+   * @param watchdog the watchdog enforcing time budgets, null for no time budgets
+   * @param localRetries retries messages with short backoffs in memory, null to always retry by
+   *     RabbitMQ
+   */
+  public Worker(
+      Flow flow,
+      FlusswerkMetrics metrics,
+      MessageBroker messageBroker,
+      ProcessReport processReport,
+      TaskQueue queue,
+      Tracing tracing,
+      Watchdog watchdog,
+      LocalRetries localRetries) {
     this.flow = flow;
     this.messageBroker = messageBroker;
     this.metrics = metrics;
@@ -43,6 +77,9 @@ public class Worker implements Runnable {
     this.queue = queue;
     this.tracing = tracing;
     this.running = true;
+    this.batch = flow.getBatch().orElse(null);
+    this.watchdog = watchdog;
+    this.localRetries = localRetries;
   }
 
   @Override
@@ -59,47 +96,233 @@ public class Worker implements Runnable {
   void step() {
     try {
       // Waiting with intervals so stopping the worker is possible
-      Task task = queue.poll(1, TimeUnit.SECONDS);
+      Task task = nextTask();
       if (task == null) {
         return;
       }
-      executeProcessing(task.getMessage());
-      task.done();
+      execute(collect(task));
     } catch (InterruptedException e) {
       LOGGER.debug("Interrupt while waiting for message", e);
     }
   }
 
+  /**
+   * @return the next task or null if there was none within 1 second.
+   */
+  Task nextTask() throws InterruptedException {
+    Task task = queue.poll(1, TimeUnit.SECONDS);
+    if (task != null) {
+      metrics.recordWaitingTime(task.getQueue(), System.nanoTime() - task.getCreatedAt());
+    }
+    return task;
+  }
+
+  /**
+   * @param first the next task
+   * @return the tasks to process together, the next task alone or a batch starting with it.
+   */
+  List<Task> collect(Task first) {
+    return batch == null ? List.of(first) : nextBatch(first);
+  }
+
+  /**
+   * Processes the tasks and marks them as done. If processing takes longer than the time budget,
+   * this thread is interrupted and the watchdog takes over the tasks.
+   */
+  void execute(List<Task> tasks) {
+    Watch watch = watch(tasks, Thread.currentThread(), expired -> timedOut(tasks, expired));
+    try {
+      if (batch == null) {
+        executeProcessing(tasks.get(0).getMessage(), watch);
+      } else {
+        executeProcessing(tasks.stream().map(Task::getMessage).toList(), watch);
+      }
+    } finally {
+      // Tasks must always be finished, even if handling the messages failed unexpectedly
+      tasks.forEach(this::release);
+      if (watch.isExpired()) {
+        watch.awaitInterrupt();
+        Thread.interrupted(); // the interrupt of the watchdog must not hit the next message
+      } else {
+        tasks.forEach(this::finish);
+      }
+    }
+  }
+
+  /**
+   * Signals the task queue that this worker is finished with a task, see {@link
+   * TaskQueue#finished(Task)}.
+   *
+   * @param task the task taken from the task queue
+   */
+  void release(Task task) {
+    queue.finished(task);
+  }
+
+  /**
+   * Marks a task as done, unless its message waits for a retry in memory.
+   *
+   * @param task the task the worker is finished with
+   */
+  void finish(Task task) {
+    if (localRetries == null || !localRetries.delay(task)) {
+      task.done();
+    }
+  }
+
+  /**
+   * Starts watching the processing of tasks if there is a time budget for them.
+   *
+   * @param tasks the tasks to process
+   * @param thread the thread processing the tasks, null if there is none to interrupt
+   * @param onTimeout what to do if processing did not finish in time
+   * @return the watch for the shortest time budget of the tasks' queues or {@link Watch#NONE}
+   */
+  Watch watch(List<Task> tasks, Thread thread, Consumer<Watch> onTimeout) {
+    if (watchdog == null) {
+      return Watch.NONE;
+    }
+    return tasks.stream()
+        .map(task -> watchdog.timeoutFor(task.getQueue()))
+        .flatMap(Optional::stream)
+        .min(Comparator.naturalOrder())
+        .map(timeout -> watchdog.watch(timeout, thread, onTimeout))
+        .orElse(Watch.NONE);
+  }
+
+  /**
+   * Handles tasks whose processing has been abandoned: they are retried as timed out and marked as
+   * done. Runs on a thread of the watchdog handling timeouts.
+   *
+   * @param tasks the tasks that did not finish in time
+   * @param watch the expired watch
+   */
+  void timedOut(List<Task> tasks, Watch watch) {
+    for (Task task : tasks) {
+      Message message = task.getMessage();
+      var timeout =
+          new ProcessingTimeoutException("Processing took longer than %s", watch.getTimeout());
+      tracing.register(message.getTracing());
+      try {
+        flow.reportTimeout(message, watch.getStartedAt(), timeout);
+        complete(message, null, timeout);
+      } finally {
+        tracing.deregister();
+        finish(task);
+      }
+    }
+  }
+
+  /**
+   * Collects more tasks until the batch is full or the maximum wait time since the first task has
+   * passed.
+   *
+   * @param first the first task of the batch
+   * @return the tasks of the batch, at least the first one
+   */
+  List<Task> nextBatch(Task first) {
+    List<Task> tasks = new ArrayList<>(batch.size());
+    tasks.add(first);
+    long deadline = System.nanoTime() + batch.maxWait().toNanos();
+    while (tasks.size() < batch.size()) {
+      long remaining = deadline - System.nanoTime();
+      Task task;
+      try {
+        task = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt(); // tasks already taken must be processed anyway
+        break;
+      }
+      if (task == null) {
+        break;
+      }
+      metrics.recordWaitingTime(task.getQueue(), System.nanoTime() - task.getCreatedAt());
+      tasks.add(task);
+    }
+    return tasks;
+  }
+
+  void executeProcessing(List<Message> messages) {
+    executeProcessing(messages, Watch.NONE);
+  }
+
+  void executeProcessing(List<Message> messages, Watch watch) {
+    metrics.incrementActiveWorkers();
+    try {
+      process(messages, watch);
+    } finally {
+      tracing.deregister();
+      metrics.decrementActiveWorkers();
+    }
+  }
+
   void executeProcessing(Message message) {
+    executeProcessing(message, Watch.NONE);
+  }
+
+  void executeProcessing(Message message, Watch watch) {
     metrics.incrementActiveWorkers();
     tracing.register(message.getTracing());
-    process(message);
-    tracing.deregister();
-    metrics.decrementActiveWorkers();
+    try {
+      process(message, watch);
+    } finally {
+      // Always clean up, threads might be short-lived and never process another message
+      tracing.deregister();
+      metrics.decrementActiveWorkers();
+    }
   }
 
   public void process(Message message) {
-    Collection<? extends Message> messagesToSend;
-    SkipProcessingException skip = null;
+    process(message, Watch.NONE);
+  }
+
+  /**
+   * Processes a message and handles the messaging, unless the watchdog already took over.
+   *
+   * @param message the message to process
+   * @param watch the watch for the time budget
+   */
+  void process(Message message, Watch watch) {
+    Collection<? extends Message> messagesToSend = null;
+    RuntimeException error = null;
     try {
       messagesToSend = flow.process(message);
+    } catch (RuntimeException e) {
+      error = e;
+    }
+    if (watch.finish()) {
+      complete(message, messagesToSend, error);
+    }
+  }
+
+  /**
+   * Handles the messaging after processing a message: sends the resulting messages and acknowledges
+   * the message, or retries or fails it.
+   *
+   * @param message the processed message
+   * @param messagesToSend the messages to send if processing was successful
+   * @param error the exception that stopped processing, if any
+   */
+  void complete(
+      Message message, Collection<? extends Message> messagesToSend, RuntimeException error) {
+    SkipProcessingException skip = null;
+    if (error == null) {
       MDC.put("status", "success");
-    } catch (StopProcessingException e) {
+    } else if (error instanceof StopProcessingException e) {
       MDC.put("status", "stop");
       fail(message, e);
       return; // processing was not successful → stop here
-    } catch (SkipProcessingException e) {
+    } else if (error instanceof SkipProcessingException e) {
       messagesToSend = e.getOutgoingMessages();
       skip = e;
       MDC.put("status", "skip");
       MDC.put("skipReason", e.getMessage());
-    } catch (RuntimeException e) {
+    } else {
       MDC.put("status", "retry");
-      if (e instanceof RetryProcessingException rpe && rpe.isComplex()) {
+      if (error instanceof RetryProcessingException rpe && rpe.isComplex()) {
         complexRetry(message, rpe);
-        return;
       } else {
-        retryOrFail(message, e);
+        retryOrFail(message, error);
       }
       return; // processing was not successful → stop here
     }
@@ -108,14 +331,17 @@ public class Worker implements Runnable {
     try {
       if (!messagesToSend.isEmpty()) {
         tracing.ensureFor(messagesToSend);
-        messageBroker.send(messagesToSend);
+        messageBroker.sendToDefault(messagesToSend);
       }
       messageBroker.ack(message);
       if (skip != null) {
         processReport.reportSkip(message, skip);
       } else {
+        remember(message);
         processReport.reportSuccess(message);
       }
+    } catch (RetryProcessingException e) {
+      retryInterrupted(List.of(message), e);
     } catch (Exception e) {
       var stopProcessingException =
           new StopProcessingException("Could not finish message handling").causedBy(e);
@@ -123,9 +349,109 @@ public class Worker implements Runnable {
     }
   }
 
+  /**
+   * Retries messages whose resulting messages could not be sent because waiting for a rate limit
+   * has been interrupted. The interrupt is kept, but must not affect sending the retries.
+   *
+   * @param messages the received messages to retry
+   * @param e the exception of the interrupted rate limit
+   */
+  private void retryInterrupted(List<Message> messages, RetryProcessingException e) {
+    boolean interrupted = Thread.interrupted();
+    try {
+      messages.forEach(message -> retryOrFail(message, e));
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Processes a batch of messages. Messages to retry or fail are handled one by one, while all
+   * successful and skipped messages are acknowledged at once.
+   *
+   * @param messages the batch of messages
+   */
+  public void process(List<Message> messages) {
+    process(messages, Watch.NONE);
+  }
+
+  void process(List<Message> messages, Watch watch) {
+    BatchResult result = flow.processBatch(messages);
+    if (!watch.finish()) {
+      return; // the watchdog already retried the whole batch
+    }
+    List<Message> processed = new ArrayList<>(messages.size());
+    for (Message message : messages) {
+      RuntimeException outcome = result.getOutcome(message).orElse(null);
+      if (outcome == null || outcome instanceof SkipProcessingException) {
+        processed.add(message);
+      } else if (outcome instanceof StopProcessingException e) {
+        fail(message, e);
+      } else if (outcome instanceof RetryProcessingException e && e.isComplex()) {
+        tracing.register(message.getTracing());
+        try {
+          complexRetry(message, e);
+        } finally {
+          tracing.deregister();
+        }
+      } else {
+        retryOrFail(message, outcome);
+      }
+    }
+
+    // Data processing was done, now handle the messaging
+    try {
+      List<Message> messagesToSend = result.getMessagesToSend();
+      if (!messagesToSend.isEmpty()) {
+        tracing.ensureFor(messagesToSend);
+        messageBroker.sendToDefault(messagesToSend);
+      }
+      if (!processed.isEmpty()) {
+        messageBroker.ack(processed);
+      }
+    } catch (RetryProcessingException e) {
+      retryInterrupted(processed, e);
+      return;
+    } catch (Exception e) {
+      var stopProcessingException =
+          new StopProcessingException("Could not finish message handling").causedBy(e);
+      processed.forEach(message -> fail(message, stopProcessingException));
+      return;
+    }
+    for (Message message : processed) {
+      if (result.getOutcome(message).orElse(null) instanceof SkipProcessingException skip) {
+        processReport.reportSkip(message, skip);
+      } else {
+        remember(message);
+        processReport.reportSuccess(message);
+      }
+    }
+  }
+
+  /**
+   * Remembers a message that has been sent and acknowledged as processed. The message has been
+   * processed anyway, so a failure is only logged instead of retrying the message.
+   *
+   * @param message the message processed successfully
+   */
+  private void remember(Message message) {
+    try {
+      flow.remember(message);
+    } catch (RuntimeException e) {
+      LOGGER.error("Could not remember message as processed", e);
+    }
+  }
+
   private void retryOrFail(Message receivedMessage, RuntimeException e) {
-    messageBroker.ack(receivedMessage);
+    if (localRetries != null && localRetries.accept(receivedMessage)) {
+      processReport.reportRetry(receivedMessage, e); // acknowledged after the last attempt
+      return;
+    }
+    // Send to the retry or failed queue first, so the ack waits for its publisher confirm
     boolean isRejected = messageBroker.reject(receivedMessage);
+    messageBroker.ack(receivedMessage);
     if (isRejected) {
       processReport.reportRetry(receivedMessage, e);
     } else {
@@ -134,7 +460,6 @@ public class Worker implements Runnable {
   }
 
   private void complexRetry(Message receivedMessage, RetryProcessingException e) {
-    messageBroker.ack(receivedMessage);
     boolean isRejected = false;
     for (Message retryMessage : e.getMessagesToRetry()) {
       Envelope envelope = retryMessage.getEnvelope();
@@ -145,7 +470,8 @@ public class Worker implements Runnable {
     }
     // Send the messages that should be sent anyway
     tracing.ensureFor(e.getMessagesToSend());
-    messageBroker.send(e.getMessagesToSend());
+    messageBroker.sendToDefault(e.getMessagesToSend());
+    messageBroker.ack(receivedMessage); // after sending, so the ack waits for publisher confirms
 
     if (isRejected) {
       processReport.reportComplexRetry(receivedMessage, e);
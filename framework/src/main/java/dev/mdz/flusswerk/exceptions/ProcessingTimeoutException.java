@@ -0,0 +1,17 @@
+package dev.mdz.flusswerk.exceptions;
+
+/**
+ * Processing a message took longer than its time budget. The message is retried like for any other
+ * {@link RetryProcessingException}, but counted with the status {@code timeout}. Flows may also
+ * throw it themselves, e.g. when a remote call timed out.
+ */
+public class ProcessingTimeoutException extends RetryProcessingException {
+
+  /**
+   * @param message The message, possibly including format strings
+   * @param args Arguments for the format string in <code>message</code>
+   */
+  public ProcessingTimeoutException(String message, Object... args) {
+    super(message, args);
+  }
+}
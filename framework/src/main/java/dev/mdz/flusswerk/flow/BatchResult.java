@@ -0,0 +1,121 @@
+package dev.mdz.flusswerk.flow;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+
+import dev.mdz.flusswerk.exceptions.RetryProcessingException;
+import dev.mdz.flusswerk.exceptions.SkipProcessingException;
+import dev.mdz.flusswerk.exceptions.StopProcessingException;
+import dev.mdz.flusswerk.model.Message;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The outcome of processing a batch of messages. Every message of the batch has been processed
+ * successfully unless it has been skipped, marked for retry or failed explicitly. Each of these
+ * messages is handled as if processing it alone had thrown the respective exception.
+ */
+public class BatchResult {
+
+  private final List<Message> messagesToSend = new ArrayList<>();
+  private final Map<Message, RuntimeException> outcomes = new IdentityHashMap<>();
+
+  /**
+   * Add messages to send to the next workflow job.
+   *
+   * @param messages The messages to send.
+   * @return <code>this</code> for a fluent interface.
+   */
+  public BatchResult send(Message... messages) {
+    return send(asList(messages));
+  }
+
+  /**
+   * Add messages to send to the next workflow job.
+   *
+   * @param messages The messages to send.
+   * @return <code>this</code> for a fluent interface.
+   */
+  public BatchResult send(Collection<? extends Message> messages) {
+    messages.stream().filter(Objects::nonNull).forEach(messagesToSend::add);
+    return this;
+  }
+
+  /**
+   * Skip a message of the batch, it is acknowledged like the successful ones.
+   *
+   * @param message The message to skip
+   * @param reason Why should processing be skipped?
+   * @return <code>this</code> for a fluent interface.
+   */
+  public BatchResult skip(Message message, String reason) {
+    return reject(message, new SkipProcessingException(reason));
+  }
+
+  /**
+   * Retry a message of the batch later, or send it to the failed queue if it has been retried too
+   * often.
+   *
+   * @param message The message to retry
+   * @param reason Why should processing be retried?
+   * @return <code>this</code> for a fluent interface.
+   */
+  public BatchResult retry(Message message, String reason) {
+    return reject(message, new RetryProcessingException(reason));
+  }
+
+  /**
+   * Send a message of the batch to the failed queue without retrying it.
+   *
+   * @param message The message that failed
+   * @param reason Why did processing fail?
+   * @return <code>this</code> for a fluent interface.
+   */
+  public BatchResult fail(Message message, String reason) {
+    return reject(message, new StopProcessingException(reason));
+  }
+
+  /**
+   * Handle a message of the batch as if processing it alone had thrown an exception, e.g. a {@link
+   * RetryProcessingException} with messages to retry.
+   *
+   * @param message The message of the batch
+   * @param e The exception that describes the outcome
+   * @return <code>this</code> for a fluent interface.
+   */
+  public BatchResult reject(Message message, RuntimeException e) {
+    outcomes.put(Objects.requireNonNull(message), Objects.requireNonNull(e));
+    return this;
+  }
+
+  /**
+   * @param message A message of the batch
+   * @return The exception describing why the message has not been processed successfully, if so.
+   */
+  public Optional<RuntimeException> getOutcome(Message message) {
+    return Optional.ofNullable(outcomes.get(message));
+  }
+
+  /**
+   * @return The messages that should be sent to the next workflow job.
+   */
+  public List<Message> getMessagesToSend() {
+    return unmodifiableList(messagesToSend);
+  }
+
+  /**
+   * @param messages The batch of messages
+   * @param e The exception thrown while processing the whole batch
+   * @return A result handling every message of the batch as if it had thrown the exception.
+   */
+  static BatchResult rejectAll(List<Message> messages, RuntimeException e) {
+    BatchResult result = new BatchResult();
+    messages.forEach(message -> result.reject(message, e));
+    return result;
+  }
+}
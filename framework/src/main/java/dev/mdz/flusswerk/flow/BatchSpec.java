@@ -0,0 +1,30 @@
+package dev.mdz.flusswerk.flow;
+
+import static java.util.Objects.requireNonNull;
+
+import dev.mdz.flusswerk.model.Message;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Recipe for processing messages in batches.
+ *
+ * @param size The maximum number of messages in one batch
+ * @param maxWait How long to wait for more messages after the first message of a batch arrived
+ * @param processor Processes a batch and describes the outcome for each message
+ */
+public record BatchSpec(
+    int size, Duration maxWait, Function<List<Message>, BatchResult> processor) {
+
+  public BatchSpec {
+    if (size < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1, but is " + size);
+    }
+    requireNonNull(maxWait);
+    requireNonNull(processor);
+    if (maxWait.isNegative()) {
+      throw new IllegalArgumentException("Batch max wait must not be negative, but is " + maxWait);
+    }
+  }
+}
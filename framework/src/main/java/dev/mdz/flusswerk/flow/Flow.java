@@ -2,13 +2,20 @@ package dev.mdz.flusswerk.flow;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.Objects.requireNonNullElse;
+import static java.util.Objects.requireNonNullElseGet;
 
+import dev.mdz.flusswerk.exceptions.ProcessingTimeoutException;
+import dev.mdz.flusswerk.exceptions.SkipProcessingException;
 import dev.mdz.flusswerk.model.Message;
 import dev.mdz.flusswerk.monitoring.Converter;
 import dev.mdz.flusswerk.monitoring.FlowMetrics;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import org.slf4j.MDC;
@@ -25,8 +32,21 @@ public class Flow {
   private final Function<Object, Collection<Message>> writer;
   private final Runnable cleanup;
   private final Set<Consumer<FlowInfo>> flowMetrics;
+  private final BatchSpec batch;
+  private final Function<Message, CompletionStage<Collection<Message>>> async;
+  private final Duration timeout;
+  private final IdempotencyCache idempotency;
 
   public Flow(FlowSpec flowSpec) {
+    this(flowSpec, null);
+  }
+
+  /**
+   * @param flowSpec the recipe for processing messages
+   * @param idempotency the cache to skip messages that have already been processed, null to process
+   *     every message
+   */
+  public Flow(FlowSpec flowSpec, IdempotencyCache idempotency) {
     this.reader = requireNonNull(flowSpec.reader());
     this.transformer = requireNonNull(flowSpec.transformer());
     this.writer = requireNonNull(flowSpec.writer());
@@ -35,6 +55,10 @@ public class Flow {
     if (flowSpec.monitor() != null) {
       this.flowMetrics.add(flowSpec.monitor());
     }
+    this.batch = flowSpec.batch();
+    this.async = flowSpec.async();
+    this.timeout = flowSpec.timeout();
+    this.idempotency = idempotency;
   }
 
   public void registerFlowMetrics(Set<FlowMetrics> flowMetrics) {
@@ -48,19 +72,184 @@ public class Flow {
     Collection<Message> result;
     long start = System.nanoTime();
     try {
+      skipDuplicate(message);
       result = innerProcess(message);
     } catch (RuntimeException e) {
       info.setStatusFrom(e);
       throw e; // Throw exception again after inspecting for ensure control flow in engine
     } finally {
-      info.stop();
-      long durationNs = System.nanoTime() - start;
-      MDC.put("duration", String.format(Locale.ENGLISH, "%f", Converter.ns_to_seconds(durationNs)));
-      MDC.put(
-          "duration_ms",
-          String.format(Locale.ENGLISH, "%f", Converter.ns_to_milliseconds(durationNs)));
-      flowMetrics.forEach(
-          metric -> metric.accept(info)); // record metrics only available from inside the framework
+      putDuration(start);
+      record(info);
+    }
+    return result;
+  }
+
+  /** Puts how long processing took into the MDC for the log messages after processing. */
+  private static void putDuration(long start) {
+    long durationNs = System.nanoTime() - start;
+    MDC.put("duration", String.format(Locale.ENGLISH, "%f", Converter.ns_to_seconds(durationNs)));
+    MDC.put(
+        "duration_ms",
+        String.format(Locale.ENGLISH, "%f", Converter.ns_to_milliseconds(durationNs)));
+  }
+
+  /** Stops the clock for a message and records the metrics only available inside the framework. */
+  private void record(FlowInfo info) {
+    info.stop();
+    flowMetrics.forEach(metric -> metric.accept(info));
+  }
+
+  private void skipDuplicate(Message message) {
+    if (idempotency != null && idempotency.isDuplicate(message)) {
+      throw new SkipProcessingException("Message has already been processed");
+    }
+  }
+
+  /**
+   * Remembers that a message has been processed, so it is skipped if it is received again. Must be
+   * called only once the resulting messages have been sent and the message has been acknowledged.
+   *
+   * @param message the message processed successfully
+   */
+  public void remember(Message message) {
+    if (idempotency != null) {
+      idempotency.processed(message);
+    }
+  }
+
+  /**
+   * @return Whether this flow processes messages asynchronously.
+   */
+  public boolean isAsync() {
+    return async != null;
+  }
+
+  /**
+   * Starts processing a message asynchronously. Cleanup and metrics run as soon as the processing
+   * completes, on the thread completing it.
+   *
+   * @param message the message to process
+   * @return the messages to send, or the exception that stopped processing
+   */
+  public CompletionStage<Collection<Message>> processAsync(Message message) {
+    if (async == null) {
+      throw new IllegalStateException("Flow does not process messages asynchronously");
+    }
+    FlowInfo info = new FlowInfo(message);
+    setLoggingData(message);
+
+    CompletionStage<Collection<Message>> stage;
+    try {
+      skipDuplicate(message);
+      stage = requireNonNull(async.apply(message), "Asynchronous flow returned no stage");
+    } catch (RuntimeException e) {
+      stage = CompletableFuture.failedFuture(e);
+    }
+    return stage
+        .whenComplete(
+            (result, error) -> {
+              try {
+                cleanup.run();
+              } finally {
+                if (error != null) {
+                  info.setStatusFrom(causeOf(error));
+                }
+                record(info);
+              }
+            })
+        .thenApply(Flow::withoutNulls);
+  }
+
+  /**
+   * @param error the exception a {@link CompletionStage} completed with
+   * @return the exception thrown while processing, without the wrapping by the completion stages.
+   */
+  public static RuntimeException causeOf(Throwable error) {
+    Throwable cause = error;
+    while (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    if (cause instanceof RuntimeException e) {
+      return e;
+    }
+    return new RuntimeException(cause); // checked exceptions are retried like any other
+  }
+
+  /**
+   * Records the metrics for a message whose processing has been abandoned because it took too long.
+   * If the abandoned processing finishes later anyway, it records its own metrics as well.
+   *
+   * @param message the message that timed out
+   * @param startedAt when processing started as in {@link System#nanoTime()}
+   * @param timeout the exception the message is retried with
+   */
+  public void reportTimeout(Message message, long startedAt, ProcessingTimeoutException timeout) {
+    FlowInfo info = new FlowInfo(message, startedAt);
+    info.setStatusFrom(timeout);
+    record(info);
+  }
+
+  /**
+   * @return The time budget for processing a message, if this flow has one.
+   */
+  public Optional<Duration> getTimeout() {
+    return Optional.ofNullable(timeout);
+  }
+
+  /**
+   * @return How to batch messages, if this flow processes messages in batches.
+   */
+  public Optional<BatchSpec> getBatch() {
+    return Optional.ofNullable(batch);
+  }
+
+  /**
+   * Processes a batch of messages at once. Exceptions are not thrown, but apply to every message of
+   * the batch instead.
+   *
+   * @param messages the batch of messages
+   * @return the outcome for each message and the messages to send
+   */
+  public BatchResult processBatch(List<Message> messages) {
+    if (batch == null) {
+      throw new IllegalStateException("Flow does not process messages in batches");
+    }
+    List<FlowInfo> infos = messages.stream().map(FlowInfo::new).toList();
+    MDC.clear(); // Remove logging data from previous message, there is no single id for a batch
+    MDC.put("batch_size", String.valueOf(messages.size()));
+
+    List<Message> fresh = messages;
+    List<Message> duplicates = List.of();
+    if (idempotency != null) {
+      fresh = new ArrayList<>(messages.size());
+      duplicates = new ArrayList<>();
+      for (Message message : messages) {
+        (idempotency.isDuplicate(message) ? duplicates : fresh).add(message);
+      }
+    }
+
+    BatchResult result;
+    long start = System.nanoTime();
+    try {
+      result =
+          fresh.isEmpty()
+              ? new BatchResult()
+              : requireNonNullElseGet(batch.processor().apply(fresh), BatchResult::new);
+    } catch (RuntimeException e) {
+      result = BatchResult.rejectAll(fresh, e);
+    } finally {
+      cleanup.run();
+    }
+    for (Message duplicate : duplicates) {
+      result.skip(duplicate, "Message has already been processed");
+    }
+    putDuration(start);
+
+    for (int i = 0; i < messages.size(); i++) {
+      FlowInfo info = infos.get(i);
+      Optional<RuntimeException> outcome = result.getOutcome(messages.get(i));
+      outcome.ifPresent(info::setStatusFrom);
+      record(info);
     }
     return result;
   }
@@ -75,6 +264,10 @@ public class Flow {
     } finally {
       cleanup.run();
     }
+    return withoutNulls(result);
+  }
+
+  private static Collection<Message> withoutNulls(Collection<Message> result) {
     if (result == null) {
       return Collections.emptyList();
     }
@@ -85,19 +278,27 @@ public class Flow {
 
   void setLoggingData(Message message) {
     MDC.clear(); // Remove logging data from previous message
+    Object id = idOf(message);
+    if (id != null) {
+      MDC.put("id", id.toString());
+    }
+  }
+
+  /**
+   * @param message the message
+   * @return the result of the message's <code>getId()</code> method, or null if there is none.
+   */
+  public static Object idOf(Message message) {
     for (Method method : message.getClass().getMethods()) {
       if (!("getId".equalsIgnoreCase(method.getName()) && method.canAccess(message))) {
         continue;
       }
       try {
-        Object id = method.invoke(message);
-        if (id != null) {
-          MDC.put("id", id.toString());
-        }
+        return method.invoke(message); // found the id, no need to search further
       } catch (IllegalAccessException | InvocationTargetException e) {
         throw new RuntimeException("Cannot get ID for logging but should be able to");
       }
-      break; // found the id, no need to search further
     }
+    return null;
   }
 }
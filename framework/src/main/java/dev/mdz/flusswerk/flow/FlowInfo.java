@@ -1,5 +1,6 @@
 package dev.mdz.flusswerk.flow;
 
+import dev.mdz.flusswerk.exceptions.ProcessingTimeoutException;
 import dev.mdz.flusswerk.exceptions.SkipProcessingException;
 import dev.mdz.flusswerk.exceptions.StopProcessingException;
 import dev.mdz.flusswerk.flow.builder.ConfigurationStep;
@@ -22,7 +23,11 @@ public class FlowInfo {
   private final Message message;
 
   public FlowInfo(Message message) {
-    this.startTime = System.nanoTime();
+    this(message, System.nanoTime());
+  }
+
+  FlowInfo(Message message, long startTime) {
+    this.startTime = startTime;
     this.status = Status.SUCCESS;
     this.message = message;
   }
@@ -40,6 +45,8 @@ public class FlowInfo {
       status = Status.SKIP;
     } else if (e instanceof StopProcessingException) {
       status = Status.ERROR_STOP;
+    } else if (e instanceof ProcessingTimeoutException) {
+      status = Status.TIMEOUT;
     } else {
       status = Status.ERROR_RETRY;
     }
@@ -0,0 +1,45 @@
+package dev.mdz.flusswerk.flow;
+
+import dev.mdz.flusswerk.model.Message;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Optional features of a flow beyond reading, transforming and writing messages. All of them are
+ * null if not used.
+ *
+ * @param batch Recipe for processing messages in batches, null for one message at a time
+ * @param async Processes a message asynchronously, null for flows blocking the worker
+ * @param timeout The time budget for processing a message, null for no time budget
+ * @param idempotencyKey The key to skip duplicates by, null for the id of the message
+ * @param compactionKey The key to replace waiting messages by, null for the id of the message
+ * @param rateLimit Limits how many messages the flow sends, null to send as fast as possible
+ */
+public record FlowOptions(
+    BatchSpec batch,
+    Function<Message, CompletionStage<Collection<Message>>> async,
+    Duration timeout,
+    Function<Message, Object> idempotencyKey,
+    Function<Message, Object> compactionKey,
+    RateLimitSpec rateLimit) {
+
+  /** No optional features at all. */
+  public static final FlowOptions NONE = new FlowOptions(null, null, null, null, null, null);
+
+  public FlowOptions {
+    if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+      throw new IllegalArgumentException(
+          String.format("Timeout must be a positive duration, but is %s", timeout));
+    }
+  }
+
+  /**
+   * @param async processes a message asynchronously
+   * @return the same options, but processing messages asynchronously instead of in batches.
+   */
+  public FlowOptions withAsync(Function<Message, CompletionStage<Collection<Message>>> async) {
+    return new FlowOptions(null, async, timeout, idempotencyKey, compactionKey, rateLimit);
+  }
+}
@@ -4,7 +4,9 @@ import static java.util.Objects.requireNonNull;
 import static java.util.Objects.requireNonNullElse;
 
 import dev.mdz.flusswerk.model.Message;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -13,18 +15,54 @@ public record FlowSpec(
     Function<Object, Object> transformer,
     Function<Object, Collection<Message>> writer,
     Runnable cleanup,
-    Consumer<FlowInfo> monitor) {
+    Consumer<FlowInfo> monitor,
+    FlowOptions options) {
 
   public FlowSpec(
       Function<Message, Object> reader,
       Function<Object, Object> transformer,
       Function<Object, Collection<Message>> writer,
       Runnable cleanup,
-      Consumer<FlowInfo> monitor) {
+      Consumer<FlowInfo> monitor,
+      FlowOptions options) {
     this.reader = requireNonNull(reader);
     this.transformer = requireNonNull(transformer);
     this.writer = requireNonNull(writer);
     this.cleanup = requireNonNullElse(cleanup, () -> {});
     this.monitor = requireNonNullElse(monitor, metrics -> {});
+    this.options = requireNonNullElse(options, FlowOptions.NONE);
+  }
+
+  public FlowSpec(
+      Function<Message, Object> reader,
+      Function<Object, Object> transformer,
+      Function<Object, Collection<Message>> writer,
+      Runnable cleanup,
+      Consumer<FlowInfo> monitor) {
+    this(reader, transformer, writer, cleanup, monitor, FlowOptions.NONE);
+  }
+
+  public BatchSpec batch() {
+    return options.batch();
+  }
+
+  public Function<Message, CompletionStage<Collection<Message>>> async() {
+    return options.async();
+  }
+
+  public Duration timeout() {
+    return options.timeout();
+  }
+
+  public Function<Message, Object> idempotencyKey() {
+    return options.idempotencyKey();
+  }
+
+  public Function<Message, Object> compactionKey() {
+    return options.compactionKey();
+  }
+
+  public RateLimitSpec rateLimit() {
+    return options.rateLimit();
   }
 }
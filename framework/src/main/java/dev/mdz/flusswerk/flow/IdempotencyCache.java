@@ -0,0 +1,221 @@
+package dev.mdz.flusswerk.flow;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import dev.mdz.flusswerk.model.Message;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Remembers the keys of messages that have been processed successfully, so duplicates (e.g. from
+ * redeliveries of RabbitMQ or upstream) can be skipped without running the flow again. Keys are
+ * remembered for a limited time, and only the most recent keys are kept if there are too many.
+ *
+ * <p>With a store, every key is also appended to a local file, so the keys survive restarts. The
+ * file is compacted on startup and whenever it has grown by the maximum number of keys.
+ */
+public class IdempotencyCache implements MeterBinder, AutoCloseable {
+
+  private final Function<Message, ?> key;
+  private final int size;
+  private final long ttl;
+  private final Path store;
+  private final Clock clock;
+  private final Map<String, Long> expiries; // oldest first, as all keys have the same TTL
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private BufferedWriter writer;
+  private int appended = 0;
+
+  /**
+   * @param key the key of a message, messages without key are never duplicates
+   * @param size the maximum number of keys to remember
+   * @param ttl how long to remember a key
+   * @param store the file to keep the keys across restarts, null to keep them in memory only
+   */
+  public IdempotencyCache(Function<Message, ?> key, int size, Duration ttl, Path store) {
+    this(key, size, ttl, store, Clock.systemUTC());
+  }
+
+  IdempotencyCache(Function<Message, ?> key, int size, Duration ttl, Path store, Clock clock) {
+    this.key = requireNonNull(key);
+    this.size = size;
+    this.ttl = ttl.toMillis();
+    this.store = store;
+    this.clock = clock;
+    this.expiries =
+        new LinkedHashMap<>() {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > IdempotencyCache.this.size;
+          }
+        };
+    if (store != null) {
+      load();
+      compact();
+    }
+  }
+
+  /**
+   * @param message the received message
+   * @return true if a message with the same key has already been processed.
+   */
+  public synchronized boolean isDuplicate(Message message) {
+    String k = keyOf(message);
+    if (k == null) {
+      return false;
+    }
+    Long expiry = expiries.get(k);
+    if (expiry != null && expiry <= clock.millis()) {
+      expiries.remove(k);
+      expiry = null;
+    }
+    if (expiry == null) {
+      misses.increment();
+      return false;
+    }
+    hits.increment();
+    return true;
+  }
+
+  /**
+   * Remembers that a message has been processed successfully.
+   *
+   * @param message the processed message
+   */
+  public synchronized void processed(Message message) {
+    String k = keyOf(message);
+    if (k == null) {
+      return;
+    }
+    long expiry = clock.millis() + ttl;
+    expiries.remove(k); // keep the order of expiry
+    expiries.put(k, expiry);
+    if (writer != null) {
+      append(k, expiry);
+    }
+  }
+
+  private String keyOf(Message message) {
+    Object k = key.apply(message);
+    return k == null ? null : k.toString();
+  }
+
+  private void load() {
+    if (!Files.exists(store)) {
+      return;
+    }
+    long now = clock.millis();
+    try (var lines = Files.lines(store, UTF_8)) {
+      lines.forEach(
+          line -> {
+            int separator = line.indexOf(' ');
+            if (separator < 0) {
+              return; // incomplete line, e.g. after a crash
+            }
+            long expiry = Long.parseLong(line.substring(0, separator));
+            if (expiry > now) {
+              String k = URLDecoder.decode(line.substring(separator + 1), UTF_8);
+              expiries.remove(k);
+              expiries.put(k, expiry);
+            }
+          });
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read idempotency store " + store, e);
+    }
+  }
+
+  private void append(String k, long expiry) {
+    try {
+      writer.write(expiry + " " + URLEncoder.encode(k, UTF_8));
+      writer.newLine();
+      writer.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write idempotency store " + store, e);
+    }
+    if (++appended >= size) {
+      compact();
+    }
+  }
+
+  /** Rewrites the store with the keys still remembered only. */
+  private void compact() {
+    try {
+      close();
+      Path compacted = store.resolveSibling(store.getFileName() + ".tmp");
+      try (BufferedWriter out = Files.newBufferedWriter(compacted, UTF_8)) {
+        for (var entry : expiries.entrySet()) {
+          out.write(entry.getValue() + " " + URLEncoder.encode(entry.getKey(), UTF_8));
+          out.newLine();
+        }
+      }
+      Files.move(compacted, store, StandardCopyOption.REPLACE_EXISTING);
+      writer =
+          Files.newBufferedWriter(
+              store, UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      appended = 0;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not compact idempotency store " + store, e);
+    }
+  }
+
+  /**
+   * @return the number of keys remembered, including expired keys not removed yet.
+   */
+  public synchronized int size() {
+    return expiries.size();
+  }
+
+  /**
+   * @return the share of messages that have been duplicates.
+   */
+  public double hitRatio() {
+    long h = hits.sum();
+    long total = h + misses.sum();
+    return total == 0 ? 0.0 : (double) h / total;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("flusswerk.idempotency.lookups", hits, LongAdder::sum)
+        .description("Received messages checked for duplicates")
+        .tag("result", "hit")
+        .register(registry);
+    FunctionCounter.builder("flusswerk.idempotency.lookups", misses, LongAdder::sum)
+        .description("Received messages checked for duplicates")
+        .tag("result", "miss")
+        .register(registry);
+    Gauge.builder("flusswerk.idempotency.hit.ratio", this, IdempotencyCache::hitRatio)
+        .description("Share of received messages that have been duplicates")
+        .register(registry);
+    Gauge.builder("flusswerk.idempotency.keys", this, IdempotencyCache::size)
+        .description("Keys of processed messages remembered to detect duplicates")
+        .register(registry);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (writer != null) {
+      writer.close();
+      writer = null;
+    }
+  }
+}
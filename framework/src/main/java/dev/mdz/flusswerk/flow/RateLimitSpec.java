@@ -0,0 +1,19 @@
+package dev.mdz.flusswerk.flow;
+
+/**
+ * Recipe for limiting how many messages a flow sends.
+ *
+ * @param rate The number of messages per second, across all topics
+ * @param burst The number of messages that can be sent at once
+ */
+public record RateLimitSpec(double rate, int burst) {
+
+  public RateLimitSpec {
+    if (!(rate > 0)) {
+      throw new IllegalArgumentException("Rate limit must be positive, but is " + rate);
+    }
+    if (burst < 1) {
+      throw new IllegalArgumentException("Rate limit burst must be at least 1, but is " + burst);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package dev.mdz.flusswerk.flow.builder;
+
+import static java.util.Collections.emptyList;
+
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.model.Message;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Add asynchronous stages to the new flow. Every stage receives the result of the previous one as
+ * soon as it is available, the first stage receives the message.
+ *
+ * @param <M> The message class
+ * @param <T> The result of the stages so far
+ */
+public class AsyncStep<M extends Message, T> {
+
+  private final Model<M, M, M> model;
+  private final Function<M, CompletionStage<T>> stages;
+
+  AsyncStep(Model<M, M, M> model, Function<M, CompletionStage<T>> stages) {
+    this.model = model;
+    this.stages = stages;
+  }
+
+  /**
+   * Adds a stage, e.g. reading or transforming data, that receives the result of the previous stage
+   * and completes with a new result.
+   *
+   * @param stage the stage to add
+   * @param <U> Generic type for the result of the stage
+   * @return this builder step to add more stages or the writer
+   */
+  public <U> AsyncStep<M, U> stage(Function<T, CompletionStage<U>> stage) {
+    return new AsyncStep<>(model, stages.andThen(previous -> previous.thenCompose(stage)));
+  }
+
+  /**
+   * Sets a writer that receives the result of the last stage and completes with a {@link
+   * Collection} of {@link Message} for Flusswerk to send, then moves you to the next builder step.
+   *
+   * @param w the writer to set
+   * @return the next step (setting configuration or build the flow)
+   */
+  public ConfigurationStep<M, M, M> writerSendingMessages(
+      Function<T, CompletionStage<Collection<Message>>> w) {
+    Function<M, CompletionStage<Collection<Message>>> async =
+        stages.andThen(previous -> previous.thenCompose(w));
+    model.setAsync(async);
+    // Processing without a worker that supports asynchronous flows blocks until completion
+    model.setReader(m -> m);
+    model.setTransformer(m -> m);
+    model.setWriter(m -> join(async.apply(m)));
+    return new ConfigurationStep<>(model);
+  }
+
+  /**
+   * Sets a writer that receives the result of the last stage and completes with a {@link Message}
+   * for Flusswerk to send, then moves you to the next builder step.
+   *
+   * @param w the writer to set
+   * @return the next step (setting configuration or build the flow)
+   */
+  public ConfigurationStep<M, M, M> writerSendingMessage(Function<T, CompletionStage<Message>> w) {
+    return writerSendingMessages(
+        w.andThen(stage -> stage.thenApply(m -> (m == null) ? emptyList() : List.of(m))));
+  }
+
+  /**
+   * Sets a writer that receives the result of the last stage and does not complete with any {@link
+   * Message} for Flusswerk to send, then moves you to the next builder step.
+   *
+   * @param w the writer to set
+   * @return the next step (setting configuration or build the flow)
+   */
+  public ConfigurationStep<M, M, M> writerSendingNothing(Function<T, CompletionStage<?>> w) {
+    return writerSendingMessages(w.andThen(stage -> stage.thenApply(ignored -> emptyList())));
+  }
+
+  private static Collection<Message> join(CompletionStage<Collection<Message>> stage) {
+    try {
+      return stage.toCompletableFuture().join();
+    } catch (CompletionException e) {
+      throw Flow.causeOf(e);
+    }
+  }
+}
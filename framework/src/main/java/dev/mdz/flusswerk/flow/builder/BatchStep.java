@@ -0,0 +1,79 @@
+package dev.mdz.flusswerk.flow.builder;
+
+import dev.mdz.flusswerk.exceptions.SkipProcessingException;
+import dev.mdz.flusswerk.flow.BatchResult;
+import dev.mdz.flusswerk.flow.BatchSpec;
+import dev.mdz.flusswerk.model.Message;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Set a new batch processor that takes a {@link List} of messages and returns a {@link
+ * BatchResult}.
+ *
+ * @param <M> The message class
+ */
+public class BatchStep<M extends Message> {
+
+  private final Model<M, M, M> model;
+  private final int size;
+  private final Duration maxWait;
+
+  BatchStep(Model<M, M, M> model, int size, Duration maxWait) {
+    this.model = model;
+    this.size = size;
+    this.maxWait = maxWait;
+  }
+
+  /**
+   * Set a batch processor that receives a list of messages of type <code>M</code> and returns the
+   * outcome for each of them, then moves you to the next builder step.
+   *
+   * @param p the batch processor to set
+   * @return the next builder step
+   */
+  @SuppressWarnings("unchecked")
+  public ConfigurationStep<M, M, M> process(Function<List<M>, BatchResult> p) {
+    var processor = (Function<List<Message>, BatchResult>) (Function<?, ?>) p;
+    model.setBatch(new BatchSpec(size, maxWait, processor));
+    // Processing a single message is a batch of one
+    model.setReader(m -> m);
+    model.setTransformer(m -> m);
+    model.setWriter(m -> processSingle(processor, m));
+    return new ConfigurationStep<>(model);
+  }
+
+  /**
+   * Set a batch processor that receives a list of messages of type <code>M</code> and does not
+   * return any {@link Message} for Flusswerk to send, then moves you to the next builder step.
+   *
+   * @param consumer the batch processor to set
+   * @return the next builder step
+   */
+  public ConfigurationStep<M, M, M> consume(Consumer<List<M>> consumer) {
+    return process(
+        messages -> {
+          consumer.accept(messages);
+          return new BatchResult();
+        });
+  }
+
+  private static Collection<Message> processSingle(
+      Function<List<Message>, BatchResult> processor, Message message) {
+    BatchResult result = processor.apply(List.of(message));
+    if (result == null) {
+      return List.of();
+    }
+    var outcome = result.getOutcome(message);
+    if (outcome.isPresent()) {
+      if (outcome.get() instanceof SkipProcessingException skip) {
+        throw skip.send(result.getMessagesToSend());
+      }
+      throw outcome.get();
+    }
+    return result.getMessagesToSend();
+  }
+}
@@ -1,9 +1,13 @@
 package dev.mdz.flusswerk.flow.builder;
 
 import dev.mdz.flusswerk.flow.FlowInfo;
+import dev.mdz.flusswerk.flow.FlowOptions;
 import dev.mdz.flusswerk.flow.FlowSpec;
+import dev.mdz.flusswerk.flow.RateLimitSpec;
 import dev.mdz.flusswerk.model.Message;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -46,6 +50,60 @@ public class ConfigurationStep<M extends Message, R, W> {
     return this;
   }
 
+  /**
+   * Sets the time budget for processing a message. If processing takes longer, the message is
+   * retried and the worker is interrupted, see {@link
+   * dev.mdz.flusswerk.exceptions.ProcessingTimeoutException}. A timeout for the incoming queue
+   * ({@code flusswerk.routing.timeouts}) takes precedence.
+   *
+   * @param timeout the time budget per message, or per batch for batch flows
+   * @return the next step (setting configuration or build the flow)
+   */
+  public ConfigurationStep<M, R, W> timeout(Duration timeout) {
+    model.setTimeout(timeout);
+    return this;
+  }
+
+  /**
+   * Skips messages that have already been processed successfully, recognized by the given key. The
+   * cache of processed keys is configured with {@code flusswerk.processing.idempotency}.
+   *
+   * @param key the key of a message, e.g. the id of the object to process; messages without key are
+   *     always processed
+   * @return the next step (setting configuration or build the flow)
+   */
+  public ConfigurationStep<M, R, W> idempotencyKey(Function<M, ?> key) {
+    model.setIdempotencyKey(key);
+    return this;
+  }
+
+  /**
+   * Replaces received messages still waiting for a worker by newer messages with the same key, so
+   * only the latest message per key is processed. The window is configured with {@code
+   * flusswerk.processing.compaction}.
+   *
+   * @param key the key of a message, e.g. the id of the object to update; messages without key are
+   *     never replaced
+   * @return the next step (setting configuration or build the flow)
+   */
+  public ConfigurationStep<M, R, W> compactionKey(Function<M, ?> key) {
+    model.setCompactionKey(key);
+    return this;
+  }
+
+  /**
+   * Limits how many messages this flow sends per second, across all topics. Sending blocks the
+   * worker until the message may be sent, so messages are never dropped.
+   *
+   * @param rate the number of messages per second
+   * @param burst the number of messages that can be sent at once
+   * @return the next step (setting configuration or build the flow)
+   */
+  public ConfigurationStep<M, R, W> rateLimit(double rate, int burst) {
+    model.setRateLimit(new RateLimitSpec(rate, burst));
+    return this;
+  }
+
   /**
    * Build the new flow.
    *
@@ -58,6 +116,13 @@ public class ConfigurationStep<M extends Message, R, W> {
         (Function<Object, Object>) model.getTransformer(),
         (Function<Object, Collection<Message>>) model.getWriter(),
         model.getCleanup(),
-        model.getMetrics());
+        model.getMetrics(),
+        new FlowOptions(
+            model.getBatch(),
+            (Function<Message, CompletionStage<Collection<Message>>>) model.getAsync(),
+            model.getTimeout(),
+            (Function<Message, Object>) model.getIdempotencyKey(),
+            (Function<Message, Object>) model.getCompactionKey(),
+            model.getRateLimit()));
   }
 }
@@ -2,6 +2,8 @@ package dev.mdz.flusswerk.flow.builder;
 
 import dev.mdz.flusswerk.flow.Type;
 import dev.mdz.flusswerk.model.Message;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Experimental implementation of a new FlowBuilderApi. This might change in details in Flusswerk 4
@@ -97,4 +99,64 @@ public class FlowBuilder {
   public static <M extends Message> MessageProcessorStep<M> messageProcessor(Type<M> messageType) {
     return new MessageProcessorStep<>(new Model<>());
   }
+
+  /**
+   * Create builder for a special flow that processes up to <code>size</code> messages at once. A
+   * batch is processed as soon as it is full or <code>maxWait</code> has passed since its first
+   * message arrived, whatever happens first.
+   *
+   * @param messageClass The message class to operate on
+   * @param size The maximum number of messages in one batch
+   * @param maxWait How long to wait for more messages to fill a batch
+   * @param <M> The generic type for the message class to operate on
+   * @return a new builder for a new flow
+   */
+  public static <M extends Message> BatchStep<M> batch(
+      Class<M> messageClass, int size, Duration maxWait) {
+    return new BatchStep<>(new Model<>(), size, maxWait);
+  }
+
+  /**
+   * Create builder for a special flow that processes up to <code>size</code> messages at once. A
+   * batch is processed as soon as it is full or <code>maxWait</code> has passed since its first
+   * message arrived, whatever happens first.
+   *
+   * @param messageType The message type to operate on
+   * @param size The maximum number of messages in one batch
+   * @param maxWait How long to wait for more messages to fill a batch
+   * @param <M> The generic type for the message class to operate on
+   * @return a new builder for a new flow
+   */
+  public static <M extends Message> BatchStep<M> batch(
+      Type<M> messageType, int size, Duration maxWait) {
+    return new BatchStep<>(new Model<>(), size, maxWait);
+  }
+
+  /**
+   * Create builder for a new flow whose stages return a {@link
+   * java.util.concurrent.CompletionStage} instead of blocking the worker, e.g. for remote calls.
+   * Workers only start processing the messages, so a few of them can keep many messages in progress
+   * at the same time.
+   *
+   * @param messageClass The message class to operate on
+   * @param <M> The generic type for the message class to operate on
+   * @return a new builder for a new flow
+   */
+  public static <M extends Message> AsyncStep<M, M> async(Class<M> messageClass) {
+    return new AsyncStep<>(new Model<>(), CompletableFuture::completedFuture);
+  }
+
+  /**
+   * Create builder for a new flow whose stages return a {@link
+   * java.util.concurrent.CompletionStage} instead of blocking the worker, e.g. for remote calls.
+   * Workers only start processing the messages, so a few of them can keep many messages in progress
+   * at the same time.
+   *
+   * @param messageType The message type to operate on
+   * @param <M> The generic type for the message class to operate on
+   * @return a new builder for a new flow
+   */
+  public static <M extends Message> AsyncStep<M, M> async(Type<M> messageType) {
+    return new AsyncStep<>(new Model<>(), CompletableFuture::completedFuture);
+  }
 }
@@ -1,8 +1,12 @@
 package dev.mdz.flusswerk.flow.builder;
 
+import dev.mdz.flusswerk.flow.BatchSpec;
 import dev.mdz.flusswerk.flow.FlowInfo;
+import dev.mdz.flusswerk.flow.RateLimitSpec;
 import dev.mdz.flusswerk.model.Message;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -12,6 +16,12 @@ class Model<M extends Message, R, W> {
   private Function<W, Collection<Message>> writer = null;
   private Consumer<FlowInfo> metrics = null;
   private Runnable cleanup = null;
+  private BatchSpec batch = null;
+  private Function<M, CompletionStage<Collection<Message>>> async = null;
+  private Duration timeout = null;
+  private Function<M, ?> idempotencyKey = null;
+  private Function<M, ?> compactionKey = null;
+  private RateLimitSpec rateLimit = null;
 
   public Function<M, R> getReader() {
     return reader;
@@ -52,4 +62,52 @@ class Model<M extends Message, R, W> {
   public void setCleanup(Runnable cleanup) {
     this.cleanup = cleanup;
   }
+
+  public BatchSpec getBatch() {
+    return batch;
+  }
+
+  public void setBatch(BatchSpec batch) {
+    this.batch = batch;
+  }
+
+  public Function<M, CompletionStage<Collection<Message>>> getAsync() {
+    return async;
+  }
+
+  public void setAsync(Function<M, CompletionStage<Collection<Message>>> async) {
+    this.async = async;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+  }
+
+  public Function<M, ?> getIdempotencyKey() {
+    return idempotencyKey;
+  }
+
+  public void setIdempotencyKey(Function<M, ?> idempotencyKey) {
+    this.idempotencyKey = idempotencyKey;
+  }
+
+  public Function<M, ?> getCompactionKey() {
+    return compactionKey;
+  }
+
+  public void setCompactionKey(Function<M, ?> compactionKey) {
+    this.compactionKey = compactionKey;
+  }
+
+  public RateLimitSpec getRateLimit() {
+    return rateLimit;
+  }
+
+  public void setRateLimit(RateLimitSpec rateLimit) {
+    this.rateLimit = rateLimit;
+  }
 }
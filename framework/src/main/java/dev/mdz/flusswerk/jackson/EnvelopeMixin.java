@@ -9,6 +9,12 @@ public interface EnvelopeMixin {
   @JsonIgnore
   String getBody();
 
+  @JsonIgnore
+  byte[] getRawBody();
+
   @JsonIgnore
   long getDeliveryTag();
+
+  @JsonIgnore
+  int getChannel();
 }
@@ -1,17 +1,45 @@
 package dev.mdz.flusswerk.jackson;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 import dev.mdz.flusswerk.model.Envelope;
 import dev.mdz.flusswerk.model.IncomingMessageType;
 import dev.mdz.flusswerk.model.Message;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * An {@link ObjectMapper} for Flusswerk messages, which caches the {@link ObjectReader} for the
+ * incoming message type and the {@link ObjectWriter} for every outgoing message type. They are
+ * created with the first message, so modules and other configuration added after the constructor
+ * apply as long as they are added before the first message is (de-)serialized. Like for every
+ * {@link ObjectMapper}, later changes might be ignored for types that have been (de-)serialized
+ * already.
+ *
+ * <p>Serialization writes into a small pool of reusable buffers, so a message does not need a new
+ * buffer no matter which thread sends it. With more threads serializing at the same time than there
+ * are buffers in the pool, the additional threads use a new buffer. The serialized bytes are always
+ * copied out of the buffer, since they are handed to RabbitMQ while the buffer is reused.
+ */
 public class FlusswerkObjectMapper extends ObjectMapper {
 
+  // Enough for the threads sending at the same time, unused buffers are kept
+  private static final int BUFFERS = 16;
+
   private final Class<? extends Message> messageClass;
+  private volatile ObjectReader messageReader; // created with the first message
+  private final Map<Class<?>, ObjectWriter> messageWriters = new ConcurrentHashMap<>();
+  private final BlockingQueue<ByteArrayBuilder> buffers = new ArrayBlockingQueue<>(BUFFERS);
 
   public FlusswerkObjectMapper(IncomingMessageType incomingMessageType) {
     messageClass = incomingMessageType.getMessageClass();
@@ -26,8 +54,67 @@ public class FlusswerkObjectMapper extends ObjectMapper {
     registerModule(new Jdk8Module());
   }
 
+  private ObjectReader messageReader() {
+    ObjectReader reader = messageReader;
+    if (reader == null) {
+      // ObjectReaders are immutable and cache the deserializer for the message class. Creating it
+      // in the constructor would cache the deserializer before any modules are registered.
+      reader = readerFor(messageClass);
+      messageReader = reader;
+    }
+    return reader;
+  }
+
   public Message deserialize(String json) throws JsonProcessingException {
-    return readValue(json, messageClass);
+    return messageReader().readValue(json);
+  }
+
+  /**
+   * Deserializes a message directly from the UTF-8 encoded bytes received from RabbitMQ, without
+   * creating an intermediate String.
+   *
+   * @param json the UTF-8 encoded JSON
+   * @return the deserialized message
+   * @throws JsonProcessingException if the message is no valid JSON or does not match the message
+   *     type
+   */
+  public Message deserialize(byte[] json) throws JsonProcessingException {
+    try {
+      return messageReader().readValue(json);
+    } catch (JsonProcessingException e) {
+      throw e;
+    } catch (IOException e) {
+      // Reading from memory does not do any I/O
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Serializes a message to UTF-8 encoded JSON. The {@link ObjectWriter} for every message type is
+   * only created once and the output buffers are reused (see {@link FlusswerkObjectMapper}).
+   *
+   * @param message the message to serialize
+   * @return the UTF-8 encoded JSON
+   * @throws JsonProcessingException if the message cannot be serialized
+   */
+  public byte[] serialize(Message message) throws JsonProcessingException {
+    ObjectWriter writer = messageWriters.computeIfAbsent(message.getClass(), this::writerFor);
+    ByteArrayBuilder buffer = buffers.poll();
+    if (buffer == null) {
+      buffer = new ByteArrayBuilder();
+    }
+    try {
+      writer.writeValue(buffer, message);
+      return buffer.toByteArray();
+    } catch (JsonProcessingException e) {
+      throw e;
+    } catch (IOException e) {
+      // Writing to memory does not do any I/O
+      throw new UncheckedIOException(e);
+    } finally {
+      buffer.reset();
+      buffers.offer(buffer); // dropped if the pool is full
+    }
   }
 
   /**
@@ -1,5 +1,6 @@
 package dev.mdz.flusswerk.model;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 
 /** Technical metadata all implementations of {@link Message} must have. */
@@ -7,8 +8,12 @@ public class Envelope {
 
   private String body;
 
+  private byte[] rawBody;
+
   private long deliveryTag;
 
+  private int channel;
+
   private int retries;
 
   private Instant created;
@@ -27,6 +32,10 @@ public class Envelope {
    * @return The original String representation of the {@link Message} as received from RabbitMQ.
    */
   public String getBody() {
+    // decode lazily, most messages never need their original String representation
+    if (body == null && rawBody != null) {
+      body = new String(rawBody, StandardCharsets.UTF_8);
+    }
     return body;
   }
 
@@ -38,6 +47,31 @@ public class Envelope {
    */
   public void setBody(String body) {
     this.body = body;
+    this.rawBody = null;
+  }
+
+  /**
+   * The original UTF-8 encoded representation before serializing into an {@link Message} instance.
+   * This field will not be serialized when the message is sent.
+   *
+   * @return The original bytes of the {@link Message} as received from RabbitMQ.
+   */
+  public byte[] getRawBody() {
+    if (rawBody == null && body != null) {
+      return body.getBytes(StandardCharsets.UTF_8);
+    }
+    return rawBody;
+  }
+
+  /**
+   * The original UTF-8 encoded representation before serializing into an {@link Message} instance.
+   * The String representation returned by {@link #getBody()} is only decoded when needed.
+   *
+   * @param rawBody The original bytes as received from RabbitMQ.
+   */
+  public void setRawBody(byte[] rawBody) {
+    this.rawBody = rawBody;
+    this.body = null;
   }
 
   /**
@@ -58,6 +92,25 @@ public class Envelope {
     this.deliveryTag = deliveryTag;
   }
 
+  /**
+   * The number of the channel in the channel pool this message has been received from. Delivery
+   * tags are only valid on this channel, so acknowledgements have to be sent there.
+   *
+   * @return The number of the channel the message has been received from.
+   */
+  public int getChannel() {
+    return channel;
+  }
+
+  /**
+   * The number of the channel in the channel pool this message has been received from.
+   *
+   * @param channel The number of the channel the message has been received from.
+   */
+  public void setChannel(int channel) {
+    this.channel = channel;
+  }
+
   /**
    * Gets the number of retries before a message is sent to the failed queue.
    *
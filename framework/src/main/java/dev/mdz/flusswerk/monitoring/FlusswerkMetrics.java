@@ -6,9 +6,13 @@ import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import java.util.EnumMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class FlusswerkMetrics implements FlowMetrics {
@@ -20,8 +24,12 @@ public class FlusswerkMetrics implements FlowMetrics {
   protected final Map<Status, Counter> messagesTotal;
   protected final Map<Status, Counter> messagesSeconds;
 
+  private final MeterRegistry registry;
+  private final Map<String, Timer> waitingTimes = new ConcurrentHashMap<>();
+
   public FlusswerkMetrics(ProcessingProperties properties, MeterRegistry registry) {
-    this.totalWorkers = properties.threads();
+    this.totalWorkers = properties.workers();
+    this.registry = registry;
 
     Gauge.builder("flusswerk.workers", activeWorkers, AtomicInteger::get)
         .description("Number of worker threads in the system")
@@ -61,6 +69,25 @@ public class FlusswerkMetrics implements FlowMetrics {
     activeWorkers.decrementAndGet();
   }
 
+  /**
+   * Records how long a received message waited in the task queue for a worker.
+   *
+   * @param queue the incoming queue the message has been received from
+   * @param nanos the waiting time in nanoseconds
+   */
+  public void recordWaitingTime(String queue, long nanos) {
+    String queueTag = Objects.requireNonNullElse(queue, "unknown");
+    waitingTimes
+        .computeIfAbsent(
+            queueTag,
+            q ->
+                Timer.builder("flusswerk.tasks.waiting")
+                    .tag("queue", q)
+                    .description("Time received messages wait for a worker")
+                    .register(registry))
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
   @Override
   public void accept(FlowInfo flowInfo) {
     Status status = flowInfo.getStatus();
@@ -4,5 +4,6 @@ public enum Status {
   SUCCESS,
   ERROR_RETRY,
   ERROR_STOP,
-  SKIP
+  SKIP,
+  TIMEOUT
 }
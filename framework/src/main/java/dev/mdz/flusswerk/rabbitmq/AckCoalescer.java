@@ -0,0 +1,162 @@
+package dev.mdz.flusswerk.rabbitmq;
+
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.GetResponse;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces the acknowledgements of one channel into as few {@code basicAck(tag, multiple=true)}
+ * calls as possible.
+ *
+ * <p>Every delivery tag is tracked from delivery until it is settled. Acknowledged tags below the
+ * lowest tag that is still outstanding (the watermark) can safely be acknowledged at once, even if
+ * the workers finished them out of order. Acknowledged tags above the watermark are sent
+ * individually. Pending acks are flushed when the size threshold is hit or by a periodic flush.
+ *
+ * <p>Messages fetched with {@code basicGet} are tracked while holding the same lock as flushing, so
+ * no multiple-ack can cover a fetched message before it is tracked. They share the delivery tags
+ * with the messages delivered to consumers, which are tracked later by the consumer's dispatch
+ * thread. A fetched message therefore never is the highest tag of a multiple-ack, which might cover
+ * a consumer's message with a lower tag that is not tracked yet.
+ */
+class AckCoalescer {
+
+  private static final Logger log = LoggerFactory.getLogger(AckCoalescer.class);
+
+  private final Channel channel;
+  private final int maxPending;
+  private final NavigableSet<Long> outstanding = new TreeSet<>();
+  private final NavigableSet<Long> pending = new TreeSet<>();
+  private final Set<Long> fetched = new HashSet<>(); // by basicGet, outstanding or pending
+
+  /**
+   * @param channel the channel the messages have been delivered on
+   * @param maxPending the number of pending acks that triggers a flush
+   */
+  AckCoalescer(Channel channel, int maxPending) {
+    this.channel = channel;
+    this.maxPending = maxPending;
+  }
+
+  /**
+   * Tracks a delivered message. Must be called in delivery order before the message is handed over
+   * for processing.
+   */
+  synchronized void delivered(long deliveryTag) {
+    outstanding.add(deliveryTag);
+  }
+
+  /**
+   * Fetches a single message and tracks it before any acks can be flushed.
+   *
+   * @param basicGet fetches the message from RabbitMQ
+   * @return the fetched message or null if there was none.
+   */
+  synchronized GetResponse fetch(Supplier<GetResponse> basicGet) {
+    GetResponse response = basicGet.get();
+    if (response != null) {
+      long deliveryTag = response.getEnvelope().getDeliveryTag();
+      outstanding.add(deliveryTag);
+      fetched.add(deliveryTag);
+    }
+    return response;
+  }
+
+  /** Records the acknowledgement of a message and flushes if the size threshold is hit. */
+  synchronized void ack(long deliveryTag) {
+    outstanding.remove(deliveryTag);
+    pending.add(deliveryTag);
+    if (pending.size() >= maxPending) {
+      flush();
+    }
+  }
+
+  /**
+   * Records the acknowledgement of several messages and flushes right away, so messages below the
+   * watermark are acknowledged with one multiple-ack.
+   */
+  synchronized void ackAll(Collection<Long> deliveryTags) {
+    outstanding.removeAll(deliveryTags);
+    pending.addAll(deliveryTags);
+    flush();
+  }
+
+  /**
+   * Records that messages have been settled otherwise, e.g. rejected or nacked.
+   *
+   * @param deliveryTag the delivery tag of the message
+   * @param multiple whether all messages up to and including the delivery tag have been settled
+   */
+  synchronized void settled(long deliveryTag, boolean multiple) {
+    if (multiple) {
+      outstanding.headSet(deliveryTag, true).clear();
+      fetched.removeIf(tag -> tag <= deliveryTag && !pending.contains(tag));
+    } else {
+      outstanding.remove(deliveryTag);
+      fetched.remove(deliveryTag);
+    }
+  }
+
+  /**
+   * Sends all pending acks: acks below the watermark with one multiple-ack, the others
+   * individually.
+   */
+  synchronized void flush() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    NavigableSet<Long> contiguous = pending.headSet(watermark(), false);
+    Long highest =
+        contiguous.descendingSet().stream()
+            .filter(tag -> !fetched.contains(tag))
+            .findFirst()
+            .orElse(null);
+    if (highest != null) {
+      // Every tag below the watermark has been settled, so one multiple-ack covers exactly the
+      // pending ones
+      basicAck(highest, true);
+      contiguous.headSet(highest, true).clear();
+    }
+    for (long deliveryTag : pending) {
+      basicAck(deliveryTag, false);
+    }
+    pending.clear();
+    fetched.retainAll(outstanding);
+  }
+
+  /**
+   * Forgets all delivery tags. Delivery tags start again after a channel has been recovered and
+   * RabbitMQ redelivers all unacknowledged messages.
+   */
+  synchronized void reset() {
+    outstanding.clear();
+    pending.clear();
+    fetched.clear();
+  }
+
+  synchronized int pendingCount() {
+    return pending.size();
+  }
+
+  private long watermark() {
+    return outstanding.isEmpty() ? Long.MAX_VALUE : outstanding.first();
+  }
+
+  private void basicAck(long deliveryTag, boolean multiple) {
+    // No retries here: RabbitMQ redelivers the messages anyway after the channel has been recovered
+    try {
+      channel.basicAck(deliveryTag, multiple);
+    } catch (IOException | AlreadyClosedException e) {
+      log.warn("Could not acknowledge message {}: {}", deliveryTag, e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package dev.mdz.flusswerk.rabbitmq;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How long to wait before retrying a message, depending on how often it has been retried. Every
+ * delay is a tier with its own retry queue that has the delay as TTL, so the first retry waits in
+ * the first tier, the second retry in the second tier and so on. Retries beyond the last tier wait
+ * as long as the last tier.
+ *
+ * <p>With jitter, every message waits up to {@code jitter} times its delay less, so messages that
+ * failed at the same time do not all come back at the same time. Jitter only shortens the delay,
+ * because RabbitMQ expires messages only at the head of a queue: a message that should wait longer
+ * than the TTL of its tier would block all messages behind it. For the same reason, a message
+ * leaves its retry queue only once all messages ahead of it have left, even if its own delay is
+ * shorter. Jitter therefore spreads a burst of failed messages less than the jitter suggests: every
+ * message waits at least as long as the messages that failed before it in the same tier.
+ *
+ * @param delays the delays per tier, at least one
+ * @param jitter the share of a delay a message may wait less, between 0 (none) and 1
+ */
+public record Backoff(List<Duration> delays, double jitter) {
+
+  public Backoff {
+    delays = List.copyOf(requireNonNull(delays));
+    if (delays.isEmpty()) {
+      throw new IllegalArgumentException("Backoff needs at least one delay");
+    }
+    for (Duration delay : delays) {
+      if (delay.isNegative()) {
+        throw new IllegalArgumentException(
+            "Backoff delays must not be negative, but are " + delays);
+      }
+    }
+    if (!(jitter >= 0 && jitter <= 1)) {
+      throw new IllegalArgumentException(
+          "Backoff jitter must be between 0 and 1, but is " + jitter);
+    }
+  }
+
+  /**
+   * @param delay the delay for all retries
+   * @return a backoff with the same delay for every retry, using a single retry queue.
+   */
+  public static Backoff fixed(Duration delay) {
+    return new Backoff(List.of(delay), 0);
+  }
+
+  /**
+   * @param delays the delays for the first, second, ... retry
+   * @return a backoff with a custom delay for every retry.
+   */
+  public static Backoff of(Duration... delays) {
+    return new Backoff(List.of(delays), 0);
+  }
+
+  /**
+   * Creates a backoff that multiplies the delay after every retry until it reaches the maximum.
+   * Delays that would be longer than the maximum share the last tier.
+   *
+   * @param initial the delay of the first retry
+   * @param multiplier the factor between the delays of two consecutive retries, at least 1
+   * @param max the longest delay, null for no limit
+   * @param retries the number of retries, which limits the number of tiers
+   * @return a backoff with exponentially growing delays.
+   */
+  public static Backoff exponential(
+      Duration initial, double multiplier, Duration max, int retries) {
+    if (!(multiplier >= 1)) {
+      throw new IllegalArgumentException(
+          "Backoff multiplier must be at least 1, but is " + multiplier);
+    }
+    long limit = max == null ? Long.MAX_VALUE : max.toMillis();
+    List<Duration> delays = new ArrayList<>();
+    double delay = initial.toMillis();
+    for (int i = 0; i < Math.max(retries, 1); i++) {
+      long millis = (long) Math.min(delay, limit);
+      if (!delays.isEmpty() && delays.get(delays.size() - 1).toMillis() == millis) {
+        break; // no need for more tiers with the same delay
+      }
+      delays.add(Duration.ofMillis(millis));
+      delay *= multiplier;
+    }
+    return new Backoff(delays, 0);
+  }
+
+  /**
+   * @param jitter the share of a delay a message may wait less, between 0 (none) and 1
+   * @return the same delays with jitter.
+   */
+  public Backoff withJitter(double jitter) {
+    return new Backoff(delays, jitter);
+  }
+
+  /**
+   * @param retries how often the message has been retried, including the upcoming retry
+   * @return the index of the tier the message waits in.
+   */
+  public int tier(int retries) {
+    return Math.max(0, Math.min(retries, delays.size()) - 1);
+  }
+
+  /**
+   * @param retries how often the message has been retried, including the upcoming retry
+   * @return how long the message waits before it is retried, without jitter.
+   */
+  public Duration delay(int retries) {
+    return delays.get(tier(retries));
+  }
+
+  /**
+   * @param retries how often the message has been retried, including the upcoming retry
+   * @param random a random number between 0 and 1
+   * @return how long the message waits before it is retried, with jitter applied.
+   */
+  public Duration delay(int retries, double random) {
+    Duration delay = delay(retries);
+    if (jitter == 0) {
+      return delay;
+    }
+    return Duration.ofMillis(Math.round(delay.toMillis() * (1 - jitter * random)));
+  }
+
+  /**
+   * @return the number of tiers, which is the number of retry queues.
+   */
+  public int tiers() {
+    return delays.size();
+  }
+}
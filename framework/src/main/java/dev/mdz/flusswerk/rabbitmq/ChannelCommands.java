@@ -5,6 +5,9 @@ import java.util.Map;
 
 public class ChannelCommands {
 
+  /** The prefetch count of every channel, which applies to consumers without their own. */
+  static final int DEFAULT_PREFETCH = 1;
+
   private final Channel channel;
 
   public ChannelCommands(Channel channel) {
@@ -37,10 +40,40 @@ public class ChannelCommands {
     return () -> channel.basicGet(queue, autoAck);
   }
 
-  public ChannelCommand<Void> basicConsume(String queue, boolean autoAck, Consumer consumer) {
+  public ChannelCommand<String> basicConsume(String queue, boolean autoAck, Consumer consumer) {
+    return () -> channel.basicConsume(queue, autoAck, consumer);
+  }
+
+  /**
+   * Registers a consumer with its own prefetch count. The prefetch count applies to all consumers
+   * that are registered on a channel afterwards, so setting it and registering the consumer must
+   * not be interleaved by other threads. Afterwards the channel's default prefetch count is set
+   * again, which is the one the automatic recovery applies to all consumers of the channel.
+   */
+  public ChannelCommand<String> basicConsume(
+      String queue, boolean autoAck, int prefetch, Consumer consumer) {
+    return basicConsume(queue, autoAck, prefetch, "", consumer);
+  }
+
+  /**
+   * Registers a consumer with its own prefetch count and a given consumer tag, e.g. to register it
+   * again after recovery (see {@link #basicConsume(String, boolean, int, Consumer)}).
+   *
+   * @param consumerTag the consumer tag or an empty string to let RabbitMQ generate one
+   */
+  public ChannelCommand<String> basicConsume(
+      String queue, boolean autoAck, int prefetch, String consumerTag, Consumer consumer) {
     return () -> {
-      channel.basicConsume(queue, autoAck, consumer);
-      return null;
+      synchronized (channel) {
+        channel.basicQos(prefetch);
+        try {
+          return consumerTag.isEmpty()
+              ? channel.basicConsume(queue, autoAck, consumer)
+              : channel.basicConsume(queue, autoAck, consumerTag, consumer);
+        } finally {
+          channel.basicQos(DEFAULT_PREFETCH);
+        }
+      }
     };
   }
 
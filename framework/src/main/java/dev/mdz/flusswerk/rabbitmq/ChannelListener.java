@@ -3,4 +3,14 @@ package dev.mdz.flusswerk.rabbitmq;
 /** A ChannelListener receives notifications about channel recovery. */
 public interface ChannelListener {
   void handleReset();
+
+  /**
+   * Notification that a single channel of the channel pool has been reset. Listeners that only care
+   * about some channels can override this, the default is to handle it like any reset.
+   *
+   * @param channel the number of the channel in the channel pool
+   */
+  default void handleReset(int channel) {
+    handleReset();
+  }
 }
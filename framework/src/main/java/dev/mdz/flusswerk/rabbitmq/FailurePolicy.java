@@ -3,6 +3,8 @@ package dev.mdz.flusswerk.rabbitmq;
 import static java.util.Objects.requireNonNullElse;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 public class FailurePolicy {
 
@@ -10,7 +12,7 @@ public class FailurePolicy {
 
   private final int retries;
 
-  private final Duration backoff;
+  private final Backoff backoff;
 
   private final String failedRoutingKey;
 
@@ -21,7 +23,7 @@ public class FailurePolicy {
   }
 
   public FailurePolicy(String inputQueue, int retries) {
-    this(inputQueue, null, null, retries, null);
+    this(inputQueue, null, null, retries, (Backoff) null);
   }
 
   public FailurePolicy(
@@ -30,11 +32,33 @@ public class FailurePolicy {
       String failedRoutingKey,
       Integer retries,
       Duration backoff) {
+    this(
+        inputQueue,
+        retryRoutingKey,
+        failedRoutingKey,
+        retries,
+        backoff == null ? null : Backoff.fixed(backoff));
+  }
+
+  /**
+   * @param inputQueue the queue this policy applies to
+   * @param retryRoutingKey the retry queue of the first tier (default: {@code <inputQueue>.retry})
+   * @param failedRoutingKey where to send messages that failed (default: {@code
+   *     <inputQueue>.failed})
+   * @param retries how many times to retry a message (default: 5)
+   * @param backoff how long to wait before retrying a message (default: 30 seconds)
+   */
+  public FailurePolicy(
+      String inputQueue,
+      String retryRoutingKey,
+      String failedRoutingKey,
+      Integer retries,
+      Backoff backoff) {
     this.inputQueue = inputQueue;
     this.retryRoutingKey = requireNonNullElse(retryRoutingKey, inputQueue + ".retry");
     this.failedRoutingKey = requireNonNullElse(failedRoutingKey, inputQueue + ".failed");
     this.retries = requireNonNullElse(retries, 5);
-    this.backoff = requireNonNullElse(backoff, Duration.ofSeconds(30));
+    this.backoff = requireNonNullElse(backoff, Backoff.fixed(Duration.ofSeconds(30)));
   }
 
   public String getInputQueue() {
@@ -53,7 +77,33 @@ public class FailurePolicy {
     return retryRoutingKey;
   }
 
+  /**
+   * @return how long to wait before the first retry.
+   */
   public Duration getBackoff() {
+    return backoff.delays().get(0);
+  }
+
+  /**
+   * @return how long to wait before retrying a message, per retry.
+   */
+  public Backoff getBackoffs() {
     return backoff;
   }
+
+  /**
+   * Returns the retry queues, one per tier of the backoff. The first tier is the retry queue that
+   * has always been used, so a fixed backoff keeps the existing topology. Further tiers are named
+   * {@code <retryRoutingKey>.2}, {@code <retryRoutingKey>.3} and so on.
+   *
+   * @return the names of the retry queues, ordered by tier.
+   */
+  public List<String> getRetryQueues() {
+    List<String> queues = new ArrayList<>();
+    queues.add(retryRoutingKey);
+    for (int tier = 1; tier < backoff.tiers(); tier++) {
+      queues.add(retryRoutingKey + "." + (tier + 1));
+    }
+    return queues;
+  }
 }
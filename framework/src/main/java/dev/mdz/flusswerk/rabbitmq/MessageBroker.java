@@ -4,10 +4,13 @@ import dev.mdz.flusswerk.config.properties.RoutingProperties;
 import dev.mdz.flusswerk.exceptions.InvalidMessageException;
 import dev.mdz.flusswerk.model.Envelope;
 import dev.mdz.flusswerk.model.Message;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,18 +24,68 @@ public class MessageBroker {
   private static final Logger LOGGER = LoggerFactory.getLogger(MessageBroker.class);
   private static final String MESSAGE_TTL = "x-message-ttl";
   private static final String DEAD_LETTER_EXCHANGE = "x-dead-letter-exchange";
+  private static final String DEAD_LETTER_ROUTING_KEY = "x-dead-letter-routing-key";
 
   private final RoutingProperties routingConfig;
 
   private final RabbitClient rabbitClient;
 
+  private final RateLimiter flowLimit;
+
+  private final Map<String, RateLimiter> topicLimits = new HashMap<>();
+
+  private final QueueDepths queueDepths;
+
   public MessageBroker(RoutingProperties routing, RabbitClient rabbitClient) {
+    this(routing, rabbitClient, null);
+  }
+
+  /**
+   * @param routing the routing, including the rate limits per topic
+   * @param rabbitClient the client to talk to RabbitMQ
+   * @param flowLimit the rate limit for all messages sent, null for no limit
+   */
+  public MessageBroker(
+      RoutingProperties routing, RabbitClient rabbitClient, RateLimiter flowLimit) {
+    this(routing, rabbitClient, flowLimit, null);
+  }
+
+  /**
+   * @param routing the routing, including the rate limits per topic
+   * @param rabbitClient the client to talk to RabbitMQ
+   * @param flowLimit the rate limit for all messages sent, null for no limit
+   * @param queueDepths the cached depths of all known queues, started as soon as the queues have
+   *     been declared; null to ask RabbitMQ on every call
+   */
+  public MessageBroker(
+      RoutingProperties routing,
+      RabbitClient rabbitClient,
+      RateLimiter flowLimit,
+      QueueDepths queueDepths) {
     this.routingConfig = routing;
     this.rabbitClient = rabbitClient;
+    this.flowLimit = flowLimit;
+    this.queueDepths = queueDepths;
+    routing
+        .getRateLimits()
+        .forEach(
+            (topic, limit) ->
+                topicLimits.put(topic, new RateLimiter(topic, limit.rate(), limit.burst())));
 
     provideExchanges();
     provideInputQueues();
     provideOutputQueues();
+
+    if (queueDepths != null) {
+      for (String queue : routing.getIncoming()) {
+        FailurePolicy failurePolicy = routing.getFailurePolicy(queue);
+        queueDepths.watch(queue);
+        failurePolicy.getRetryQueues().forEach(queueDepths::watch);
+        queueDepths.watch(failurePolicy.getFailedRoutingKey());
+      }
+      routing.allOutgoing().forEach(queueDepths::watch);
+      queueDepths.start();
+    }
   }
 
   /**
@@ -69,6 +122,19 @@ public class MessageBroker {
     }
   }
 
+  /**
+   * Sends messages to all topics of the default route. Every message is serialized only once.
+   *
+   * @param messages the messages to send.
+   */
+  public void sendToDefault(Collection<? extends Message> messages) {
+    List<String> topics = routingConfig.getOutgoing().get("default");
+    if (topics == null || topics.isEmpty()) {
+      throw new RuntimeException("Cannot send message, no default queue specified");
+    }
+    sendToAll(topics, messages);
+  }
+
   /**
    * Sends a message to a certain queue as JSON document.
    *
@@ -77,13 +143,71 @@ public class MessageBroker {
    * @param message the message to send.
    */
   void send(String routingKey, Message message) {
+    throttle(routingKey);
     rabbitClient.send(routingConfig.getExchange(routingKey), routingKey, message);
   }
 
+  /**
+   * Sends a message to several queues. The message is serialized only once and the same bytes are
+   * sent to every queue.
+   *
+   * @param routingKeys the routing keys for the queues to send the message to (usually the queue
+   *     names).
+   * @param message the message to send.
+   */
+  void sendToAll(List<String> routingKeys, Message message) {
+    if (routingKeys.size() == 1) {
+      send(routingKeys.get(0), message);
+      return;
+    }
+    byte[] data = rabbitClient.serialize(message);
+    for (String routingKey : routingKeys) {
+      sendRaw(routingKey, data);
+    }
+  }
+
+  /**
+   * Sends multiple messages to several queues. Every message is serialized only once. The messages
+   * are sent to each queue in the same order as returned by the iterator over <code>messages
+   * </code>.
+   *
+   * @param routingKeys the routing keys for the queues to send the messages to (usually the queue
+   *     names).
+   * @param messages the messages to send.
+   */
+  void sendToAll(List<String> routingKeys, Collection<? extends Message> messages) {
+    for (Message message : messages) {
+      sendToAll(routingKeys, message);
+    }
+  }
+
   void sendRaw(String routingKey, byte[] message) {
+    throttle(routingKey);
     rabbitClient.sendRaw(routingConfig.getExchange(routingKey), routingKey, message);
   }
 
+  /** Blocks until a message may be sent to this topic according to the rate limits. */
+  private void throttle(String routingKey) {
+    if (flowLimit != null) {
+      flowLimit.acquire();
+    }
+    RateLimiter topicLimit = topicLimits.get(routingKey);
+    if (topicLimit != null) {
+      topicLimit.acquire();
+    }
+  }
+
+  /**
+   * @return the rate limits for sending messages, for the flow and per topic.
+   */
+  public List<RateLimiter> getRateLimiters() {
+    List<RateLimiter> rateLimiters = new ArrayList<>(topicLimits.values());
+    if (flowLimit != null) {
+      rateLimiters.add(flowLimit);
+    }
+    return rateLimiters;
+  }
+
   /**
    * Sends multiple messages to a certain queue as JSON documents. The messages are sent in the same
    * order as returned by the iterator over <code>messages</code>.
@@ -153,9 +277,7 @@ public class MessageBroker {
     String failedRoutingKey = failurePolicy.getFailedRoutingKey();
     if (failedRoutingKey != null) {
       rabbitClient.sendRaw(
-          routingConfig.getExchange(failedRoutingKey),
-          failedRoutingKey,
-          envelope.getBody().getBytes());
+          routingConfig.getExchange(failedRoutingKey), failedRoutingKey, envelope.getRawBody());
     }
   }
 
@@ -167,15 +289,7 @@ public class MessageBroker {
       rabbitClient.declareQueue(
           inputQueue, exchange, inputQueue, Map.of(DEAD_LETTER_EXCHANGE, deadLetterExchange));
       if (failurePolicy.getRetryRoutingKey() != null) {
-        rabbitClient.declareQueue(
-            failurePolicy.getRetryRoutingKey(),
-            deadLetterExchange,
-            inputQueue,
-            Map.of(
-                MESSAGE_TTL,
-                failurePolicy.getBackoff().toMillis(),
-                DEAD_LETTER_EXCHANGE,
-                exchange));
+        provideRetryQueues(failurePolicy, exchange, deadLetterExchange);
       }
       if (failurePolicy.getFailedRoutingKey() != null) {
         rabbitClient.declareQueue(
@@ -187,6 +301,39 @@ public class MessageBroker {
     }
   }
 
+  /**
+   * Declares one retry queue per tier of the backoff. The first tier is the retry queue that has
+   * always been used: it also receives the messages dead lettered by RabbitMQ and keeps their
+   * routing key, the name of the input queue. Further tiers are bound with their own name and route
+   * expired messages back to the input queue. Declaring an existing queue with a different TTL
+   * fails, so retry queues have to be deleted when the backoff of a tier changes.
+   */
+  private void provideRetryQueues(
+      FailurePolicy failurePolicy, String exchange, String deadLetterExchange) {
+    String inputQueue = failurePolicy.getInputQueue();
+    List<String> retryQueues = failurePolicy.getRetryQueues();
+    List<Duration> delays = failurePolicy.getBackoffs().delays();
+    rabbitClient.declareQueue(
+        retryQueues.get(0),
+        deadLetterExchange,
+        inputQueue,
+        Map.of(MESSAGE_TTL, delays.get(0).toMillis(), DEAD_LETTER_EXCHANGE, exchange));
+    for (int tier = 1; tier < retryQueues.size(); tier++) {
+      String retryQueue = retryQueues.get(tier);
+      rabbitClient.declareQueue(
+          retryQueue,
+          deadLetterExchange,
+          retryQueue,
+          Map.of(
+              MESSAGE_TTL,
+              delays.get(tier).toMillis(),
+              DEAD_LETTER_EXCHANGE,
+              exchange,
+              DEAD_LETTER_ROUTING_KEY,
+              inputQueue));
+    }
+  }
+
   private void provideOutputQueues() {
     for (String topic : routingConfig.allOutgoing()) {
       rabbitClient.declareQueue(
@@ -206,6 +353,15 @@ public class MessageBroker {
     rabbitClient.ack(message.getEnvelope());
   }
 
+  /**
+   * Acknowledges several messages at once, e.g. a batch, to remove them from their queues.
+   *
+   * @param messages the messages to acknowledge.
+   */
+  public void ack(Collection<? extends Message> messages) {
+    rabbitClient.ack(messages.stream().map(Message::getEnvelope).toList());
+  }
+
   /**
    * Rejects a messaging and takes care of proper dead lettering, retries and, if the message failed
    * too often, routing to the failed queue.
@@ -227,14 +383,15 @@ public class MessageBroker {
   }
 
   void fail(Message message, boolean ackMessage) {
-    if (ackMessage) {
-      ack(message);
-    }
     LOGGER.debug("Send message to failed queue: " + message);
     FailurePolicy failurePolicy = routingConfig.getFailurePolicy(message);
     String failedRoutingKey = failurePolicy.getFailedRoutingKey();
     if (failedRoutingKey != null) {
-      send(failedRoutingKey, message);
+      // Not throttled: failed messages leave the flow instead of going downstream, like retries
+      rabbitClient.send(routingConfig.getExchange(failedRoutingKey), failedRoutingKey, message);
+    }
+    if (ackMessage) {
+      ack(message); // after sending, so the ack waits for publisher confirms
     }
   }
 
@@ -249,7 +406,16 @@ public class MessageBroker {
     if (retryRoutingKey != null) {
       String queue = message.getEnvelope().getSource();
       String exchange = routingConfig.getDeadLetterExchange(queue);
-      rabbitClient.send(exchange, queue, message);
+      Backoff backoff = failurePolicy.getBackoffs();
+      int retries = message.getEnvelope().getRetries();
+      int tier = backoff.tier(retries);
+      String routingKey = tier == 0 ? queue : failurePolicy.getRetryQueues().get(tier);
+      if (backoff.jitter() > 0) {
+        Duration delay = backoff.delay(retries, ThreadLocalRandom.current().nextDouble());
+        rabbitClient.send(exchange, routingKey, message, delay);
+      } else {
+        rabbitClient.send(exchange, routingKey, message);
+      }
     }
   }
 
@@ -262,6 +428,16 @@ public class MessageBroker {
     }
   }
 
+  /**
+   * @return the number of messages in the queue, cached if possible.
+   */
+  private Long messageCount(String queue) {
+    if (queueDepths != null) {
+      return queueDepths.depth(queue);
+    }
+    return rabbitClient.getMessageCount(queue);
+  }
+
   /**
    * Returns the number of messages in known queues
    *
@@ -272,7 +448,7 @@ public class MessageBroker {
   Map<String, Long> getMessageCounts() {
     Map<String, Long> result = new HashMap<>();
     for (String queue : routingConfig.getIncoming()) {
-      result.put(queue, rabbitClient.getMessageCount(queue));
+      result.put(queue, messageCount(queue));
     }
     return result;
   }
@@ -283,7 +459,7 @@ public class MessageBroker {
       FailurePolicy failurePolicy = routingConfig.getFailurePolicy(inputQueue);
       if (failurePolicy != null) {
         String queue = failurePolicy.getFailedRoutingKey();
-        result.put(queue, rabbitClient.getMessageCount(queue));
+        result.put(queue, messageCount(queue));
       }
     }
     return result;
@@ -294,8 +470,9 @@ public class MessageBroker {
     for (String inputQueue : routingConfig.getIncoming()) {
       FailurePolicy failurePolicy = routingConfig.getFailurePolicy(inputQueue);
       if (failurePolicy != null) {
-        String queue = failurePolicy.getRetryRoutingKey();
-        result.put(queue, rabbitClient.getMessageCount(queue));
+        for (String queue : failurePolicy.getRetryQueues()) {
+          result.put(queue, messageCount(queue));
+        }
       }
     }
     return result;
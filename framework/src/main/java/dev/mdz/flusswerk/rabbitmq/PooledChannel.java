@@ -0,0 +1,262 @@
+package dev.mdz.flusswerk.rabbitmq;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.RecoverableChannel;
+import com.rabbitmq.client.RecoveryListener;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One channel of the channel pool in {@link RabbitClient}. Every channel keeps track of its own
+ * availability, so a failing channel only blocks the threads that are currently using it.
+ */
+class PooledChannel {
+
+  private static final Logger log = LoggerFactory.getLogger(PooledChannel.class);
+
+  private final int number;
+  private final Channel channel;
+  private final ChannelCommands commands;
+  private final RabbitConnection connection;
+  private final Runnable onReset;
+  private final PublisherConfirms publisherConfirms;
+  private final AckCoalescer ackCoalescer;
+  private final Lock channelLock = new ReentrantLock();
+  private final Condition channelAvailableAgain = channelLock.newCondition();
+  private volatile boolean channelAvailable = true;
+
+  /**
+   * @param number the position of this channel in the channel pool
+   * @param channel the low-level RabbitMQ channel
+   * @param connection the connection to recover the channel after channel-level exceptions
+   * @param onReset called after the channel has been recovered manually
+   */
+  PooledChannel(int number, Channel channel, RabbitConnection connection, Runnable onReset) {
+    this(number, channel, connection, onReset, null, null);
+  }
+
+  /**
+   * @param number the position of this channel in the channel pool
+   * @param channel the low-level RabbitMQ channel
+   * @param connection the connection to recover the channel after channel-level exceptions
+   * @param onReset called after the channel has been recovered manually
+   * @param publisherConfirms tracks confirms if the channel is in confirm mode, otherwise null
+   * @param ackCoalescer coalesces acks if ack batching is enabled, otherwise null
+   */
+  PooledChannel(
+      int number,
+      Channel channel,
+      RabbitConnection connection,
+      Runnable onReset,
+      PublisherConfirms publisherConfirms,
+      AckCoalescer ackCoalescer) {
+    this.number = number;
+    this.publisherConfirms = publisherConfirms;
+    this.ackCoalescer = ackCoalescer;
+    this.channel = channel;
+    this.connection = connection;
+    this.onReset = onReset;
+    this.commands = new ChannelCommands(channel);
+    // We need a recoverable connection since we don't want to handle connection and channel
+    // recovery ourselves.
+    if (channel instanceof RecoverableChannel rc) {
+      rc.addRecoveryListener(
+          new RecoveryListener() {
+            @Override
+            public void handleRecovery(Recoverable recoverable) {
+              // Whenever a connection has failed and is then automatically recovered, we want to
+              // reset the availability flag and signal all threads that are currently waiting for
+              // the connection's channel to become available again so they can retry their
+              // respective channel operation.
+              log.info("Connection recovered (channel {}).", number);
+              channelAvailable = true;
+              channelLock.lock();
+              channelAvailableAgain.signalAll();
+              channelLock.unlock();
+            }
+
+            @Override
+            public void handleRecoveryStarted(Recoverable recoverable) {
+              resetDeliveryState();
+            }
+          });
+    } else {
+      throw new RuntimeException("Flusswerk needs a recoverable connection to RabbitMQ");
+    }
+  }
+
+  int getNumber() {
+    return number;
+  }
+
+  Channel getChannel() {
+    return channel;
+  }
+
+  ChannelCommands commands() {
+    return commands;
+  }
+
+  boolean isOpen() {
+    return channel.isOpen();
+  }
+
+  /**
+   * Publishes a message, waiting for the channel to become available if necessary.
+   *
+   * @return a future that completes as soon as RabbitMQ confirmed the message. Without publisher
+   *     confirms, the future is already completed.
+   */
+  CompletableFuture<Void> publish(
+      String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data) {
+    ChannelCommand<Void> publish = commands.basicPublish(exchange, routingKey, properties, data);
+    if (publisherConfirms == null) {
+      execute(publish);
+      return CompletableFuture.completedFuture(null);
+    }
+    return execute(() -> publisherConfirms.publish(publish));
+  }
+
+  /**
+   * @return the number of published messages that have not been confirmed yet.
+   */
+  int getUnconfirmedCount() {
+    return publisherConfirms == null ? 0 : publisherConfirms.inFlight();
+  }
+
+  /**
+   * @return whether acks are coalesced and therefore every delivery needs to be tracked (see {@link
+   *     #delivered(long)}).
+   */
+  boolean isAckBatching() {
+    return ackCoalescer != null;
+  }
+
+  /** Tracks a message delivered to a consumer, in delivery order. */
+  void delivered(long deliveryTag) {
+    if (ackCoalescer != null) {
+      ackCoalescer.delivered(deliveryTag);
+    }
+  }
+
+  void ack(long deliveryTag) {
+    if (ackCoalescer != null) {
+      ackCoalescer.ack(deliveryTag);
+    } else {
+      execute(commands.basicAck(deliveryTag, false));
+    }
+  }
+
+  /**
+   * Acknowledges several messages. With ack batching, messages below the watermark are acknowledged
+   * with one multiple-ack. Otherwise there is no way to tell whether other messages in between are
+   * still in progress, so every message is acknowledged individually.
+   */
+  void ack(Collection<Long> deliveryTags) {
+    if (ackCoalescer != null) {
+      ackCoalescer.ackAll(deliveryTags);
+    } else {
+      deliveryTags.forEach(deliveryTag -> execute(commands.basicAck(deliveryTag, false)));
+    }
+  }
+
+  void reject(long deliveryTag, boolean requeue) {
+    execute(commands.basicReject(deliveryTag, requeue));
+    // settle only afterwards, so no multiple-ack can cover the rejected message
+    settled(deliveryTag);
+  }
+
+  void nack(long deliveryTag, boolean multiple, boolean requeue) throws IOException {
+    if (ackCoalescer != null && multiple) {
+      ackCoalescer.flush(); // acks must not be covered by a multiple-nack
+    }
+    channel.basicNack(deliveryTag, multiple, requeue);
+    if (ackCoalescer != null) {
+      ackCoalescer.settled(deliveryTag, multiple);
+    }
+  }
+
+  /**
+   * Gets a single message. With ack batching, the delivery is tracked before any acks can be
+   * flushed, so no multiple-ack covers it before.
+   */
+  GetResponse basicGet(String queue, boolean autoAck) {
+    if (ackCoalescer == null || autoAck) {
+      return execute(commands.basicGet(queue, autoAck));
+    }
+    return ackCoalescer.fetch(() -> execute(commands.basicGet(queue, false)));
+  }
+
+  /** Sends all acks that have been coalesced so far. */
+  void flushAcks() {
+    if (ackCoalescer != null) {
+      ackCoalescer.flush();
+    }
+  }
+
+  private void settled(long deliveryTag) {
+    if (ackCoalescer != null) {
+      ackCoalescer.settled(deliveryTag, false);
+    }
+  }
+
+  <T> T execute(ChannelCommand<T> channelCommand) {
+    // The channel might not be available or become unavailable due to a connection error. In this
+    // case, we wait until the connection becomes available again.
+    while (true) {
+      if (channelAvailable) {
+        try {
+          return channelCommand.execute();
+        } catch (IOException | AlreadyClosedException e) {
+          if (e instanceof AlreadyClosedException && !((AlreadyClosedException) e).isHardError()) {
+            recoverChannel();
+          } else {
+            log.warn(
+                "Failed to communicate with RabbitMQ on channel {}: '{}', waiting for channel to become available again",
+                number,
+                e.getMessage());
+            channelAvailable = false;
+          }
+        }
+      }
+      // We loop here because the signal might be triggered due to what the JVM documentation calls
+      // a 'spurious wakeup', i.e. the signal is triggered even though no connection recovery has
+      // yet happened.
+      while (!channelAvailable) {
+        channelLock.lock();
+        channelAvailableAgain.awaitUninterruptibly();
+        channelLock.unlock();
+      }
+    }
+  }
+
+  private void recoverChannel() {
+    try {
+      resetDeliveryState();
+      connection.recoverChannel(channel);
+      onReset.run();
+    } catch (IOException ex) {
+      log.error("Failed to recreate RabbitMQ channel {}", number, ex);
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private void resetDeliveryState() {
+    if (publisherConfirms != null) {
+      publisherConfirms.reset();
+    }
+    if (ackCoalescer != null) {
+      ackCoalescer.reset();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package dev.mdz.flusswerk.rabbitmq;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Tracks the publisher confirms of one channel in confirm mode. Outstanding publish sequence
+ * numbers are kept in a concurrent skip list, so confirms that cover several messages at once
+ * ({@code multiple=true}) can be completed in bulk without blocking publishing threads.
+ */
+class PublisherConfirms implements ConfirmListener {
+
+  private final Channel channel;
+  private final ConcurrentNavigableMap<Long, Outstanding> outstanding =
+      new ConcurrentSkipListMap<>();
+  private final Consumer<Duration> latency;
+  // Reading the next sequence number and publishing must not be interleaved by other threads
+  private final Lock publishLock = new ReentrantLock();
+
+  /**
+   * @param channel the channel in confirm mode
+   * @param latency receives the time between publishing a message and its confirmation
+   */
+  PublisherConfirms(Channel channel, Consumer<Duration> latency) {
+    this.channel = channel;
+    this.latency = latency;
+    channel.addConfirmListener(this);
+  }
+
+  /**
+   * Publishes a message and tracks its confirmation.
+   *
+   * @param publish the actual publish operation on the channel
+   * @return a future that completes when RabbitMQ confirmed the message or fails if RabbitMQ
+   *     rejected it.
+   * @throws IOException if the message could not be published
+   */
+  CompletableFuture<Void> publish(ChannelCommand<Void> publish) throws IOException {
+    Outstanding confirm = new Outstanding();
+    publishLock.lock();
+    try {
+      long sequenceNumber = channel.getNextPublishSeqNo();
+      outstanding.put(sequenceNumber, confirm);
+      try {
+        publish.execute();
+      } catch (IOException | RuntimeException e) {
+        outstanding.remove(sequenceNumber);
+        throw e;
+      }
+    } finally {
+      publishLock.unlock();
+    }
+    return confirm.future;
+  }
+
+  @Override
+  public void handleAck(long deliveryTag, boolean multiple) {
+    complete(deliveryTag, multiple, confirm -> confirm.future.complete(null));
+  }
+
+  @Override
+  public void handleNack(long deliveryTag, boolean multiple) {
+    complete(
+        deliveryTag,
+        multiple,
+        confirm ->
+            confirm.future.completeExceptionally(
+                new IOException("RabbitMQ could not confirm message " + deliveryTag)));
+  }
+
+  /**
+   * Fails all outstanding confirms. Sequence numbers start again after a channel has been
+   * recovered, so RabbitMQ will never confirm the messages published before.
+   */
+  void reset() {
+    IOException exception = new IOException("Channel has been recovered before confirmation");
+    for (Long sequenceNumber : outstanding.keySet()) {
+      Outstanding confirm = outstanding.remove(sequenceNumber);
+      if (confirm != null) {
+        confirm.future.completeExceptionally(exception);
+      }
+    }
+  }
+
+  /**
+   * @return the number of messages that have been published but not yet confirmed.
+   */
+  int inFlight() {
+    return outstanding.size();
+  }
+
+  private void complete(long deliveryTag, boolean multiple, Consumer<Outstanding> action) {
+    if (multiple) {
+      Map<Long, Outstanding> confirmed = outstanding.headMap(deliveryTag, true);
+      for (Long sequenceNumber : confirmed.keySet()) {
+        Outstanding confirm = confirmed.remove(sequenceNumber);
+        if (confirm != null) {
+          finish(confirm, action);
+        }
+      }
+    } else {
+      Outstanding confirm = outstanding.remove(deliveryTag);
+      if (confirm != null) {
+        finish(confirm, action);
+      }
+    }
+  }
+
+  private void finish(Outstanding confirm, Consumer<Outstanding> action) {
+    latency.accept(Duration.ofNanos(System.nanoTime() - confirm.publishedAt));
+    action.accept(confirm);
+  }
+
+  private static class Outstanding {
+    private final long publishedAt = System.nanoTime();
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+  }
+}
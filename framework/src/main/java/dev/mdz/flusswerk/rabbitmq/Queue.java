@@ -16,10 +16,16 @@ public class Queue {
 
   private final String name;
   private final RabbitClient rabbitClient;
+  private final QueueDepths queueDepths;
 
   Queue(String name, RabbitClient rabbitClient) {
+    this(name, rabbitClient, null);
+  }
+
+  Queue(String name, RabbitClient rabbitClient, QueueDepths queueDepths) {
     this.name = requireNonNull(name);
     this.rabbitClient = rabbitClient;
+    this.queueDepths = queueDepths;
   }
 
   /**
@@ -31,16 +37,45 @@ public class Queue {
     var purgeOk = rabbitClient.queuePurge(this.name);
     var deletedMessages = purgeOk.getMessageCount();
     LOGGER.warn("Purged queue {} ({} messages deleted)", this.name, deletedMessages);
+    if (queueDepths != null) {
+      queueDepths.refresh(this.name);
+    }
     return deletedMessages;
   }
 
   /**
-   * @return the number of messages in this queue.
+   * @return the number of messages in this queue as sampled in the background, without asking
+   *     RabbitMQ. Outdated by up to {@code flusswerk.monitoring.queueDepthInterval}. Queues that
+   *     are not sampled are read from RabbitMQ.
    */
   public long messageCount() {
+    if (queueDepths != null) {
+      return queueDepths.depth(this.name);
+    }
     return rabbitClient.getMessageCount(this.name);
   }
 
+  /**
+   * Reads the number of messages in this queue from RabbitMQ right away, e.g. when the sampled
+   * depth might be outdated. A sampled queue keeps the number as its latest sample.
+   *
+   * @return the number of messages in this queue.
+   */
+  public long refreshMessageCount() {
+    if (queueDepths != null) {
+      return queueDepths.refresh(this.name);
+    }
+    return rabbitClient.getMessageCount(this.name);
+  }
+
+  /**
+   * @return how fast this queue grew recently in messages per second, negative if it shrank; 0 if
+   *     the depths are not sampled in the background.
+   */
+  public double growthRate() {
+    return queueDepths == null ? 0.0 : queueDepths.rate(this.name);
+  }
+
   /**
    * Tries to receive a message from RabbitMQ.
    *
@@ -0,0 +1,228 @@
+package dev.mdz.flusswerk.rabbitmq;
+
+import static java.util.Objects.requireNonNull;
+
+import dev.mdz.flusswerk.engine.Threads;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the number of messages of the watched queues in memory. The depths are sampled in the
+ * background, so reading them never waits for RabbitMQ and does not compete with sending and
+ * acknowledging messages on the shared channel. Between two samples, the depths might be outdated
+ * by up to the sampling interval. Only queues that are explicitly {@link #watch(String) watched}
+ * are sampled, all other queues are read from RabbitMQ on every call.
+ */
+public class QueueDepths implements MeterBinder, AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueueDepths.class);
+
+  private final ToLongFunction<String> depthOf;
+  private final long interval;
+  private final Map<String, Sample> samples = new ConcurrentHashMap<>();
+  private final Map<String, List<Gauge>> gauges = new ConcurrentHashMap<>();
+  private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+  private final ScheduledThreadPoolExecutor scheduler;
+  private volatile MeterRegistry registry;
+
+  /**
+   * @param rabbitClient the client to get the number of messages from RabbitMQ
+   * @param interval how often the depths of the queues are sampled
+   */
+  public QueueDepths(RabbitClient rabbitClient, Duration interval) {
+    this(rabbitClient::getMessageCount, interval);
+  }
+
+  QueueDepths(ToLongFunction<String> depthOf, Duration interval) {
+    this.depthOf = requireNonNull(depthOf);
+    this.interval = interval.toNanos();
+    if (this.interval <= 0) {
+      throw new IllegalArgumentException("Sampling interval must be positive, but is " + interval);
+    }
+    this.scheduler = new ScheduledThreadPoolExecutor(1, Threads.daemon("flusswerk-queue-depths"));
+  }
+
+  /**
+   * Adds a queue to sample from the next round on. The queue has to exist by then, otherwise
+   * RabbitMQ closes the channel.
+   *
+   * @param queue the name of the queue
+   */
+  public void watch(String queue) {
+    if (queue != null && samples.putIfAbsent(queue, Sample.NONE) == null) {
+      registerGauges(queue);
+    }
+  }
+
+  /**
+   * Stops sampling a queue and removes its metrics, e.g. because the queue has been deleted.
+   *
+   * @param queue the name of the queue
+   */
+  public void unwatch(String queue) {
+    if (queue == null || samples.remove(queue) == null) {
+      return;
+    }
+    List<Gauge> removed = gauges.remove(queue);
+    MeterRegistry registry = this.registry;
+    if (removed != null && registry != null) {
+      removed.forEach(registry::remove);
+    }
+  }
+
+  /**
+   * @param listener called after every round of sampling, e.g. to react to the new depths
+   */
+  public void addListener(Runnable listener) {
+    listeners.add(requireNonNull(listener));
+  }
+
+  /** Starts sampling in the background, usually after all queues have been declared. */
+  public void start() {
+    scheduler.scheduleWithFixedDelay(this::sample, 0, interval, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Samples the depths of all watched queues. A queue that cannot be sampled, e.g. because it has
+   * been deleted, is not watched anymore: asking RabbitMQ for a missing queue closes the channel.
+   */
+  void sample() {
+    for (String queue : samples.keySet()) {
+      try {
+        update(queue, depthOf.applyAsLong(queue));
+      } catch (RuntimeException e) {
+        LOGGER.warn("Stop sampling queue {}, could not get its depth: {}", queue, e.getMessage());
+        unwatch(queue);
+      }
+    }
+    for (Runnable listener : listeners) {
+      try {
+        listener.run();
+      } catch (RuntimeException e) {
+        LOGGER.error("Could not handle new queue depths", e);
+      }
+    }
+  }
+
+  /**
+   * Returns the last sampled number of messages in a watched queue. For a watched queue that has
+   * not been sampled yet and for all other queues, the number is read from RabbitMQ.
+   *
+   * @param queue the name of the queue
+   * @return the number of messages in the queue.
+   */
+  public long depth(String queue) {
+    Sample sample = samples.get(queue);
+    if (sample == null) {
+      return depthOf.applyAsLong(queue);
+    }
+    if (sample == Sample.NONE) {
+      return refresh(queue);
+    }
+    return sample.depth();
+  }
+
+  /**
+   * @param queue the name of the queue
+   * @return the last sampled number of messages in the queue, empty if the queue is not watched or
+   *     has not been sampled yet. Never asks RabbitMQ.
+   */
+  public OptionalLong sampledDepth(String queue) {
+    Sample sample = samples.get(queue);
+    return sample == null || sample == Sample.NONE
+        ? OptionalLong.empty()
+        : OptionalLong.of(sample.depth());
+  }
+
+  /**
+   * Reads the number of messages in a queue from RabbitMQ right away, e.g. after the queue has been
+   * purged. For a watched queue, the number is kept as its latest sample.
+   *
+   * @param queue the name of the queue
+   * @return the number of messages in the queue.
+   */
+  public long refresh(String queue) {
+    long depth = depthOf.applyAsLong(queue);
+    update(queue, depth);
+    return depth;
+  }
+
+  private void update(String queue, long depth) {
+    long now = System.nanoTime();
+    samples.computeIfPresent(queue, (key, sample) -> sample.next(depth, now)); // only if watched
+  }
+
+  /**
+   * @param queue the name of the queue
+   * @return how fast the queue grew between the last two samples in messages per second, negative
+   *     if it shrank.
+   */
+  public double rate(String queue) {
+    Sample sample = samples.get(queue);
+    return sample == null ? 0.0 : sample.rate();
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    this.registry = registry;
+    samples.keySet().forEach(this::registerGauges);
+  }
+
+  private void registerGauges(String queue) {
+    MeterRegistry registry = this.registry;
+    if (registry == null) {
+      return; // registered on bindTo
+    }
+    Gauge depth =
+        Gauge.builder("flusswerk.queue.depth", this, depths -> depths.lastSample(queue).depth())
+            .description("Last sampled number of messages in a queue")
+            .tag("queue", queue)
+            .register(registry);
+    Gauge rate =
+        Gauge.builder("flusswerk.queue.rate", this, depths -> depths.lastSample(queue).rate())
+            .description(
+                "How fast a queue grew between the last two samples in messages per second")
+            .tag("queue", queue)
+            .register(registry);
+    gauges.put(queue, List.of(depth, rate));
+  }
+
+  private Sample lastSample(String queue) {
+    return samples.getOrDefault(queue, Sample.NONE);
+  }
+
+  /**
+   * @param depth the number of messages
+   * @param rate the change per second since the previous sample
+   * @param sampledAt when the depth has been sampled as in {@link System#nanoTime()}
+   */
+  private record Sample(long depth, double rate, long sampledAt) {
+
+    static final Sample NONE = new Sample(0, 0.0, 0);
+
+    Sample next(long depth, long now) {
+      if (this == NONE || now == sampledAt) {
+        return new Sample(depth, 0.0, now);
+      }
+      double seconds = (now - sampledAt) / (double) TimeUnit.SECONDS.toNanos(1);
+      return new Sample(depth, (depth - this.depth) / seconds, now);
+    }
+  }
+}
@@ -2,23 +2,40 @@ package dev.mdz.flusswerk.rabbitmq;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.rabbitmq.client.*;
+import dev.mdz.flusswerk.config.properties.RabbitMQProperties.AckBatching;
 import dev.mdz.flusswerk.engine.FlusswerkConsumer;
+import dev.mdz.flusswerk.engine.Threads;
 import dev.mdz.flusswerk.exceptions.InvalidMessageException;
 import dev.mdz.flusswerk.jackson.FlusswerkObjectMapper;
 import dev.mdz.flusswerk.model.IncomingMessageType;
 import dev.mdz.flusswerk.model.Message;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class RabbitClient {
+public class RabbitClient implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(RabbitClient.class);
 
   private static final boolean DURABLE = true;
 
@@ -28,56 +45,104 @@ public class RabbitClient {
 
   private static final Integer PERSISTENT = 2;
 
-  private static final boolean MULTIPLE_MESSAGES = false;
+  private static final int DEFAULT_CHANNEL = 0;
 
-  private static final Logger log = LoggerFactory.getLogger(RabbitClient.class);
+  // Content type and delivery mode never change, so all messages share the same properties
+  private static final AMQP.BasicProperties PROPERTIES =
+      new AMQP.BasicProperties.Builder()
+          .contentType("application/json")
+          .deliveryMode(PERSISTENT)
+          .build();
 
+  private final List<PooledChannel> channels;
+  private final Map<String, PooledChannel> consumerChannels = new ConcurrentHashMap<>();
+  // Registers consumers with their own prefetch count again after recovery, by consumer tag
+  private final Map<String, Runnable> prefetchConsumers = new ConcurrentHashMap<>();
   private final RabbitConnection connection;
-  private final Channel channel;
-  private final ChannelCommands commands;
-  private final Lock channelLock = new ReentrantLock();
-  private final Condition channelAvailableAgain = channelLock.newCondition();
   private final FlusswerkObjectMapper objectMapper;
-  private boolean channelAvailable = true;
-  private final List<ChannelListener> channelListeners = new ArrayList<>();
+  private final List<ChannelListener> channelListeners = new CopyOnWriteArrayList<>();
+  // Confirms for the messages a thread has sent since it acknowledged its last message
+  private final ThreadLocal<List<CompletableFuture<Void>>> unconfirmed =
+      ThreadLocal.withInitial(ArrayList::new);
+  // Sends pending acks periodically, null without ack batching
+  private final ScheduledExecutorService flusher;
+  // Sends acks once their messages have been confirmed, null without publisher confirms
+  private final ExecutorService confirmedAcks;
 
   public RabbitClient(RabbitConnection rabbitConnection) {
     this(new IncomingMessageType(), rabbitConnection);
   }
 
   public RabbitClient(FlusswerkObjectMapper flusswerkObjectMapper, RabbitConnection connection) {
-    this.connection = connection;
-    channel = connection.getChannel();
+    this(flusswerkObjectMapper, connection, new SimpleMeterRegistry());
+  }
+
+  /**
+   * @param flusswerkObjectMapper the object mapper to (de-)serialize messages
+   * @param connection the connection to RabbitMQ
+   * @param meterRegistry registry for the publisher confirm metrics
+   */
+  public RabbitClient(
+      FlusswerkObjectMapper flusswerkObjectMapper,
+      RabbitConnection connection,
+      MeterRegistry meterRegistry) {
+    boolean publisherConfirms = connection.isPublisherConfirms();
+    Timer confirmLatency = null;
+    if (publisherConfirms) {
+      confirmLatency =
+          Timer.builder("flusswerk.confirms.latency")
+              .description("Time until RabbitMQ confirmed a published message")
+              .register(meterRegistry);
+    }
+    AckBatching ackBatching = connection.getAckBatching();
+    boolean batchAcks = ackBatching != null && ackBatching.isEnabled();
     // We need a recoverable connection since we don't want to handle connection and channel
-    // recovery ourselves.
-    // This is done in constructor instead of lifecycle events to fail fast and not leave a half
-    // configured application running.
-    if (channel instanceof RecoverableChannel rc) {
-      rc.addRecoveryListener(
-          new RecoveryListener() {
-            @Override
-            public void handleRecovery(Recoverable recoverable) {
-              // Whenever a connection has failed and is then automatically recovered, we want to
-              // reset the availability flag and signal all threads that are currently waiting for
-              // the connection's channel to become available again so they can retry their
-              // respective channel operation.
-              log.info("Connection recovered.");
-              channelAvailable = true;
-              channelLock.lock();
-              channelAvailableAgain.signalAll();
-              channelLock.unlock();
-            }
-
-            @Override
-            public void handleRecoveryStarted(Recoverable recoverable) {
-              // NOP
-            }
-          });
-    } else {
-      throw new RuntimeException("Flusswerk needs a recoverable connection to RabbitMQ");
+    // recovery ourselves. This is checked for every pooled channel in its constructor instead of
+    // lifecycle events to fail fast and not leave a half configured application running.
+    List<PooledChannel> pool = new ArrayList<>();
+    List<Channel> connectionChannels = connection.getChannels();
+    for (int i = 0; i < connectionChannels.size(); i++) {
+      final int number = i;
+      Channel channel = connectionChannels.get(i);
+      PublisherConfirms confirms =
+          confirmLatency != null ? new PublisherConfirms(channel, confirmLatency::record) : null;
+      AckCoalescer ackCoalescer = batchAcks ? new AckCoalescer(channel, ackBatching.size()) : null;
+      pool.add(
+          new PooledChannel(
+              number, channel, connection, () -> handleReset(number), confirms, ackCoalescer));
+    }
+    if (pool.isEmpty()) {
+      throw new RuntimeException("Flusswerk needs at least one channel to RabbitMQ");
     }
-    commands = new ChannelCommands(channel);
+    channels = List.copyOf(pool);
     objectMapper = flusswerkObjectMapper;
+    this.connection = connection;
+    connection.addRecoveryListener(
+        new RecoveryListener() {
+          @Override
+          public void handleRecovery(Recoverable recoverable) {
+            prefetchConsumers.values().forEach(Runnable::run);
+          }
+
+          @Override
+          public void handleRecoveryStarted(Recoverable recoverable) {}
+        });
+    if (publisherConfirms) {
+      Gauge.builder("flusswerk.confirms.in.flight", this, RabbitClient::getUnconfirmedCount)
+          .description("Number of published messages that RabbitMQ did not confirm yet")
+          .register(meterRegistry);
+    }
+    if (batchAcks) {
+      long interval = ackBatching.interval().toMillis();
+      flusher = Executors.newSingleThreadScheduledExecutor(Threads.daemon("flusswerk-ack-flusher"));
+      flusher.scheduleWithFixedDelay(this::flushAcks, interval, interval, TimeUnit.MILLISECONDS);
+    } else {
+      flusher = null;
+    }
+    confirmedAcks =
+        publisherConfirms
+            ? Executors.newSingleThreadExecutor(Threads.daemon("flusswerk-confirmed-acks"))
+            : null;
   }
 
   public RabbitClient(IncomingMessageType incomingMessageType, RabbitConnection connection) {
@@ -89,75 +154,290 @@ public class RabbitClient {
     sendRaw(exchange, routingKey, data);
   }
 
-  void sendRaw(String exchange, String routingKey, byte[] data) {
+  /**
+   * Sends a message that expires after the given time unless it has been consumed before, e.g. to
+   * wait less than the TTL of a retry queue.
+   */
+  void send(String exchange, String routingKey, Message message, Duration expiration) {
     AMQP.BasicProperties properties =
-        new AMQP.BasicProperties.Builder()
-            .contentType("application/json")
-            .deliveryMode(PERSISTENT)
-            .build();
+        PROPERTIES.builder().expiration(Long.toString(expiration.toMillis())).build();
+    publish(exchange, routingKey, properties, serialize(message));
+  }
+
+  void sendRaw(String exchange, String routingKey, byte[] data) {
+    publish(exchange, routingKey, PROPERTIES, data);
+  }
 
-    execute(commands.basicPublish(exchange, routingKey, properties, data));
+  private void publish(
+      String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data) {
+    CompletableFuture<Void> confirm =
+        channelForCurrentThread().publish(exchange, routingKey, properties, data);
+    if (!confirm.isDone()) {
+      List<CompletableFuture<Void>> pending = unconfirmed.get();
+      // Threads that only send messages never acknowledge, so forget confirmed messages here
+      pending.removeIf(CompletableFuture::isDone);
+      pending.add(confirm);
+    }
   }
 
   Message deserialize(String body) throws JsonProcessingException {
     return objectMapper.deserialize(body);
   }
 
+  Message deserialize(byte[] body) throws JsonProcessingException {
+    return objectMapper.deserialize(body);
+  }
+
   byte[] serialize(Message message) {
     try {
-      return objectMapper.writeValueAsBytes(message);
+      return objectMapper.serialize(message);
     } catch (JsonProcessingException e) {
       throw new RuntimeException("Cannot serialize message", e);
     }
   }
 
+  /**
+   * Acknowledges a message on the channel it has been received from. With publisher confirms, the
+   * acknowledgement is deferred until RabbitMQ confirmed all messages this thread has sent since
+   * its last acknowledgement. If RabbitMQ cannot confirm them, the message is requeued instead.
+   *
+   * <p>Only messages sent by the acknowledging thread are awaited, so messages resulting from a
+   * received message have to be sent before it is acknowledged and on the same thread. Messages
+   * sent from other threads, e.g. by stages of an asynchronous flow running on threads of their
+   * own, do not hold back the acknowledgement.
+   *
+   * @param envelope the envelope of the message to acknowledge
+   */
   public void ack(dev.mdz.flusswerk.model.Envelope envelope) {
-    ack(envelope.getDeliveryTag());
+    int channel = envelope.getChannel();
+    long deliveryTag = envelope.getDeliveryTag();
+    afterConfirms(() -> ack(channel, deliveryTag), () -> requeue(channel, deliveryTag));
+  }
+
+  /**
+   * Acknowledges several messages at once, e.g. a batch, on the channels they have been received
+   * from. With ack batching, the messages of each channel are acknowledged with as few
+   * multiple-acks as possible. Publisher confirms are handled like for a single message.
+   *
+   * @param envelopes the envelopes of the messages to acknowledge
+   */
+  public void ack(Collection<dev.mdz.flusswerk.model.Envelope> envelopes) {
+    Map<Integer, List<Long>> deliveryTags =
+        envelopes.stream()
+            .collect(
+                Collectors.groupingBy(
+                    dev.mdz.flusswerk.model.Envelope::getChannel,
+                    TreeMap::new,
+                    Collectors.mapping(
+                        dev.mdz.flusswerk.model.Envelope::getDeliveryTag, Collectors.toList())));
+    afterConfirms(
+        () -> deliveryTags.forEach((channel, tags) -> channel(channel).ack(tags)),
+        () -> deliveryTags.forEach((channel, tags) -> tags.forEach(tag -> requeue(channel, tag))));
+  }
+
+  /**
+   * Runs the acknowledgement right away or, with publisher confirms, as soon as RabbitMQ confirmed
+   * all messages this thread has sent since its last acknowledgement. If RabbitMQ cannot confirm
+   * them, the messages are requeued instead.
+   */
+  private void afterConfirms(Runnable ack, Runnable requeue) {
+    List<CompletableFuture<Void>> pending = unconfirmed.get();
+    pending.removeIf(CompletableFuture::isDone);
+    if (pending.isEmpty()) {
+      ack.run();
+      return;
+    }
+    CompletableFuture<?>[] confirms = pending.toArray(CompletableFuture[]::new);
+    pending.clear();
+    // Complete on a thread of our own, confirms are delivered by the connection's I/O thread
+    CompletableFuture.allOf(confirms)
+        .whenCompleteAsync(
+            (ignored, error) -> {
+              if (error == null) {
+                ack.run();
+                return;
+              }
+              log.warn("Sent messages have not been confirmed, requeue: {}", error.getMessage());
+              requeue.run();
+            },
+            this::afterConfirm);
+  }
+
+  private void afterConfirm(Runnable acknowledgement) {
+    try {
+      confirmedAcks.execute(acknowledgement);
+    } catch (RejectedExecutionException e) {
+      log.warn("Client has been closed, RabbitMQ will redeliver confirmed messages not acked yet");
+    }
+  }
+
+  private void requeue(int channel, long deliveryTag) {
+    try {
+      nack(channel, deliveryTag, false, true);
+    } catch (IOException e) {
+      log.error("Could not requeue message {}", deliveryTag, e);
+    }
   }
 
   public void ack(long deliveryTag) {
-    execute(commands.basicAck(deliveryTag, MULTIPLE_MESSAGES));
+    ack(DEFAULT_CHANNEL, deliveryTag);
+  }
+
+  /**
+   * Acknowledges a message on the channel it has been received from. Delivery tags are only valid
+   * for the channel that delivered the message.
+   *
+   * @param channel the number of the channel in the channel pool
+   * @param deliveryTag the delivery tag of the message
+   */
+  public void ack(int channel, long deliveryTag) {
+    channel(channel).ack(deliveryTag);
+  }
+
+  /**
+   * Sends all acknowledgements that are still pending because of ack batching. Without ack
+   * batching, there is nothing to do.
+   */
+  public void flushAcks() {
+    channels.forEach(PooledChannel::flushAcks);
+  }
+
+  /** Stops sending pending acks periodically and sends the remaining ones. */
+  @Override
+  public void close() {
+    if (flusher != null) {
+      flusher.shutdownNow();
+    }
+    if (confirmedAcks != null) {
+      confirmedAcks.shutdown(); // acks of messages confirmed already are still sent
+      try {
+        if (!confirmedAcks.awaitTermination(
+            Threads.SHUTDOWN_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+          log.error("Not all confirmed messages have been acked during shutdown");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    flushAcks();
   }
 
   public void reject(Envelope envelope, boolean requeue) {
-    execute(commands.basicReject(envelope.getDeliveryTag(), requeue));
+    reject(DEFAULT_CHANNEL, envelope, requeue);
+  }
+
+  /**
+   * Rejects a message on the channel it has been received from.
+   *
+   * @param channel the number of the channel in the channel pool
+   * @param envelope the envelope of the message as delivered by RabbitMQ
+   * @param requeue whether RabbitMQ should requeue the message
+   */
+  public void reject(int channel, Envelope envelope, boolean requeue) {
+    channel(channel).reject(envelope.getDeliveryTag(), requeue);
   }
 
   public Message receive(String queueName, boolean autoAck) throws InvalidMessageException {
-    GetResponse response = execute(commands.basicGet(queueName, autoAck));
+    PooledChannel channel = channelForCurrentThread();
+    GetResponse response = channel.basicGet(queueName, autoAck);
     if (response == null) {
       return null;
     }
-    String body = new String(response.getBody(), StandardCharsets.UTF_8);
+    byte[] body = response.getBody();
     try {
       Message message = deserialize(body);
-      message.getEnvelope().setBody(body);
+      message.getEnvelope().setRawBody(body);
       message.getEnvelope().setDeliveryTag(response.getEnvelope().getDeliveryTag());
+      message.getEnvelope().setChannel(channel.getNumber());
       message.getEnvelope().setSource(queueName);
       return message;
     } catch (JsonProcessingException e) {
       dev.mdz.flusswerk.model.Envelope envelope = new dev.mdz.flusswerk.model.Envelope();
-      envelope.setBody(body);
+      envelope.setRawBody(body);
       envelope.setDeliveryTag(response.getEnvelope().getDeliveryTag());
+      envelope.setChannel(channel.getNumber());
       envelope.setSource(queueName);
       throw new InvalidMessageException(envelope, e.getMessage(), e);
     }
   }
 
-  public void consume(FlusswerkConsumer consumer, boolean autoAck) {
-    execute(commands.basicConsume(consumer.getInputQueue(), autoAck, consumer));
+  /**
+   * Registers a consumer on the channel it is assigned to (see {@link
+   * FlusswerkConsumer#getChannel()}) with its prefetch count (see {@link
+   * FlusswerkConsumer#getPrefetch()}).
+   *
+   * <p>The automatic recovery of the connection would register all consumers of a channel with the
+   * same prefetch count. Consumers with their own prefetch count are therefore excluded from it and
+   * registered again with their prefetch count and consumer tag once the connection has been
+   * recovered.
+   *
+   * @param consumer the consumer to register
+   * @param autoAck whether messages should be acknowledged automatically
+   * @return the consumer tag to cancel the consumer (see {@link #cancel(String)}).
+   */
+  public String consume(FlusswerkConsumer consumer, boolean autoAck) {
+    PooledChannel channel = channel(consumer.getChannel());
+    // With ack batching, every delivery must be known before acks can be coalesced
+    Consumer delegate =
+        channel.isAckBatching() && !autoAck ? new TrackingConsumer(consumer, channel) : consumer;
+    ChannelCommand<String> basicConsume =
+        consumer.getPrefetch() > 0
+            ? channel
+                .commands()
+                .basicConsume(consumer.getInputQueue(), autoAck, consumer.getPrefetch(), delegate)
+            : channel.commands().basicConsume(consumer.getInputQueue(), autoAck, delegate);
+    String consumerTag = channel.execute(basicConsume);
+    if (consumerTag != null) {
+      consumerChannels.put(consumerTag, channel);
+      if (consumer.getPrefetch() > 0) {
+        connection.excludeFromRecovery(consumerTag);
+        prefetchConsumers.put(
+            consumerTag,
+            () ->
+                channel.execute(
+                    channel
+                        .commands()
+                        .basicConsume(
+                            consumer.getInputQueue(),
+                            autoAck,
+                            consumer.getPrefetch(),
+                            consumerTag,
+                            delegate)));
+      }
+    }
+    return consumerTag;
   }
 
   public void nack(long deliveryTag, boolean multiple, boolean requeue) throws IOException {
-    channel.basicNack(deliveryTag, multiple, requeue);
+    nack(DEFAULT_CHANNEL, deliveryTag, multiple, requeue);
+  }
+
+  /**
+   * Negatively acknowledges messages on the channel they have been received from.
+   *
+   * @param channel the number of the channel in the channel pool
+   * @param deliveryTag the delivery tag of the message
+   * @param multiple whether all messages up to and including the delivery tag should be affected
+   * @param requeue whether RabbitMQ should requeue the messages
+   * @throws IOException if the command could not be sent to RabbitMQ
+   */
+  public void nack(int channel, long deliveryTag, boolean multiple, boolean requeue)
+      throws IOException {
+    channel(channel).nack(deliveryTag, multiple, requeue);
   }
 
   public void cancel(String consumerTag) throws IOException {
-    channel.basicCancel(consumerTag);
+    // consumer tags are only valid on the channel the consumer has been registered on
+    PooledChannel channel = consumerChannels.remove(consumerTag);
+    forgetPrefetchConsumer(consumerTag);
+    if (channel == null) {
+      channel = channels.get(DEFAULT_CHANNEL);
+    }
+    channel.getChannel().basicCancel(consumerTag);
   }
 
   public void provideExchange(String exchange) {
-    execute(commands.exchangeDeclare(exchange, BuiltinExchangeType.TOPIC, DURABLE));
+    execute(commands -> commands.exchangeDeclare(exchange, BuiltinExchangeType.TOPIC, DURABLE));
   }
 
   public void declareQueue(
@@ -167,65 +447,80 @@ public class RabbitClient {
   }
 
   public void createQueue(String name, Map<String, Object> args) {
-    execute(commands.queueDeclare(name, DURABLE, EXCLUSIVE, AUTO_DELETE, args));
+    execute(commands -> commands.queueDeclare(name, DURABLE, EXCLUSIVE, AUTO_DELETE, args));
   }
 
   public void bindQueue(String name, String exchange, String routingKey) {
-    execute(commands.queueBind(name, exchange, routingKey));
+    execute(commands -> commands.queueBind(name, exchange, routingKey));
   }
 
   public Long getMessageCount(String queue) {
-    return execute(commands.messageCount(queue));
+    return execute(commands -> commands.messageCount(queue));
   }
 
   public boolean isChannelAvailable() {
-    return channel.isOpen();
+    return channels.stream().allMatch(PooledChannel::isOpen);
   }
 
   Channel getChannel() {
-    return channel;
+    return channels.get(DEFAULT_CHANNEL).getChannel();
+  }
+
+  /**
+   * @return the number of channels in the channel pool.
+   */
+  public int getChannelCount() {
+    return channels.size();
+  }
+
+  /**
+   * @return the number of published messages on all channels that RabbitMQ did not confirm yet.
+   */
+  public int getUnconfirmedCount() {
+    return channels.stream().mapToInt(PooledChannel::getUnconfirmedCount).sum();
   }
 
   public AMQP.Queue.PurgeOk queuePurge(String name) {
-    return execute(commands.queuePurge(name));
-  }
-
-  private <T> T execute(ChannelCommand<T> channelCommand) {
-    // The channel might not be available or become unavailable due to a connection error. In this
-    // case, we wait until the connection becomes available again.
-    while (true) {
-      if (channelAvailable) {
-        try {
-          return channelCommand.execute();
-        } catch (IOException | AlreadyClosedException e) {
-          if (e instanceof AlreadyClosedException && !((AlreadyClosedException) e).isHardError()) {
-            recoverChannel();
-          } else {
-            log.warn(
-                "Failed to communicate with RabbitMQ: '{}', waiting for channel to become available again",
-                e.getMessage());
-            channelAvailable = false;
-          }
-        }
-      }
-      // We loop here because the signal might be triggered due to what the JVM documentation calls
-      // a 'spurious wakeup', i.e. the signal is triggered even though no connection recovery has
-      // yet happened.
-      while (!channelAvailable) {
-        channelLock.lock();
-        channelAvailableAgain.awaitUninterruptibly();
-        channelLock.unlock();
-      }
+    return execute(commands -> commands.queuePurge(name));
+  }
+
+  private <T> T execute(Function<ChannelCommands, ChannelCommand<T>> command) {
+    PooledChannel channel = channelForCurrentThread();
+    return channel.execute(command.apply(channel.commands()));
+  }
+
+  /**
+   * Every thread sticks to one channel of the pool, so with several channels the worker threads are
+   * striped across all channels instead of competing for a single one.
+   */
+  private PooledChannel channelForCurrentThread() {
+    if (channels.size() == 1) {
+      return channels.get(DEFAULT_CHANNEL);
     }
+    return channels.get(Math.floorMod(Thread.currentThread().getId(), channels.size()));
   }
 
-  private void recoverChannel() {
-    try {
-      connection.recoverChannel();
-      this.channelListeners.forEach(ChannelListener::handleReset);
-    } catch (IOException ex) {
-      log.error("Failed to recreate RabbitMQ channel", ex);
-      throw new RuntimeException(ex);
+  private PooledChannel channel(int number) {
+    return channels.get(Math.floorMod(number, channels.size()));
+  }
+
+  private void handleReset(int channel) {
+    // consumers registered on the recovered channel are gone and will be registered again
+    consumerChannels.entrySet().stream()
+        .filter(entry -> entry.getValue().getNumber() == channel)
+        .map(Map.Entry::getKey)
+        .toList()
+        .forEach(
+            consumerTag -> {
+              consumerChannels.remove(consumerTag);
+              forgetPrefetchConsumer(consumerTag);
+            });
+    this.channelListeners.forEach(listener -> listener.handleReset(channel));
+  }
+
+  private void forgetPrefetchConsumer(String consumerTag) {
+    if (prefetchConsumers.remove(consumerTag) != null) {
+      connection.includeInRecovery(consumerTag);
     }
   }
 
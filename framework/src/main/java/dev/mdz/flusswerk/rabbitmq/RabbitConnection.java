@@ -4,13 +4,18 @@ import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Address;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.RecoveryListener;
 import com.rabbitmq.client.impl.recovery.*;
 import com.rabbitmq.utility.Utility;
 import dev.mdz.flusswerk.LifecyclePhases;
 import dev.mdz.flusswerk.config.properties.RabbitMQProperties;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -27,11 +32,14 @@ public class RabbitConnection implements SmartLifecycle {
 
   private AutorecoveringConnection connection;
 
-  private AutorecoveringChannel channel;
+  private final List<Channel> channels;
   private final String appName;
 
   private final RabbitMQProperties rabbitMQ;
 
+  // Consumers that are not recovered automatically, see excludeFromRecovery
+  private final Set<String> excludedConsumers = ConcurrentHashMap.newKeySet();
+
   public RabbitConnection(RabbitMQProperties rabbitMQ, String appName) throws IOException {
     this(rabbitMQ, new ConnectionFactory(), appName);
   }
@@ -41,14 +49,37 @@ public class RabbitConnection implements SmartLifecycle {
     this.rabbitMQ = rabbitMQ;
     this.factory = factory;
     this.appName = appName;
+    this.channels = new ArrayList<>();
     factory.setUsername(rabbitMQ.username());
     factory.setPassword(rabbitMQ.password());
     rabbitMQ.getVirtualHost().ifPresent(factory::setVirtualHost);
     factory.setConnectionRecoveryTriggeringCondition(sse -> !sse.isInitiatedByApplication());
+    factory.setTopologyRecoveryFilter(
+        new TopologyRecoveryFilter() {
+          @Override
+          public boolean filterConsumer(RecordedConsumer consumer) {
+            return !excludedConsumers.contains(consumer.getConsumerTag());
+          }
+        });
     waitForConnection(); // not in start() because this should fail fast if no connection is
     // possible
   }
 
+  /**
+   * Uses channels that are not backed by a network connection to RabbitMQ, e.g. in-memory stubs for
+   * benchmarks. The channels must implement {@link com.rabbitmq.client.RecoverableChannel}, but
+   * they cannot be recovered by this connection.
+   *
+   * @param rabbitMQ the configuration to use, only the channel settings apply
+   * @param channels the channels to hand out
+   */
+  protected RabbitConnection(RabbitMQProperties rabbitMQ, List<? extends Channel> channels) {
+    this.rabbitMQ = rabbitMQ;
+    this.factory = null;
+    this.appName = null;
+    this.channels = new ArrayList<>(channels);
+  }
+
   /**
    * Access to the low-level RabbitMQ {@link com.rabbitmq.client.Channel}. This is package protected
    * because users should always use the managed actions via {@link MessageBroker} or {@link
@@ -57,7 +88,32 @@ public class RabbitConnection implements SmartLifecycle {
    * @return the low-level RabbitMQ channel.
    */
   public Channel getChannel() {
-    return channel;
+    return channels.get(0);
+  }
+
+  /**
+   * Access to all low-level RabbitMQ channels of the channel pool. The first channel is the one
+   * returned by {@link #getChannel()}.
+   *
+   * @return the low-level RabbitMQ channels.
+   */
+  public List<Channel> getChannels() {
+    return Collections.unmodifiableList(channels);
+  }
+
+  /**
+   * @return whether the channels have been put into confirm mode, so RabbitMQ confirms every
+   *     published message.
+   */
+  public boolean isPublisherConfirms() {
+    return rabbitMQ.publisherConfirms();
+  }
+
+  /**
+   * @return how acknowledgements are batched.
+   */
+  public RabbitMQProperties.AckBatching getAckBatching() {
+    return rabbitMQ.ackBatching();
   }
 
   private void waitForConnection() throws IOException {
@@ -68,9 +124,16 @@ public class RabbitConnection implements SmartLifecycle {
       try {
         LOGGER.debug("Waiting for connection to {} ...", addresses);
         connection = (AutorecoveringConnection) factory.newConnection(addresses, appName);
-        channel = (AutorecoveringChannel) connection.createChannel();
-        channel.basicRecover(true);
-        channel.basicQos(1);
+        channels.clear();
+        for (int i = 0; i < rabbitMQ.channels(); i++) {
+          AutorecoveringChannel channel = (AutorecoveringChannel) connection.createChannel();
+          channel.basicRecover(true);
+          channel.basicQos(ChannelCommands.DEFAULT_PREFETCH);
+          if (rabbitMQ.publisherConfirms()) {
+            channel.confirmSelect();
+          }
+          channels.add(channel);
+        }
         connectionIsFailing = false;
         LOGGER.debug("Connected to {}", addresses);
       } catch (IOException | TimeoutException e) {
@@ -89,7 +152,54 @@ public class RabbitConnection implements SmartLifecycle {
     }
   }
 
+  /**
+   * Excludes a consumer from the automatic recovery of the connection, e.g. because the recovery
+   * would register it with the wrong prefetch count. Whoever excludes a consumer must register it
+   * again, for example in a listener (see {@link #addRecoveryListener(RecoveryListener)}).
+   *
+   * @param consumerTag the tag of the consumer
+   */
+  public void excludeFromRecovery(String consumerTag) {
+    excludedConsumers.add(consumerTag);
+  }
+
+  /**
+   * Lets the automatic recovery handle a consumer again, e.g. after it has been cancelled.
+   *
+   * @param consumerTag the tag of the consumer
+   */
+  public void includeInRecovery(String consumerTag) {
+    excludedConsumers.remove(consumerTag);
+  }
+
+  /**
+   * Adds a listener that is notified when the connection has been recovered, after all channels,
+   * the topology and the consumers have been recovered.
+   *
+   * @param listener the listener to add
+   */
+  public void addRecoveryListener(RecoveryListener listener) {
+    if (connection != null) {
+      connection.addRecoveryListener(listener);
+    }
+  }
+
   public void recoverChannel() throws IOException {
+    recoverChannel(getChannel());
+  }
+
+  /**
+   * Recovers a single channel of the channel pool after a channel-level exception, including the
+   * topology (exchanges, queues and bindings) that has been declared using this channel.
+   *
+   * @param recoverable the channel to recover
+   * @throws IOException if the channel cannot be recovered
+   */
+  public void recoverChannel(Channel recoverable) throws IOException {
+    if (connection == null) {
+      throw new IOException("Cannot recover channel without a connection to RabbitMQ");
+    }
+    AutorecoveringChannel channel = (AutorecoveringChannel) recoverable;
     channel.automaticallyRecover(connection, connection.getDelegate());
     // recover topology
     for (final RecordedExchange exchange :
@@ -15,6 +15,7 @@ public class RabbitMQ {
   private final RabbitClient rabbitClient;
   private final MessageBroker messageBroker;
   private final Tracing tracing;
+  private final QueueDepths queueDepths;
 
   /**
    * Creates a new Queues instance.
@@ -26,7 +27,23 @@ public class RabbitMQ {
       RabbitClient rabbitClient,
       MessageBroker messageBroker,
       Tracing tracing) {
+    this(routingProperties, rabbitClient, messageBroker, tracing, null);
+  }
+
+  /**
+   * Creates a new Queues instance.
+   *
+   * @param rabbitClient the connection to RabbitMQ.
+   * @param queueDepths the cached depths of the queues, null to ask RabbitMQ on every call.
+   */
+  public RabbitMQ(
+      RoutingProperties routingProperties,
+      RabbitClient rabbitClient,
+      MessageBroker messageBroker,
+      Tracing tracing,
+      QueueDepths queueDepths) {
     this.tracing = tracing;
+    this.queueDepths = queueDepths;
     // use RabbitConnection to prevent uncontrolled access to Channel from user app
     this.queues = new HashMap<>();
     this.routes = new HashMap<>();
@@ -48,7 +65,7 @@ public class RabbitMQ {
         .getOutgoing()
         .forEach(
             (routeName, topicNames) -> {
-              Route route = new Route(routeName);
+              Route route = new Route(routeName, messageBroker);
               topicNames.forEach(
                   name -> {
                     addQueue(name);
@@ -61,7 +78,7 @@ public class RabbitMQ {
   }
 
   private void addQueue(String name) {
-    this.queues.put(name, new Queue(name, rabbitClient));
+    this.queues.put(name, new Queue(name, rabbitClient, queueDepths));
   }
 
   /**
@@ -91,7 +108,7 @@ public class RabbitMQ {
    * @return The corresponding queue.
    */
   public Queue queue(String name) {
-    return queues.computeIfAbsent(name, key -> new Queue(key, rabbitClient));
+    return queues.computeIfAbsent(name, key -> new Queue(key, rabbitClient, queueDepths));
   }
 
   /**
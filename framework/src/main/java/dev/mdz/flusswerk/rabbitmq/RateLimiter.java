@@ -0,0 +1,122 @@
+package dev.mdz.flusswerk.rabbitmq;
+
+import static java.util.Objects.requireNonNull;
+
+import dev.mdz.flusswerk.exceptions.RetryProcessingException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token bucket limiting how many messages are sent per second. Up to {@code burst} messages can be
+ * sent at once, after that the sending thread is parked until the bucket has been refilled at the
+ * configured rate. Messages are never dropped, so a fast flow is slowed down to the rate of the
+ * limit instead.
+ *
+ * <p>Every caller reserves its slot while holding the lock, but waits without it, so waiting
+ * threads are served in the order they arrived.
+ */
+public class RateLimiter implements MeterBinder {
+
+  private final String name;
+  private final double rate;
+  private final int burst;
+  private final long interval; // nanoseconds between two messages at the configured rate
+  private final long tolerance; // how far ahead of the rate a burst may be
+  private long next; // theoretical time of the next message at the configured rate
+
+  private final LongAdder acquired = new LongAdder();
+  private final LongAdder throttled = new LongAdder();
+  private final LongAdder waited = new LongAdder();
+
+  /**
+   * @param name the name of the limit for metrics, e.g. the topic
+   * @param rate the number of messages per second
+   * @param burst the number of messages that can be sent at once
+   */
+  public RateLimiter(String name, double rate, int burst) {
+    this.name = requireNonNull(name);
+    if (!(rate > 0)) {
+      throw new IllegalArgumentException("Rate must be positive, but is " + rate);
+    }
+    if (burst < 1) {
+      throw new IllegalArgumentException("Burst must be at least 1, but is " + burst);
+    }
+    this.rate = rate;
+    this.burst = burst;
+    this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+    this.tolerance = (burst - 1) * interval;
+    this.next = System.nanoTime();
+  }
+
+  /**
+   * Blocks until the next message may be sent.
+   *
+   * @throws RetryProcessingException if the thread has been interrupted while waiting
+   */
+  public void acquire() {
+    long now = System.nanoTime();
+    long wait = reserve(now);
+    acquired.increment();
+    if (wait <= 0) {
+      return;
+    }
+    throttled.increment();
+    waited.add(wait);
+    long deadline = now + wait;
+    while ((wait = deadline - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(this, wait);
+      if (Thread.currentThread().isInterrupted()) {
+        throw new RetryProcessingException("Interrupted while waiting for rate limit of %s", name);
+      }
+    }
+  }
+
+  /**
+   * @return nanoseconds to wait until the reserved slot.
+   */
+  private synchronized long reserve(long now) {
+    long slot = Math.max(now, next - tolerance);
+    next = Math.max(next, slot) + interval;
+    return slot - now;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the number of messages per second.
+   */
+  public double getRate() {
+    return rate;
+  }
+
+  /**
+   * @return the number of messages that can be sent at once.
+   */
+  public int getBurst() {
+    return burst;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionTimer.builder(
+            "flusswerk.ratelimit.wait",
+            this,
+            limiter -> limiter.acquired.sum(),
+            limiter -> limiter.waited.sum(),
+            TimeUnit.NANOSECONDS)
+        .description("Time spent waiting for the rate limit before sending a message")
+        .tag("limit", name)
+        .register(registry);
+    FunctionCounter.builder("flusswerk.ratelimit.throttled", throttled, LongAdder::sum)
+        .description("Messages that had to wait for the rate limit before sending")
+        .tag("limit", name)
+        .register(registry);
+  }
+}
@@ -10,15 +10,31 @@ import java.util.Objects;
 public class Route implements Sender {
   private final String name;
   private final List<Topic> topics;
+  private final MessageBroker messageBroker;
 
   public Route(String name) {
-    this.name = name;
-    topics = new ArrayList<>();
+    this(name, new ArrayList<>(), null);
   }
 
   public Route(String name, List<Topic> topics) {
+    this(name, topics, null);
+  }
+
+  /**
+   * Creates a route that sends messages to all its topics via the given {@link MessageBroker}, so
+   * every message is serialized only once.
+   *
+   * @param name The name of the route.
+   * @param messageBroker The message broker all topics of this route use.
+   */
+  Route(String name, MessageBroker messageBroker) {
+    this(name, new ArrayList<>(), messageBroker);
+  }
+
+  private Route(String name, List<Topic> topics, MessageBroker messageBroker) {
     this.name = name;
     this.topics = topics;
+    this.messageBroker = messageBroker;
   }
 
   public void addTopic(Topic topic) {
@@ -32,9 +48,14 @@ public class Route implements Sender {
    */
   @Override
   public void send(Message message) {
-    for (Topic topic : topics) {
-      topic.send(message);
+    if (!canFanOut()) {
+      for (Topic topic : topics) {
+        topic.send(message);
+      }
+      return;
     }
+    topics.get(0).ensureTracing(message);
+    messageBroker.sendToAll(topicNames(), message);
   }
 
   /**
@@ -44,9 +65,14 @@ public class Route implements Sender {
    */
   @Override
   public void send(Collection<Message> messages) {
-    for (Topic topic : topics) {
-      topic.send(messages);
+    if (!canFanOut()) {
+      for (Topic topic : topics) {
+        topic.send(messages);
+      }
+      return;
     }
+    topics.get(0).ensureTracing(messages);
+    messageBroker.sendToAll(topicNames(), messages);
   }
 
   /**
@@ -77,6 +103,14 @@ public class Route implements Sender {
     return this.name;
   }
 
+  private boolean canFanOut() {
+    return messageBroker != null && topics.size() > 1;
+  }
+
+  private List<String> topicNames() {
+    return topics.stream().map(Topic::getName).toList();
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
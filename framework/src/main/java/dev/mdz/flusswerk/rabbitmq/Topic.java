@@ -33,10 +33,7 @@ public class Topic implements Sender {
    */
   @Override
   public void send(Message message) {
-    // Only set a tracing path if there is none yet
-    if (message.getTracing() == null || message.getTracing().isEmpty()) {
-      message.setTracing(getTracingPath());
-    }
+    ensureTracing(message);
     messageBroker.send(name, message);
   }
 
@@ -47,11 +44,7 @@ public class Topic implements Sender {
    */
   @Override
   public void send(Collection<Message> messages) {
-    // Get a new tracing path in case one is needed
-    final List<String> tracingPath = getTracingPath();
-    messages.stream()
-        .filter(message -> message.getTracing() == null || message.getTracing().isEmpty())
-        .forEach(message -> message.setTracing(tracingPath));
+    ensureTracing(messages);
     messageBroker.send(name, messages);
   }
 
@@ -77,6 +70,21 @@ public class Topic implements Sender {
     messageBroker.sendRaw(name, message);
   }
 
+  void ensureTracing(Message message) {
+    // Only set a tracing path if there is none yet
+    if (message.getTracing() == null || message.getTracing().isEmpty()) {
+      message.setTracing(getTracingPath());
+    }
+  }
+
+  void ensureTracing(Collection<Message> messages) {
+    // Get a new tracing path in case one is needed
+    final List<String> tracingPath = getTracingPath();
+    messages.stream()
+        .filter(message -> message.getTracing() == null || message.getTracing().isEmpty())
+        .forEach(message -> message.setTracing(tracingPath));
+  }
+
   private List<String> getTracingPath() {
     List<String> tracingPath = tracing.tracingPath();
     if (tracingPath.isEmpty()) {
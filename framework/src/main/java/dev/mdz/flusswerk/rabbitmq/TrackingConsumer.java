@@ -0,0 +1,55 @@
+package dev.mdz.flusswerk.rabbitmq;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownSignalException;
+import java.io.IOException;
+
+/**
+ * Tracks every delivery on its channel before passing it on, so acks of this channel can be
+ * coalesced safely (see {@link AckCoalescer}).
+ */
+class TrackingConsumer implements Consumer {
+
+  private final Consumer consumer;
+  private final PooledChannel channel;
+
+  TrackingConsumer(Consumer consumer, PooledChannel channel) {
+    this.consumer = consumer;
+    this.channel = channel;
+  }
+
+  @Override
+  public void handleConsumeOk(String consumerTag) {
+    consumer.handleConsumeOk(consumerTag);
+  }
+
+  @Override
+  public void handleCancelOk(String consumerTag) {
+    consumer.handleCancelOk(consumerTag);
+  }
+
+  @Override
+  public void handleCancel(String consumerTag) throws IOException {
+    consumer.handleCancel(consumerTag);
+  }
+
+  @Override
+  public void handleShutdownSignal(String consumerTag, ShutdownSignalException sig) {
+    consumer.handleShutdownSignal(consumerTag, sig);
+  }
+
+  @Override
+  public void handleRecoverOk(String consumerTag) {
+    consumer.handleRecoverOk(consumerTag);
+  }
+
+  @Override
+  public void handleDelivery(
+      String consumerTag, Envelope envelope, BasicProperties properties, byte[] body)
+      throws IOException {
+    channel.delivered(envelope.getDeliveryTag());
+    consumer.handleDelivery(consumerTag, envelope, properties, body);
+  }
+}
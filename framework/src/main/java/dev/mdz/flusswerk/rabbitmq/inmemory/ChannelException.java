@@ -0,0 +1,12 @@
+package dev.mdz.flusswerk.rabbitmq.inmemory;
+
+/**
+ * An error that closes the channel in RabbitMQ, like an unknown queue or delivery tag. The {@link
+ * InMemoryChannel} closes itself and reports it the way the RabbitMQ client does.
+ */
+class ChannelException extends IllegalStateException {
+
+  ChannelException(String message) {
+    super(message);
+  }
+}
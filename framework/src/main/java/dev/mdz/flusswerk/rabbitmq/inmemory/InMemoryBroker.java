@@ -0,0 +1,193 @@
+package dev.mdz.flusswerk.rabbitmq.inmemory;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import dev.mdz.flusswerk.config.properties.RabbitMQProperties;
+import dev.mdz.flusswerk.engine.Threads;
+import dev.mdz.flusswerk.rabbitmq.RabbitConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A message broker that lives in the JVM and stands in for RabbitMQ, e.g. for load tests of a
+ * complete Flusswerk application without network. It implements the part of AMQP 0-9-1 that
+ * Flusswerk uses: direct, fanout and topic exchanges, durable queues with message TTL and
+ * dead-lettering, consumers with prefetch, {@code basicGet}, acks, nacks, rejects and publisher
+ * confirms. Messages are kept in memory only.
+ *
+ * <p>To run a Flusswerk application without RabbitMQ, provide a bean of this type. Flusswerk then
+ * connects to it instead of the configured RabbitMQ hosts:
+ *
+ * <pre>{@code
+ * @Bean
+ * public InMemoryBroker inMemoryBroker() {
+ *   return new InMemoryBroker();
+ * }
+ * }</pre>
+ */
+public class InMemoryBroker {
+
+  private final Map<String, InMemoryExchange> exchanges = new ConcurrentHashMap<>();
+  private final Map<String, InMemoryQueue> queues = new ConcurrentHashMap<>();
+  private final AtomicInteger channelNumbers = new AtomicInteger();
+  private final ScheduledExecutorService expiry;
+
+  public InMemoryBroker() {
+    // The default exchange routes every message to the queue with the routing key as name
+    exchanges.put("", new InMemoryExchange("", BuiltinExchangeType.DIRECT));
+    expiry =
+        Executors.newSingleThreadScheduledExecutor(Threads.daemon("flusswerk-in-memory-broker"));
+  }
+
+  /**
+   * Opens a connection with as many channels as configured in {@link
+   * RabbitMQProperties#channels()}. Hosts and credentials are ignored.
+   *
+   * @param rabbitMQ the connection settings
+   * @return a connection to this broker
+   */
+  public RabbitConnection connect(RabbitMQProperties rabbitMQ) {
+    List<InMemoryChannel> channels = new ArrayList<>();
+    for (int i = 0; i < rabbitMQ.channels(); i++) {
+      InMemoryChannel channel = new InMemoryChannel(this, channelNumbers.incrementAndGet());
+      if (rabbitMQ.publisherConfirms()) {
+        channel.confirmSelect();
+      }
+      channels.add(channel);
+    }
+    return new InMemoryConnection(rabbitMQ, channels);
+  }
+
+  /**
+   * @param queue the queue name
+   * @return the number of messages in the queue that are ready for delivery.
+   */
+  public long messageCount(String queue) {
+    return queue(queue).messageCount();
+  }
+
+  /**
+   * @return the names of all declared queues.
+   */
+  public Set<String> queueNames() {
+    return Set.copyOf(queues.keySet());
+  }
+
+  /** Stops expiring messages. Channels stay usable, but TTLs are not enforced anymore. */
+  public void shutdown() {
+    expiry.shutdownNow();
+  }
+
+  void declareExchange(String name, BuiltinExchangeType type) {
+    InMemoryExchange existing = exchanges.putIfAbsent(name, new InMemoryExchange(name, type));
+    if (existing != null && existing.getType() != type) {
+      throw new ChannelException(
+          String.format(
+              "PRECONDITION_FAILED - exchange '%s' has type %s, not %s",
+              name, existing.getType(), type));
+    }
+  }
+
+  void deleteExchange(String name) {
+    exchanges.remove(name);
+  }
+
+  InMemoryQueue declareQueue(String name, Map<String, Object> arguments) {
+    return queues.computeIfAbsent(
+        name,
+        queueName -> {
+          InMemoryQueue queue = new InMemoryQueue(queueName, arguments, this);
+          exchanges.get("").bind(queueName, queueName);
+          return queue;
+        });
+  }
+
+  int deleteQueue(String name) {
+    InMemoryQueue queue = queues.remove(name);
+    if (queue == null) {
+      return 0;
+    }
+    exchanges.values().forEach(exchange -> exchange.unbindAll(name));
+    return queue.purge();
+  }
+
+  void bind(String queue, String exchange, String routingKey) {
+    queue(queue); // fail for unknown queues
+    exchange(exchange).bind(queue, routingKey);
+  }
+
+  void unbind(String queue, String exchange, String routingKey) {
+    exchange(exchange).unbind(queue, routingKey);
+  }
+
+  /**
+   * Routes a message to all queues bound to the exchange. Unroutable messages are dropped.
+   *
+   * @param exchange the exchange name
+   * @param routingKey the routing key
+   * @param properties the AMQP properties
+   * @param body the message body
+   */
+  void publish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body) {
+    for (String name : exchange(exchange).route(routingKey)) {
+      InMemoryQueue queue = queues.get(name);
+      if (queue != null) {
+        queue.enqueue(exchange, routingKey, properties, body);
+      }
+    }
+  }
+
+  InMemoryQueue queue(String name) {
+    InMemoryQueue queue = queues.get(name);
+    if (queue == null) {
+      throw new ChannelException(String.format("NOT_FOUND - no queue '%s'", name));
+    }
+    return queue;
+  }
+
+  void scheduleExpiry(InMemoryQueue queue, long delayNanos) {
+    try {
+      expiry.schedule(queue::expire, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      // broker has been shut down, messages do not expire anymore
+    }
+  }
+
+  private InMemoryExchange exchange(String name) {
+    InMemoryExchange exchange = exchanges.get(name);
+    if (exchange == null) {
+      throw new ChannelException(String.format("NOT_FOUND - no exchange '%s'", name));
+    }
+    return exchange;
+  }
+
+  /** Hands out the in-memory channels instead of connecting to RabbitMQ. */
+  private static class InMemoryConnection extends RabbitConnection {
+
+    private final List<InMemoryChannel> channels;
+
+    InMemoryConnection(RabbitMQProperties rabbitMQ, List<InMemoryChannel> channels) {
+      super(rabbitMQ, channels);
+      this.channels = channels;
+    }
+
+    @Override
+    public boolean isRunning() {
+      return channels.stream().anyMatch(Channel::isOpen);
+    }
+
+    @Override
+    public void close() {
+      channels.forEach(InMemoryChannel::close);
+    }
+  }
+}
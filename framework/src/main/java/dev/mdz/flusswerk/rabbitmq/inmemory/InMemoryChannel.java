@@ -0,0 +1,1035 @@
+package dev.mdz.flusswerk.rabbitmq.inmemory;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.CancelCallback;
+import com.rabbitmq.client.Command;
+import com.rabbitmq.client.ConfirmCallback;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.ConsumerShutdownSignalCallback;
+import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.Method;
+import com.rabbitmq.client.RecoverableChannel;
+import com.rabbitmq.client.RecoveryListener;
+import com.rabbitmq.client.ReturnCallback;
+import com.rabbitmq.client.ReturnListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import com.rabbitmq.client.impl.AMQImpl;
+import dev.mdz.flusswerk.engine.Threads;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A channel to the {@link InMemoryBroker}. Like the RabbitMQ client, every channel delivers to its
+ * consumers on its own thread, one delivery after the other in delivery tag order.
+ *
+ * <p>Operations that Flusswerk does not use (transactions, exchange-to-exchange bindings,
+ * callback-based consumers and raw RPC) throw an {@link UnsupportedOperationException}. Errors that
+ * close the channel in RabbitMQ, like unknown exchanges or delivery tags, close this channel as
+ * well. Like the RabbitMQ client, synchronous methods then throw an {@link IOException}, while
+ * asynchronous methods (publishing and acknowledging) return and only later calls fail with an
+ * {@link AlreadyClosedException}.
+ */
+class InMemoryChannel implements RecoverableChannel {
+
+  private static final Logger log = LoggerFactory.getLogger(InMemoryChannel.class);
+
+  private final InMemoryBroker broker;
+  private final int number;
+  private final ExecutorService dispatcher;
+  private final ConcurrentNavigableMap<Long, Unacked> unacked = new ConcurrentSkipListMap<>();
+  private final Map<String, QueueConsumer> consumers = new ConcurrentHashMap<>();
+  private final List<ConfirmListener> confirmListeners = new CopyOnWriteArrayList<>();
+  private final List<ReturnListener> returnListeners = new CopyOnWriteArrayList<>();
+  private final List<ShutdownListener> shutdownListeners = new CopyOnWriteArrayList<>();
+  private final List<RecoveryListener> recoveryListeners = new CopyOnWriteArrayList<>();
+  private final Object deliveryLock = new Object();
+  private final Object publishLock = new Object();
+  private long nextDeliveryTag = 1;
+  private long nextPublishSeqNo = 1;
+  private volatile boolean confirmMode;
+  private volatile int prefetch;
+  private volatile Consumer defaultConsumer;
+  private volatile ShutdownSignalException closeReason;
+
+  InMemoryChannel(InMemoryBroker broker, int number) {
+    this.broker = broker;
+    this.number = number;
+    this.dispatcher =
+        Executors.newSingleThreadExecutor(Threads.daemon("flusswerk-in-memory-channel-" + number));
+  }
+
+  /**
+   * Delivers a message to a consumer of this channel. Called by the queue while it holds its lock,
+   * so the delivery tags of one channel are handed out in delivery order.
+   */
+  void deliver(QueueConsumer consumer, QueuedMessage message) {
+    synchronized (deliveryLock) {
+      long deliveryTag = nextDeliveryTag++;
+      if (!consumer.isAutoAck()) {
+        unacked.put(deliveryTag, new Unacked(consumer.getQueue(), message, consumer));
+      }
+      Envelope envelope =
+          new Envelope(
+              deliveryTag, message.redelivered(), message.exchange(), message.routingKey());
+      dispatch(
+          () ->
+              consumer
+                  .getConsumer()
+                  .handleDelivery(
+                      consumer.getTag(), envelope, message.properties(), message.body()));
+    }
+  }
+
+  @Override
+  public int getChannelNumber() {
+    return number;
+  }
+
+  @Override
+  public Connection getConnection() {
+    return null; // there is no network connection
+  }
+
+  @Override
+  public void close() {
+    close(AMQP.REPLY_SUCCESS, "OK");
+  }
+
+  @Override
+  public void close(int closeCode, String closeMessage) {
+    shutdown(
+        new ShutdownSignalException(
+            false, true, null, this, closeMessage + " (" + closeCode + ")", null));
+  }
+
+  private synchronized void shutdown(ShutdownSignalException reason) {
+    if (closeReason != null) {
+      return;
+    }
+    closeReason = reason;
+    for (QueueConsumer consumer : consumers.values()) {
+      consumer.getQueue().removeConsumer(consumer);
+    }
+    consumers.clear();
+    requeueAll();
+    shutdownListeners.forEach(listener -> listener.shutdownCompleted(closeReason));
+    dispatcher.shutdown();
+  }
+
+  @Override
+  public void abort() {
+    close();
+  }
+
+  @Override
+  public void abort(int closeCode, String closeMessage) {
+    close(closeCode, closeMessage);
+  }
+
+  @Override
+  public void addReturnListener(ReturnListener listener) {
+    returnListeners.add(listener); // never called, unroutable messages are dropped
+  }
+
+  @Override
+  public ReturnListener addReturnListener(ReturnCallback returnCallback) {
+    ReturnListener listener = (replyCode, replyText, exchange, routingKey, properties, body) -> {};
+    addReturnListener(listener);
+    return listener;
+  }
+
+  @Override
+  public boolean removeReturnListener(ReturnListener listener) {
+    return returnListeners.remove(listener);
+  }
+
+  @Override
+  public void clearReturnListeners() {
+    returnListeners.clear();
+  }
+
+  @Override
+  public void addConfirmListener(ConfirmListener listener) {
+    confirmListeners.add(listener);
+  }
+
+  @Override
+  public ConfirmListener addConfirmListener(
+      ConfirmCallback ackCallback, ConfirmCallback nackCallback) {
+    ConfirmListener listener =
+        new ConfirmListener() {
+          @Override
+          public void handleAck(long deliveryTag, boolean multiple) throws IOException {
+            ackCallback.handle(deliveryTag, multiple);
+          }
+
+          @Override
+          public void handleNack(long deliveryTag, boolean multiple) throws IOException {
+            nackCallback.handle(deliveryTag, multiple);
+          }
+        };
+    addConfirmListener(listener);
+    return listener;
+  }
+
+  @Override
+  public boolean removeConfirmListener(ConfirmListener listener) {
+    return confirmListeners.remove(listener);
+  }
+
+  @Override
+  public void clearConfirmListeners() {
+    confirmListeners.clear();
+  }
+
+  @Override
+  public Consumer getDefaultConsumer() {
+    return defaultConsumer;
+  }
+
+  @Override
+  public void setDefaultConsumer(Consumer consumer) {
+    this.defaultConsumer = consumer;
+  }
+
+  @Override
+  public void basicQos(int prefetchSize, int prefetchCount, boolean global) {
+    basicQos(prefetchCount);
+  }
+
+  @Override
+  public void basicQos(int prefetchCount, boolean global) {
+    basicQos(prefetchCount);
+  }
+
+  /** Sets the prefetch for consumers started afterwards, like RabbitMQ does. */
+  @Override
+  public void basicQos(int prefetchCount) {
+    ensureOpen();
+    this.prefetch = prefetchCount;
+  }
+
+  @Override
+  public void basicPublish(
+      String exchange, String routingKey, AMQP.BasicProperties props, byte[] body)
+      throws IOException {
+    basicPublish(exchange, routingKey, false, false, props, body);
+  }
+
+  @Override
+  public void basicPublish(
+      String exchange,
+      String routingKey,
+      boolean mandatory,
+      AMQP.BasicProperties props,
+      byte[] body)
+      throws IOException {
+    basicPublish(exchange, routingKey, mandatory, false, props, body);
+  }
+
+  @Override
+  public void basicPublish(
+      String exchange,
+      String routingKey,
+      boolean mandatory,
+      boolean immediate,
+      AMQP.BasicProperties props,
+      byte[] body)
+      throws IOException {
+    ensureOpen();
+    try {
+      if (!confirmMode) {
+        broker.publish(exchange, routingKey, props, body);
+        return;
+      }
+      // Messages are routed synchronously, so they can be confirmed right away
+      synchronized (publishLock) {
+        long sequenceNumber = nextPublishSeqNo++;
+        broker.publish(exchange, routingKey, props, body);
+        for (ConfirmListener listener : confirmListeners) {
+          listener.handleAck(sequenceNumber, false);
+        }
+      }
+    } catch (ChannelException e) {
+      fail(e); // publishing is asynchronous, later calls see the closed channel
+    }
+  }
+
+  @Override
+  public AMQP.Exchange.DeclareOk exchangeDeclare(String exchange, String type) throws IOException {
+    return exchangeDeclare(exchange, BuiltinExchangeType.valueOf(type.toUpperCase()));
+  }
+
+  @Override
+  public AMQP.Exchange.DeclareOk exchangeDeclare(String exchange, BuiltinExchangeType type)
+      throws IOException {
+    ensureOpen();
+    try {
+      broker.declareExchange(exchange, type);
+    } catch (ChannelException e) {
+      throw fail(e);
+    }
+    return new AMQImpl.Exchange.DeclareOk();
+  }
+
+  @Override
+  public AMQP.Exchange.DeclareOk exchangeDeclare(String exchange, String type, boolean durable)
+      throws IOException {
+    return exchangeDeclare(exchange, type);
+  }
+
+  @Override
+  public AMQP.Exchange.DeclareOk exchangeDeclare(
+      String exchange, BuiltinExchangeType type, boolean durable) throws IOException {
+    return exchangeDeclare(exchange, type);
+  }
+
+  @Override
+  public AMQP.Exchange.DeclareOk exchangeDeclare(
+      String exchange,
+      String type,
+      boolean durable,
+      boolean autoDelete,
+      Map<String, Object> arguments)
+      throws IOException {
+    return exchangeDeclare(exchange, type);
+  }
+
+  @Override
+  public AMQP.Exchange.DeclareOk exchangeDeclare(
+      String exchange,
+      BuiltinExchangeType type,
+      boolean durable,
+      boolean autoDelete,
+      Map<String, Object> arguments)
+      throws IOException {
+    return exchangeDeclare(exchange, type);
+  }
+
+  @Override
+  public AMQP.Exchange.DeclareOk exchangeDeclare(
+      String exchange,
+      String type,
+      boolean durable,
+      boolean autoDelete,
+      boolean internal,
+      Map<String, Object> arguments)
+      throws IOException {
+    return exchangeDeclare(exchange, type);
+  }
+
+  @Override
+  public AMQP.Exchange.DeclareOk exchangeDeclare(
+      String exchange,
+      BuiltinExchangeType type,
+      boolean durable,
+      boolean autoDelete,
+      boolean internal,
+      Map<String, Object> arguments)
+      throws IOException {
+    return exchangeDeclare(exchange, type);
+  }
+
+  @Override
+  public void exchangeDeclareNoWait(
+      String exchange,
+      String type,
+      boolean durable,
+      boolean autoDelete,
+      boolean internal,
+      Map<String, Object> arguments)
+      throws IOException {
+    exchangeDeclare(exchange, type);
+  }
+
+  @Override
+  public void exchangeDeclareNoWait(
+      String exchange,
+      BuiltinExchangeType type,
+      boolean durable,
+      boolean autoDelete,
+      boolean internal,
+      Map<String, Object> arguments)
+      throws IOException {
+    exchangeDeclare(exchange, type);
+  }
+
+  @Override
+  public AMQP.Exchange.DeclareOk exchangeDeclarePassive(String name) {
+    throw unsupported("exchangeDeclarePassive");
+  }
+
+  @Override
+  public AMQP.Exchange.DeleteOk exchangeDelete(String exchange, boolean ifUnused) {
+    return exchangeDelete(exchange);
+  }
+
+  @Override
+  public void exchangeDeleteNoWait(String exchange, boolean ifUnused) {
+    exchangeDelete(exchange);
+  }
+
+  @Override
+  public AMQP.Exchange.DeleteOk exchangeDelete(String exchange) {
+    ensureOpen();
+    broker.deleteExchange(exchange);
+    return new AMQImpl.Exchange.DeleteOk();
+  }
+
+  @Override
+  public AMQP.Exchange.BindOk exchangeBind(String destination, String source, String routingKey) {
+    throw unsupported("exchangeBind");
+  }
+
+  @Override
+  public AMQP.Exchange.BindOk exchangeBind(
+      String destination, String source, String routingKey, Map<String, Object> arguments) {
+    throw unsupported("exchangeBind");
+  }
+
+  @Override
+  public void exchangeBindNoWait(
+      String destination, String source, String routingKey, Map<String, Object> arguments) {
+    throw unsupported("exchangeBind");
+  }
+
+  @Override
+  public AMQP.Exchange.UnbindOk exchangeUnbind(
+      String destination, String source, String routingKey) {
+    throw unsupported("exchangeUnbind");
+  }
+
+  @Override
+  public AMQP.Exchange.UnbindOk exchangeUnbind(
+      String destination, String source, String routingKey, Map<String, Object> arguments) {
+    throw unsupported("exchangeUnbind");
+  }
+
+  @Override
+  public void exchangeUnbindNoWait(
+      String destination, String source, String routingKey, Map<String, Object> arguments) {
+    throw unsupported("exchangeUnbind");
+  }
+
+  @Override
+  public AMQP.Queue.DeclareOk queueDeclare() {
+    return queueDeclare("amq.gen-" + UUID.randomUUID(), false, true, true, null);
+  }
+
+  @Override
+  public AMQP.Queue.DeclareOk queueDeclare(
+      String queue,
+      boolean durable,
+      boolean exclusive,
+      boolean autoDelete,
+      Map<String, Object> arguments) {
+    ensureOpen();
+    InMemoryQueue declared = broker.declareQueue(queue, arguments);
+    return new AMQImpl.Queue.DeclareOk(
+        declared.getName(), (int) declared.messageCount(), declared.consumerCount());
+  }
+
+  @Override
+  public void queueDeclareNoWait(
+      String queue,
+      boolean durable,
+      boolean exclusive,
+      boolean autoDelete,
+      Map<String, Object> arguments) {
+    queueDeclare(queue, durable, exclusive, autoDelete, arguments);
+  }
+
+  @Override
+  public AMQP.Queue.DeclareOk queueDeclarePassive(String queue) throws IOException {
+    ensureOpen();
+    InMemoryQueue declared = queue(queue);
+    return new AMQImpl.Queue.DeclareOk(
+        declared.getName(), (int) declared.messageCount(), declared.consumerCount());
+  }
+
+  @Override
+  public AMQP.Queue.DeleteOk queueDelete(String queue) {
+    ensureOpen();
+    return new AMQImpl.Queue.DeleteOk(broker.deleteQueue(queue));
+  }
+
+  @Override
+  public AMQP.Queue.DeleteOk queueDelete(String queue, boolean ifUnused, boolean ifEmpty) {
+    return queueDelete(queue);
+  }
+
+  @Override
+  public void queueDeleteNoWait(String queue, boolean ifUnused, boolean ifEmpty) {
+    queueDelete(queue);
+  }
+
+  @Override
+  public AMQP.Queue.BindOk queueBind(String queue, String exchange, String routingKey)
+      throws IOException {
+    ensureOpen();
+    try {
+      broker.bind(queue, exchange, routingKey);
+    } catch (ChannelException e) {
+      throw fail(e);
+    }
+    return new AMQImpl.Queue.BindOk();
+  }
+
+  @Override
+  public AMQP.Queue.BindOk queueBind(
+      String queue, String exchange, String routingKey, Map<String, Object> arguments)
+      throws IOException {
+    return queueBind(queue, exchange, routingKey);
+  }
+
+  @Override
+  public void queueBindNoWait(
+      String queue, String exchange, String routingKey, Map<String, Object> arguments)
+      throws IOException {
+    queueBind(queue, exchange, routingKey);
+  }
+
+  @Override
+  public AMQP.Queue.UnbindOk queueUnbind(String queue, String exchange, String routingKey)
+      throws IOException {
+    ensureOpen();
+    try {
+      broker.unbind(queue, exchange, routingKey);
+    } catch (ChannelException e) {
+      throw fail(e);
+    }
+    return new AMQImpl.Queue.UnbindOk();
+  }
+
+  @Override
+  public AMQP.Queue.UnbindOk queueUnbind(
+      String queue, String exchange, String routingKey, Map<String, Object> arguments)
+      throws IOException {
+    return queueUnbind(queue, exchange, routingKey);
+  }
+
+  @Override
+  public AMQP.Queue.PurgeOk queuePurge(String queue) throws IOException {
+    ensureOpen();
+    return new AMQImpl.Queue.PurgeOk(queue(queue).purge());
+  }
+
+  @Override
+  public GetResponse basicGet(String queue, boolean autoAck) throws IOException {
+    ensureOpen();
+    InMemoryQueue source = queue(queue);
+    QueuedMessage message = source.poll();
+    if (message == null) {
+      return null;
+    }
+    long deliveryTag;
+    synchronized (deliveryLock) {
+      deliveryTag = nextDeliveryTag++;
+      if (!autoAck) {
+        unacked.put(deliveryTag, new Unacked(source, message, null));
+      }
+    }
+    Envelope envelope =
+        new Envelope(deliveryTag, message.redelivered(), message.exchange(), message.routingKey());
+    return new GetResponse(
+        envelope, message.properties(), message.body(), (int) source.messageCount());
+  }
+
+  @Override
+  public void basicAck(long deliveryTag, boolean multiple) {
+    ensureOpen();
+    List<Unacked> acked;
+    try {
+      acked = settle(deliveryTag, multiple);
+    } catch (ChannelException e) {
+      fail(e); // acknowledging is asynchronous, later calls see the closed channel
+      return;
+    }
+    acked.stream().map(Unacked::queue).distinct().forEach(InMemoryQueue::dispatch);
+  }
+
+  @Override
+  public void basicNack(long deliveryTag, boolean multiple, boolean requeue) {
+    ensureOpen();
+    List<Unacked> rejected;
+    try {
+      rejected = settle(deliveryTag, multiple);
+    } catch (ChannelException e) {
+      fail(e); // rejecting is asynchronous, later calls see the closed channel
+      return;
+    }
+    reject(rejected, requeue);
+  }
+
+  @Override
+  public void basicReject(long deliveryTag, boolean requeue) {
+    basicNack(deliveryTag, false, requeue);
+  }
+
+  @Override
+  public String basicConsume(String queue, Consumer callback) throws IOException {
+    return basicConsume(queue, false, callback);
+  }
+
+  @Override
+  public String basicConsume(
+      String queue, DeliverCallback deliverCallback, CancelCallback cancelCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      DeliverCallback deliverCallback,
+      ConsumerShutdownSignalCallback shutdownSignalCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      DeliverCallback deliverCallback,
+      CancelCallback cancelCallback,
+      ConsumerShutdownSignalCallback shutdownSignalCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(String queue, boolean autoAck, Consumer callback) throws IOException {
+    return basicConsume(queue, autoAck, "", false, false, null, callback);
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      DeliverCallback deliverCallback,
+      CancelCallback cancelCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      DeliverCallback deliverCallback,
+      ConsumerShutdownSignalCallback shutdownSignalCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      DeliverCallback deliverCallback,
+      CancelCallback cancelCallback,
+      ConsumerShutdownSignalCallback shutdownSignalCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(
+      String queue, boolean autoAck, Map<String, Object> arguments, Consumer callback)
+      throws IOException {
+    return basicConsume(queue, autoAck, "", false, false, arguments, callback);
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      Map<String, Object> arguments,
+      DeliverCallback deliverCallback,
+      CancelCallback cancelCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      Map<String, Object> arguments,
+      DeliverCallback deliverCallback,
+      ConsumerShutdownSignalCallback shutdownSignalCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      Map<String, Object> arguments,
+      DeliverCallback deliverCallback,
+      CancelCallback cancelCallback,
+      ConsumerShutdownSignalCallback shutdownSignalCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(String queue, boolean autoAck, String consumerTag, Consumer callback)
+      throws IOException {
+    return basicConsume(queue, autoAck, consumerTag, false, false, null, callback);
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      String consumerTag,
+      DeliverCallback deliverCallback,
+      CancelCallback cancelCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      String consumerTag,
+      DeliverCallback deliverCallback,
+      ConsumerShutdownSignalCallback shutdownSignalCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      String consumerTag,
+      DeliverCallback deliverCallback,
+      CancelCallback cancelCallback,
+      ConsumerShutdownSignalCallback shutdownSignalCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      String consumerTag,
+      boolean noLocal,
+      boolean exclusive,
+      Map<String, Object> arguments,
+      Consumer callback)
+      throws IOException {
+    ensureOpen();
+    InMemoryQueue source = queue(queue);
+    String tag =
+        consumerTag == null || consumerTag.isEmpty()
+            ? "amq.ctag-" + UUID.randomUUID()
+            : consumerTag;
+    QueueConsumer consumer = new QueueConsumer(this, source, tag, callback, autoAck, prefetch);
+    if (consumers.putIfAbsent(tag, consumer) != null) {
+      throw fail(
+          new ChannelException(
+              String.format("NOT_ALLOWED - attempt to reuse consumer tag '%s'", tag)));
+    }
+    // consume-ok is dispatched before the first delivery
+    dispatch(() -> callback.handleConsumeOk(tag));
+    source.addConsumer(consumer);
+    return tag;
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      String consumerTag,
+      boolean noLocal,
+      boolean exclusive,
+      Map<String, Object> arguments,
+      DeliverCallback deliverCallback,
+      CancelCallback cancelCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      String consumerTag,
+      boolean noLocal,
+      boolean exclusive,
+      Map<String, Object> arguments,
+      DeliverCallback deliverCallback,
+      ConsumerShutdownSignalCallback shutdownSignalCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public String basicConsume(
+      String queue,
+      boolean autoAck,
+      String consumerTag,
+      boolean noLocal,
+      boolean exclusive,
+      Map<String, Object> arguments,
+      DeliverCallback deliverCallback,
+      CancelCallback cancelCallback,
+      ConsumerShutdownSignalCallback shutdownSignalCallback) {
+    throw unsupported("basicConsume with callbacks");
+  }
+
+  @Override
+  public void basicCancel(String consumerTag) {
+    ensureOpen();
+    QueueConsumer consumer = consumers.remove(consumerTag);
+    if (consumer == null) {
+      return;
+    }
+    consumer.getQueue().removeConsumer(consumer);
+    dispatch(() -> consumer.getConsumer().handleCancelOk(consumerTag));
+  }
+
+  @Override
+  public AMQP.Basic.RecoverOk basicRecover() {
+    return basicRecover(true);
+  }
+
+  /** Requeues all unacknowledged messages of this channel. */
+  @Override
+  public AMQP.Basic.RecoverOk basicRecover(boolean requeue) {
+    ensureOpen();
+    requeueAll();
+    return new AMQImpl.Basic.RecoverOk();
+  }
+
+  @Override
+  public AMQP.Tx.SelectOk txSelect() {
+    throw unsupported("txSelect");
+  }
+
+  @Override
+  public AMQP.Tx.CommitOk txCommit() {
+    throw unsupported("txCommit");
+  }
+
+  @Override
+  public AMQP.Tx.RollbackOk txRollback() {
+    throw unsupported("txRollback");
+  }
+
+  @Override
+  public AMQP.Confirm.SelectOk confirmSelect() {
+    ensureOpen();
+    confirmMode = true;
+    return new AMQImpl.Confirm.SelectOk();
+  }
+
+  @Override
+  public long getNextPublishSeqNo() {
+    if (!confirmMode) {
+      return 0;
+    }
+    synchronized (publishLock) {
+      return nextPublishSeqNo;
+    }
+  }
+
+  @Override
+  public boolean waitForConfirms() {
+    return true; // every message is confirmed right after publishing
+  }
+
+  @Override
+  public boolean waitForConfirms(long timeout) {
+    return true;
+  }
+
+  @Override
+  public void waitForConfirmsOrDie() {}
+
+  @Override
+  public void waitForConfirmsOrDie(long timeout) {}
+
+  @Override
+  public void asyncRpc(Method method) {
+    throw unsupported("asyncRpc");
+  }
+
+  @Override
+  public Command rpc(Method method) {
+    throw unsupported("rpc");
+  }
+
+  @Override
+  public long messageCount(String queue) throws IOException {
+    ensureOpen();
+    return queue(queue).messageCount();
+  }
+
+  @Override
+  public long consumerCount(String queue) throws IOException {
+    ensureOpen();
+    return queue(queue).consumerCount();
+  }
+
+  @Override
+  public CompletableFuture<Command> asyncCompletableRpc(Method method) {
+    throw unsupported("asyncCompletableRpc");
+  }
+
+  @Override
+  public void addShutdownListener(ShutdownListener listener) {
+    shutdownListeners.add(listener);
+  }
+
+  @Override
+  public void removeShutdownListener(ShutdownListener listener) {
+    shutdownListeners.remove(listener);
+  }
+
+  @Override
+  public ShutdownSignalException getCloseReason() {
+    return closeReason;
+  }
+
+  @Override
+  public void notifyListeners() {
+    if (closeReason != null) {
+      shutdownListeners.forEach(listener -> listener.shutdownCompleted(closeReason));
+    }
+  }
+
+  @Override
+  public boolean isOpen() {
+    return closeReason == null;
+  }
+
+  /** Recovery listeners are kept, but never called: in-memory channels are not recovered. */
+  @Override
+  public void addRecoveryListener(RecoveryListener listener) {
+    recoveryListeners.add(listener);
+  }
+
+  @Override
+  public void removeRecoveryListener(RecoveryListener listener) {
+    recoveryListeners.remove(listener);
+  }
+
+  @Override
+  public String toString() {
+    return "InMemoryChannel{number=" + number + "}";
+  }
+
+  private List<Unacked> settle(long deliveryTag, boolean multiple) {
+    List<Unacked> settled = new ArrayList<>();
+    if (multiple) {
+      Map.Entry<Long, Unacked> entry;
+      while ((entry = unacked.firstEntry()) != null && entry.getKey() <= deliveryTag) {
+        if (unacked.remove(entry.getKey(), entry.getValue())) {
+          settled.add(entry.getValue());
+        }
+      }
+    } else {
+      Unacked entry = unacked.remove(deliveryTag);
+      if (entry == null) {
+        throw new ChannelException("PRECONDITION_FAILED - unknown delivery tag " + deliveryTag);
+      }
+      settled.add(entry);
+    }
+    for (Unacked entry : settled) {
+      if (entry.consumer() != null) {
+        entry.consumer().settled();
+      }
+    }
+    return settled;
+  }
+
+  private void reject(List<Unacked> rejected, boolean requeue) {
+    Map<InMemoryQueue, List<QueuedMessage>> byQueue = new LinkedHashMap<>();
+    for (Unacked entry : rejected) {
+      byQueue.computeIfAbsent(entry.queue(), queue -> new ArrayList<>()).add(entry.message());
+    }
+    byQueue.forEach(
+        (queue, messages) -> {
+          if (requeue) {
+            queue.requeue(messages);
+          } else {
+            queue.deadLetter(messages);
+            queue.dispatch();
+          }
+        });
+  }
+
+  private void requeueAll() {
+    if (!unacked.isEmpty()) {
+      reject(settle(unacked.lastKey(), true), true);
+    }
+  }
+
+  private void dispatch(ConsumerCall call) {
+    try {
+      dispatcher.execute(
+          () -> {
+            try {
+              call.run();
+            } catch (Exception e) {
+              log.error("Consumer on in-memory channel {} failed", number, e);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      log.debug("In-memory channel {} is closed, dropping consumer call", number);
+    }
+  }
+
+  private InMemoryQueue queue(String name) throws IOException {
+    try {
+      return broker.queue(name);
+    } catch (ChannelException e) {
+      throw fail(e);
+    }
+  }
+
+  /**
+   * Closes the channel because of an error, like RabbitMQ does.
+   *
+   * @param error the error that closes the channel
+   * @return the exception synchronous methods throw, like the RabbitMQ client.
+   */
+  private IOException fail(ChannelException error) {
+    ShutdownSignalException reason =
+        new ShutdownSignalException(false, false, null, this, error.getMessage(), null);
+    shutdown(reason);
+    return new IOException(reason);
+  }
+
+  private void ensureOpen() {
+    if (closeReason != null) {
+      throw new AlreadyClosedException(closeReason);
+    }
+  }
+
+  private static UnsupportedOperationException unsupported(String operation) {
+    return new UnsupportedOperationException(
+        operation + " is not supported by the in-memory broker");
+  }
+
+  @FunctionalInterface
+  private interface ConsumerCall {
+    void run() throws Exception;
+  }
+
+  private record Unacked(InMemoryQueue queue, QueuedMessage message, QueueConsumer consumer) {}
+}
@@ -0,0 +1,100 @@
+package dev.mdz.flusswerk.rabbitmq.inmemory;
+
+import com.rabbitmq.client.BuiltinExchangeType;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An exchange of the {@link InMemoryBroker}. Supports direct, fanout and topic exchanges; headers
+ * exchanges route like direct exchanges.
+ */
+class InMemoryExchange {
+
+  private final String name;
+  private final BuiltinExchangeType type;
+  // Bindings rarely change, but every published message reads them
+  private final List<Binding> bindings = new CopyOnWriteArrayList<>();
+
+  InMemoryExchange(String name, BuiltinExchangeType type) {
+    this.name = name;
+    this.type = type;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  BuiltinExchangeType getType() {
+    return type;
+  }
+
+  void bind(String queue, String routingKey) {
+    Binding binding = new Binding(queue, routingKey);
+    if (!bindings.contains(binding)) {
+      bindings.add(binding);
+    }
+  }
+
+  void unbind(String queue, String routingKey) {
+    bindings.remove(new Binding(queue, routingKey));
+  }
+
+  void unbindAll(String queue) {
+    bindings.removeIf(binding -> binding.queue().equals(queue));
+  }
+
+  /**
+   * @param routingKey the routing key of a published message
+   * @return the names of all queues that receive the message, every queue only once.
+   */
+  Set<String> route(String routingKey) {
+    Set<String> queues = new LinkedHashSet<>();
+    for (Binding binding : bindings) {
+      if (matches(binding.routingKey(), routingKey)) {
+        queues.add(binding.queue());
+      }
+    }
+    return queues;
+  }
+
+  private boolean matches(String bindingKey, String routingKey) {
+    return switch (type) {
+      case FANOUT -> true;
+      case TOPIC ->
+          isPlain(bindingKey)
+              ? bindingKey.equals(routingKey)
+              : topicMatches(bindingKey.split("\\."), 0, routingKey.split("\\."), 0);
+      default -> bindingKey.equals(routingKey);
+    };
+  }
+
+  private static boolean isPlain(String bindingKey) {
+    return bindingKey.indexOf('*') < 0 && bindingKey.indexOf('#') < 0;
+  }
+
+  /** Topic matching: {@code *} matches exactly one word, {@code #} matches zero or more words. */
+  static boolean topicMatches(String[] pattern, int p, String[] words, int w) {
+    if (p == pattern.length) {
+      return w == words.length;
+    }
+    if (pattern[p].equals("#")) {
+      for (int skip = w; skip <= words.length; skip++) {
+        if (topicMatches(pattern, p + 1, words, skip)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (w == words.length) {
+      return false;
+    }
+    if (pattern[p].equals("*") || pattern[p].equals(words[w])) {
+      return topicMatches(pattern, p + 1, words, w + 1);
+    }
+    return false;
+  }
+
+  record Binding(String queue, String routingKey) {}
+}
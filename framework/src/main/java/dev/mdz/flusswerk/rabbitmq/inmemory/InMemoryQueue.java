@@ -0,0 +1,261 @@
+package dev.mdz.flusswerk.rabbitmq.inmemory;
+
+import com.rabbitmq.client.AMQP;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A queue of the {@link InMemoryBroker}. Messages are delivered round-robin to all consumers that
+ * have not reached their prefetch limit yet.
+ *
+ * <p>Like in RabbitMQ, messages expire only at the head of the queue, either after the queue's
+ * {@code x-message-ttl} or the message's expiration, whatever comes first. Expired and rejected
+ * messages are dead-lettered to the {@code x-dead-letter-exchange}, if any. Dead-lettering always
+ * happens outside the queue's lock, since messages might move between queues in both directions
+ * (e.g. between an input queue and its retry queue).
+ */
+class InMemoryQueue {
+
+  static final String MESSAGE_TTL = "x-message-ttl";
+  static final String DEAD_LETTER_EXCHANGE = "x-dead-letter-exchange";
+  static final String DEAD_LETTER_ROUTING_KEY = "x-dead-letter-routing-key";
+
+  private final String name;
+  private final InMemoryBroker broker;
+  private final long messageTtl;
+  private final String deadLetterExchange;
+  private final String deadLetterRoutingKey;
+  private final Lock lock = new ReentrantLock();
+  private final Deque<QueuedMessage> messages = new ArrayDeque<>();
+  private final List<QueueConsumer> consumers = new ArrayList<>();
+  private int nextConsumer;
+
+  /**
+   * @param name the queue name
+   * @param arguments the queue arguments, supported are {@code x-message-ttl}, {@code
+   *     x-dead-letter-exchange} and {@code x-dead-letter-routing-key}
+   * @param broker the broker to dead-letter messages to
+   */
+  InMemoryQueue(String name, Map<String, Object> arguments, InMemoryBroker broker) {
+    this.name = name;
+    this.broker = broker;
+    Map<String, Object> args = arguments == null ? Collections.emptyMap() : arguments;
+    this.messageTtl =
+        args.get(MESSAGE_TTL) instanceof Number ttl
+            ? TimeUnit.MILLISECONDS.toNanos(ttl.longValue())
+            : -1;
+    this.deadLetterExchange = (String) args.get(DEAD_LETTER_EXCHANGE);
+    this.deadLetterRoutingKey = (String) args.get(DEAD_LETTER_ROUTING_KEY);
+  }
+
+  String getName() {
+    return name;
+  }
+
+  void enqueue(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body) {
+    QueuedMessage message =
+        new QueuedMessage(exchange, routingKey, properties, body, false, expiresAt(properties));
+    List<QueuedMessage> expired;
+    lock.lock();
+    try {
+      messages.addLast(message);
+      expired = dispatchLocked();
+    } finally {
+      lock.unlock();
+    }
+    deadLetter(expired);
+    if (message.expiresAt() != QueuedMessage.NEVER) {
+      broker.scheduleExpiry(this, message.expiresAt() - System.nanoTime());
+    }
+  }
+
+  /**
+   * Puts messages back to the head of the queue, keeping their order.
+   *
+   * @param requeued the messages in their original order
+   */
+  void requeue(List<QueuedMessage> requeued) {
+    List<QueuedMessage> expired;
+    lock.lock();
+    try {
+      for (int i = requeued.size() - 1; i >= 0; i--) {
+        messages.addFirst(requeued.get(i).redelivery());
+      }
+      expired = dispatchLocked();
+    } finally {
+      lock.unlock();
+    }
+    deadLetter(expired);
+  }
+
+  /**
+   * @return the next message or null if the queue is empty.
+   */
+  QueuedMessage poll() {
+    List<QueuedMessage> expired;
+    QueuedMessage message;
+    lock.lock();
+    try {
+      expired = expireLocked();
+      message = messages.pollFirst();
+    } finally {
+      lock.unlock();
+    }
+    deadLetter(expired);
+    return message;
+  }
+
+  /**
+   * @return the number of messages ready for delivery.
+   */
+  long messageCount() {
+    List<QueuedMessage> expired;
+    long count;
+    lock.lock();
+    try {
+      expired = expireLocked();
+      count = messages.size();
+    } finally {
+      lock.unlock();
+    }
+    deadLetter(expired);
+    return count;
+  }
+
+  int consumerCount() {
+    lock.lock();
+    try {
+      return consumers.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes all messages that are ready for delivery.
+   *
+   * @return the number of removed messages
+   */
+  int purge() {
+    lock.lock();
+    try {
+      int count = messages.size();
+      messages.clear();
+      return count;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void addConsumer(QueueConsumer consumer) {
+    List<QueuedMessage> expired;
+    lock.lock();
+    try {
+      consumers.add(consumer);
+      expired = dispatchLocked();
+    } finally {
+      lock.unlock();
+    }
+    deadLetter(expired);
+  }
+
+  void removeConsumer(QueueConsumer consumer) {
+    lock.lock();
+    try {
+      consumers.remove(consumer);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Delivers as many messages as the consumers can take, e.g. after some have been acked. */
+  void dispatch() {
+    List<QueuedMessage> expired;
+    lock.lock();
+    try {
+      expired = dispatchLocked();
+    } finally {
+      lock.unlock();
+    }
+    deadLetter(expired);
+  }
+
+  /** Dead-letters all expired messages at the head of the queue. */
+  void expire() {
+    dispatch();
+  }
+
+  /**
+   * Dead-letters messages that have been rejected or nacked without requeueing.
+   *
+   * @param rejected the rejected messages
+   */
+  void deadLetter(List<QueuedMessage> rejected) {
+    if (deadLetterExchange == null) {
+      return; // dropped, like in RabbitMQ
+    }
+    for (QueuedMessage message : rejected) {
+      String routingKey =
+          deadLetterRoutingKey != null ? deadLetterRoutingKey : message.routingKey();
+      AMQP.BasicProperties properties = message.properties();
+      if (properties != null && properties.getExpiration() != null) {
+        // RabbitMQ removes the expiration so the message does not expire again right away
+        properties = properties.builder().expiration(null).build();
+      }
+      broker.publish(deadLetterExchange, routingKey, properties, message.body());
+    }
+  }
+
+  private List<QueuedMessage> dispatchLocked() {
+    List<QueuedMessage> expired = expireLocked();
+    while (!messages.isEmpty()) {
+      QueueConsumer consumer = nextConsumerWithCapacity();
+      if (consumer == null) {
+        break;
+      }
+      consumer.deliver(messages.pollFirst());
+    }
+    return expired;
+  }
+
+  private List<QueuedMessage> expireLocked() {
+    List<QueuedMessage> expired = null;
+    long now = System.nanoTime();
+    while (!messages.isEmpty() && messages.peekFirst().isExpired(now)) {
+      if (expired == null) {
+        expired = new ArrayList<>();
+      }
+      expired.add(messages.pollFirst());
+    }
+    return expired == null ? Collections.emptyList() : expired;
+  }
+
+  private QueueConsumer nextConsumerWithCapacity() {
+    int count = consumers.size();
+    for (int i = 0; i < count; i++) {
+      int index = (nextConsumer + i) % count;
+      QueueConsumer consumer = consumers.get(index);
+      if (consumer.hasCapacity()) {
+        nextConsumer = (index + 1) % count;
+        return consumer;
+      }
+    }
+    return null;
+  }
+
+  private long expiresAt(AMQP.BasicProperties properties) {
+    long ttl = messageTtl;
+    if (properties != null && properties.getExpiration() != null) {
+      long expiration = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(properties.getExpiration()));
+      ttl = ttl < 0 ? expiration : Math.min(ttl, expiration);
+    }
+    return ttl < 0 ? QueuedMessage.NEVER : System.nanoTime() + ttl;
+  }
+}
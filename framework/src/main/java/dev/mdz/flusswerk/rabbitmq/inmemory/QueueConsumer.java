@@ -0,0 +1,75 @@
+package dev.mdz.flusswerk.rabbitmq.inmemory;
+
+import com.rabbitmq.client.Consumer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A consumer registered on an {@link InMemoryQueue} by an {@link InMemoryChannel}. */
+class QueueConsumer {
+
+  private final InMemoryChannel channel;
+  private final InMemoryQueue queue;
+  private final String tag;
+  private final Consumer consumer;
+  private final boolean autoAck;
+  private final int prefetch;
+  private final AtomicInteger unacked = new AtomicInteger();
+
+  /**
+   * @param channel the channel that registered the consumer
+   * @param queue the queue to consume from
+   * @param tag the consumer tag
+   * @param consumer the consumer to deliver messages to
+   * @param autoAck whether messages count as acknowledged as soon as they are delivered
+   * @param prefetch the maximum number of unacknowledged messages, 0 for unlimited
+   */
+  QueueConsumer(
+      InMemoryChannel channel,
+      InMemoryQueue queue,
+      String tag,
+      Consumer consumer,
+      boolean autoAck,
+      int prefetch) {
+    this.channel = channel;
+    this.queue = queue;
+    this.tag = tag;
+    this.consumer = consumer;
+    this.autoAck = autoAck;
+    this.prefetch = prefetch;
+  }
+
+  InMemoryQueue getQueue() {
+    return queue;
+  }
+
+  String getTag() {
+    return tag;
+  }
+
+  Consumer getConsumer() {
+    return consumer;
+  }
+
+  boolean isAutoAck() {
+    return autoAck;
+  }
+
+  /**
+   * @return whether the consumer can take another message without exceeding its prefetch.
+   */
+  boolean hasCapacity() {
+    return autoAck || prefetch == 0 || unacked.get() < prefetch;
+  }
+
+  /** Delivers a message. Called by the queue in queue order. */
+  void deliver(QueuedMessage message) {
+    if (!autoAck) {
+      unacked.incrementAndGet();
+    }
+    channel.deliver(this, message);
+  }
+
+  /** Records that a message delivered to this consumer has been acked, nacked or rejected. */
+  void settled() {
+    unacked.decrementAndGet();
+  }
+}
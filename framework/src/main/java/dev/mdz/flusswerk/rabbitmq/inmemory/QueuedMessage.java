@@ -0,0 +1,32 @@
+package dev.mdz.flusswerk.rabbitmq.inmemory;
+
+import com.rabbitmq.client.AMQP;
+
+/**
+ * A message waiting in an {@link InMemoryQueue}.
+ *
+ * @param exchange the exchange the message has been published to
+ * @param routingKey the routing key the message has been published with
+ * @param properties the AMQP properties of the message
+ * @param body the message body
+ * @param redelivered whether the message has been delivered before
+ * @param expiresAt the {@link System#nanoTime()} when the message expires, or {@link #NEVER}
+ */
+record QueuedMessage(
+    String exchange,
+    String routingKey,
+    AMQP.BasicProperties properties,
+    byte[] body,
+    boolean redelivered,
+    long expiresAt) {
+
+  static final long NEVER = Long.MAX_VALUE;
+
+  boolean isExpired(long now) {
+    return expiresAt != NEVER && now - expiresAt >= 0;
+  }
+
+  QueuedMessage redelivery() {
+    return new QueuedMessage(exchange, routingKey, properties, body, true, expiresAt);
+  }
+}
@@ -39,15 +39,21 @@ public class Tracing {
    * @param ids The ids from the incoming message
    */
   public void register(List<String> ids) {
-    List<String> tracingPath;
-    if (ids == null || ids.isEmpty()) {
-      tracingPath = List.of(ulid.nextULID());
+    tracingPathForThread.put(currentThread.id(), newPath(ids));
+  }
+
+  /**
+   * Sets an existing tracing path for the current thread without adding a new tracing ID, e.g. for
+   * another thread working on the same workflow job.
+   *
+   * @param tracingPath The tracing path to use, deregisters the current thread if empty
+   */
+  public void restore(List<String> tracingPath) {
+    if (tracingPath == null || tracingPath.isEmpty()) {
+      deregister();
     } else {
-      List<String> path = new ArrayList<>(ids);
-      path.add(ulid.nextULID());
-      tracingPath = List.copyOf(path); // make immutable
+      tracingPathForThread.put(currentThread.id(), List.copyOf(tracingPath));
     }
-    tracingPathForThread.put(currentThread.id(), tracingPath);
   }
 
   /** Delete tracing information for current Thread. */
@@ -73,6 +79,21 @@ public class Tracing {
     return List.of(ulid.nextULID());
   }
 
+  /**
+   * Generates a new tracing path continuing the given ids, without registering it.
+   *
+   * @param ids The ids from the incoming message
+   * @return the ids followed by a new tracing id
+   */
+  public List<String> newPath(List<String> ids) {
+    if (ids == null || ids.isEmpty()) {
+      return newPath();
+    }
+    List<String> path = new ArrayList<>(ids);
+    path.add(ulid.nextULID());
+    return List.copyOf(path); // make immutable
+  }
+
   /**
    * Sets the correct tracing path for the given message if not already manually set.
    *
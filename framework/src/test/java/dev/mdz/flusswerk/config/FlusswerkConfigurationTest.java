@@ -1,9 +1,33 @@
 package dev.mdz.flusswerk.config;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
 
+import dev.mdz.flusswerk.config.properties.ProcessingProperties;
+import dev.mdz.flusswerk.config.properties.RoutingProperties;
+import dev.mdz.flusswerk.config.properties.RoutingProperties.BulkheadProperties;
+import dev.mdz.flusswerk.engine.CompactingTaskQueue;
+import dev.mdz.flusswerk.engine.FairTaskQueue;
+import dev.mdz.flusswerk.engine.LockFreeTaskQueue;
+import dev.mdz.flusswerk.engine.PriorityTaskQueue;
+import dev.mdz.flusswerk.engine.ReservingTaskQueue;
+import dev.mdz.flusswerk.engine.Task;
+import dev.mdz.flusswerk.engine.TaskQueue;
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.flow.FlowSpec;
+import dev.mdz.flusswerk.flow.builder.FlowBuilder;
+import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -11,6 +35,8 @@ import org.junit.jupiter.params.provider.MethodSource;
 @DisplayName("FlusswerkConfiguration should")
 public class FlusswerkConfigurationTest {
 
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
   private static Stream<Arguments> isSetSource() {
     return Stream.of(
         Arguments.of("null", null, false),
@@ -26,4 +52,209 @@ public class FlusswerkConfigurationTest {
   void isSetShouldDetectIfValueIsSet(String label, Object value, boolean expected) {
     assertThat(FlusswerkConfiguration.isSet(value)).isEqualTo(expected);
   }
+
+  @Test
+  @DisplayName("use strict priorities by default")
+  void taskQueueShouldUseStrictPrioritiesByDefault() {
+    var routing = RoutingProperties.minimal(List.of("first", "second"), null);
+    assertThat(taskQueue(routing, Optional.empty())).isInstanceOf(PriorityTaskQueue.class);
+  }
+
+  @Test
+  @DisplayName("use the lock-free task queue for strict priorities if configured")
+  void taskQueueShouldBeLockFreeIfConfigured() {
+    var routing = RoutingProperties.minimal(List.of("first", "second"), null);
+    var processing =
+        new ProcessingProperties(null, null, null, null, null, null, null, null, null, null, true);
+    assertThat(taskQueue(routing, processing, Optional.empty()))
+        .isInstanceOf(LockFreeTaskQueue.class);
+  }
+
+  @Test
+  @DisplayName("schedule fairly with weights")
+  void taskQueueShouldScheduleFairlyWithWeights() {
+    var routing =
+        new RoutingProperties(
+            null,
+            List.of("first", "second"),
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            Map.of("first", 2),
+            null,
+            null);
+    TaskQueue taskQueue = taskQueue(routing, Optional.empty());
+    assertThat(taskQueue).isInstanceOf(FairTaskQueue.class);
+
+    for (int i = 0; i < 3; i++) {
+      taskQueue.put(new Task(new Message(), 2)); // first
+    }
+    Task second = new Task(new Message(), 1);
+    taskQueue.put(second);
+    taskQueue.poll();
+    taskQueue.poll();
+    assertThat(taskQueue.poll()).isSameAs(second);
+  }
+
+  @Test
+  @DisplayName("compact messages if the flow defines a compaction key")
+  void taskQueueShouldCompactWithCompactionKey() {
+    var routing = RoutingProperties.minimal(List.of("first"), null);
+    var flowSpec =
+        FlowBuilder.messageProcessor(Message.class)
+            .process(message -> message)
+            .compactionKey(message -> "same key")
+            .build();
+
+    assertThat(taskQueue(routing, Optional.of(flowSpec))).isInstanceOf(CompactingTaskQueue.class);
+  }
+
+  private static TaskQueue taskQueue(RoutingProperties routing, Optional<FlowSpec> flowSpec) {
+    return taskQueue(routing, ProcessingProperties.defaults(), flowSpec);
+  }
+
+  private static TaskQueue taskQueue(
+      RoutingProperties routing, ProcessingProperties processing, Optional<FlowSpec> flowSpec) {
+    return new FlusswerkConfiguration()
+        .taskQueue(
+            routing, processing, flowSpec, mock(MessageBroker.class), new SimpleMeterRegistry());
+  }
+
+  @Test
+  @DisplayName("reject bulkheads reserving all workers")
+  void concurrencyLimitShouldRejectBulkheadsReservingAllWorkers() {
+    var routing =
+        new RoutingProperties(
+            null,
+            List.of("first", "second"),
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            Map.of(
+                "first", new BulkheadProperties(1, null, null),
+                "second", new BulkheadProperties(1, null, null)));
+    var configuration = new FlusswerkConfiguration();
+    assertThatThrownBy(
+            () ->
+                configuration.concurrencyLimit(
+                    new ProcessingProperties(2), routing, Optional.empty(), registry))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(
+            configuration
+                .concurrencyLimit(new ProcessingProperties(3), routing, Optional.empty(), registry)
+                .getLimit())
+        .isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("reject bulkhead buffers taking all received messages")
+  void concurrencyLimitShouldRejectBulkheadBuffersTakingAllMessages() {
+    var routing =
+        new RoutingProperties(
+            null,
+            List.of("first"),
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            Map.of("first", new BulkheadProperties(1, null, 1000)));
+    var configuration = new FlusswerkConfiguration();
+    assertThatThrownBy(
+            () ->
+                configuration.concurrencyLimit(
+                    new ProcessingProperties(3), routing, Optional.empty(), registry))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("1001");
+  }
+
+  @Test
+  @DisplayName("reserve workers in the task queue for bulkheads")
+  void taskQueueShouldReserveWorkersForBulkheads() {
+    var routing =
+        new RoutingProperties(
+            null,
+            List.of("first", "second"),
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            Map.of("second", new BulkheadProperties(1, null, null)));
+    assertThat(
+            FlusswerkConfiguration.reserving(
+                new PriorityTaskQueue(), routing, new ProcessingProperties(3), Optional.empty()))
+        .isInstanceOf(ReservingTaskQueue.class);
+    assertThat(taskQueue(routing, Optional.empty())).isInstanceOf(ReservingTaskQueue.class);
+  }
+
+  @Test
+  @DisplayName("allow every worker to fill a whole batch")
+  void concurrencyLimitShouldAllowEveryWorkerToFillBatch() {
+    var routing = RoutingProperties.minimal(List.of("first"), null);
+    var flow =
+        new Flow(
+            FlowBuilder.batch(Message.class, 10, Duration.ofMillis(100))
+                .consume(messages -> {})
+                .build());
+    assertThat(
+            new FlusswerkConfiguration()
+                .concurrencyLimit(new ProcessingProperties(2), routing, Optional.of(flow), registry)
+                .getLimit())
+        .isEqualTo(20);
+  }
+
+  @Test
+  @DisplayName("allow all messages of an asynchronous flow in progress")
+  void concurrencyLimitShouldAllowAllMessagesOfAsyncFlow() {
+    var routing = RoutingProperties.minimal(List.of("first"), null);
+    var flow =
+        new Flow(
+            FlowBuilder.async(Message.class)
+                .writerSendingNothing(CompletableFuture::completedFuture)
+                .build());
+    var processing =
+        new ProcessingProperties(2, null, null, null, 300, null, null, null, null, null, null);
+    assertThat(
+            new FlusswerkConfiguration()
+                .concurrencyLimit(processing, routing, Optional.of(flow), registry)
+                .getLimit())
+        .isEqualTo(300);
+  }
+
+  @Test
+  @DisplayName("allow as many messages in progress as there are virtual thread permits")
+  void concurrencyLimitShouldUseVirtualThreadPermits() {
+    var routing = RoutingProperties.minimal(List.of("first"), null);
+    var processing =
+        new ProcessingProperties(2, 10, true, null, null, null, null, null, null, 200, null);
+    assertThat(
+            new FlusswerkConfiguration()
+                .concurrencyLimit(processing, routing, Optional.empty(), registry)
+                .getLimit())
+        .isEqualTo(210);
+  }
+
+  @Test
+  @DisplayName("publish the concurrency limit without adaptive limit")
+  void concurrencyLimitShouldBePublished() {
+    var routing = RoutingProperties.minimal(List.of("first"), null);
+    new FlusswerkConfiguration()
+        .concurrencyLimit(new ProcessingProperties(3), routing, Optional.empty(), registry);
+    assertThat(registry.get("flusswerk.concurrency.limit").gauge().value()).isEqualTo(3.0);
+  }
 }
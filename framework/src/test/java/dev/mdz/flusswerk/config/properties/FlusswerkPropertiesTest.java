@@ -3,6 +3,8 @@ package dev.mdz.flusswerk.config.properties;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import dev.mdz.flusswerk.config.FlusswerkPropertiesConfiguration;
+import dev.mdz.flusswerk.rabbitmq.Backoff;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
@@ -22,7 +24,30 @@ public class FlusswerkPropertiesTest {
   @Test
   @DisplayName("Values of FlusswerkProperties.Processing are all set")
   public void valuesOfProcessing() {
-    assertThat(properties.processing()).hasFieldOrPropertyWithValue("threads", 5);
+    assertThat(properties.processing())
+        .hasFieldOrPropertyWithValue("threads", 5)
+        .hasFieldOrPropertyWithValue("buffer", 10)
+        .hasFieldOrPropertyWithValue("inFlight", 500);
+    assertThat(properties.processing().adaptiveLimit())
+        .hasFieldOrPropertyWithValue("enabled", true)
+        .hasFieldOrPropertyWithValue("min", 2)
+        .hasFieldOrPropertyWithValue("max", null) // the fixed concurrency limit
+        .hasFieldOrPropertyWithValue("tolerance", 2.0);
+    assertThat(properties.processing().idempotency())
+        .isEqualTo(
+            new ProcessingProperties.Idempotency(
+                false, 500, Duration.ofMinutes(10), Path.of("/var/lib/flusswerk/processed")));
+    assertThat(properties.processing().compaction())
+        .isEqualTo(new ProcessingProperties.Compaction(false, Duration.ofMillis(500)));
+    assertThat(properties.processing().localRetry())
+        .isEqualTo(new ProcessingProperties.LocalRetry(true, Duration.ofMillis(200)));
+  }
+
+  @Test
+  @DisplayName("Values of FlusswerkProperties.Monitoring are all set")
+  public void valuesOfMonitoring() {
+    assertThat(properties.monitoring())
+        .isEqualTo(new MonitoringProperties("flusswerk", Duration.ofSeconds(10)));
   }
 
   @Test
@@ -52,5 +77,31 @@ public class FlusswerkPropertiesTest {
         .hasFieldOrPropertyWithValue("retries", 77)
         .hasFieldOrPropertyWithValue("retryRoutingKey", "first.custom.retry")
         .hasFieldOrPropertyWithValue("failedRoutingKey", "first.custom.failed");
+    assertThat(routing.getFailurePolicy("second").getBackoffs())
+        .isEqualTo(
+            new Backoff(
+                List.of(Duration.ofSeconds(1), Duration.ofSeconds(10), Duration.ofMinutes(1)),
+                0.5));
+
+    assertThat(routing.getPrefetch("first")).isEqualTo(50);
+    assertThat(routing.getPrefetch("second")).isEqualTo(1);
+    assertThat(routing.getConsumers("first")).contains(2);
+    assertThat(routing.getConsumers("second")).isEmpty();
+    assertThat(routing.getWeight("first")).contains(3);
+    assertThat(routing.getWeight("second")).isEmpty();
+    assertThat(routing.getAging()).contains(Duration.ofSeconds(30));
+    assertThat(routing.getBulkhead("first")).isEmpty();
+    assertThat(routing.getBulkhead("second"))
+        .contains(new RoutingProperties.BulkheadProperties(1, 3, 2));
+    assertThat(routing.getTimeouts()).isEqualTo(Map.of("first", Duration.ofMinutes(10)));
+    assertThat(routing.getRateLimits())
+        .isEqualTo(
+            Map.of(
+                "default.queue.to.write.to", new RoutingProperties.RateLimitProperties(50.0, 10)));
+    assertThat(routing.getWatermarks())
+        .isEqualTo(
+            Map.of(
+                "default.queue.to.write.to",
+                new RoutingProperties.WatermarkProperties(100_000L, 50_000L)));
   }
 }
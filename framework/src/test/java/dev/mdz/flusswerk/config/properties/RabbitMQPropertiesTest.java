@@ -1,14 +1,19 @@
 package dev.mdz.flusswerk.config.properties;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import dev.mdz.flusswerk.config.properties.RabbitMQProperties.AckBatching;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 @DisplayName("The RabbitMQ properties")
 class RabbitMQPropertiesTest {
@@ -24,4 +29,18 @@ class RabbitMQPropertiesTest {
     var properties = new RabbitMQProperties(hosts, null, null, null);
     assertThat(properties.hosts()).containsExactly("localhost");
   }
+
+  @DisplayName("should default to one channel")
+  @Test
+  void shouldDefaultToOneChannel() {
+    assertThat(RabbitMQProperties.defaults().channels()).isEqualTo(1);
+  }
+
+  @DisplayName("should reject ack batching intervals shorter than 1ms")
+  @ParameterizedTest
+  @ValueSource(strings = {"PT0S", "PT-1S", "PT0.0005S"})
+  void shouldRejectTooShortAckBatchingInterval(String interval) {
+    assertThatThrownBy(() -> new AckBatching(10, Duration.parse(interval)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
 }
@@ -2,7 +2,9 @@ package dev.mdz.flusswerk.config.properties;
 
 import static dev.mdz.flusswerk.config.properties.RoutingProperties.DEFAULT_EXCHANGE;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -72,4 +74,135 @@ class RoutingPropertiesTest {
     assertThat(routingConfig.getDeadLetterExchange("some.output.queue"))
         .isEqualTo(RoutingProperties.defaultDeadLetterExchange(DEFAULT_EXCHANGE));
   }
+
+  @DisplayName("should default to a prefetch of 1")
+  @Test
+  void shouldDefaultToPrefetchOfOne() {
+    assertThat(routingProperties.getPrefetch("queue.with.default.exchange")).isEqualTo(1);
+    assertThat(routingProperties.getConsumers("queue.with.default.exchange")).isEmpty();
+  }
+
+  @DisplayName("should reject prefetch for unknown queues")
+  @Test
+  void shouldRejectPrefetchForUnknownQueues() {
+    assertThatThrownBy(
+            () ->
+                new RoutingProperties(
+                    null, List.of("input"), null, null, null, null, Map.of("unknown", 10), null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("should reject consumer counts less than 1")
+  @Test
+  void shouldRejectInvalidConsumerCount() {
+    assertThatThrownBy(
+            () ->
+                new RoutingProperties(
+                    null, List.of("input"), null, null, null, null, null, Map.of("input", 0)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("should use strict priorities without weights")
+  @Test
+  void shouldUseStrictPrioritiesWithoutWeights() {
+    assertThat(routingProperties.isWeighted()).isFalse();
+    assertThat(routingProperties.getAging()).isEmpty();
+  }
+
+  @DisplayName("should reject weights less than 1")
+  @Test
+  void shouldRejectInvalidWeight() {
+    assertThatThrownBy(
+            () ->
+                new RoutingProperties(
+                    null,
+                    List.of("input"),
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    Map.of("input", 0),
+                    null,
+                    null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("should reject aging that is not positive")
+  @Test
+  void shouldRejectInvalidAging() {
+    assertThatThrownBy(
+            () ->
+                new RoutingProperties(
+                    null,
+                    List.of("input"),
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    Duration.ZERO,
+                    null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("should reject timeouts that are not positive")
+  @Test
+  void shouldRejectInvalidTimeouts() {
+    assertThatThrownBy(
+            () ->
+                new RoutingProperties(
+                    null,
+                    List.of("input"),
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    Map.of("input", Duration.ZERO)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("should reject bulkheads with max less than reserved")
+  @Test
+  void shouldRejectBulkheadWithMaxLessThanReserved() {
+    assertThatThrownBy(() -> new RoutingProperties.BulkheadProperties(3, 2, null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("should reject rate limits that are not positive")
+  @Test
+  void shouldRejectInvalidRateLimits() {
+    assertThatThrownBy(() -> new RoutingProperties.RateLimitProperties(0.0, null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new RoutingProperties.RateLimitProperties(10.0, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("should resume at half the high watermark by default")
+  @Test
+  void shouldResumeAtHalfHighWatermarkByDefault() {
+    assertThat(new RoutingProperties.WatermarkProperties(1000L, null).low()).isEqualTo(500L);
+    assertThatThrownBy(() -> new RoutingProperties.WatermarkProperties(10L, 20L))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("should default to 5 retries if none are configured")
+  @Test
+  void shouldDefaultToFiveRetries() {
+    var unset = new RoutingProperties.FailurePolicyProperties(null, null, null, null);
+    var configured = new RoutingProperties.FailurePolicyProperties(3, null, null, null);
+
+    assertThat(unset.getRetries()).isEqualTo(5);
+    assertThat(unset.getConfiguredRetries()).isNull();
+    assertThat(configured.getRetries()).isEqualTo(3);
+    assertThat(configured.getConfiguredRetries()).isEqualTo(3);
+  }
 }
@@ -0,0 +1,109 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.mdz.flusswerk.config.properties.ProcessingProperties.AdaptiveLimit;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The AdaptiveConcurrencyLimit")
+class AdaptiveConcurrencyLimitTest {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+
+  private ConcurrencyLimit limit;
+  private AdaptiveConcurrencyLimit adaptiveLimit;
+
+  @BeforeEach
+  void setUp() {
+    limit = new ConcurrencyLimit(10);
+    adaptiveLimit = new AdaptiveConcurrencyLimit(limit, new AdaptiveLimit(true, 2, 20, 2.0, 0.1));
+  }
+
+  private void busy(int permits) {
+    limit.acquireUninterruptibly(permits);
+  }
+
+  @DisplayName("should increase while busy and fast")
+  @Test
+  void shouldIncreaseWhileBusyAndFast() {
+    busy(10);
+    for (int i = 0; i < 5; i++) {
+      adaptiveLimit.sample(FAST, false);
+    }
+    assertThat(adaptiveLimit.getLimit()).isEqualTo(15);
+  }
+
+  @DisplayName("should not increase while mostly idle")
+  @Test
+  void shouldNotIncreaseWhileIdle() {
+    for (int i = 0; i < 5; i++) {
+      adaptiveLimit.sample(FAST, false);
+    }
+    assertThat(adaptiveLimit.getLimit()).isEqualTo(10);
+  }
+
+  @DisplayName("should not exceed max")
+  @Test
+  void shouldNotExceedMax() {
+    busy(10);
+    for (int i = 0; i < 100; i++) {
+      adaptiveLimit.sample(FAST, false);
+      limit.tryAcquire();
+    }
+    assertThat(adaptiveLimit.getLimit()).isEqualTo(20);
+  }
+
+  @DisplayName("should decrease when processing slows down")
+  @Test
+  void shouldDecreaseWhenSlow() {
+    for (int i = 0; i < 50; i++) {
+      adaptiveLimit.sample(FAST, false);
+    }
+    for (int i = 0; i < 10; i++) {
+      adaptiveLimit.sample(SLOW, false);
+    }
+    assertThat(adaptiveLimit.getLimit()).isEqualTo(9);
+  }
+
+  @DisplayName("should decrease when too many messages fail")
+  @Test
+  void shouldDecreaseOnErrors() {
+    for (int i = 0; i < 3; i++) {
+      adaptiveLimit.sample(FAST, true);
+    }
+    assertThat(adaptiveLimit.getLimit()).isEqualTo(9);
+  }
+
+  @DisplayName("should not go below min")
+  @Test
+  void shouldNotGoBelowMin() throws InterruptedException {
+    for (int i = 0; i < 30; i++) {
+      adaptiveLimit.sample(FAST, true);
+      Thread.sleep(1); // longer than the recent latency, so every sample may decrease
+    }
+    assertThat(adaptiveLimit.getLimit()).isEqualTo(2);
+  }
+
+  @DisplayName("should start with the limit outside of min and max")
+  @Test
+  void shouldStartWithLimitOutsideOfBounds() {
+    var large = new ConcurrencyLimit(30);
+    new AdaptiveConcurrencyLimit(large, new AdaptiveLimit(true, 2, 20, 2.0, 0.1));
+    assertThat(large.getLimit()).isEqualTo(30);
+  }
+
+  @DisplayName("should not exceed the initial limit without max")
+  @Test
+  void shouldNotExceedInitialLimitWithoutMax() {
+    var unbounded = new AdaptiveConcurrencyLimit(limit, new AdaptiveLimit(true, 2, null, 2.0, 0.1));
+    busy(10);
+    for (int i = 0; i < 100; i++) {
+      unbounded.sample(FAST, false);
+    }
+    assertThat(unbounded.getLimit()).isEqualTo(10);
+  }
+}
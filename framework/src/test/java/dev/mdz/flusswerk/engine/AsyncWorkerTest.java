@@ -0,0 +1,225 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.mdz.flusswerk.TestMessage;
+import dev.mdz.flusswerk.exceptions.ProcessingTimeoutException;
+import dev.mdz.flusswerk.exceptions.RetryProcessingException;
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.flow.FlowSpec;
+import dev.mdz.flusswerk.flow.builder.FlowBuilder;
+import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.monitoring.FlusswerkMetrics;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import dev.mdz.flusswerk.reporting.ProcessReport;
+import dev.mdz.flusswerk.reporting.Tracing;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.MDC;
+
+@DisplayName("The AsyncWorker")
+@ExtendWith(MockitoExtension.class)
+class AsyncWorkerTest {
+
+  @Mock private Tracing tracing;
+  @Mock private MessageBroker messageBroker;
+  @Mock private ProcessReport processReport;
+  @Mock private FlusswerkMetrics flusswerkMetrics;
+
+  private final TaskQueue taskQueue = new PriorityTaskQueue();
+  private final Map<Message, CompletableFuture<Message>> pending = new IdentityHashMap<>();
+  private AsyncWorker worker;
+
+  @BeforeEach
+  void setUp() {
+    FlowSpec flowSpec =
+        FlowBuilder.async(Message.class)
+            .writerSendingMessage(
+                message -> pending.computeIfAbsent(message, m -> new CompletableFuture<>()))
+            .build();
+    worker =
+        new AsyncWorker(
+            new Flow(flowSpec),
+            flusswerkMetrics,
+            messageBroker,
+            processReport,
+            taskQueue,
+            tracing,
+            2);
+  }
+
+  @DisplayName("should acknowledge message when processing completes")
+  @Test
+  void shouldAcknowledgeMessageWhenProcessingCompletes() {
+    Message message = new Message();
+    Message outgoing = new Message();
+    taskQueue.put(new Task(message, 1));
+
+    worker.step();
+    verify(messageBroker, never()).ack(any(Message.class));
+    assertThat(worker.availablePermits()).isEqualTo(1);
+
+    pending.get(message).complete(outgoing);
+
+    verify(tracing).register(message.getTracing());
+    verify(messageBroker).sendToDefault(List.of(outgoing));
+    verify(messageBroker).ack(message);
+    verify(processReport).reportSuccess(message);
+    verify(tracing).deregister();
+    assertThat(worker.availablePermits()).isEqualTo(2);
+  }
+
+  @DisplayName("should keep several messages in progress")
+  @Test
+  void shouldKeepSeveralMessagesInProgress() {
+    for (int i = 0; i < 3; i++) {
+      taskQueue.put(new Task(new Message(), 1));
+    }
+
+    worker.step();
+    worker.step();
+    worker.step(); // no permit left
+
+    assertThat(pending).hasSize(2);
+    assertThat(taskQueue.size()).isEqualTo(1);
+    assertThat(worker.availablePermits()).isZero();
+  }
+
+  @DisplayName("should retry message when processing completes exceptionally")
+  @Test
+  void shouldRetryMessageWhenProcessingCompletesExceptionally() {
+    Message message = new Message();
+    taskQueue.put(new Task(message, 1));
+    when(messageBroker.reject(message)).thenReturn(true);
+
+    worker.step();
+    var exception = new RetryProcessingException("Intentional");
+    pending.get(message).completeExceptionally(exception);
+
+    verify(messageBroker).ack(message);
+    verify(messageBroker).reject(message);
+    verify(processReport).reportRetry(eq(message), eq(exception));
+    assertThat(worker.availablePermits()).isEqualTo(2);
+  }
+
+  @DisplayName("should retry message and release permit when processing does not complete in time")
+  @Test
+  void shouldRetryMessageAfterTimeout() throws InterruptedException {
+    var watchdog = new Watchdog(Duration.ofMillis(50), Map.of());
+    FlowSpec flowSpec =
+        FlowBuilder.async(Message.class)
+            .writerSendingMessage(
+                message -> pending.computeIfAbsent(message, m -> new CompletableFuture<>()))
+            .timeout(Duration.ofMillis(50))
+            .build();
+    worker =
+        new AsyncWorker(
+            new Flow(flowSpec),
+            flusswerkMetrics,
+            messageBroker,
+            processReport,
+            taskQueue,
+            tracing,
+            2,
+            watchdog,
+            null);
+    Message message = new Message();
+    CountDownLatch done = new CountDownLatch(1);
+    taskQueue.put(new Task(message, 1, done::countDown));
+    when(messageBroker.reject(message)).thenReturn(true);
+
+    worker.step();
+
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    verify(messageBroker).reject(message);
+    verify(processReport).reportRetry(eq(message), any(ProcessingTimeoutException.class));
+    assertThat(worker.availablePermits()).isEqualTo(2);
+
+    pending.get(message).complete(new Message()); // too late, must not be acknowledged again
+    verify(messageBroker).ack(message);
+    verify(messageBroker, never()).sendToDefault(any(Collection.class));
+    watchdog.close();
+  }
+
+  @DisplayName("should complete messages with their tracing and MDC on foreign threads")
+  @Test
+  void shouldCompleteWithTracingAndMdcOnForeignThreads() throws InterruptedException {
+    Tracing realTracing = new Tracing();
+    FlowSpec flowSpec =
+        FlowBuilder.async(TestMessage.class)
+            .writerSendingMessage(
+                message -> pending.computeIfAbsent(message, m -> new CompletableFuture<>()))
+            .build();
+    worker =
+        new AsyncWorker(
+            new Flow(flowSpec),
+            flusswerkMetrics,
+            messageBroker,
+            processReport,
+            taskQueue,
+            realTracing,
+            2);
+    Map<String, Object> seen = new ConcurrentHashMap<>();
+    doAnswer(
+            invocation -> {
+              seen.put("path", realTracing.tracingPath());
+              seen.put("id", MDC.get("id"));
+              return null;
+            })
+        .when(processReport)
+        .reportSuccess(any());
+    TestMessage message = new TestMessage("42");
+    message.setTracing(List.of("incoming"));
+    taskQueue.put(new Task(message, 1));
+
+    worker.step();
+    assertThat(realTracing.tracingPath()).isEmpty(); // worker thread cleaned up
+    Message outgoing = new Message();
+    Thread foreign =
+        new Thread(
+            () -> {
+              pending.get(message).complete(outgoing);
+              seen.put("foreignStatus", String.valueOf(MDC.get("status")));
+              seen.put("foreignPath", realTracing.tracingPath());
+            });
+    foreign.start();
+    foreign.join(5000);
+
+    assertThat(seen).containsEntry("id", "42").containsEntry("foreignStatus", "null");
+    assertThat(seen.get("path")).asList().hasSize(2).first().isEqualTo("incoming");
+    assertThat(outgoing.getTracing()).isEqualTo(seen.get("path"));
+    assertThat(seen.get("foreignPath")).asList().isEmpty();
+  }
+
+  @DisplayName("should reject flows that are not asynchronous")
+  @Test
+  void shouldRejectSynchronousFlows() {
+    Flow flow =
+        new Flow(FlowBuilder.messageProcessor(Message.class).process(message -> null).build());
+    assertThatThrownBy(
+            () ->
+                new AsyncWorker(
+                    flow, flusswerkMetrics, messageBroker, processReport, taskQueue, tracing, 1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,99 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import dev.mdz.flusswerk.engine.Backpressure.Watermarks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The Backpressure")
+class BackpressureTest {
+
+  private final Map<String, Long> depths = new ConcurrentHashMap<>(Map.of("out", 0L));
+  private final AtomicInteger pauses = new AtomicInteger();
+  private final AtomicInteger resumes = new AtomicInteger();
+  private final Backpressure backpressure =
+      new Backpressure(Map.of("out", new Watermarks(100, 10)), depths::get);
+
+  @AfterEach
+  void tearDown() {
+    backpressure.close();
+  }
+
+  private void sample(long depth) {
+    depths.put("out", depth);
+    backpressure.check();
+  }
+
+  private void start() {
+    backpressure.start(pauses::incrementAndGet, resumes::incrementAndGet);
+  }
+
+  @DisplayName("should pause at the high watermark and resume at the low watermark")
+  @Test
+  void shouldPauseAndResumeAtWatermarks() {
+    start();
+    sample(99);
+    assertThat(backpressure.isPaused()).isFalse();
+
+    sample(100);
+    assertThat(backpressure.isPaused()).isTrue();
+    sample(50); // between the watermarks
+    assertThat(backpressure.isPaused()).isTrue();
+    sample(10);
+
+    assertThat(backpressure.isPaused()).isFalse();
+    assertThat(pauses).hasValue(1);
+    assertThat(resumes).hasValue(1);
+  }
+
+  @DisplayName("should stay paused if the depth is unknown")
+  @Test
+  void shouldStayPausedIfDepthUnknown() {
+    start();
+    sample(200);
+    depths.remove("out"); // fails to unbox
+
+    backpressure.check();
+
+    assertThat(backpressure.isPaused()).isTrue();
+  }
+
+  @DisplayName("should not react before start or after close")
+  @Test
+  void shouldNotReactBeforeStartOrAfterClose() {
+    sample(200);
+    assertThat(backpressure.isPaused()).isFalse();
+
+    start();
+    backpressure.close();
+    sample(200);
+
+    assertThat(pauses).hasValue(0);
+  }
+
+  @DisplayName("should publish whether consumption is paused")
+  @Test
+  void shouldPublishPaused() {
+    var registry = new SimpleMeterRegistry();
+    backpressure.bindTo(registry);
+    start();
+    sample(150);
+
+    assertThat(registry.get("flusswerk.backpressure.paused").gauge().value()).isEqualTo(1);
+    assertThat(registry.get("flusswerk.backpressure.pauses").functionCounter().count())
+        .isEqualTo(1);
+  }
+
+  @DisplayName("should reject a low watermark not below the high watermark")
+  @Test
+  void shouldRejectInvalidWatermarks() {
+    assertThatThrownBy(() -> new Watermarks(10, 10)).isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,126 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The Bulkhead")
+class BulkheadTest {
+
+  private final Semaphore shared = new Semaphore(2);
+
+  private static Thread acquireInBackground(Bulkhead bulkhead, CountDownLatch acquired) {
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                bulkhead.acquire();
+                acquired.countDown();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    thread.start();
+    return thread;
+  }
+
+  @DisplayName("should use reserved permits before shared ones")
+  @Test
+  void shouldUseReservedPermitsFirst() throws InterruptedException {
+    var bulkhead = new Bulkhead("queue", 1, 3, shared);
+    bulkhead.acquire();
+    assertThat(shared.availablePermits()).isEqualTo(2);
+    bulkhead.acquire();
+    assertThat(shared.availablePermits()).isEqualTo(1);
+    assertThat(bulkhead.inUse()).isEqualTo(2);
+    assertThat(bulkhead.borrowed()).isEqualTo(1);
+  }
+
+  @DisplayName("should return borrowed permits first")
+  @Test
+  void shouldReturnBorrowedPermitsFirst() throws InterruptedException {
+    var bulkhead = new Bulkhead("queue", 1, 3, shared);
+    bulkhead.acquire();
+    bulkhead.acquire();
+    bulkhead.release();
+    assertThat(shared.availablePermits()).isEqualTo(2);
+    assertThat(bulkhead.inUse()).isEqualTo(1);
+  }
+
+  @DisplayName("should keep reserved permits when the shared pool is exhausted")
+  @Test
+  void shouldKeepReservedPermitsWhenSharedPoolIsExhausted() throws InterruptedException {
+    var flooded = Bulkhead.sharedOnly("flooded", shared);
+    var urgent = new Bulkhead("urgent", 1, 1, shared);
+    flooded.acquire();
+    flooded.acquire();
+    assertThat(shared.availablePermits()).isZero();
+
+    var acquired = new CountDownLatch(1);
+    acquireInBackground(urgent, acquired);
+    assertThat(acquired.await(1, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @DisplayName("should not exceed max")
+  @Test
+  void shouldNotExceedMax() throws InterruptedException {
+    var bulkhead = new Bulkhead("queue", 0, 1, shared);
+    bulkhead.acquire();
+
+    var acquired = new CountDownLatch(1);
+    Thread waiting = acquireInBackground(bulkhead, acquired);
+    assertThat(acquired.await(200, TimeUnit.MILLISECONDS)).isFalse();
+    assertThat(shared.availablePermits()).isEqualTo(1); // free, but not for this queue
+
+    bulkhead.release();
+    assertThat(acquired.await(1, TimeUnit.SECONDS)).isTrue();
+    waiting.join();
+  }
+
+  @DisplayName("should take a reserved permit that became free while waiting for the shared pool")
+  @Test
+  void shouldTakeReservedPermitWhileWaiting() throws InterruptedException {
+    var bulkhead = new Bulkhead("queue", 1, 3, new Semaphore(0));
+    bulkhead.acquire(); // reserved
+
+    var acquired = new CountDownLatch(1);
+    Thread waiting = acquireInBackground(bulkhead, acquired); // waits for the empty shared pool
+    Thread.sleep(50);
+    bulkhead.release();
+
+    assertThat(acquired.await(1, TimeUnit.SECONDS)).isTrue();
+    waiting.join();
+    assertThat(bulkhead.inUse()).isEqualTo(1);
+    assertThat(bulkhead.borrowed()).isZero();
+  }
+
+  @DisplayName("should reject more reserved permits than max")
+  @Test
+  void shouldRejectInvalidLimits() {
+    assertThatThrownBy(() -> new Bulkhead("queue", 2, 1, shared))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("should publish permits in use and utilization")
+  @Test
+  void shouldPublishMetrics() throws InterruptedException {
+    var registry = new SimpleMeterRegistry();
+    var bulkhead = new Bulkhead("queue", 1, 4, shared);
+    bulkhead.bindTo(registry);
+    bulkhead.acquire();
+    bulkhead.acquire();
+
+    assertThat(registry.get("flusswerk.bulkhead.permits").tag("type", "reserved").gauge().value())
+        .isEqualTo(1.0);
+    assertThat(registry.get("flusswerk.bulkhead.permits").tag("type", "borrowed").gauge().value())
+        .isEqualTo(1.0);
+    assertThat(registry.get("flusswerk.bulkhead.utilization").tag("queue", "queue").gauge().value())
+        .isEqualTo(0.5);
+  }
+}
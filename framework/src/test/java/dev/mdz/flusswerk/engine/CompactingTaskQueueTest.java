@@ -0,0 +1,123 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import dev.mdz.flusswerk.TestMessage;
+import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The CompactingTaskQueue")
+class CompactingTaskQueueTest {
+
+  private final MessageBroker messageBroker = mock(MessageBroker.class);
+  private final AtomicInteger done = new AtomicInteger();
+  private CompactingTaskQueue queue = compacting(Duration.ZERO);
+
+  private CompactingTaskQueue compacting(Duration window) {
+    return new CompactingTaskQueue(
+        new LockFreeTaskQueue(),
+        message -> message instanceof TestMessage m ? m.getId() : null,
+        window,
+        messageBroker);
+  }
+
+  private Task task(Message message) {
+    return new Task(message, 1, done::incrementAndGet);
+  }
+
+  @AfterEach
+  void tearDown() {
+    queue.close();
+  }
+
+  @DisplayName("should replace waiting messages by newer messages with the same key")
+  @Test
+  void shouldReplaceWaitingMessagesWithSameKey() {
+    Message outdated = new TestMessage("1", "outdated");
+    Message latest = new TestMessage("1", "latest");
+    queue.put(task(outdated));
+    queue.put(task(new TestMessage("2")));
+    queue.put(task(latest));
+
+    List<Task> tasks = new ArrayList<>();
+    queue.drainTo(tasks);
+
+    assertThat(tasks).map(Task::getMessage).containsExactly(new TestMessage("2"), latest);
+    verify(messageBroker).ack(outdated);
+    verify(messageBroker, never()).ack(latest);
+    assertThat(done).hasValue(1);
+  }
+
+  @DisplayName("should never replace messages without key")
+  @Test
+  void shouldNeverReplaceMessagesWithoutKey() {
+    queue.put(task(new Message()));
+    queue.put(task(new Message()));
+
+    assertThat(queue.poll()).isNotNull();
+    assertThat(queue.poll()).isNotNull();
+    assertThat(done).hasValue(0);
+  }
+
+  @DisplayName("should not replace messages already taken by a worker")
+  @Test
+  void shouldNotReplaceMessagesAlreadyTaken() {
+    queue.put(task(new TestMessage("1", "first")));
+    Task first = queue.poll();
+    queue.put(task(new TestMessage("1", "second")));
+
+    assertThat(first.getMessage()).isEqualTo(new TestMessage("1", "first"));
+    assertThat(queue.poll().getMessage()).isEqualTo(new TestMessage("1", "second"));
+    verify(messageBroker, never()).ack(first.getMessage());
+  }
+
+  @DisplayName("should hold back new messages for the window")
+  @Test
+  void shouldHoldBackMessagesForWindow() throws InterruptedException {
+    queue = compacting(Duration.ofMillis(100));
+    queue.put(task(new TestMessage("1", "outdated")));
+    queue.put(task(new TestMessage("1", "latest")));
+
+    assertThat(queue.poll()).isNull();
+    assertThat(queue.pending()).isEqualTo(1);
+    Task task = queue.poll(5, TimeUnit.SECONDS);
+    assertThat(task.getMessage()).isEqualTo(new TestMessage("1", "latest"));
+    assertThat(queue.pending()).isZero();
+  }
+
+  @DisplayName("should drain messages still within the window")
+  @Test
+  void shouldDrainMessagesWithinWindow() {
+    queue = compacting(Duration.ofMinutes(1));
+    queue.put(task(new TestMessage("1")));
+
+    List<Task> tasks = new ArrayList<>();
+    assertThat(queue.drainTo(tasks)).isEqualTo(1);
+    assertThat(queue.size()).isZero();
+  }
+
+  @DisplayName("should count superseded messages")
+  @Test
+  void shouldCountSupersededMessages() {
+    var registry = new SimpleMeterRegistry();
+    queue.bindTo(registry);
+    queue.put(task(new TestMessage("1", "outdated")));
+    queue.put(task(new TestMessage("1", "latest")));
+
+    assertThat(registry.get("flusswerk.compaction.superseded").functionCounter().count())
+        .isEqualTo(1.0);
+    assertThat(registry.get("flusswerk.compaction.pending").gauge().value()).isZero();
+  }
+}
@@ -0,0 +1,57 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The ConcurrencyLimit")
+class ConcurrencyLimitTest {
+
+  @DisplayName("should add permits when raised")
+  @Test
+  void shouldAddPermitsWhenRaised() {
+    var limit = new ConcurrencyLimit(2);
+    limit.setLimit(5);
+    assertThat(limit.availablePermits()).isEqualTo(5);
+    assertThat(limit.getLimit()).isEqualTo(5);
+  }
+
+  @DisplayName("should only hand out new permits after enough have been released when lowered")
+  @Test
+  void shouldWaitForReleasesWhenLowered() {
+    var limit = new ConcurrencyLimit(4);
+    for (int i = 0; i < 4; i++) {
+      assertThat(limit.tryAcquire()).isTrue();
+    }
+    limit.setLimit(2);
+    assertThat(limit.inUse()).isEqualTo(4);
+
+    limit.release();
+    limit.release();
+    assertThat(limit.tryAcquire()).isFalse();
+    limit.release();
+    assertThat(limit.tryAcquire()).isTrue();
+  }
+
+  @DisplayName("should reject limits less than 1")
+  @Test
+  void shouldRejectInvalidLimit() {
+    var limit = new ConcurrencyLimit(1);
+    assertThatThrownBy(() -> limit.setLimit(0)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("should publish the limit as gauge")
+  @Test
+  void shouldPublishGauge() {
+    var limit = new ConcurrencyLimit(10);
+    var registry = new SimpleMeterRegistry();
+    limit.bindTo(registry);
+
+    limit.setLimit(7);
+
+    assertThat(registry.get("flusswerk.concurrency.limit").gauge().value()).isEqualTo(7.0);
+  }
+}
@@ -1,13 +1,20 @@
 package dev.mdz.flusswerk.engine;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import dev.mdz.flusswerk.model.Message;
 import dev.mdz.flusswerk.rabbitmq.RabbitClient;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -18,6 +25,7 @@ class EngineTest {
   private RabbitClient rabbitClient;
   private List<FlusswerkConsumer> consumers;
   private List<Worker> workers;
+  private TaskQueue taskQueue;
   private Engine engine;
 
   @BeforeEach
@@ -26,13 +34,22 @@ class EngineTest {
     consumers = List.of(mockConsumer("consumer1", "queue1"), mockConsumer("consumer2", "queue2"));
 
     workers = List.of(mock(Worker.class), mock(Worker.class));
-    engine = new Engine(rabbitClient, consumers, workers, new TestingExecutorService());
+    taskQueue = new PriorityTaskQueue();
+    engine =
+        new Engine(
+            rabbitClient, consumers, workers, taskQueue, new TestingExecutorService(), null, null);
   }
 
   private FlusswerkConsumer mockConsumer(String consumerTag, String queue) {
+    return mockConsumer(consumerTag, queue, 0);
+  }
+
+  private FlusswerkConsumer mockConsumer(String consumerTag, String queue, int channel) {
     FlusswerkConsumer consumer = mock(FlusswerkConsumer.class);
     when(consumer.getConsumerTag()).thenReturn(consumerTag);
     when(consumer.getInputQueue()).thenReturn(queue);
+    when(consumer.getChannel()).thenReturn(channel);
+    when(rabbitClient.consume(consumer, false)).thenReturn(consumerTag);
     return consumer;
   }
 
@@ -72,4 +89,136 @@ class EngineTest {
       verify(rabbitClient).cancel(eq(consumerTag));
     }
   }
+
+  @DisplayName("should only reconnect consumers of a channel that has been reset")
+  @Test
+  public void engineShouldReconnectConsumersOfResetChannel() {
+    var first = mockConsumer("consumer1", "queue1", 0);
+    var second = mockConsumer("consumer2", "queue1", 1);
+    var engine =
+        new Engine(
+            rabbitClient,
+            List.of(first, second),
+            workers,
+            taskQueue,
+            new TestingExecutorService(),
+            null,
+            null);
+    engine.handleReset(1);
+    verify(rabbitClient).consume(eq(second), eq(false));
+    verify(rabbitClient, never()).consume(eq(first), eq(false));
+  }
+
+  @DisplayName("should flush pending acks on stop")
+  @Test
+  public void engineShouldFlushAcksOnStop() {
+    engine.start();
+    engine.stop();
+    verify(rabbitClient).close();
+  }
+
+  @DisplayName("should requeue waiting tasks on stop")
+  @Test
+  public void engineShouldRequeueWaitingTasksOnStop() throws IOException {
+    Message message = new Message();
+    message.getEnvelope().setDeliveryTag(42);
+    message.getEnvelope().setChannel(1);
+    Runnable callback = mock(Runnable.class);
+    taskQueue.put(new Task(message, 1, callback));
+
+    engine.start();
+    engine.stop();
+
+    verify(rabbitClient).nack(1, 42, false, true);
+    verify(callback).run();
+    assertThat(taskQueue.isEmpty()).isTrue();
+  }
+
+  @DisplayName("should wake up waiting workers when stopping")
+  @Test
+  public void engineShouldWakeUpWaitingWorkers() throws InterruptedException {
+    var lockFreeTaskQueue = new LockFreeTaskQueue();
+    engine =
+        new Engine(
+            rabbitClient,
+            consumers,
+            workers,
+            lockFreeTaskQueue,
+            new TestingExecutorService(),
+            null,
+            null);
+    Thread waiting =
+        new Thread(
+            () -> {
+              try {
+                lockFreeTaskQueue.poll(1, TimeUnit.MINUTES);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    waiting.start();
+
+    engine.start();
+    engine.stop();
+
+    waiting.join(TimeUnit.SECONDS.toMillis(5));
+    assertThat(waiting.isAlive()).isFalse();
+  }
+
+  @DisplayName("should pause and resume consumers")
+  @Test
+  public void engineShouldPauseAndResumeConsumers() throws IOException {
+    engine.start();
+
+    engine.pause();
+    engine.handleReset(); // must not register paused consumers again
+    engine.resume();
+
+    for (FlusswerkConsumer consumer : consumers) {
+      verify(rabbitClient).cancel(eq(consumer.getConsumerTag()));
+      verify(rabbitClient, times(2)).consume(eq(consumer), eq(false));
+    }
+    engine.stop();
+  }
+
+  @DisplayName("should cancel consumers by the tags of their latest registration")
+  @Test
+  public void engineShouldCancelConsumersByLatestTag() throws IOException {
+    FlusswerkConsumer consumer = mock(FlusswerkConsumer.class); // tag not confirmed yet
+    when(rabbitClient.consume(consumer, false)).thenReturn("first-tag", "second-tag");
+    var engine =
+        new Engine(
+            rabbitClient,
+            List.of(consumer),
+            workers,
+            taskQueue,
+            new TestingExecutorService(),
+            null,
+            null);
+    engine.start();
+
+    engine.pause();
+    engine.resume();
+    engine.pause();
+
+    var inOrder = inOrder(rabbitClient);
+    inOrder.verify(rabbitClient).cancel("first-tag");
+    inOrder.verify(rabbitClient).cancel("second-tag");
+    verify(rabbitClient, times(2)).cancel(anyString());
+    engine.stop();
+  }
+
+  @DisplayName("should not resume consumers after stop")
+  @Test
+  public void engineShouldNotResumeAfterStop() throws IOException {
+    engine.start();
+    engine.pause();
+    engine.stop();
+    engine.resume();
+
+    for (FlusswerkConsumer consumer : consumers) {
+      verify(rabbitClient).cancel(eq(consumer.getConsumerTag()));
+      verify(rabbitClient).consume(eq(consumer), eq(false));
+    }
+  }
 }
@@ -0,0 +1,115 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.mdz.flusswerk.TestMessage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The FairTaskQueue")
+class FairTaskQueueTest {
+
+  private static Task task(String id, int priority) {
+    return new Task(new TestMessage(id), priority);
+  }
+
+  private static List<String> ids(List<Task> tasks) {
+    return tasks.stream().map(task -> ((TestMessage) task.getMessage()).getId()).toList();
+  }
+
+  private static List<Task> pollAll(TaskQueue queue) {
+    List<Task> tasks = new ArrayList<>();
+    Task task;
+    while ((task = queue.poll()) != null) {
+      tasks.add(task);
+    }
+    return tasks;
+  }
+
+  @DisplayName("should serve queues by weight")
+  @Test
+  void shouldServeQueuesByWeight() {
+    var queue = new FairTaskQueue(Map.of(2, 2, 1, 1), null);
+    for (int i = 0; i < 4; i++) {
+      queue.put(task("high" + i, 2));
+      queue.put(task("low" + i, 1));
+    }
+
+    assertThat(ids(pollAll(queue)))
+        .containsExactly("high0", "high1", "low0", "high2", "high3", "low1", "low2", "low3");
+  }
+
+  @DisplayName("should not starve queues with lower priority")
+  @Test
+  void shouldNotStarveLowPriority() {
+    var queue = new FairTaskQueue(Map.of(2, 1), null);
+    for (int i = 0; i < 100; i++) {
+      queue.put(task("high" + i, 2));
+    }
+    queue.put(task("low", 1));
+
+    List<String> first = ids(List.of(queue.poll(), queue.poll()));
+    assertThat(first).contains("low");
+  }
+
+  @DisplayName("should use strict priorities without weights")
+  @Test
+  void shouldUseStrictPrioritiesWithoutWeights() {
+    var queue = new FairTaskQueue(Map.of(), null);
+    queue.put(task("low0", 1));
+    queue.put(task("high0", 2));
+    queue.put(task("low1", 1));
+    queue.put(task("high1", 2));
+
+    assertThat(ids(pollAll(queue))).containsExactly("high0", "high1", "low0", "low1");
+  }
+
+  @DisplayName("should process tasks of one queue first in, first out")
+  @Test
+  void shouldBeFirstInFirstOutPerQueue() {
+    var queue = new FairTaskQueue(Map.of(1, 3), null);
+    for (int i = 0; i < 10; i++) {
+      queue.put(task(Integer.toString(i), 1));
+    }
+
+    assertThat(ids(pollAll(queue)))
+        .containsExactly("0", "1", "2", "3", "4", "5", "6", "7", "8", "9");
+  }
+
+  @DisplayName("should process aged tasks first")
+  @Test
+  void shouldProcessAgedTasksFirst() throws InterruptedException {
+    var queue = new FairTaskQueue(Map.of(), Duration.ofMillis(50));
+    queue.put(task("low", 1));
+    Thread.sleep(60);
+    queue.put(task("high", 2));
+
+    assertThat(ids(pollAll(queue))).containsExactly("low", "high");
+  }
+
+  @DisplayName("should return null after timeout when empty")
+  @Test
+  void shouldReturnNullAfterTimeout() throws InterruptedException {
+    var queue = new FairTaskQueue(Map.of(), null);
+    assertThat(queue.poll(10, TimeUnit.MILLISECONDS)).isNull();
+  }
+
+  @DisplayName("should drain all tasks in scheduling order")
+  @Test
+  void shouldDrainAllTasks() {
+    var queue = new FairTaskQueue(Map.of(2, 1, 1, 1), null);
+    queue.put(task("high0", 2));
+    queue.put(task("high1", 2));
+    queue.put(task("low0", 1));
+
+    List<Task> drained = new ArrayList<>();
+    assertThat(queue.drainTo(drained)).isEqualTo(3);
+    assertThat(ids(drained)).containsExactly("high0", "low0", "high1");
+    assertThat(queue.isEmpty()).isTrue();
+  }
+}
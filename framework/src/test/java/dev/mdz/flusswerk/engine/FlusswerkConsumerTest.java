@@ -19,7 +19,6 @@ import dev.mdz.flusswerk.rabbitmq.RabbitClient;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Semaphore;
 import net.logstash.logback.marker.ObjectAppendingMarker;
 import org.junit.jupiter.api.BeforeEach;
@@ -33,7 +32,7 @@ class FlusswerkConsumerTest {
   private Semaphore availableWorkers;
   private BasicProperties basicProperties;
   private FlusswerkConsumer consumer;
-  private PriorityBlockingQueue<Task> taskQueue;
+  private TaskQueue taskQueue;
   private FlusswerkObjectMapper flusswerkObjectMapper;
   private Envelope envelope;
 
@@ -41,7 +40,7 @@ class FlusswerkConsumerTest {
   void setUp() {
     availableWorkers = mock(Semaphore.class);
     RabbitClient rabbitClient = mock(RabbitClient.class);
-    taskQueue = new PriorityBlockingQueue<>();
+    taskQueue = new PriorityTaskQueue();
     IncomingMessageType incomingMessageType = new IncomingMessageType(TestMessage.class);
     flusswerkObjectMapper = new FlusswerkObjectMapper(incomingMessageType);
     consumer =
@@ -58,7 +57,7 @@ class FlusswerkConsumerTest {
     int priority = 42;
 
     consumer.handleDelivery("consumerTag", envelope, basicProperties, json(message));
-    assertThat(taskQueue).hasSize(1);
+    assertThat(taskQueue.size()).isEqualTo(1);
     Task actual = taskQueue.poll();
     assertThat(actual).isNotNull(); // to prevent NPE warning
     // task.callback breaks actual.equals(expected) here, so we need to compare fields directly
@@ -98,6 +97,18 @@ class FlusswerkConsumerTest {
         .isEqualTo(envelope.getDeliveryTag());
   }
 
+  @DisplayName("should keep the raw body of each message")
+  @Test
+  void shouldKeepRawBody() throws IOException {
+    byte[] body = json(new TestMessage("bsb12345678"));
+
+    consumer.handleDelivery("consumerTag", envelope, basicProperties, body);
+
+    Task actual = taskQueue.poll();
+    assertThat(actual).isNotNull();
+    assertThat(actual.getMessage().getEnvelope().getRawBody()).isSameAs(body);
+  }
+
   @DisplayName("should acquire semaphore")
   @Test
   void shouldAcquireSemaphore() throws InterruptedException, IOException {
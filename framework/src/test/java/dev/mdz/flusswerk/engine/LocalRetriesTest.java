@@ -0,0 +1,134 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import dev.mdz.flusswerk.TestMessage;
+import dev.mdz.flusswerk.config.properties.RoutingProperties;
+import dev.mdz.flusswerk.config.properties.RoutingProperties.FailurePolicyProperties;
+import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The LocalRetries")
+class LocalRetriesTest {
+
+  private final MessageBroker messageBroker = mock(MessageBroker.class);
+  private final TaskQueue taskQueue = new LockFreeTaskQueue();
+  private final AtomicInteger done = new AtomicInteger();
+  private final LocalRetries localRetries =
+      new LocalRetries(
+          routing(
+              new FailurePolicyProperties(
+                  3, null, null, Duration.ofMillis(50), null, 100.0, null, null)),
+          Duration.ofSeconds(1),
+          taskQueue,
+          messageBroker);
+
+  private static RoutingProperties routing(FailurePolicyProperties failurePolicy) {
+    return new RoutingProperties(
+        null, List.of("input"), null, null, null, Map.of("input", failurePolicy));
+  }
+
+  private Task task(Message message) {
+    return new Task(message, 1, done::incrementAndGet);
+  }
+
+  private Message received(int retries) {
+    return received("1", retries);
+  }
+
+  private Message received(String id, int retries) {
+    Message message = new TestMessage(id);
+    message.getEnvelope().setSource("input");
+    message.getEnvelope().setRetries(retries);
+    return message;
+  }
+
+  @AfterEach
+  void tearDown() {
+    localRetries.close();
+  }
+
+  @DisplayName("should put the task into the task queue again after the backoff")
+  @Test
+  void shouldPutTaskIntoQueueAfterBackoff() throws InterruptedException {
+    Message message = received(0);
+    Task task = task(message);
+
+    assertThat(localRetries.accept(message)).isTrue();
+    assertThat(localRetries.delay(task)).isTrue();
+    assertThat(localRetries.pending()).isEqualTo(1);
+
+    Task retried = taskQueue.poll(5, TimeUnit.SECONDS);
+    assertThat(retried.getMessage()).isSameAs(message);
+    assertThat(message.getEnvelope().getRetries()).isEqualTo(1);
+    assertThat(localRetries.pending()).isZero();
+    assertThat(done).hasValue(0);
+    verify(messageBroker, never()).ack(message);
+  }
+
+  @DisplayName("should leave backoffs above the threshold to RabbitMQ")
+  @Test
+  void shouldLeaveLongBackoffsToRabbitMQ() {
+    Message message = received(1); // second retry waits 5 seconds
+
+    assertThat(localRetries.accept(message)).isFalse();
+    assertThat(localRetries.delay(task(message))).isFalse();
+    assertThat(message.getEnvelope().getRetries()).isEqualTo(1);
+  }
+
+  @DisplayName("should not retry messages that failed too often")
+  @Test
+  void shouldNotRetryMessagesThatFailedTooOften() {
+    assertThat(localRetries.accept(received(3))).isFalse();
+  }
+
+  @DisplayName("should send waiting messages to the retry queue on close")
+  @Test
+  void shouldSendWaitingMessagesToRetryQueueOnClose() {
+    var slow =
+        new LocalRetries(
+            routing(new FailurePolicyProperties(3, null, null, Duration.ofMinutes(1))),
+            Duration.ofMinutes(1),
+            taskQueue,
+            messageBroker);
+    Message waiting = received("1", 0);
+    Message late = received("2", 0);
+    slow.accept(waiting);
+    slow.delay(task(waiting));
+    slow.accept(late);
+
+    slow.close();
+    assertThat(slow.delay(task(late))).isFalse();
+
+    verify(messageBroker).ack(waiting);
+    verify(messageBroker).retry(waiting);
+    verify(messageBroker).ack(late);
+    verify(messageBroker).retry(late);
+    assertThat(done).hasValue(1); // the late task is marked as done by its worker
+    assertThat(taskQueue.size()).isZero();
+  }
+
+  @DisplayName("should count retries in memory")
+  @Test
+  void shouldCountRetriesInMemory() {
+    var registry = new SimpleMeterRegistry();
+    localRetries.bindTo(registry);
+    Message message = received(0);
+    localRetries.accept(message);
+    localRetries.delay(task(message));
+
+    assertThat(registry.get("flusswerk.retry.local").functionCounter().count()).isEqualTo(1.0);
+  }
+}
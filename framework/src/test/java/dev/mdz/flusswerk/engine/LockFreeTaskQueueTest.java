@@ -0,0 +1,91 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.mdz.flusswerk.TestMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The LockFreeTaskQueue")
+class LockFreeTaskQueueTest {
+
+  private final LockFreeTaskQueue queue = new LockFreeTaskQueue();
+
+  private static Task task(String id, int priority) {
+    return new Task(new TestMessage(id), priority);
+  }
+
+  private static List<String> ids(List<Task> tasks) {
+    return tasks.stream().map(task -> ((TestMessage) task.getMessage()).getId()).toList();
+  }
+
+  private CompletableFuture<Task> waitingWorker() {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return queue.poll(1, TimeUnit.MINUTES);
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        });
+  }
+
+  @DisplayName("should process tasks with higher priority first")
+  @Test
+  void shouldProcessHigherPriorityFirst() {
+    queue.put(task("low0", 1));
+    queue.put(task("high0", 3));
+    queue.put(task("medium0", 2));
+    queue.put(task("high1", 3));
+
+    List<Task> tasks = new ArrayList<>();
+    assertThat(queue.drainTo(tasks)).isEqualTo(4);
+    assertThat(ids(tasks)).containsExactly("high0", "high1", "medium0", "low0");
+    assertThat(queue.isEmpty()).isTrue();
+  }
+
+  @DisplayName("should process tasks with the same priority first in, first out")
+  @Test
+  void shouldBeFirstInFirstOutPerPriority() {
+    for (int i = 0; i < 10; i++) {
+      queue.put(task(Integer.toString(i), 1));
+    }
+
+    List<Task> tasks = new ArrayList<>();
+    queue.drainTo(tasks);
+    assertThat(ids(tasks)).containsExactly("0", "1", "2", "3", "4", "5", "6", "7", "8", "9");
+  }
+
+  @DisplayName("should hand over new tasks to waiting workers right away")
+  @Test
+  void shouldWakeUpWaitingWorker() throws Exception {
+    var worker = waitingWorker();
+    Thread.sleep(50);
+    queue.put(task("1", 1));
+
+    assertThat(ids(List.of(worker.get(5, TimeUnit.SECONDS)))).containsExactly("1");
+    assertThat(queue.size()).isZero();
+  }
+
+  @DisplayName("should wake up all waiting workers when closed")
+  @Test
+  void shouldWakeUpAllWaitingWorkersWhenClosed() throws Exception {
+    var first = waitingWorker();
+    var second = waitingWorker();
+    Thread.sleep(50);
+    queue.close();
+
+    assertThat(first.get(5, TimeUnit.SECONDS)).isNull();
+    assertThat(second.get(5, TimeUnit.SECONDS)).isNull();
+  }
+
+  @DisplayName("should return null after timeout when empty")
+  @Test
+  void shouldReturnNullAfterTimeout() throws InterruptedException {
+    assertThat(queue.poll(10, TimeUnit.MILLISECONDS)).isNull();
+  }
+}
@@ -0,0 +1,80 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import dev.mdz.flusswerk.TestMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The ReservingTaskQueue")
+class ReservingTaskQueueTest {
+
+  private static Task task(String id, String queue, int priority) {
+    TestMessage message = new TestMessage(id);
+    message.getEnvelope().setSource(queue);
+    return new Task(message, priority);
+  }
+
+  private static String id(Task task) {
+    return task == null ? null : ((TestMessage) task.getMessage()).getId();
+  }
+
+  @DisplayName("should keep reserved workers for their queue during a flood of other tasks")
+  @Test
+  void shouldKeepReservedWorkersDuringFlood() {
+    var queue = new ReservingTaskQueue(new PriorityTaskQueue(), Map.of("low", 1), 1);
+    for (int i = 0; i < 10; i++) {
+      queue.put(task("high" + i, "high", 2));
+    }
+    queue.put(task("low", "low", 1));
+
+    assertThat(id(queue.poll())).isEqualTo("high0");
+    assertThat(id(queue.poll())).isEqualTo("low");
+    assertThat(queue.poll()).isNull(); // the shared worker is busy
+    assertThat(queue.size()).isEqualTo(9);
+  }
+
+  @DisplayName("should free the slot of a finished task")
+  @Test
+  void shouldFreeSlotOfFinishedTask() throws InterruptedException {
+    var queue = new ReservingTaskQueue(new PriorityTaskQueue(), Map.of("low", 1), 1);
+    queue.put(task("high0", "high", 2));
+    queue.put(task("high1", "high", 2));
+    Task first = queue.poll();
+    assertThat(queue.poll(10, TimeUnit.MILLISECONDS)).isNull();
+
+    queue.finished(first);
+    queue.finished(first); // finishing twice must not free two slots
+
+    assertThat(id(queue.poll(10, TimeUnit.MILLISECONDS))).isEqualTo("high1");
+    queue.put(task("high2", "high", 2));
+    assertThat(queue.poll()).isNull();
+  }
+
+  @DisplayName("should drain waiting tasks in the order they have been taken")
+  @Test
+  void shouldDrainWaitingTasksFirst() {
+    var queue = new ReservingTaskQueue(new PriorityTaskQueue(), Map.of(), 1);
+    queue.put(task("first", "high", 2));
+    queue.put(task("second", "high", 2));
+    queue.poll();
+    assertThat(queue.poll()).isNull(); // takes the second task, but cannot start it
+    queue.put(task("third", "low", 1));
+
+    List<Task> tasks = new ArrayList<>();
+    assertThat(queue.drainTo(tasks)).isEqualTo(2);
+    assertThat(tasks).map(ReservingTaskQueueTest::id).containsExactly("second", "third");
+  }
+
+  @DisplayName("should require at least one shared slot")
+  @Test
+  void shouldRequireSharedSlot() {
+    assertThatThrownBy(() -> new ReservingTaskQueue(new PriorityTaskQueue(), Map.of("low", 1), 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
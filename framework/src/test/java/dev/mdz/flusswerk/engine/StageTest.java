@@ -0,0 +1,105 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+@DisplayName("The Stage")
+class StageTest {
+
+  private final Stage stage = new Stage("test", 1, 1);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    stage.shutdown();
+  }
+
+  private void block() {
+    stage.execute(
+        () -> {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+  }
+
+  @DisplayName("should make callers wait while the queue is full")
+  @Test
+  void shouldMakeCallersWaitWhileQueueIsFull() throws InterruptedException {
+    block(); // occupies the only thread
+    block(); // fills the queue
+    Thread caller = new Thread(this::block);
+    caller.start();
+
+    caller.join(200);
+    assertThat(caller.isAlive()).isTrue();
+    assertThat(stage.saturation()).isEqualTo(1.0);
+
+    release.countDown();
+    caller.join(TimeUnit.SECONDS.toMillis(5));
+    assertThat(caller.isAlive()).isFalse();
+  }
+
+  @DisplayName("should run work with the MDC of the thread handing it over")
+  @Test
+  void shouldRunWorkWithMdcOfCaller() throws InterruptedException {
+    AtomicReference<String> id = new AtomicReference<>();
+    CountDownLatch done = new CountDownLatch(2);
+    MDC.put("id", "42");
+    try {
+      stage.execute(
+          () -> {
+            id.set(MDC.get("id"));
+            done.countDown();
+          });
+    } finally {
+      MDC.clear();
+    }
+    AtomicReference<String> leftover = new AtomicReference<>("not run");
+    stage.execute(
+        () -> {
+          leftover.set(MDC.get("id"));
+          done.countDown();
+        });
+
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(id).hasValue("42");
+    assertThat(leftover).hasValue(null);
+  }
+
+  @DisplayName("should publish saturation metrics")
+  @Test
+  void shouldPublishSaturationMetrics() {
+    var registry = new SimpleMeterRegistry();
+    stage.bindTo(registry);
+    block();
+    block();
+
+    assertThat(registry.get("flusswerk.stage.queued").tag("stage", "test").gauge().value())
+        .isEqualTo(1.0);
+    assertThat(registry.get("flusswerk.stage.saturation").tag("stage", "test").gauge().value())
+        .isEqualTo(1.0);
+    assertThat(registry.get("flusswerk.stage.active").tag("stage", "test").gauge()).isNotNull();
+  }
+
+  @DisplayName("should reject work after shutdown")
+  @Test
+  void shouldRejectWorkAfterShutdown() {
+    stage.shutdown();
+    assertThatThrownBy(() -> stage.execute(() -> {}))
+        .isInstanceOf(RejectedExecutionException.class);
+  }
+}
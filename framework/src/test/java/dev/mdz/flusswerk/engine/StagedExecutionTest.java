@@ -0,0 +1,131 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import dev.mdz.flusswerk.TestMessage;
+import dev.mdz.flusswerk.flow.BatchResult;
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.flow.builder.FlowBuilder;
+import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.reporting.Tracing;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The StagedExecution")
+class StagedExecutionTest {
+
+  private final StagedExecution stagedExecution =
+      new StagedExecution(
+          new Stage("reader", 1, 10),
+          new Stage("transformer", 1, 10),
+          new Stage("writer", 1, 10),
+          mock(Tracing.class));
+
+  @AfterEach
+  void tearDown() {
+    stagedExecution.close();
+  }
+
+  @DisplayName("should run reader, transformer and writer on their stages")
+  @Test
+  void shouldRunEveryStepOnItsStage() {
+    Map<String, String> threads = new ConcurrentHashMap<>();
+    var flowSpec =
+        FlowBuilder.flow(TestMessage.class, String.class, String.class)
+            .reader(
+                m -> {
+                  threads.put("reader", Thread.currentThread().getName());
+                  return m.getId();
+                })
+            .transformer(
+                id -> {
+                  threads.put("transformer", Thread.currentThread().getName());
+                  return id + "!";
+                })
+            .writerSendingMessage(
+                value -> {
+                  threads.put("writer", Thread.currentThread().getName());
+                  return new TestMessage(value);
+                })
+            .build();
+    Flow flow = new Flow(stagedExecution.apply(flowSpec));
+
+    var result = flow.processAsync(new TestMessage("1")).toCompletableFuture().join();
+
+    assertThat(flow.isAsync()).isTrue();
+    assertThat(result).containsExactly(new TestMessage("1!"));
+    assertThat(threads)
+        .containsEntry("reader", "flusswerk-reader-1")
+        .containsEntry("transformer", "flusswerk-transformer-1")
+        .containsEntry("writer", "flusswerk-writer-1");
+  }
+
+  @DisplayName("should keep one tracing path for a message across all stages")
+  @Test
+  void shouldKeepOneTracingPathAcrossStages() {
+    Tracing tracing = new Tracing();
+    Map<String, List<String>> paths = new ConcurrentHashMap<>();
+    var traced =
+        new StagedExecution(
+            new Stage("reader", 1, 10),
+            new Stage("transformer", 1, 10),
+            new Stage("writer", 1, 10),
+            tracing);
+    var flowSpec =
+        FlowBuilder.flow(TestMessage.class, String.class, String.class)
+            .reader(
+                m -> {
+                  paths.put("reader", tracing.tracingPath());
+                  return m.getId();
+                })
+            .transformer(
+                id -> {
+                  paths.put("transformer", tracing.tracingPath());
+                  return id;
+                })
+            .writerSendingMessage(
+                value -> {
+                  paths.put("writer", tracing.tracingPath());
+                  return new TestMessage(value);
+                })
+            .build();
+    var message = new TestMessage("1");
+    message.setTracing(List.of("incoming"));
+
+    try {
+      new Flow(traced.apply(flowSpec)).processAsync(message).toCompletableFuture().join();
+    } finally {
+      traced.close();
+    }
+
+    assertThat(paths.get("reader")).hasSize(2).startsWith("incoming");
+    assertThat(paths).containsEntry("transformer", paths.get("reader"));
+    assertThat(paths).containsEntry("writer", paths.get("reader"));
+  }
+
+  @DisplayName("should only support read/transform/write flows")
+  @Test
+  void shouldOnlySupportReadTransformWriteFlows() {
+    var batchSpec =
+        FlowBuilder.batch(Message.class, 2, Duration.ZERO)
+            .process(messages -> new BatchResult())
+            .build();
+    assertThatThrownBy(() -> stagedExecution.apply(batchSpec))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("should provide all stages")
+  @Test
+  void shouldProvideAllStages() {
+    assertThat(stagedExecution.getStages())
+        .extracting(Stage::getName)
+        .isEqualTo(List.of("reader", "transformer", "writer"));
+  }
+}
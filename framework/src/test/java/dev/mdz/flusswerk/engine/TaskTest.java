@@ -56,6 +56,22 @@ class TaskTest {
     assertThat(actual).containsExactly(highPriority, midPriority, lowPriority);
   }
 
+  @DisplayName("should be returned from priority queue first in, first out for equal priority")
+  @Test
+  void shouldReturnFromPriorityQueueFirstInFirstOut() {
+    List<Task> tasks = new ArrayList<>();
+    PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+    for (int i = 0; i < 20; i++) {
+      Task task = new Task(new TestMessage(Integer.toString(i)), 1);
+      tasks.add(task);
+      queue.add(task);
+    }
+
+    List<Task> actual = new ArrayList<>();
+    queue.drainTo(actual);
+    assertThat(actual).containsExactlyElementsOf(tasks);
+  }
+
   @DisplayName("should be equal to equal tasks")
   @ParameterizedTest
   @MethodSource("tasks")
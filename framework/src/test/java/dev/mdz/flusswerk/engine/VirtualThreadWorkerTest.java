@@ -0,0 +1,161 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.mdz.flusswerk.exceptions.StopProcessingException;
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.monitoring.FlusswerkMetrics;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import dev.mdz.flusswerk.reporting.ProcessReport;
+import dev.mdz.flusswerk.reporting.Tracing;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@DisplayName("The VirtualThreadWorker")
+@ExtendWith(MockitoExtension.class)
+class VirtualThreadWorkerTest {
+
+  @Mock private Flow flow;
+  @Mock private Tracing tracing;
+  @Mock private MessageBroker messageBroker;
+  @Mock private ProcessReport processReport;
+  @Mock private FlusswerkMetrics flusswerkMetrics;
+
+  private final TaskQueue taskQueue = new PriorityTaskQueue();
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private VirtualThreadWorker worker(int permits, ExecutorService executor) {
+    return new VirtualThreadWorker(
+        flow,
+        flusswerkMetrics,
+        messageBroker,
+        processReport,
+        taskQueue,
+        tracing,
+        permits,
+        executor,
+        null,
+        null);
+  }
+
+  @DisplayName("should process task and release permit")
+  @Test
+  void shouldProcessTaskAndReleasePermit() {
+    VirtualThreadWorker worker = worker(2, new TestingExecutorService());
+    Message message = new Message();
+    taskQueue.put(new Task(message, 1));
+
+    worker.step();
+
+    verify(flow).process(message);
+    verify(messageBroker).ack(message);
+    verify(tracing).deregister();
+    assertThat(worker.availablePermits()).isEqualTo(2);
+  }
+
+  @DisplayName("should release permit if flow fails unexpectedly")
+  @Test
+  void shouldReleasePermitIfFlowFailsUnexpectedly() {
+    VirtualThreadWorker worker = worker(1, new TestingExecutorService());
+    Message message = new Message();
+    when(flow.process(message)).thenThrow(new StopProcessingException("intentional"));
+    doThrow(new IllegalStateException("broker is gone")).when(messageBroker).fail(message);
+    AtomicBoolean done = new AtomicBoolean();
+    taskQueue.put(new Task(message, 1, () -> done.set(true)));
+
+    assertThatThrownBy(worker::step).isInstanceOf(IllegalStateException.class);
+
+    verify(tracing).deregister();
+    verify(flusswerkMetrics).decrementActiveWorkers();
+    assertThat(worker.availablePermits()).isEqualTo(1);
+    assertThat(done).isTrue();
+  }
+
+  @DisplayName("should not process more tasks at once than permits")
+  @Test
+  void shouldNotProcessMoreTasksThanPermits() throws Exception {
+    VirtualThreadWorker worker = worker(1, executor);
+    CountDownLatch inFlow = new CountDownLatch(1);
+    CountDownLatch proceed = new CountDownLatch(1);
+    when(flow.process(any()))
+        .thenAnswer(
+            invocation -> {
+              inFlow.countDown();
+              proceed.await();
+              return List.of();
+            });
+    taskQueue.put(new Task(new Message(), 2));
+    taskQueue.put(new Task(new Message(), 1));
+
+    worker.step();
+    inFlow.await();
+    worker.step(); // no permit left, second task has to wait
+
+    assertThat(taskQueue.size()).isEqualTo(1);
+    proceed.countDown();
+    worker.step();
+
+    verify(messageBroker, timeout(1000).times(2)).ack(any(Message.class));
+    assertThat(taskQueue.isEmpty()).isTrue();
+  }
+
+  @DisplayName("should wait for tasks in progress when stopped")
+  @Test
+  void shouldWaitForTasksInProgressWhenStopped() throws Exception {
+    VirtualThreadWorker worker = worker(1, executor);
+    CountDownLatch inFlow = new CountDownLatch(1);
+    when(flow.process(any()))
+        .thenAnswer(
+            invocation -> {
+              inFlow.countDown();
+              Thread.sleep(200);
+              return List.of();
+            });
+    taskQueue.put(new Task(new Message(), 1));
+
+    Thread thread = new Thread(worker);
+    thread.start();
+    inFlow.await();
+    worker.stop();
+    thread.join();
+
+    verify(messageBroker).ack(any(Message.class));
+    assertThat(executor.isTerminated()).isTrue();
+  }
+
+  @DisplayName("should not be created without support for virtual threads")
+  @EnabledForJreRange(max = JRE.JAVA_20)
+  @Test
+  void shouldNotBeCreatedWithoutVirtualThreads() {
+    assertThat(VirtualThreads.isSupported()).isFalse();
+    assertThatThrownBy(
+            () ->
+                new VirtualThreadWorker(
+                    flow, flusswerkMetrics, messageBroker, processReport, taskQueue, tracing, 1))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("Java 21");
+  }
+}
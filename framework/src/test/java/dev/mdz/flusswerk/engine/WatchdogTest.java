@@ -0,0 +1,98 @@
+package dev.mdz.flusswerk.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.mdz.flusswerk.engine.Watchdog.Watch;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The Watchdog")
+class WatchdogTest {
+
+  private final Watchdog watchdog =
+      new Watchdog(Duration.ofSeconds(10), Map.of("slow", Duration.ofMinutes(1)));
+
+  @AfterEach
+  void tearDown() {
+    watchdog.close();
+  }
+
+  @DisplayName("should prefer the timeout of the queue")
+  @Test
+  void shouldPreferTimeoutOfQueue() {
+    assertThat(watchdog.timeoutFor("slow")).contains(Duration.ofMinutes(1));
+    assertThat(watchdog.timeoutFor("other")).contains(Duration.ofSeconds(10));
+  }
+
+  @DisplayName("should not take over processing that finished in time")
+  @Test
+  void shouldNotTakeOverProcessingFinishedInTime() throws InterruptedException {
+    AtomicInteger timeouts = new AtomicInteger();
+    Watch watch = watchdog.watch(Duration.ofMillis(50), expired -> timeouts.incrementAndGet());
+
+    assertThat(watch.finish()).isTrue();
+    Thread.sleep(100);
+    assertThat(timeouts).hasValue(0);
+    assertThat(watch.isExpired()).isFalse();
+  }
+
+  @DisplayName("should take over processing that did not finish in time")
+  @Test
+  void shouldTakeOverProcessingAfterTimeout() throws InterruptedException {
+    CountDownLatch timedOut = new CountDownLatch(1);
+    Watch watch = watchdog.watch(Duration.ofMillis(10), expired -> timedOut.countDown());
+
+    assertThat(timedOut.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(watch.finish()).isFalse();
+    assertThat(watch.isExpired()).isTrue();
+  }
+
+  @DisplayName("should interrupt the processing thread before the watch is expired for good")
+  @Test
+  void shouldInterruptBeforeExpiring() throws InterruptedException {
+    CountDownLatch timedOut = new CountDownLatch(1);
+    Watch watch =
+        watchdog.watch(Duration.ofMillis(10), Thread.currentThread(), e -> timedOut.countDown());
+    while (!watch.isExpired()) {
+      Thread.onSpinWait();
+    }
+
+    watch.awaitInterrupt();
+    assertThat(Thread.interrupted()).isTrue();
+    assertThat(timedOut.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @DisplayName("should handle timeouts on other threads than the watchdog")
+  @Test
+  void shouldHandleTimeoutsOnOtherThreads() throws InterruptedException {
+    CountDownLatch slow = new CountDownLatch(1);
+    CountDownLatch timedOut = new CountDownLatch(1);
+    watchdog.watch(Duration.ofMillis(10), expired -> awaitQuietly(slow));
+    watchdog.watch(Duration.ofMillis(20), expired -> timedOut.countDown());
+
+    assertThat(timedOut.await(5, TimeUnit.SECONDS)).isTrue();
+    slow.countDown();
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @DisplayName("should always finish processing without time budget")
+  @Test
+  void shouldAlwaysFinishWithoutTimeBudget() {
+    assertThat(Watch.NONE.finish()).isTrue();
+    assertThat(Watch.NONE.finish()).isTrue();
+    assertThat(Watch.NONE.isExpired()).isFalse();
+  }
+}
@@ -1,22 +1,31 @@
 package dev.mdz.flusswerk.engine;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 import static org.mockito.Mockito.*;
 
 import dev.mdz.flusswerk.TestMessage;
+import dev.mdz.flusswerk.exceptions.ProcessingTimeoutException;
 import dev.mdz.flusswerk.exceptions.RetryProcessingException;
 import dev.mdz.flusswerk.exceptions.SkipProcessingException;
 import dev.mdz.flusswerk.exceptions.StopProcessingException;
+import dev.mdz.flusswerk.flow.BatchResult;
 import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.flow.builder.FlowBuilder;
 import dev.mdz.flusswerk.model.Message;
 import dev.mdz.flusswerk.monitoring.FlusswerkMetrics;
 import dev.mdz.flusswerk.rabbitmq.MessageBroker;
 import dev.mdz.flusswerk.reporting.ProcessReport;
 import dev.mdz.flusswerk.reporting.Tracing;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -41,7 +50,7 @@ class WorkerTest {
   @Captor private ArgumentCaptor<Collection<Message>> messagesCaptor;
 
   private Message message;
-  private PriorityBlockingQueue<Task> taskQueue;
+  private TaskQueue taskQueue;
   private Worker worker;
 
   private static Stream<Arguments> retryableExceptions() {
@@ -52,7 +61,7 @@ class WorkerTest {
 
   @BeforeEach
   void setUp() {
-    taskQueue = new PriorityBlockingQueue<>();
+    taskQueue = new PriorityTaskQueue();
     worker = new Worker(flow, flusswerkMetrics, messageBroker, processReport, taskQueue, tracing);
     message = new Message();
   }
@@ -88,6 +97,44 @@ class WorkerTest {
     verify(messageBroker).reject(message);
   }
 
+  @DisplayName("should send the retry before acknowledging the message")
+  @Test
+  void shouldSendRetryBeforeAck() {
+    when(flow.process(message)).thenThrow(new RetryProcessingException("Intentional"));
+    worker.process(message);
+    InOrder inOrder = inOrder(messageBroker);
+    inOrder.verify(messageBroker).reject(message);
+    inOrder.verify(messageBroker).ack(message);
+  }
+
+  @DisplayName("should retry message in memory without acknowledging it")
+  @Test
+  void shouldRetryMessageInMemory() throws InterruptedException {
+    var localRetries = mock(LocalRetries.class);
+    worker =
+        new Worker(
+            flow,
+            flusswerkMetrics,
+            messageBroker,
+            processReport,
+            taskQueue,
+            tracing,
+            null,
+            localRetries);
+    var exception = new RuntimeException("Intentional");
+    when(flow.process(message)).thenThrow(exception);
+    when(localRetries.accept(message)).thenReturn(true);
+    Task task = spy(new Task(message, 42));
+    when(localRetries.delay(task)).thenReturn(true);
+
+    worker.execute(List.of(task));
+
+    verify(messageBroker, never()).ack(message);
+    verify(messageBroker, never()).reject(message);
+    verify(processReport).reportRetry(message, exception);
+    verify(task, never()).done();
+  }
+
   @DisplayName("should acknowledge message")
   @Test
   void shouldAcknowledgeMessage() {
@@ -138,18 +185,71 @@ class WorkerTest {
   void shouldSendMessages() {
     when(flow.process(message)).thenReturn(List.of(message));
     worker.process(message);
-    verify(messageBroker).send(List.of(message));
+    verify(messageBroker).sendToDefault(List.of(message));
   }
 
   @DisplayName("should fail processing when sending messages fails")
   @Test
   void shouldFailProcessingWhenSendingMessagesFails() {
     when(flow.process(message)).thenReturn(List.of(message));
-    doThrow(RuntimeException.class).when(messageBroker).send(any());
+    doThrow(RuntimeException.class).when(messageBroker).sendToDefault(any());
     worker.process(message);
     verify(processReport).reportFail(any(), any());
   }
 
+  @DisplayName("should retry a message when waiting for a rate limit has been interrupted")
+  @Test
+  void shouldRetryMessageWhenRateLimitWaitIsInterrupted() {
+    when(flow.process(message)).thenReturn(List.of(message));
+    doAnswer(
+            invocation -> {
+              Thread.currentThread().interrupt();
+              throw new RetryProcessingException("Interrupted while waiting for rate limit");
+            })
+        .when(messageBroker)
+        .sendToDefault(any());
+    when(messageBroker.reject(message)).thenReturn(true);
+
+    worker.process(message);
+
+    assertThat(Thread.interrupted()).isTrue(); // the interrupt is kept
+    verify(messageBroker).reject(message);
+    verify(messageBroker, never()).fail(any());
+    verify(processReport).reportRetry(eq(message), any());
+  }
+
+  @DisplayName("should remember a message only after sending and acknowledging it")
+  @Test
+  void shouldRememberMessageAfterSendingAndAcknowledging() {
+    when(flow.process(message)).thenReturn(List.of(message));
+    worker.process(message);
+
+    InOrder inOrder = inOrder(messageBroker, flow);
+    inOrder.verify(messageBroker).sendToDefault(List.of(message));
+    inOrder.verify(messageBroker).ack(message);
+    inOrder.verify(flow).remember(message);
+  }
+
+  @DisplayName("should not remember a message when sending messages fails")
+  @Test
+  void shouldNotRememberMessageWhenSendingFails() {
+    when(flow.process(message)).thenReturn(List.of(message));
+    doThrow(RuntimeException.class).when(messageBroker).sendToDefault(any());
+    worker.process(message);
+    verify(flow, never()).remember(any());
+  }
+
+  @DisplayName("should keep the success of a message it could not remember")
+  @Test
+  void shouldKeepSuccessWhenRememberingFails() {
+    when(flow.process(message)).thenReturn(List.of());
+    doThrow(RuntimeException.class).when(flow).remember(message);
+    worker.process(message);
+    verify(processReport).reportSuccess(message);
+    verify(messageBroker, never()).reject(any());
+    verify(messageBroker, never()).fail(any());
+  }
+
   @DisplayName("should confirm that task is done")
   @Test
   void shouldReleaseSemaphore() {
@@ -161,13 +261,26 @@ class WorkerTest {
     verify(callback).run();
   }
 
+  @DisplayName("should confirm that task is done even if handling the message fails unexpectedly")
+  @Test
+  void shouldReleaseSemaphoreOnUnexpectedFailure() {
+    Runnable callback = mock(Runnable.class);
+    when(flow.process(message)).thenThrow(new StopProcessingException("intentional"));
+    doThrow(new IllegalStateException("broker is gone")).when(messageBroker).fail(message);
+    taskQueue.put(new Task(message, 42, callback));
+
+    assertThatThrownBy(worker::step).isInstanceOf(IllegalStateException.class);
+
+    verify(callback).run();
+  }
+
   @DisplayName("should register active workers")
   @Test
   void shouldRegisterActiveWorkers() {
     worker.executeProcessing(new Message());
     InOrder inOrder = Mockito.inOrder(flusswerkMetrics, messageBroker);
     inOrder.verify(flusswerkMetrics).incrementActiveWorkers();
-    inOrder.verify(messageBroker).ack(any());
+    inOrder.verify(messageBroker).ack(any(Message.class));
     inOrder.verify(flusswerkMetrics).decrementActiveWorkers();
   }
 
@@ -198,7 +311,7 @@ class WorkerTest {
     Message expectedMessage = new Message();
     expectedMessage.setTracing(tracingPath);
 
-    verify(messageBroker).send(messagesCaptor.capture());
+    verify(messageBroker).sendToDefault(messagesCaptor.capture());
     assertThat(unwrapOne(messagesCaptor.getValue()).getTracing()).isEqualTo(tracingPath);
   }
 
@@ -215,7 +328,7 @@ class WorkerTest {
     when(flow.process(incomingMessage))
         .thenThrow(new RetryProcessingException("Retry processing").send(outgoingMessage));
     worker.process(incomingMessage);
-    verify(messageBroker).send(List.of(outgoingMessage));
+    verify(messageBroker).sendToDefault(List.of(outgoingMessage));
   }
 
   @DisplayName("should perform complex retry with new messages")
@@ -228,10 +341,121 @@ class WorkerTest {
     when(flow.process(incomingMessage)).thenThrow(retryException);
     when(messageBroker.reject(any())).thenReturn(true);
     worker.process(incomingMessage);
-    verify(messageBroker).ack(incomingMessage);
+    InOrder inOrder = inOrder(messageBroker);
     for (Message message : messagesToRetry) {
-      verify(messageBroker).reject(message);
+      inOrder.verify(messageBroker).reject(message);
     }
+    inOrder.verify(messageBroker).ack(incomingMessage);
     verify(processReport).reportComplexRetry(incomingMessage, retryException);
   }
+
+  private Worker batchWorker(Function<List<Message>, BatchResult> processor) {
+    Flow batchFlow =
+        new Flow(
+            FlowBuilder.batch(Message.class, 3, Duration.ofMillis(50)).process(processor).build());
+    return new Worker(
+        batchFlow, flusswerkMetrics, messageBroker, processReport, taskQueue, tracing);
+  }
+
+  @DisplayName("should process up to batch size messages at once and acknowledge them together")
+  @Test
+  void shouldProcessBatchAndAcknowledgeTogether() {
+    List<List<Message>> batches = new ArrayList<>();
+    Worker batchWorker =
+        batchWorker(
+            messages -> {
+              batches.add(messages);
+              return new BatchResult();
+            });
+    List<Message> messages = Stream.generate(Message::new).limit(4).toList();
+    messages.forEach(m -> taskQueue.put(new Task(m, 1)));
+
+    batchWorker.step();
+
+    assertThat(batches).containsExactly(messages.subList(0, 3));
+    verify(messageBroker).ack(messages.subList(0, 3));
+    verify(messageBroker, never()).ack(any(Message.class));
+    assertThat(taskQueue.size()).isEqualTo(1);
+  }
+
+  @DisplayName("should not wait longer than max wait for a batch to fill")
+  @Test
+  void shouldProcessPartialBatchAfterMaxWait() {
+    List<List<Message>> batches = new ArrayList<>();
+    Worker batchWorker =
+        batchWorker(
+            messages -> {
+              batches.add(messages);
+              return new BatchResult();
+            });
+    taskQueue.put(new Task(message, 1));
+
+    batchWorker.step();
+
+    assertThat(batches).containsExactly(List.of(message));
+    verify(messageBroker).ack(List.of(message));
+  }
+
+  @DisplayName("should retry and fail single messages of a batch")
+  @Test
+  void shouldRetryAndFailSingleMessagesOfBatch() {
+    Message succeeded = new TestMessage("succeeded");
+    Message retried = new TestMessage("retried");
+    Message failed = new TestMessage("failed");
+    Message outgoing = new TestMessage("outgoing");
+    Worker batchWorker =
+        batchWorker(
+            messages ->
+                new BatchResult().retry(retried, "retry").fail(failed, "fail").send(outgoing));
+    when(messageBroker.reject(retried)).thenReturn(true);
+
+    batchWorker.process(List.of(succeeded, retried, failed));
+
+    verify(messageBroker).ack(retried);
+    verify(messageBroker).reject(retried);
+    verify(processReport).reportRetry(eq(retried), any(RetryProcessingException.class));
+    verify(messageBroker).fail(failed);
+    verify(processReport).reportFail(eq(failed), any(StopProcessingException.class));
+    verify(messageBroker).sendToDefault(List.of(outgoing));
+    verify(messageBroker).ack(List.of(succeeded));
+    verify(processReport).reportSuccess(succeeded);
+  }
+
+  @DisplayName("should retry message that takes longer than its time budget")
+  @Test
+  void shouldRetryMessageAfterTimeout() throws InterruptedException {
+    var watchdog = new Watchdog(Duration.ofMillis(50), Map.of());
+    worker =
+        new Worker(
+            flow,
+            flusswerkMetrics,
+            messageBroker,
+            processReport,
+            taskQueue,
+            tracing,
+            watchdog,
+            null);
+    when(flow.process(message))
+        .thenAnswer(
+            invocation -> {
+              try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1)); // hangs until interrupted
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+              return List.of();
+            });
+    when(messageBroker.reject(message)).thenReturn(true);
+    CountDownLatch done = new CountDownLatch(1);
+    taskQueue.put(new Task(message, 1, done::countDown));
+
+    worker.step();
+
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    verify(flow).reportTimeout(eq(message), anyLong(), any(ProcessingTimeoutException.class));
+    verify(messageBroker).reject(message);
+    verify(processReport).reportRetry(eq(message), any(ProcessingTimeoutException.class));
+    assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    watchdog.close();
+  }
 }
@@ -3,6 +3,7 @@ package dev.mdz.flusswerk.flow;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import dev.mdz.flusswerk.TestMessage;
+import dev.mdz.flusswerk.exceptions.ProcessingTimeoutException;
 import dev.mdz.flusswerk.exceptions.RetryProcessingException;
 import dev.mdz.flusswerk.exceptions.SkipProcessingException;
 import dev.mdz.flusswerk.exceptions.StopProcessingException;
@@ -24,6 +25,7 @@ class FlowInfoTest {
         new StatusFixture(new RetryProcessingException(""), Status.ERROR_RETRY),
         new StatusFixture(new SkipProcessingException(""), Status.SKIP),
         new StatusFixture(new StopProcessingException(""), Status.ERROR_STOP),
+        new StatusFixture(new ProcessingTimeoutException(""), Status.TIMEOUT),
         new StatusFixture(new SkipProcessingException(""), Status.SKIP));
   }
 
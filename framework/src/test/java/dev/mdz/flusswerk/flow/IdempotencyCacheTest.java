@@ -0,0 +1,153 @@
+package dev.mdz.flusswerk.flow;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import dev.mdz.flusswerk.TestMessage;
+import dev.mdz.flusswerk.exceptions.SkipProcessingException;
+import dev.mdz.flusswerk.flow.builder.FlowBuilder;
+import dev.mdz.flusswerk.model.Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("The IdempotencyCache")
+class IdempotencyCacheTest {
+
+  private final Clock clock = mock(Clock.class);
+
+  @BeforeEach
+  void setUp() {
+    when(clock.millis()).thenReturn(0L);
+  }
+
+  private IdempotencyCache cache(int size, Path store) {
+    return new IdempotencyCache(Flow::idOf, size, Duration.ofMinutes(1), store, clock);
+  }
+
+  @DisplayName("should recognize messages that have already been processed")
+  @Test
+  void shouldRecognizeProcessedMessages() {
+    var cache = cache(10, null);
+    assertThat(cache.isDuplicate(new TestMessage("1"))).isFalse();
+
+    cache.processed(new TestMessage("1"));
+
+    assertThat(cache.isDuplicate(new TestMessage("1"))).isTrue();
+    assertThat(cache.isDuplicate(new TestMessage("2"))).isFalse();
+  }
+
+  @DisplayName("should forget keys after their TTL")
+  @Test
+  void shouldForgetKeysAfterTtl() {
+    var cache = cache(10, null);
+    cache.processed(new TestMessage("1"));
+
+    when(clock.millis()).thenReturn(Duration.ofMinutes(1).toMillis());
+
+    assertThat(cache.isDuplicate(new TestMessage("1"))).isFalse();
+    assertThat(cache.size()).isZero();
+  }
+
+  @DisplayName("should only remember the most recent keys")
+  @Test
+  void shouldOnlyRememberMostRecentKeys() {
+    var cache = cache(2, null);
+    cache.processed(new TestMessage("1"));
+    cache.processed(new TestMessage("2"));
+    cache.processed(new TestMessage("3"));
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.isDuplicate(new TestMessage("1"))).isFalse();
+    assertThat(cache.isDuplicate(new TestMessage("3"))).isTrue();
+  }
+
+  @DisplayName("should keep keys across restarts with a store")
+  @Test
+  void shouldKeepKeysAcrossRestarts(@TempDir Path directory) throws Exception {
+    Path store = directory.resolve("keys");
+    try (var cache = cache(2, store)) {
+      for (int i = 0; i < 5; i++) { // compacts the store on the way
+        cache.processed(new TestMessage("id " + i));
+      }
+    }
+
+    try (var cache = cache(2, store)) {
+      assertThat(cache.size()).isEqualTo(2);
+      assertThat(cache.isDuplicate(new TestMessage("id 4"))).isTrue();
+      assertThat(cache.isDuplicate(new TestMessage("id 0"))).isFalse();
+    }
+  }
+
+  @DisplayName("should publish the hit ratio")
+  @Test
+  void shouldPublishHitRatio() {
+    var cache = cache(10, null);
+    var registry = new SimpleMeterRegistry();
+    cache.bindTo(registry);
+    cache.processed(new TestMessage("1"));
+    cache.isDuplicate(new TestMessage("1"));
+    cache.isDuplicate(new TestMessage("2"));
+
+    assertThat(registry.get("flusswerk.idempotency.hit.ratio").gauge().value()).isEqualTo(0.5);
+    assertThat(
+            registry
+                .get("flusswerk.idempotency.lookups")
+                .tag("result", "hit")
+                .functionCounter()
+                .count())
+        .isEqualTo(1.0);
+  }
+
+  @DisplayName("should let the flow skip duplicates without processing them")
+  @Test
+  void shouldSkipDuplicatesInFlow() {
+    AtomicInteger processed = new AtomicInteger();
+    FlowSpec flowSpec =
+        FlowBuilder.messageProcessor(TestMessage.class)
+            .process(
+                message -> {
+                  processed.incrementAndGet();
+                  return null;
+                })
+            .build();
+    var flow = new Flow(flowSpec, cache(10, null));
+
+    Message first = new TestMessage("1");
+    flow.process(first);
+    flow.remember(first); // by the worker once the message has been acknowledged
+    assertThatThrownBy(() -> flow.process(new TestMessage("1")))
+        .isInstanceOf(SkipProcessingException.class);
+
+    assertThat(processed).hasValue(1);
+  }
+
+  @DisplayName("should let batch flows skip duplicates without processing them")
+  @Test
+  void shouldSkipDuplicatesInBatchFlow() {
+    AtomicInteger processed = new AtomicInteger();
+    FlowSpec flowSpec =
+        FlowBuilder.batch(TestMessage.class, 2, Duration.ZERO)
+            .consume(messages -> processed.addAndGet(messages.size()))
+            .build();
+    var flow = new Flow(flowSpec, cache(10, null));
+    Message duplicate = new TestMessage("1");
+
+    Message first = new TestMessage("1");
+    flow.processBatch(List.of(first));
+    flow.remember(first); // by the worker once the message has been acknowledged
+    BatchResult result = flow.processBatch(List.of(duplicate, new TestMessage("2")));
+
+    assertThat(processed).hasValue(2);
+    assertThat(result.getOutcome(duplicate)).get().isInstanceOf(SkipProcessingException.class);
+  }
+}
@@ -0,0 +1,95 @@
+package dev.mdz.flusswerk.flow.builder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import dev.mdz.flusswerk.TestMessage;
+import dev.mdz.flusswerk.exceptions.StopProcessingException;
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.flow.FlowInfo;
+import dev.mdz.flusswerk.monitoring.Status;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The AsyncStep")
+class AsyncStepTest {
+
+  private final TestMessage message = new TestMessage("1", "a");
+
+  @Test
+  @DisplayName("should pass the result of every stage to the next one")
+  void shouldChainStages() {
+    var flow =
+        new Flow(
+            FlowBuilder.async(TestMessage.class)
+                .stage(m -> CompletableFuture.completedFuture(m.getValues().get(0)))
+                .stage(value -> CompletableFuture.completedFuture(value.toUpperCase()))
+                .writerSendingMessage(
+                    value -> CompletableFuture.completedFuture(new TestMessage(value)))
+                .build());
+
+    assertThat(flow.isAsync()).isTrue();
+    assertThat(flow.processAsync(message).toCompletableFuture().join())
+        .containsExactly(new TestMessage("A"));
+  }
+
+  @Test
+  @DisplayName("should record metrics when processing completes")
+  void shouldRecordMetricsWhenProcessingCompletes() {
+    var infos = new ArrayList<FlowInfo>();
+    var result = new CompletableFuture<Void>();
+    var flow =
+        new Flow(
+            FlowBuilder.async(TestMessage.class)
+                .writerSendingNothing(m -> result)
+                .metrics(infos::add)
+                .build());
+
+    var stage = flow.processAsync(message);
+    assertThat(infos).isEmpty();
+
+    result.completeExceptionally(new StopProcessingException("Intentional"));
+
+    assertThat(infos).extracting(FlowInfo::getStatus).containsExactly(Status.ERROR_STOP);
+    assertThatThrownBy(() -> stage.toCompletableFuture().join())
+        .isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(StopProcessingException.class);
+  }
+
+  @Test
+  @DisplayName("should fail the stage if the first stage throws")
+  void shouldFailStageIfFirstStageThrows() {
+    var flow =
+        new Flow(
+            FlowBuilder.async(TestMessage.class)
+                .writerSendingNothing(
+                    m -> {
+                      throw new StopProcessingException("Intentional");
+                    })
+                .build());
+
+    var stage = flow.processAsync(message).toCompletableFuture();
+
+    assertThat(stage).isCompletedExceptionally();
+  }
+
+  @Test
+  @DisplayName("should block until completion when processing synchronously")
+  void shouldBlockWhenProcessingSynchronously() {
+    var flow =
+        new Flow(
+            FlowBuilder.async(TestMessage.class)
+                .writerSendingMessage(
+                    m ->
+                        CompletableFuture.supplyAsync(
+                            () -> {
+                              throw new StopProcessingException("Intentional");
+                            }))
+                .build());
+
+    assertThatThrownBy(() -> flow.process(message)).isInstanceOf(StopProcessingException.class);
+  }
+}
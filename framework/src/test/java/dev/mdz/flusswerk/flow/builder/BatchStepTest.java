@@ -0,0 +1,130 @@
+package dev.mdz.flusswerk.flow.builder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import dev.mdz.flusswerk.TestMessage;
+import dev.mdz.flusswerk.exceptions.RetryProcessingException;
+import dev.mdz.flusswerk.exceptions.SkipProcessingException;
+import dev.mdz.flusswerk.exceptions.StopProcessingException;
+import dev.mdz.flusswerk.flow.BatchResult;
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.flow.FlowInfo;
+import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.monitoring.Status;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The BatchStep")
+class BatchStepTest {
+
+  private final TestMessage first = new TestMessage("1");
+  private final TestMessage second = new TestMessage("2");
+  private final TestMessage third = new TestMessage("3");
+
+  private Flow batchFlow(Function<List<TestMessage>, BatchResult> processor) {
+    return new Flow(
+        FlowBuilder.batch(TestMessage.class, 3, Duration.ofMillis(10)).process(processor).build());
+  }
+
+  @Test
+  @DisplayName("should configure the batch")
+  void shouldConfigureTheBatch() {
+    var flow = batchFlow(messages -> new BatchResult());
+    var batch = flow.getBatch().orElseThrow();
+    assertThat(batch.size()).isEqualTo(3);
+    assertThat(batch.maxWait()).isEqualTo(Duration.ofMillis(10));
+  }
+
+  @Test
+  @DisplayName("should process all messages of a batch at once")
+  void shouldProcessAllMessagesAtOnce() {
+    var received = new ArrayList<List<TestMessage>>();
+    var outgoing = new TestMessage("out");
+    var flow =
+        batchFlow(
+            messages -> {
+              received.add(messages);
+              return new BatchResult().send(outgoing);
+            });
+
+    BatchResult result = flow.processBatch(List.of(first, second, third));
+
+    assertThat(received).containsExactly(List.of(first, second, third));
+    assertThat(result.getMessagesToSend()).containsExactly(outgoing);
+    assertThat(result.getOutcome(first)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("should report outcomes per message")
+  void shouldReportOutcomesPerMessage() {
+    var infos = new ArrayList<FlowInfo>();
+    var flow =
+        new Flow(
+            FlowBuilder.batch(TestMessage.class, 3, Duration.ZERO)
+                .process(
+                    messages ->
+                        new BatchResult()
+                            .skip(first, "skip")
+                            .retry(second, "retry")
+                            .fail(third, "fail"))
+                .metrics(infos::add)
+                .build());
+
+    BatchResult result = flow.processBatch(List.of(first, second, third));
+
+    assertThat(result.getOutcome(first)).containsInstanceOf(SkipProcessingException.class);
+    assertThat(result.getOutcome(second)).containsInstanceOf(RetryProcessingException.class);
+    assertThat(result.getOutcome(third)).containsInstanceOf(StopProcessingException.class);
+    assertThat(infos)
+        .extracting(FlowInfo::getStatus)
+        .containsExactly(Status.SKIP, Status.ERROR_RETRY, Status.ERROR_STOP);
+  }
+
+  @Test
+  @DisplayName("should apply an exception to every message of the batch")
+  void shouldApplyExceptionToEveryMessage() {
+    var exception = new RuntimeException("Intentional");
+    var flow =
+        batchFlow(
+            messages -> {
+              throw exception;
+            });
+
+    BatchResult result = flow.processBatch(List.of(first, second));
+
+    assertThat(result.getOutcome(first)).containsSame(exception);
+    assertThat(result.getOutcome(second)).containsSame(exception);
+  }
+
+  @Test
+  @DisplayName("should process a single message as batch of one")
+  void shouldProcessSingleMessageAsBatchOfOne() {
+    var outgoing = new TestMessage("out");
+    var flow = batchFlow(messages -> new BatchResult().send(outgoing));
+    assertThat(flow.process(first)).containsExactly(outgoing);
+
+    var failing = batchFlow(messages -> new BatchResult().retry(messages.get(0), "retry"));
+    assertThatThrownBy(() -> failing.process(first)).isInstanceOf(RetryProcessingException.class);
+  }
+
+  @Test
+  @DisplayName("should consume a batch")
+  void shouldConsumeBatch() {
+    var received = new ArrayList<Message>();
+    var flow =
+        new Flow(
+            FlowBuilder.batch(TestMessage.class, 3, Duration.ZERO)
+                .consume(received::addAll)
+                .build());
+
+    BatchResult result = flow.processBatch(List.of(first, second));
+
+    assertThat(received).containsExactly(first, second);
+    assertThat(result.getMessagesToSend()).isEmpty();
+  }
+}
@@ -0,0 +1,97 @@
+package dev.mdz.flusswerk.jackson;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import dev.mdz.flusswerk.TestMessage;
+import dev.mdz.flusswerk.model.Message;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The FlusswerkObjectMapper")
+class FlusswerkObjectMapperTest {
+
+  private FlusswerkObjectMapper objectMapper;
+
+  @BeforeEach
+  void setUp() {
+    objectMapper = FlusswerkObjectMapper.forIncoming(TestMessage.class);
+  }
+
+  @DisplayName("should serialize like the ObjectMapper itself")
+  @Test
+  void shouldSerializeLikeObjectMapper() throws JsonProcessingException {
+    TestMessage message = new TestMessage("bsb12345678");
+    assertThat(objectMapper.serialize(message)).isEqualTo(objectMapper.writeValueAsBytes(message));
+  }
+
+  @DisplayName("should not share buffers between serialized messages")
+  @Test
+  void shouldNotShareBuffers() throws JsonProcessingException {
+    byte[] first = objectMapper.serialize(new TestMessage("first"));
+    byte[] second = objectMapper.serialize(new TestMessage("second"));
+    assertThat(new String(first, StandardCharsets.UTF_8)).contains("first");
+    assertThat(new String(second, StandardCharsets.UTF_8)).contains("second");
+  }
+
+  @DisplayName("should deserialize serialized messages from bytes")
+  @Test
+  void shouldDeserializeFromBytes() throws JsonProcessingException {
+    TestMessage message = new TestMessage("bsb12345678");
+    Message restored = objectMapper.deserialize(objectMapper.serialize(message));
+    assertThat(restored).isInstanceOf(TestMessage.class);
+    assertThat(((TestMessage) restored).getId()).isEqualTo("bsb12345678");
+  }
+
+  @DisplayName("should use modules registered after it has been created")
+  @Test
+  void shouldUseModulesRegisteredLater() throws JsonProcessingException {
+    byte[] json = objectMapper.writeValueAsBytes(new TestMessage("bsb12345678"));
+
+    objectMapper.registerModule(
+        new SimpleModule()
+            .addDeserializer(
+                String.class,
+                new StdDeserializer<>(String.class) {
+                  @Override
+                  public String deserialize(JsonParser parser, DeserializationContext context)
+                      throws IOException {
+                    return parser.getValueAsString().toUpperCase();
+                  }
+                }));
+
+    Message restored = objectMapper.deserialize(json);
+    assertThat(((TestMessage) restored).getId()).isEqualTo("BSB12345678");
+  }
+
+  @DisplayName("should serialize on many threads at once")
+  @Test
+  void shouldSerializeOnManyThreads() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(32); // more than pooled buffers
+    try {
+      List<Future<byte[]>> serialized = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        TestMessage message = new TestMessage("message-" + i);
+        serialized.add(executor.submit(() -> objectMapper.serialize(message)));
+      }
+      for (int i = 0; i < 100; i++) {
+        TestMessage restored = (TestMessage) objectMapper.deserialize(serialized.get(i).get());
+        assertThat(restored.getId()).isEqualTo("message-" + i);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
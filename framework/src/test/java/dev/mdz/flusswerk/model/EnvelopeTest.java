@@ -1,7 +1,10 @@
 package dev.mdz.flusswerk.model;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import dev.mdz.flusswerk.jackson.FlusswerkObjectMapper;
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -21,4 +24,22 @@ class EnvelopeTest {
     String json = "{\"timestamp\": [2021, 10, 10, 16, 23, 11]}";
     flusswerkObjectMapper.readValue(json, Envelope.class); // should not throw an exception
   }
+
+  @DisplayName("should decode the raw body lazily")
+  @Test
+  void shouldDecodeRawBodyLazily() {
+    Envelope envelope = new Envelope();
+    envelope.setRawBody("{\"tracing\": [\"ä\"]}".getBytes(StandardCharsets.UTF_8));
+    assertThat(envelope.getBody()).isEqualTo("{\"tracing\": [\"ä\"]}");
+  }
+
+  @DisplayName("should not serialize the raw body")
+  @Test
+  void shouldNotSerializeRawBody() throws JsonProcessingException {
+    Envelope envelope = new Envelope();
+    envelope.setRawBody("raw".getBytes(StandardCharsets.UTF_8));
+    assertThat(flusswerkObjectMapper.writeValueAsString(envelope))
+        .doesNotContain("rawBody")
+        .doesNotContain("body");
+  }
 }
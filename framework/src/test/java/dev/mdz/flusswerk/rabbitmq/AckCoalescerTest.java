@@ -0,0 +1,175 @@
+package dev.mdz.flusswerk.rabbitmq;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The AckCoalescer")
+class AckCoalescerTest {
+
+  private Channel channel;
+
+  @BeforeEach
+  void setUp() {
+    channel = mock(Channel.class);
+  }
+
+  private AckCoalescer coalescer(int maxPending, long deliveries) {
+    AckCoalescer coalescer = new AckCoalescer(channel, maxPending);
+    LongStream.rangeClosed(1, deliveries).forEach(coalescer::delivered);
+    return coalescer;
+  }
+
+  @DisplayName("should acknowledge out of order completions with one multiple-ack")
+  @Test
+  void shouldCoalesceOutOfOrderAcks() throws IOException {
+    AckCoalescer coalescer = coalescer(3, 3);
+    coalescer.ack(3);
+    coalescer.ack(1);
+    verify(channel, never()).basicAck(anyLong(), anyBoolean());
+
+    coalescer.ack(2);
+
+    verify(channel).basicAck(3, true);
+    assertThat(coalescer.pendingCount()).isZero();
+  }
+
+  @DisplayName("should not cover outstanding messages with a multiple-ack")
+  @Test
+  void shouldNotCoverOutstandingMessages() throws IOException {
+    AckCoalescer coalescer = coalescer(3, 4);
+    coalescer.ack(1);
+    coalescer.ack(3);
+    coalescer.ack(4);
+
+    verify(channel).basicAck(1, true);
+    verify(channel).basicAck(3, false);
+    verify(channel).basicAck(4, false);
+    verify(channel, never()).basicAck(2, true);
+  }
+
+  @DisplayName("should acknowledge a batch with one multiple-ack right away")
+  @Test
+  void shouldAcknowledgeBatchRightAway() throws IOException {
+    AckCoalescer coalescer = coalescer(10, 4);
+    coalescer.ackAll(List.of(2L, 1L, 3L));
+
+    verify(channel).basicAck(3, true);
+    verify(channel, never()).basicAck(anyLong(), eq(false));
+    assertThat(coalescer.pendingCount()).isZero();
+  }
+
+  @DisplayName("should treat rejected messages as settled")
+  @Test
+  void shouldTreatRejectedMessagesAsSettled() throws IOException {
+    AckCoalescer coalescer = coalescer(10, 3);
+    coalescer.settled(2, false);
+    coalescer.ack(1);
+    coalescer.ack(3);
+
+    coalescer.flush();
+
+    verify(channel).basicAck(3, true);
+    verify(channel, never()).basicAck(1, true);
+  }
+
+  private static GetResponse response(long deliveryTag) {
+    return new GetResponse(
+        new Envelope(deliveryTag, false, "exchange", "routingKey"), null, new byte[0], 0);
+  }
+
+  @DisplayName("should track a fetched message before a consumer's ack can cover it")
+  @Test
+  void shouldTrackFetchedMessageBeforeAckIsFlushed() throws Exception {
+    AckCoalescer coalescer = new AckCoalescer(channel, 1);
+    coalescer.delivered(2);
+    CountDownLatch fetching = new CountDownLatch(1);
+    CountDownLatch fetched = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<GetResponse> response =
+          executor.submit(
+              () ->
+                  coalescer.fetch(
+                      () -> {
+                        fetching.countDown();
+                        try {
+                          fetched.await();
+                        } catch (InterruptedException e) {
+                          Thread.currentThread().interrupt();
+                        }
+                        return response(1);
+                      }));
+      fetching.await();
+      Thread acking = new Thread(() -> coalescer.ack(2));
+      acking.start();
+      fetched.countDown();
+      acking.join(5000);
+
+      assertThat(response.get(5, TimeUnit.SECONDS).getEnvelope().getDeliveryTag()).isEqualTo(1);
+      verify(channel).basicAck(2, false);
+      verify(channel, never()).basicAck(2, true);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @DisplayName("should not cover consumer's messages with the ack of a fetched message")
+  @Test
+  void shouldAckFetchedMessagesIndividually() throws IOException {
+    AckCoalescer coalescer = coalescer(10, 1);
+    coalescer.fetch(() -> response(2));
+    coalescer.ack(1);
+    coalescer.ack(2);
+
+    coalescer.flush();
+
+    verify(channel).basicAck(1, true);
+    verify(channel).basicAck(2, false);
+    verify(channel, never()).basicAck(2, true);
+  }
+
+  @DisplayName("should acknowledge a fetched message alone individually")
+  @Test
+  void shouldAckSingleFetchedMessageIndividually() throws IOException {
+    AckCoalescer coalescer = new AckCoalescer(channel, 10);
+    coalescer.fetch(() -> response(1));
+    coalescer.ack(1);
+
+    coalescer.flush();
+
+    verify(channel).basicAck(1, false);
+    verify(channel, never()).basicAck(1, true);
+  }
+
+  @DisplayName("should forget all delivery tags on reset")
+  @Test
+  void shouldForgetDeliveryTagsOnReset() throws IOException {
+    AckCoalescer coalescer = coalescer(10, 2);
+    coalescer.ack(1);
+
+    coalescer.reset();
+    coalescer.flush();
+
+    verify(channel, never()).basicAck(anyLong(), anyBoolean());
+  }
+}
@@ -0,0 +1,66 @@
+package dev.mdz.flusswerk.rabbitmq;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The Backoff")
+class BackoffTest {
+
+  @DisplayName("should multiply the delay until it reaches the maximum")
+  @Test
+  void shouldMultiplyDelayUntilMaximum() {
+    Backoff backoff = Backoff.exponential(Duration.ofSeconds(1), 2, Duration.ofSeconds(5), 10);
+
+    assertThat(backoff.delays())
+        .containsExactly(
+            Duration.ofSeconds(1),
+            Duration.ofSeconds(2),
+            Duration.ofSeconds(4),
+            Duration.ofSeconds(5));
+  }
+
+  @DisplayName("should create no more tiers than retries")
+  @Test
+  void shouldCreateNoMoreTiersThanRetries() {
+    Backoff backoff = Backoff.exponential(Duration.ofSeconds(1), 10, null, 3);
+
+    assertThat(backoff.tiers()).isEqualTo(3);
+    assertThat(backoff.delay(3)).isEqualTo(Duration.ofSeconds(100));
+  }
+
+  @DisplayName("should wait in the last tier for retries beyond it")
+  @Test
+  void shouldUseLastTierForFurtherRetries() {
+    Backoff backoff = Backoff.of(Duration.ofMillis(100), Duration.ofSeconds(10));
+
+    assertThat(backoff.tier(0)).isZero();
+    assertThat(backoff.tier(1)).isZero();
+    assertThat(backoff.tier(2)).isEqualTo(1);
+    assertThat(backoff.tier(7)).isEqualTo(1);
+    assertThat(backoff.delay(7)).isEqualTo(Duration.ofSeconds(10));
+  }
+
+  @DisplayName("should only shorten delays with jitter")
+  @Test
+  void shouldOnlyShortenDelaysWithJitter() {
+    Backoff backoff = Backoff.fixed(Duration.ofSeconds(10)).withJitter(0.2);
+
+    assertThat(backoff.delay(1, 0.0)).isEqualTo(Duration.ofSeconds(10));
+    assertThat(backoff.delay(1, 0.5)).isEqualTo(Duration.ofSeconds(9));
+    assertThat(backoff.delay(1, 1.0)).isEqualTo(Duration.ofSeconds(8));
+  }
+
+  @DisplayName("should reject invalid settings")
+  @Test
+  void shouldRejectInvalidSettings() {
+    assertThatThrownBy(Backoff::of).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> Backoff.fixed(Duration.ofSeconds(1)).withJitter(1.5))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> Backoff.exponential(Duration.ofSeconds(1), 0.5, null, 5))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
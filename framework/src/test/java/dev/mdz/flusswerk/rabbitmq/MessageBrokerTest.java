@@ -5,18 +5,24 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.same;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import dev.mdz.flusswerk.config.properties.RoutingProperties;
+import dev.mdz.flusswerk.config.properties.RoutingProperties.FailurePolicyProperties;
+import dev.mdz.flusswerk.config.properties.RoutingProperties.RateLimitProperties;
 import dev.mdz.flusswerk.exceptions.InvalidMessageException;
 import dev.mdz.flusswerk.model.Envelope;
 import dev.mdz.flusswerk.model.Message;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -55,6 +61,38 @@ class MessageBrokerTest {
     verify(rabbitClient).send(anyString(), eq("there"), eq(message));
   }
 
+  @Test
+  @DisplayName("Send should wait for the rate limit of the topic")
+  void sendShouldWaitForRateLimitOfTopic() {
+    routing =
+        new RoutingProperties(
+            null,
+            List.of("some.input.queue"),
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            Map.of("there", new RateLimitProperties(20.0, 2)));
+    messageBroker = new MessageBroker(routing, rabbitClient);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 4; i++) {
+      messageBroker.send("there", message);
+    }
+    messageBroker.send("elsewhere", message);
+
+    // 2 at once, then 2 more at 20 per second
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThan(Duration.ofMillis(90));
+    verify(rabbitClient, times(4)).send(anyString(), eq("there"), eq(message));
+    assertThat(messageBroker.getRateLimiters()).map(RateLimiter::getName).containsExactly("there");
+  }
+
   @Test
   @DisplayName("Ack should acknowledge messages")
   void ack() {
@@ -62,6 +100,14 @@ class MessageBrokerTest {
     verify(rabbitClient).ack(message.getEnvelope());
   }
 
+  @Test
+  @DisplayName("Ack should acknowledge several messages at once")
+  void ackSeveral() {
+    Message other = new Message();
+    messageBroker.ack(List.of(message, other));
+    verify(rabbitClient).ack(List.of(message.getEnvelope(), other.getEnvelope()));
+  }
+
   @Test
   @DisplayName("Reject should count rejections")
   void rejectShouldCountRejections() {
@@ -72,6 +118,51 @@ class MessageBrokerTest {
     assertThat(message.getEnvelope().getRetries()).isEqualTo(numberOfRejections);
   }
 
+  @Test
+  @DisplayName("Retry should send the message to the retry queue of its tier")
+  void retryShouldSendToTierOfRetries() {
+    routing =
+        new RoutingProperties(
+            null,
+            List.of("some.input.queue"),
+            null,
+            null,
+            null,
+            Map.of(
+                "some.input.queue",
+                new FailurePolicyProperties(
+                    null, null, null, Duration.ofSeconds(1), null, 10.0, null, null)));
+    messageBroker = new MessageBroker(routing, rabbitClient);
+    String deadLetterExchange = routing.getDeadLetterExchange("some.input.queue");
+
+    verify(rabbitClient)
+        .declareQueue(
+            "some.input.queue.retry",
+            deadLetterExchange,
+            "some.input.queue",
+            Map.of("x-message-ttl", 1000L, "x-dead-letter-exchange", "flusswerk_default"));
+    verify(rabbitClient)
+        .declareQueue(
+            "some.input.queue.retry.3",
+            deadLetterExchange,
+            "some.input.queue.retry.3",
+            Map.of(
+                "x-message-ttl",
+                100_000L,
+                "x-dead-letter-exchange",
+                "flusswerk_default",
+                "x-dead-letter-routing-key",
+                "some.input.queue"));
+
+    for (int i = 0; i < 3; i++) {
+      messageBroker.reject(message);
+    }
+
+    verify(rabbitClient).send(deadLetterExchange, "some.input.queue", message);
+    verify(rabbitClient).send(deadLetterExchange, "some.input.queue.retry.2", message);
+    verify(rabbitClient).send(deadLetterExchange, "some.input.queue.retry.3", message);
+  }
+
   @Test
   @DisplayName("Should route a message to the failed queue if it has been rejected to often")
   void rejectShouldRouteToFailedQueueIfMessageIsRejectedTooOften() {
@@ -83,6 +174,22 @@ class MessageBrokerTest {
     verify(rabbitClient).send(anyString(), eq(failurePolicy.getFailedRoutingKey()), eq(message));
   }
 
+  @Test
+  @DisplayName("Should send failed and retried messages without waiting for the flow's rate limit")
+  void failAndRetryShouldNotWaitForFlowLimit() {
+    messageBroker =
+        new MessageBroker(routing, rabbitClient, new RateLimiter("flow", 0.01, 1), null);
+
+    long start = System.nanoTime();
+    messageBroker.fail(message);
+    messageBroker.retry(message);
+    messageBroker.fail(message);
+
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    verify(rabbitClient, times(2))
+        .send(anyString(), eq(failurePolicy.getFailedRoutingKey()), eq(message));
+  }
+
   @Test
   @DisplayName("Should send a message to the output queue")
   void sendShouldRouteMessageToOutputQueue() {
@@ -90,6 +197,44 @@ class MessageBrokerTest {
     verify(rabbitClient).send(any(), eq(routing.getOutgoing().get("default").get(0)), any());
   }
 
+  @Test
+  @DisplayName("Should send messages to every topic of the default route, serialized once")
+  void sendToDefaultShouldSerializeOnceForEveryTopic() {
+    byte[] data = "{}".getBytes();
+    when(rabbitClient.serialize(message)).thenReturn(data);
+
+    messageBroker.sendToDefault(List.of(message));
+
+    verify(rabbitClient, times(1)).serialize(message);
+    for (String queue : routing.getOutgoing().get("default")) {
+      verify(rabbitClient).sendRaw(anyString(), eq(queue), same(data));
+    }
+  }
+
+  @Test
+  @DisplayName("Should send serialized messages with the exchange of the queue")
+  void sendRawShouldUseExchangeOfQueue() {
+    byte[] data = "{}".getBytes();
+    messageBroker.sendRaw("some.output.queue", data);
+    verify(rabbitClient)
+        .sendRaw(eq(routing.getExchange("some.output.queue")), eq("some.output.queue"), same(data));
+  }
+
+  @Test
+  @DisplayName("Should serialize a message only once when sending it to several queues")
+  void sendShouldSerializeOnceForSeveralQueues() {
+    byte[] data = "{}".getBytes();
+    when(rabbitClient.serialize(message)).thenReturn(data);
+    List<String> queues = List.of("first.queue", "second.queue", "third.queue");
+
+    messageBroker.sendToAll(queues, message);
+
+    verify(rabbitClient, times(1)).serialize(message);
+    for (String queue : queues) {
+      verify(rabbitClient).sendRaw(anyString(), eq(queue), same(data));
+    }
+  }
+
   @Test
   @DisplayName("Should send multiple messages to the specified queue")
   void sendMultipleMessagesShouldRouteMessagesToSpecifiedQueue() {
@@ -131,6 +276,25 @@ class MessageBrokerTest {
     assertThat(messageBroker.getMessageCounts()).isEqualTo(expected);
   }
 
+  @Test
+  @DisplayName("getMessageCount should serve counts sampled in the background")
+  void getMessageCountsShouldServeSampledCounts() throws InterruptedException {
+    RoutingProperties routing = RoutingProperties.minimal(List.of("input"), null);
+    when(rabbitClient.getMessageCount(anyString())).thenReturn(0L);
+    when(rabbitClient.getMessageCount("input")).thenReturn(100L);
+    var queueDepths = new QueueDepths(rabbitClient, Duration.ofHours(1));
+    CountDownLatch sampled = new CountDownLatch(1);
+    queueDepths.addListener(sampled::countDown);
+
+    messageBroker = new MessageBroker(routing, rabbitClient, null, queueDepths);
+    assertThat(sampled.await(5, TimeUnit.SECONDS)).isTrue();
+    when(rabbitClient.getMessageCount("input")).thenReturn(200L);
+
+    assertThat(messageBroker.getMessageCounts()).isEqualTo(Map.of("input", 100L));
+    assertThat(messageBroker.getRetryMessageCounts()).isEqualTo(Map.of("input.retry", 0L));
+    queueDepths.close();
+  }
+
   @Test
   @DisplayName("invalidMessage should be ACKed and shifted into failed queue")
   void handleInvalidMessage() throws InvalidMessageException {
@@ -0,0 +1,101 @@
+package dev.mdz.flusswerk.rabbitmq;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The PublisherConfirms")
+class PublisherConfirmsTest {
+
+  private Channel channel;
+  private List<Duration> latencies;
+  private PublisherConfirms publisherConfirms;
+
+  @BeforeEach
+  void setUp() {
+    channel = mock(Channel.class);
+    when(channel.getNextPublishSeqNo()).thenReturn(1L, 2L, 3L);
+    latencies = new ArrayList<>();
+    publisherConfirms = new PublisherConfirms(channel, latencies::add);
+  }
+
+  private CompletableFuture<Void> publish() throws IOException {
+    return publisherConfirms.publish(() -> null);
+  }
+
+  @DisplayName("should complete all confirms up to a multiple ack")
+  @Test
+  void shouldCompleteMultipleAcksInBulk() throws IOException {
+    var first = publish();
+    var second = publish();
+    var third = publish();
+
+    publisherConfirms.handleAck(2, true);
+
+    assertThat(first).isCompleted();
+    assertThat(second).isCompleted();
+    assertThat(third).isNotDone();
+    assertThat(publisherConfirms.inFlight()).isEqualTo(1);
+    assertThat(latencies).hasSize(2);
+  }
+
+  @DisplayName("should only complete the acked confirm")
+  @Test
+  void shouldCompleteSingleAck() throws IOException {
+    var first = publish();
+    var second = publish();
+
+    publisherConfirms.handleAck(2, false);
+
+    assertThat(first).isNotDone();
+    assertThat(second).isCompleted();
+  }
+
+  @DisplayName("should fail confirms on nack")
+  @Test
+  void shouldFailOnNack() throws IOException {
+    var first = publish();
+
+    publisherConfirms.handleNack(1, false);
+
+    assertThat(first).isCompletedExceptionally();
+    assertThat(publisherConfirms.inFlight()).isZero();
+  }
+
+  @DisplayName("should fail outstanding confirms on reset")
+  @Test
+  void shouldFailOutstandingConfirmsOnReset() throws IOException {
+    var first = publish();
+    var second = publish();
+
+    publisherConfirms.reset();
+
+    assertThat(first).isCompletedExceptionally();
+    assertThat(second).isCompletedExceptionally();
+    assertThat(publisherConfirms.inFlight()).isZero();
+  }
+
+  @DisplayName("should not track messages that could not be published")
+  @Test
+  void shouldNotTrackFailedPublish() {
+    try {
+      publisherConfirms.publish(
+          () -> {
+            throw new IOException("channel closed");
+          });
+    } catch (IOException e) {
+      // expected
+    }
+    assertThat(publisherConfirms.inFlight()).isZero();
+  }
+}
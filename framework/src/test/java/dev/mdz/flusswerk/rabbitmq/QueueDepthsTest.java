@@ -0,0 +1,180 @@
+package dev.mdz.flusswerk.rabbitmq;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.rabbitmq.client.AMQP.Queue.PurgeOk;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The QueueDepths")
+class QueueDepthsTest {
+
+  private final Map<String, Long> depths = new ConcurrentHashMap<>();
+  private final AtomicInteger reads = new AtomicInteger();
+  private final QueueDepths queueDepths =
+      new QueueDepths(
+          queue -> {
+            reads.incrementAndGet();
+            return depths.get(queue);
+          },
+          Duration.ofHours(1));
+
+  @AfterEach
+  void tearDown() {
+    queueDepths.close();
+  }
+
+  @DisplayName("should serve depths from memory")
+  @Test
+  void shouldServeDepthsFromMemory() {
+    depths.put("queue", 42L);
+    queueDepths.watch("queue");
+    queueDepths.sample();
+
+    depths.put("queue", 43L);
+
+    assertThat(queueDepths.depth("queue")).isEqualTo(42);
+    assertThat(queueDepths.depth("queue")).isEqualTo(42);
+    assertThat(reads).hasValue(1);
+  }
+
+  @DisplayName("should read queues that are not watched on every call")
+  @Test
+  void shouldReadUnwatchedQueuesOnEveryCall() {
+    depths.put("unknown", 7L);
+
+    assertThat(queueDepths.depth("unknown")).isEqualTo(7);
+    depths.put("unknown", 8L);
+    assertThat(queueDepths.depth("unknown")).isEqualTo(8);
+    queueDepths.sample();
+
+    assertThat(reads).hasValue(2); // not sampled
+    assertThat(queueDepths.sampledDepth("unknown")).isEmpty();
+  }
+
+  @DisplayName("should keep a refreshed depth as latest sample")
+  @Test
+  void shouldKeepRefreshedDepth() {
+    depths.put("queue", 5L);
+    queueDepths.watch("queue");
+    queueDepths.sample();
+    depths.put("queue", 0L);
+
+    assertThat(queueDepths.refresh("queue")).isZero();
+
+    assertThat(queueDepths.depth("queue")).isZero();
+    assertThat(queueDepths.sampledDepth("queue")).hasValue(0);
+  }
+
+  @DisplayName("should compute how fast a queue grows")
+  @Test
+  void shouldComputeGrowthRate() throws InterruptedException {
+    depths.put("queue", 0L);
+    queueDepths.watch("queue");
+    queueDepths.sample();
+    Thread.sleep(100);
+    depths.put("queue", 1000L);
+    queueDepths.sample();
+
+    assertThat(queueDepths.rate("queue")).isPositive().isLessThanOrEqualTo(10_000.0);
+  }
+
+  @DisplayName("should stop sampling a queue that cannot be sampled")
+  @Test
+  void shouldStopSamplingFailingQueue() {
+    var registry = new SimpleMeterRegistry();
+    queueDepths.bindTo(registry);
+    depths.put("queue", 5L);
+    queueDepths.watch("queue");
+    queueDepths.sample();
+    depths.remove("queue"); // fails to unbox, like a deleted queue
+
+    queueDepths.sample();
+    queueDepths.sample();
+
+    assertThat(reads).hasValue(2); // not asked again after the failure
+    assertThat(queueDepths.sampledDepth("queue")).isEmpty();
+    assertThat(registry.find("flusswerk.queue.depth").tag("queue", "queue").gauge()).isNull();
+  }
+
+  @DisplayName("should notify listeners after sampling in the background")
+  @Test
+  void shouldNotifyListenersAfterSampling() throws InterruptedException {
+    depths.put("queue", 3L);
+    queueDepths.watch("queue");
+    CountDownLatch sampled = new CountDownLatch(1);
+    queueDepths.addListener(sampled::countDown);
+
+    queueDepths.start();
+
+    assertThat(sampled.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(queueDepths.depth("queue")).isEqualTo(3);
+  }
+
+  @DisplayName("should publish depths of all known queues")
+  @Test
+  void shouldPublishDepths() {
+    var registry = new SimpleMeterRegistry();
+    queueDepths.watch("first");
+    queueDepths.bindTo(registry);
+    queueDepths.watch("second");
+    depths.putAll(Map.of("first", 1L, "second", 2L));
+    queueDepths.sample();
+
+    assertThat(registry.get("flusswerk.queue.depth").tag("queue", "first").gauge().value())
+        .isEqualTo(1);
+    assertThat(registry.get("flusswerk.queue.depth").tag("queue", "second").gauge().value())
+        .isEqualTo(2);
+    assertThat(registry.get("flusswerk.queue.rate").tag("queue", "second").gauge().value())
+        .isZero();
+  }
+
+  @DisplayName("should let a queue read its sampled depth from memory")
+  @Test
+  void shouldLetQueueReadDepthFromMemory() {
+    RabbitClient rabbitClient = mock(RabbitClient.class);
+    when(rabbitClient.getMessageCount("queue")).thenReturn(9L);
+    var cached = new QueueDepths(rabbitClient, Duration.ofHours(1));
+    cached.watch("queue");
+    var queue = new Queue("queue", rabbitClient, cached);
+
+    queue.messageCount();
+    queue.messageCount();
+
+    verify(rabbitClient, times(1)).getMessageCount("queue");
+    assertThat(queue.messageCount()).isEqualTo(9);
+    assertThat(queue.refreshMessageCount()).isEqualTo(9); // asks RabbitMQ right away
+    verify(rabbitClient, times(2)).getMessageCount("queue");
+    cached.close();
+  }
+
+  @DisplayName("should update the sampled depth of a purged queue")
+  @Test
+  void shouldUpdateSampledDepthOfPurgedQueue() {
+    RabbitClient rabbitClient = mock(RabbitClient.class);
+    when(rabbitClient.getMessageCount("queue")).thenReturn(9L, 0L);
+    when(rabbitClient.queuePurge("queue"))
+        .thenReturn(new PurgeOk.Builder().messageCount(9).build());
+    var cached = new QueueDepths(rabbitClient, Duration.ofHours(1));
+    cached.watch("queue");
+    var queue = new Queue("queue", rabbitClient, cached);
+    assertThat(queue.messageCount()).isEqualTo(9);
+
+    queue.purge();
+
+    assertThat(queue.messageCount()).isZero();
+    cached.close();
+  }
+}
@@ -4,18 +4,30 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.from;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.rabbitmq.client.AMQP.BasicProperties;
 import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Consumer;
 import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.Recoverable;
 import com.rabbitmq.client.RecoverableChannel;
+import com.rabbitmq.client.RecoveryListener;
 import dev.mdz.flusswerk.TestMessage;
+import dev.mdz.flusswerk.config.properties.RabbitMQProperties.AckBatching;
 import dev.mdz.flusswerk.engine.FlusswerkConsumer;
 import dev.mdz.flusswerk.exceptions.InvalidMessageException;
 import dev.mdz.flusswerk.model.Envelope;
@@ -23,11 +35,14 @@ import dev.mdz.flusswerk.model.IncomingMessageType;
 import dev.mdz.flusswerk.model.Message;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 class RabbitClientTest {
 
@@ -42,6 +57,7 @@ class RabbitClientTest {
     connection = mock(RabbitConnection.class);
     channel = mock(RecoverableChannel.class);
     when(connection.getChannel()).thenReturn(channel);
+    when(connection.getChannels()).thenReturn(List.of(channel));
     message = new Message();
   }
 
@@ -76,6 +92,213 @@ class RabbitClientTest {
     verify(channel).basicConsume("input", true, consumer);
   }
 
+  @Test
+  @DisplayName("ack should use the channel the message has been received on")
+  void ackShouldUseChannelOfEnvelope() throws IOException {
+    Channel second = mock(RecoverableChannel.class);
+    when(connection.getChannels()).thenReturn(List.of(channel, second));
+    RabbitClient rabbitClient = new RabbitClient(connection);
+    message.getEnvelope().setDeliveryTag(42);
+    message.getEnvelope().setChannel(1);
+    rabbitClient.ack(message.getEnvelope());
+    verify(second).basicAck(42, false);
+    verify(channel, never()).basicAck(anyLong(), anyBoolean());
+  }
+
+  @Test
+  @DisplayName("ack of several messages should use the channels they have been received on")
+  void ackOfSeveralMessagesShouldUseChannelsOfEnvelopes() throws IOException {
+    Channel second = mock(RecoverableChannel.class);
+    when(connection.getChannels()).thenReturn(List.of(channel, second));
+    RabbitClient rabbitClient = new RabbitClient(connection);
+    Envelope first = new Envelope();
+    first.setDeliveryTag(7);
+    Envelope other = new Envelope();
+    other.setDeliveryTag(42);
+    other.setChannel(1);
+    rabbitClient.ack(List.of(first, other));
+    verify(channel).basicAck(7, false);
+    verify(second).basicAck(42, false);
+  }
+
+  @Test
+  @DisplayName("consume and cancel should use the channel assigned to the consumer")
+  void consumeAndCancelShouldUseChannelOfConsumer() throws IOException {
+    Channel second = mock(RecoverableChannel.class);
+    when(connection.getChannels()).thenReturn(List.of(channel, second));
+    RabbitClient rabbitClient = new RabbitClient(connection);
+    FlusswerkConsumer consumer = mock(FlusswerkConsumer.class);
+    when(consumer.getInputQueue()).thenReturn("input");
+    when(consumer.getChannel()).thenReturn(1);
+    when(second.basicConsume("input", false, consumer)).thenReturn("consumer-tag");
+
+    rabbitClient.consume(consumer, false);
+    rabbitClient.cancel("consumer-tag");
+
+    verify(second).basicCancel("consumer-tag");
+    verify(channel, never()).basicConsume(anyString(), anyBoolean(), any());
+    verify(channel, never()).basicCancel(anyString());
+  }
+
+  @Test
+  @DisplayName("ack should wait until sent messages have been confirmed")
+  void ackShouldWaitForPublisherConfirms() throws IOException {
+    when(connection.isPublisherConfirms()).thenReturn(true);
+    when(channel.getNextPublishSeqNo()).thenReturn(7L);
+    var confirmListener = ArgumentCaptor.forClass(ConfirmListener.class);
+    RabbitClient rabbitClient = new RabbitClient(connection);
+    verify(channel).addConfirmListener(confirmListener.capture());
+
+    rabbitClient.send("workflow", "there", new Message());
+    message.getEnvelope().setDeliveryTag(42);
+    rabbitClient.ack(message.getEnvelope());
+    verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    assertThat(rabbitClient.getUnconfirmedCount()).isEqualTo(1);
+    var ackThread = new CompletableFuture<String>();
+    doAnswer(invocation -> ackThread.complete(Thread.currentThread().getName()))
+        .when(channel)
+        .basicAck(42, false);
+
+    confirmListener.getValue().handleAck(7, true);
+    verify(channel, timeout(1000)).basicAck(42, false);
+    assertThat(rabbitClient.getUnconfirmedCount()).isZero();
+    assertThat(ackThread.join()).isEqualTo("flusswerk-confirmed-acks");
+  }
+
+  @Test
+  @DisplayName("ack should requeue message if sent messages could not be confirmed")
+  void ackShouldRequeueIfConfirmFails() throws IOException {
+    when(connection.isPublisherConfirms()).thenReturn(true);
+    when(channel.getNextPublishSeqNo()).thenReturn(7L);
+    var confirmListener = ArgumentCaptor.forClass(ConfirmListener.class);
+    RabbitClient rabbitClient = new RabbitClient(connection);
+    verify(channel).addConfirmListener(confirmListener.capture());
+
+    rabbitClient.send("workflow", "there", new Message());
+    message.getEnvelope().setDeliveryTag(42);
+    rabbitClient.ack(message.getEnvelope());
+
+    confirmListener.getValue().handleNack(7, false);
+    verify(channel, timeout(1000)).basicNack(42, false, true);
+    verify(channel, never()).basicAck(anyLong(), anyBoolean());
+  }
+
+  @Test
+  @DisplayName("consume should set the prefetch count of the consumer")
+  void consumeShouldSetPrefetch() throws IOException {
+    RabbitClient rabbitClient = new RabbitClient(connection);
+    FlusswerkConsumer consumer = mock(FlusswerkConsumer.class);
+    when(consumer.getInputQueue()).thenReturn("input");
+    when(consumer.getPrefetch()).thenReturn(50);
+    rabbitClient.consume(consumer, false);
+    var inOrder = inOrder(channel);
+    inOrder.verify(channel).basicQos(50);
+    inOrder.verify(channel).basicConsume("input", false, consumer);
+    inOrder.verify(channel).basicQos(ChannelCommands.DEFAULT_PREFETCH);
+  }
+
+  @Test
+  @DisplayName("should register consumers with their own prefetch count again after recovery")
+  void shouldRegisterConsumersWithPrefetchAfterRecovery() throws IOException {
+    RabbitClient rabbitClient = new RabbitClient(connection);
+    ArgumentCaptor<RecoveryListener> recoveryListener =
+        ArgumentCaptor.forClass(RecoveryListener.class);
+    verify(connection).addRecoveryListener(recoveryListener.capture());
+    FlusswerkConsumer fast = mock(FlusswerkConsumer.class);
+    when(fast.getInputQueue()).thenReturn("fast");
+    when(fast.getPrefetch()).thenReturn(50);
+    FlusswerkConsumer slow = mock(FlusswerkConsumer.class);
+    when(slow.getInputQueue()).thenReturn("slow");
+    when(slow.getPrefetch()).thenReturn(2);
+    when(channel.basicConsume("fast", false, fast)).thenReturn("fast-tag");
+    when(channel.basicConsume("slow", false, slow)).thenReturn("slow-tag");
+    rabbitClient.consume(fast, false);
+    rabbitClient.consume(slow, false);
+    verify(connection).excludeFromRecovery("fast-tag");
+    verify(connection).excludeFromRecovery("slow-tag");
+
+    recoveryListener.getValue().handleRecovery(mock(Recoverable.class));
+
+    var inOrder = inOrder(channel);
+    inOrder.verify(channel).basicQos(50);
+    inOrder.verify(channel).basicConsume("fast", false, "fast-tag", fast);
+    inOrder.verify(channel).basicQos(ChannelCommands.DEFAULT_PREFETCH);
+    verify(channel, times(2)).basicQos(2); // when consuming and after recovery
+    verify(channel).basicConsume("slow", false, "slow-tag", slow);
+  }
+
+  @Test
+  @DisplayName("should not register cancelled consumers again after recovery")
+  void shouldNotRegisterCancelledConsumersAfterRecovery() throws IOException {
+    RabbitClient rabbitClient = new RabbitClient(connection);
+    ArgumentCaptor<RecoveryListener> recoveryListener =
+        ArgumentCaptor.forClass(RecoveryListener.class);
+    verify(connection).addRecoveryListener(recoveryListener.capture());
+    FlusswerkConsumer consumer = mock(FlusswerkConsumer.class);
+    when(consumer.getInputQueue()).thenReturn("input");
+    when(consumer.getPrefetch()).thenReturn(50);
+    when(channel.basicConsume("input", false, consumer)).thenReturn("consumer-tag");
+    rabbitClient.consume(consumer, false);
+    rabbitClient.cancel("consumer-tag");
+
+    recoveryListener.getValue().handleRecovery(mock(Recoverable.class));
+
+    verify(connection).includeInRecovery("consumer-tag");
+    verify(channel, never()).basicConsume(anyString(), anyBoolean(), anyString(), any());
+  }
+
+  @Test
+  @DisplayName("ack should coalesce acknowledgements with ack batching")
+  void ackShouldCoalesceWithAckBatching() throws IOException {
+    when(connection.getAckBatching()).thenReturn(new AckBatching(2, Duration.ofMinutes(1)));
+    RabbitClient rabbitClient = new RabbitClient(connection);
+    FlusswerkConsumer consumer = mock(FlusswerkConsumer.class);
+    when(consumer.getInputQueue()).thenReturn("input");
+    rabbitClient.consume(consumer, false);
+    var trackingConsumer = ArgumentCaptor.forClass(Consumer.class);
+    verify(channel).basicConsume(eq("input"), eq(false), trackingConsumer.capture());
+    for (long deliveryTag = 1; deliveryTag <= 2; deliveryTag++) {
+      trackingConsumer
+          .getValue()
+          .handleDelivery(
+              "consumer-tag",
+              new com.rabbitmq.client.Envelope(deliveryTag, false, "", "input"),
+              null,
+              new byte[0]);
+    }
+
+    rabbitClient.ack(0, 2);
+    rabbitClient.ack(0, 1);
+
+    verify(channel).basicAck(2, true);
+    verify(channel, never()).basicAck(anyLong(), eq(false));
+  }
+
+  @Test
+  @DisplayName("close should send pending acknowledgements with ack batching")
+  void closeShouldFlushPendingAcks() throws IOException {
+    when(connection.getAckBatching()).thenReturn(new AckBatching(10, Duration.ofMinutes(1)));
+    RabbitClient rabbitClient = new RabbitClient(connection);
+    FlusswerkConsumer consumer = mock(FlusswerkConsumer.class);
+    when(consumer.getInputQueue()).thenReturn("input");
+    rabbitClient.consume(consumer, false);
+    var trackingConsumer = ArgumentCaptor.forClass(Consumer.class);
+    verify(channel).basicConsume(eq("input"), eq(false), trackingConsumer.capture());
+    trackingConsumer
+        .getValue()
+        .handleDelivery(
+            "consumer-tag",
+            new com.rabbitmq.client.Envelope(1, false, "", "input"),
+            null,
+            new byte[0]);
+    rabbitClient.ack(0, 1);
+    verify(channel, never()).basicAck(anyLong(), anyBoolean());
+
+    rabbitClient.close();
+
+    verify(channel).basicAck(1, true);
+  }
+
   @Test
   void sendShouldUseCorrectRoutingKey() throws IOException {
     RabbitClient rabbitClient = new RabbitClient(connection);
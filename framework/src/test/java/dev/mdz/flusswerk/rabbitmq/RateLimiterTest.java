@@ -0,0 +1,97 @@
+package dev.mdz.flusswerk.rabbitmq;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import dev.mdz.flusswerk.exceptions.RetryProcessingException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The RateLimiter")
+class RateLimiterTest {
+
+  private static Duration timeOf(Runnable runnable) {
+    long start = System.nanoTime();
+    runnable.run();
+    return Duration.ofNanos(System.nanoTime() - start);
+  }
+
+  @DisplayName("should let a burst pass without waiting")
+  @Test
+  void shouldLetBurstPass() {
+    var rateLimiter = new RateLimiter("topic", 1, 5);
+
+    Duration time =
+        timeOf(
+            () -> {
+              for (int i = 0; i < 5; i++) {
+                rateLimiter.acquire();
+              }
+            });
+
+    assertThat(time).isLessThan(Duration.ofMillis(500));
+  }
+
+  @DisplayName("should block the sender beyond the burst")
+  @Test
+  void shouldBlockBeyondBurst() {
+    var rateLimiter = new RateLimiter("topic", 20, 1);
+
+    Duration time =
+        timeOf(
+            () -> {
+              for (int i = 0; i < 5; i++) {
+                rateLimiter.acquire();
+              }
+            });
+
+    assertThat(time).isGreaterThanOrEqualTo(Duration.ofMillis(190)); // 4 more at 20 per second
+  }
+
+  @DisplayName("should stop waiting when interrupted")
+  @Test
+  void shouldStopWaitingWhenInterrupted() throws Exception {
+    var rateLimiter = new RateLimiter("topic", 0.01, 1);
+    rateLimiter.acquire();
+
+    var waiting =
+        CompletableFuture.runAsync(
+            () -> {
+              Thread.currentThread().interrupt();
+              rateLimiter.acquire();
+            });
+
+    assertThatThrownBy(() -> waiting.get(5, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(RetryProcessingException.class);
+  }
+
+  @DisplayName("should publish the time spent waiting")
+  @Test
+  void shouldPublishWaitTime() {
+    var rateLimiter = new RateLimiter("topic", 20, 1);
+    var registry = new SimpleMeterRegistry();
+    rateLimiter.bindTo(registry);
+
+    rateLimiter.acquire();
+    rateLimiter.acquire();
+
+    var wait = registry.get("flusswerk.ratelimit.wait").tag("limit", "topic").functionTimer();
+    assertThat(wait.count()).isEqualTo(2.0);
+    assertThat(wait.totalTime(TimeUnit.MILLISECONDS)).isGreaterThan(0.0);
+    assertThat(registry.get("flusswerk.ratelimit.throttled").functionCounter().count())
+        .isEqualTo(1.0);
+  }
+
+  @DisplayName("should reject rates that are not positive")
+  @Test
+  void shouldRejectInvalidRates() {
+    assertThatThrownBy(() -> new RateLimiter("topic", 0, 1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new RateLimiter("topic", 1, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -7,6 +7,7 @@ import static org.mockito.Mockito.verify;
 
 import dev.mdz.flusswerk.TestMessage;
 import dev.mdz.flusswerk.model.Message;
+import dev.mdz.flusswerk.reporting.Tracing;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -68,4 +69,20 @@ class RouteTest {
   void shouldGetName() {
     assertThat(route.getName()).isEqualTo("test.route");
   }
+
+  @DisplayName("should send a message to all topics via the message broker at once")
+  @Test
+  void shouldFanOutViaMessageBroker() {
+    var messageBroker = mock(MessageBroker.class);
+    var tracing = new Tracing();
+    var fanOut = new Route("fan.out", messageBroker);
+    fanOut.addTopic(new Topic("first", messageBroker, tracing));
+    fanOut.addTopic(new Topic("second", messageBroker, tracing));
+    var message = new TestMessage("123");
+
+    fanOut.send(message);
+
+    verify(messageBroker).sendToAll(List.of("first", "second"), message);
+    assertThat(message.getTracing()).isNotEmpty();
+  }
 }
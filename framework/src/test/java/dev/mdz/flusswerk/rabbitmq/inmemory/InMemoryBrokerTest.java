@@ -0,0 +1,289 @@
+package dev.mdz.flusswerk.rabbitmq.inmemory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.ShutdownSignalException;
+import dev.mdz.flusswerk.TestMessage;
+import dev.mdz.flusswerk.config.properties.ProcessingProperties;
+import dev.mdz.flusswerk.config.properties.RabbitMQProperties;
+import dev.mdz.flusswerk.config.properties.RoutingProperties;
+import dev.mdz.flusswerk.engine.Engine;
+import dev.mdz.flusswerk.engine.FlusswerkConsumer;
+import dev.mdz.flusswerk.engine.PriorityTaskQueue;
+import dev.mdz.flusswerk.engine.Worker;
+import dev.mdz.flusswerk.flow.Flow;
+import dev.mdz.flusswerk.flow.builder.FlowBuilder;
+import dev.mdz.flusswerk.jackson.FlusswerkObjectMapper;
+import dev.mdz.flusswerk.monitoring.FlusswerkMetrics;
+import dev.mdz.flusswerk.rabbitmq.MessageBroker;
+import dev.mdz.flusswerk.rabbitmq.RabbitClient;
+import dev.mdz.flusswerk.reporting.DefaultProcessReport;
+import dev.mdz.flusswerk.reporting.Tracing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("The InMemoryBroker")
+class InMemoryBrokerTest {
+
+  private InMemoryBroker broker;
+  private Channel channel;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    broker = new InMemoryBroker();
+    channel = broker.connect(RabbitMQProperties.defaults()).getChannel();
+    channel.exchangeDeclare("exchange", BuiltinExchangeType.TOPIC, true);
+    channel.exchangeDeclare("dlx", BuiltinExchangeType.TOPIC, true);
+    channel.queueDeclare("input", true, false, false, Map.of("x-dead-letter-exchange", "dlx"));
+    channel.queueBind("input", "exchange", "input");
+  }
+
+  private static byte[] body(String text) {
+    return text.getBytes();
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (!condition.getAsBoolean()) {
+      assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+      Thread.sleep(5);
+    }
+  }
+
+  @DisplayName("should route published messages to bound queues")
+  @Test
+  void shouldRouteToBoundQueues() throws IOException {
+    channel.basicPublish("exchange", "input", null, body("first"));
+    channel.basicPublish("exchange", "unbound", null, body("dropped"));
+
+    assertThat(broker.messageCount("input")).isEqualTo(1);
+    GetResponse response = channel.basicGet("input", false);
+    assertThat(response.getBody()).isEqualTo(body("first"));
+    assertThat(response.getEnvelope().getRoutingKey()).isEqualTo("input");
+    assertThat(channel.basicGet("input", false)).isNull();
+  }
+
+  @DisplayName("should match topic wildcards")
+  @Test
+  void shouldMatchTopicWildcards() throws IOException {
+    channel.queueDeclare("wildcard", true, false, false, null);
+    channel.queueBind("wildcard", "exchange", "images.*.#");
+
+    channel.basicPublish("exchange", "images.png", null, body("png"));
+    channel.basicPublish("exchange", "images.tiff.large.raw", null, body("tiff"));
+    channel.basicPublish("exchange", "images", null, body("none"));
+
+    assertThat(broker.messageCount("wildcard")).isEqualTo(2);
+  }
+
+  @DisplayName("should dead-letter expired messages")
+  @Test
+  void shouldDeadLetterExpiredMessages() throws IOException, InterruptedException {
+    channel.queueDeclare(
+        "input.retry",
+        true,
+        false,
+        false,
+        Map.of("x-message-ttl", 20L, "x-dead-letter-exchange", "exchange"));
+    channel.queueBind("input.retry", "dlx", "input");
+
+    channel.basicPublish("dlx", "input", null, body("retry me"));
+    assertThat(broker.messageCount("input.retry")).isEqualTo(1);
+
+    await(() -> broker.messageCount("input") == 1);
+    assertThat(broker.messageCount("input.retry")).isZero();
+  }
+
+  @DisplayName("should dead-letter rejected messages")
+  @Test
+  void shouldDeadLetterRejectedMessages() throws IOException {
+    channel.queueDeclare("input.retry", true, false, false, null);
+    channel.queueBind("input.retry", "dlx", "input");
+    channel.basicPublish("exchange", "input", null, body("reject me"));
+
+    GetResponse response = channel.basicGet("input", false);
+    channel.basicReject(response.getEnvelope().getDeliveryTag(), false);
+
+    assertThat(broker.messageCount("input")).isZero();
+    assertThat(broker.messageCount("input.retry")).isEqualTo(1);
+  }
+
+  @DisplayName("should requeue nacked messages at the head of the queue")
+  @Test
+  void shouldRequeueNackedMessages() throws IOException {
+    channel.basicPublish("exchange", "input", null, body("first"));
+    channel.basicPublish("exchange", "input", null, body("second"));
+
+    GetResponse first = channel.basicGet("input", false);
+    channel.basicNack(first.getEnvelope().getDeliveryTag(), false, true);
+
+    GetResponse redelivered = channel.basicGet("input", false);
+    assertThat(redelivered.getBody()).isEqualTo(body("first"));
+    assertThat(redelivered.getEnvelope().isRedeliver()).isTrue();
+  }
+
+  @DisplayName("should respect the prefetch of consumers")
+  @Test
+  void shouldRespectPrefetch() throws IOException, InterruptedException {
+    BlockingQueue<Envelope> deliveries = new LinkedBlockingQueue<>();
+    channel.basicQos(1);
+    channel.basicConsume(
+        "input",
+        false,
+        new DefaultConsumer(channel) {
+          @Override
+          public void handleDelivery(
+              String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] b) {
+            deliveries.add(envelope);
+          }
+        });
+
+    channel.basicPublish("exchange", "input", null, body("first"));
+    channel.basicPublish("exchange", "input", null, body("second"));
+
+    Envelope first = deliveries.poll(5, TimeUnit.SECONDS);
+    assertThat(first).isNotNull();
+    assertThat(deliveries.poll(50, TimeUnit.MILLISECONDS)).isNull();
+    assertThat(broker.messageCount("input")).isEqualTo(1);
+
+    channel.basicAck(first.getDeliveryTag(), false);
+    Envelope second = deliveries.poll(5, TimeUnit.SECONDS);
+    assertThat(second).isNotNull();
+    assertThat(second.getDeliveryTag()).isGreaterThan(first.getDeliveryTag());
+  }
+
+  @DisplayName("should acknowledge all messages up to a multiple-ack")
+  @Test
+  void shouldAckMultiple() throws IOException {
+    for (int i = 0; i < 3; i++) {
+      channel.basicPublish("exchange", "input", null, body("message " + i));
+    }
+    channel.basicGet("input", false);
+    channel.basicGet("input", false);
+    GetResponse third = channel.basicGet("input", false);
+
+    channel.basicAck(third.getEnvelope().getDeliveryTag(), true);
+
+    assertThat(broker.messageCount("input")).isZero();
+    assertThat(channel.isOpen()).isTrue();
+  }
+
+  @DisplayName("should close the channel when acknowledging an unknown delivery tag")
+  @Test
+  void shouldCloseChannelOnUnknownDeliveryTag() throws IOException {
+    channel.basicPublish("exchange", "input", null, body("unacked"));
+    channel.basicGet("input", false);
+
+    channel.basicAck(42, false); // asynchronous in RabbitMQ, so this does not fail yet
+
+    assertThat(channel.isOpen()).isFalse();
+    assertThat(channel.getCloseReason()).hasMessageContaining("unknown delivery tag");
+    assertThat(broker.messageCount("input")).isEqualTo(1);
+    assertThatThrownBy(() -> channel.basicGet("input", false))
+        .isInstanceOf(AlreadyClosedException.class);
+  }
+
+  @DisplayName("should close the channel and throw an IOException for an unknown queue")
+  @Test
+  void shouldCloseChannelOnUnknownQueue() {
+    assertThatThrownBy(() -> channel.basicGet("unknown", false))
+        .isInstanceOf(IOException.class)
+        .hasCauseInstanceOf(ShutdownSignalException.class)
+        .hasStackTraceContaining("NOT_FOUND - no queue 'unknown'");
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  @DisplayName("should requeue unacknowledged messages when the channel closes")
+  @Test
+  void shouldRequeueOnClose() throws IOException, TimeoutException {
+    channel.basicPublish("exchange", "input", null, body("unacked"));
+    channel.basicGet("input", false);
+    assertThat(broker.messageCount("input")).isZero();
+
+    channel.close();
+
+    assertThat(broker.messageCount("input")).isEqualTo(1);
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  @DisplayName("should confirm published messages right away")
+  @Test
+  void shouldConfirmPublishedMessages() throws IOException {
+    Map<Long, Boolean> confirms = new ConcurrentHashMap<>();
+    channel.confirmSelect();
+    channel.addConfirmListener((tag, multiple) -> confirms.put(tag, true), (tag, multiple) -> {});
+
+    long sequenceNumber = channel.getNextPublishSeqNo();
+    channel.basicPublish("exchange", "input", null, body("confirm me"));
+
+    assertThat(confirms).containsKey(sequenceNumber);
+  }
+
+  @DisplayName("should run a complete Flusswerk engine")
+  @Test
+  void shouldRunEngine() throws IOException, InterruptedException {
+    var rabbitMQ =
+        new RabbitMQProperties(
+            null, null, null, null, 2, true, new RabbitMQProperties.AckBatching(10, null));
+    var mapper = FlusswerkObjectMapper.forIncoming(TestMessage.class);
+    var rabbitClient = new RabbitClient(mapper, broker.connect(rabbitMQ));
+    var routing = RoutingProperties.minimal(List.of("in"), Map.of("default", List.of("out")));
+    var messageBroker = new MessageBroker(routing, rabbitClient);
+    var tracing = new Tracing();
+    var metrics = new FlusswerkMetrics(ProcessingProperties.defaults(), new SimpleMeterRegistry());
+    var flow =
+        new Flow(
+            FlowBuilder.messageProcessor(TestMessage.class)
+                .process(message -> new TestMessage(message.getId() + "-processed"))
+                .build());
+    var taskQueue = new PriorityTaskQueue();
+    var availableWorkers = new Semaphore(4);
+    var consumers =
+        List.of(
+            new FlusswerkConsumer(
+                availableWorkers, rabbitClient, mapper, "in", 0, taskQueue, 0, 20),
+            new FlusswerkConsumer(
+                availableWorkers, rabbitClient, mapper, "in", 0, taskQueue, 1, 20));
+    var report = new DefaultProcessReport("test", tracing);
+    var workers =
+        List.of(
+            new Worker(flow, metrics, messageBroker, report, taskQueue, tracing),
+            new Worker(flow, metrics, messageBroker, report, taskQueue, tracing));
+    var engine = new Engine(rabbitClient, consumers, workers, taskQueue);
+
+    engine.start();
+    for (int i = 0; i < 200; i++) {
+      channel.basicPublish(
+          RoutingProperties.DEFAULT_EXCHANGE,
+          "in",
+          null,
+          mapper.serialize(new TestMessage("message-" + i)));
+    }
+    await(() -> broker.messageCount("out") == 200);
+    engine.stop();
+
+    assertThat(broker.messageCount("in")).isZero();
+    assertThat(rabbitClient.getUnconfirmedCount()).isZero();
+  }
+}
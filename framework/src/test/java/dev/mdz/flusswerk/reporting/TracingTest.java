@@ -58,6 +58,23 @@ class TracingTest {
     tracing.deregister();
   }
 
+  @DisplayName("should restore an existing path without adding a new id")
+  @Test
+  void restore() {
+    tracing.restore(List.of("A", "B"));
+    assertThat(tracing.tracingPath()).containsExactly("A", "B");
+
+    tracing.restore(List.of());
+    assertThat(tracing.tracingPath()).isEmpty();
+  }
+
+  @DisplayName("should continue a path without registering it")
+  @Test
+  void newPathShouldContinueIds() {
+    assertThat(tracing.newPath(List.of("A"))).hasSize(2).startsWith("A");
+    assertThat(tracing.tracingPath()).isEmpty();
+  }
+
   @DisplayName("should return empty list if nothing is registered")
   @Test
   void register() {
@@ -28,6 +28,6 @@ public class RabbitUtilAssert extends AbstractAssert<RabbitUtilAssert, RabbitUti
   }
 
   private static long getMessageCount(Queue queue) {
-    return queue.messageCount();
+    return queue.refreshMessageCount(); // the sampled depth might be outdated
   }
 }